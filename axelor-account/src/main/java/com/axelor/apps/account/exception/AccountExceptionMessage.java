@@ -475,6 +475,13 @@ public final class AccountExceptionMessage {
   public static final String BATCH_ACCOUNT_5 = /*$$(*/
       "Account balances from all accounts situations (%s) has been updated." /*)*/;
 
+  /** Batch accounting situation balance control */
+  public static final String BATCH_ACCOUNTING_SITUATION_BALANCE_CONTROL_REPORT = /*$$(*/
+      "Report for partner balances control batch:" /*)*/;
+
+  public static final String BATCH_ACCOUNTING_SITUATION_BALANCE_CONTROL_MISMATCH = /*$$(*/
+      "Accounting situation %s: the balance was %s instead of %s, it has been corrected." /*)*/;
+
   /** Batch doubtful customer */
   public static final String BATCH_DOUBTFUL_1 = /*$$(*/
       "Doubtful account's determination's reporting" /*)*/;
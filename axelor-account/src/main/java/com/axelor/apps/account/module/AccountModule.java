@@ -675,6 +675,8 @@ public class AccountModule extends AxelorModule {
 
     bind(AccountCustomerService.class).to(AccountCustomerServiceImpl.class);
 
+    bind(AccountingSituationBalanceService.class).to(AccountingSituationBalanceServiceImpl.class);
+
     bind(InvoiceProductStatementService.class).to(InvoiceProductStatementServiceImpl.class);
 
     bind(MoveLineAttrsService.class).to(MoveLineAttrsServiceImpl.class);
@@ -782,5 +784,7 @@ public class AccountModule extends AxelorModule {
         .to(FixedAssetDerogatoryLineManagementRepository.class);
 
     bind(FindFixedAssetService.class).to(FindFixedAssetServiceImpl.class);
+
+    bind(AccountingSituationRecomputeScheduler.class);
   }
 }
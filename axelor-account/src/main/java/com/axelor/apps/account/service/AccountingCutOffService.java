@@ -23,6 +23,7 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.db.Query;
 import java.time.LocalDate;
 import java.util.List;
@@ -30,7 +31,7 @@ import java.util.Set;
 
 public interface AccountingCutOffService {
 
-  Query<Move> getMoves(
+  BatchChunkIterator<Move> getMoves(
       Company company, Set<Journal> journalSet, LocalDate moveDate, int accountingCutOffTypeSelect);
 
   List<Move> generateCutOffMovesFromMove(
@@ -52,6 +52,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.db.Query;
 import com.google.common.collect.Lists;
@@ -140,7 +141,7 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
   }
 
   @Override
-  public Query<Move> getMoves(
+  public BatchChunkIterator<Move> getMoves(
       Company company,
       Set<Journal> journalSet,
       LocalDate moveDate,
@@ -166,10 +167,8 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       queryStr += " AND self.company = :company";
     }
 
-    Query<Move> moveQuery =
-        moveRepository
-            .all()
-            .filter(queryStr)
+    BatchChunkIterator<Move> moveIterator =
+        BatchChunkIterator.of(Move.class, queryStr)
             .bind("journals", journalIdList)
             .bind(
                 "journalType",
@@ -180,10 +179,10 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
             .bind("date", moveDate);
 
     if (company != null) {
-      moveQuery.bind("company", company.getId());
+      moveIterator.bind("company", company.getId());
     }
 
-    return moveQuery.order("id");
+    return moveIterator;
   }
 
   @Override
@@ -0,0 +1,50 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.Reconcile;
+import com.axelor.apps.base.AxelorException;
+
+/**
+ * Maintain the balance of the accounting situations incrementally, by applying the variation
+ * caused by a posting or a reconciliation instead of summing again all the open move lines of the
+ * partner.
+ */
+public interface AccountingSituationBalanceService {
+
+  /**
+   * Add the amount remaining of the lines of a move that has just been posted to the balance of
+   * their partners. Must only be called when the move was not already counted in the balances, i.e.
+   * when it was not in daybook before being posted.
+   *
+   * @param move A move in daybook or accounted status
+   * @throws AxelorException
+   */
+  void applyMoveBalance(Move move) throws AxelorException;
+
+  /**
+   * Apply to the balance of the partners the variation of the amount remaining of the lines of a
+   * reconcile, which decreases when the reconcile is confirmed and increases when it is canceled.
+   *
+   * @param reconcile A confirmed or canceled reconcile
+   * @throws AxelorException
+   */
+  void applyReconcileBalance(Reconcile reconcile) throws AxelorException;
+}
@@ -0,0 +1,151 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountingSituation;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.Reconcile;
+import com.axelor.apps.account.db.repo.AccountingSituationRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.db.repo.ReconcileRepository;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class AccountingSituationBalanceServiceImpl implements AccountingSituationBalanceService {
+
+  protected AccountingSituationService accountingSituationService;
+  protected AccountingSituationInitService accountingSituationInitService;
+  protected AccountCustomerService accountCustomerService;
+  protected AccountingSituationRepository accountingSituationRepo;
+  protected AccountingSituationRecomputeScheduler accountingSituationRecomputeScheduler;
+
+  @Inject
+  public AccountingSituationBalanceServiceImpl(
+      AccountingSituationService accountingSituationService,
+      AccountingSituationInitService accountingSituationInitService,
+      AccountCustomerService accountCustomerService,
+      AccountingSituationRepository accountingSituationRepo,
+      AccountingSituationRecomputeScheduler accountingSituationRecomputeScheduler) {
+    this.accountingSituationService = accountingSituationService;
+    this.accountingSituationInitService = accountingSituationInitService;
+    this.accountCustomerService = accountCustomerService;
+    this.accountingSituationRepo = accountingSituationRepo;
+    this.accountingSituationRecomputeScheduler = accountingSituationRecomputeScheduler;
+  }
+
+  @Override
+  public void applyMoveBalance(Move move) throws AxelorException {
+    Map<Partner, BigDecimal> balanceVariationMap = new LinkedHashMap<>();
+
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      if (this.isInPartnerBalance(moveLine)) {
+        balanceVariationMap.merge(
+            moveLine.getPartner(), this.getBalanceAmount(moveLine), BigDecimal::add);
+      }
+    }
+
+    this.applyBalanceVariations(balanceVariationMap, move.getCompany());
+  }
+
+  @Override
+  public void applyReconcileBalance(Reconcile reconcile) throws AxelorException {
+    // Confirming a reconcile lowers the amount remaining of both lines: the balance goes down by
+    // the reconciled amount for the debit line and up for the credit line, which is counted
+    // negatively. Canceling it does the opposite.
+    BigDecimal debitVariation =
+        reconcile.getStatusSelect() == ReconcileRepository.STATUS_CANCELED
+            ? reconcile.getAmount()
+            : reconcile.getAmount().negate();
+
+    Map<Partner, BigDecimal> balanceVariationMap = new LinkedHashMap<>();
+
+    this.addReconcileVariation(balanceVariationMap, reconcile.getDebitMoveLine(), debitVariation);
+    this.addReconcileVariation(
+        balanceVariationMap, reconcile.getCreditMoveLine(), debitVariation.negate());
+
+    this.applyBalanceVariations(
+        balanceVariationMap, reconcile.getDebitMoveLine().getMove().getCompany());
+  }
+
+  protected void addReconcileVariation(
+      Map<Partner, BigDecimal> balanceVariationMap,
+      MoveLine moveLine,
+      BigDecimal balanceVariation) {
+    if (this.isInPartnerBalance(moveLine) && moveLine.getAccount().getReconcileOk()) {
+      balanceVariationMap.merge(moveLine.getPartner(), balanceVariation, BigDecimal::add);
+    }
+  }
+
+  /**
+   * Same conditions as the ones of {@link AccountCustomerService#getBalance(Partner, Company)}.
+   */
+  protected boolean isInPartnerBalance(MoveLine moveLine) {
+    Move move = moveLine.getMove();
+    Account account = moveLine.getAccount();
+
+    return moveLine.getPartner() != null
+        && account != null
+        && account.getUseForPartnerBalance()
+        && !move.getIgnoreInAccountingOk()
+        && (move.getStatusSelect() == MoveRepository.STATUS_ACCOUNTED
+            || move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK);
+  }
+
+  protected BigDecimal getBalanceAmount(MoveLine moveLine) {
+    return moveLine.getDebit().signum() > 0
+        ? moveLine.getAmountRemaining()
+        : moveLine.getAmountRemaining().negate();
+  }
+
+  protected void applyBalanceVariations(
+      Map<Partner, BigDecimal> balanceVariationMap, Company company) throws AxelorException {
+    for (Map.Entry<Partner, BigDecimal> entry : balanceVariationMap.entrySet()) {
+      Partner partner = entry.getKey();
+      AccountingSituation accountingSituation =
+          accountingSituationService.getAccountingSituation(partner, company);
+
+      if (accountingSituation == null) {
+        accountingSituation =
+            accountingSituationInitService.createAccountingSituation(partner, company);
+        if (accountingSituation != null) {
+          // No balance to start from yet, the previous moves of the partner must be counted
+          accountCustomerService.updateAccountingSituationCustomerAccount(
+              accountingSituation, true, true, false);
+        }
+        continue;
+      }
+
+      if (entry.getValue().signum() != 0) {
+        accountingSituation.setBalanceCustAccount(
+            accountingSituation.getBalanceCustAccount().add(entry.getValue()));
+      }
+      // The balances due depend on the date, they are recomputed later on
+      accountingSituation.setCustAccountMustBeUpdateOk(true);
+      accountingSituationRepo.save(accountingSituation);
+      accountingSituationRecomputeScheduler.scheduleOnCommit(accountingSituation);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.AccountingSituation;
+import com.axelor.apps.account.db.repo.AccountingSituationRepository;
+import com.axelor.apps.base.callable.WorkerExecutor;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.db.JPA;
+import com.axelor.event.Observes;
+import com.axelor.events.ShutdownEvent;
+import com.axelor.inject.Beans;
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recompute in the background all the balances of the accounting situations whose balance has been
+ * updated incrementally. The recomputation of a situation is delayed and postponed again each time
+ * the situation is updated, so that a partner with many postings in a row is only recomputed once
+ * things have settled.
+ */
+@Singleton
+public class AccountingSituationRecomputeScheduler {
+
+  protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final long RECOMPUTE_DELAY_SECONDS = 30;
+
+  private final Map<Long, ScheduledFuture<?>> scheduledMap = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "accounting-situation-recompute");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * Schedule the recomputation of an accounting situation once the current transaction is
+   * committed, nothing is scheduled if it is rolled back.
+   *
+   * @param accountingSituation A saved accounting situation
+   */
+  public void scheduleOnCommit(AccountingSituation accountingSituation) {
+    JPA.em()
+        .unwrap(Session.class)
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                  schedule(accountingSituation.getId());
+                }
+              }
+            });
+  }
+
+  /**
+   * Schedule the recomputation of an accounting situation, replacing the one already scheduled.
+   *
+   * @param accountingSituationId The id of the accounting situation
+   */
+  public void schedule(Long accountingSituationId) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    scheduledMap.compute(
+        accountingSituationId,
+        (id, scheduled) -> {
+          if (scheduled != null) {
+            scheduled.cancel(false);
+          }
+          // run as the user whose changes triggered the recomputation
+          return executor.schedule(
+              WorkerExecutor.inWorkerScope(() -> recompute(id)),
+              RECOMPUTE_DELAY_SECONDS,
+              TimeUnit.SECONDS);
+        });
+  }
+
+  /**
+   * Stop the scheduler with the server, the pending recomputations are dropped: the situations keep
+   * their flag and are recomputed by the customer account batch.
+   */
+  public void shutdown(@Observes ShutdownEvent shutdownEvent) {
+    executor.shutdownNow();
+    scheduledMap.clear();
+  }
+
+  protected void recompute(Long accountingSituationId) {
+    scheduledMap.remove(accountingSituationId);
+
+    try {
+      AccountingSituation accountingSituation =
+          Beans.get(AccountingSituationRepository.class).find(accountingSituationId);
+
+      // Already recomputed in the meantime, by the customer account batch for instance
+      if (accountingSituation == null || !accountingSituation.getCustAccountMustBeUpdateOk()) {
+        return;
+      }
+
+      Beans.get(AccountCustomerService.class)
+          .updateAccountingSituationCustomerAccount(accountingSituation, true, true, false);
+      log.debug("Accounting situation {} recomputed", accountingSituationId);
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    }
+  }
+}
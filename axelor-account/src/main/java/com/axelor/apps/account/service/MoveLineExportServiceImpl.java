@@ -20,10 +20,8 @@ package com.axelor.apps.account.service;
 
 import com.axelor.apps.account.db.AccountingReport;
 import com.axelor.apps.account.db.AccountingReportType;
-import com.axelor.apps.account.db.Journal;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
-import com.axelor.apps.account.db.ReconcileGroup;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.AccountingReportRepository;
 import com.axelor.apps.account.db.repo.JournalRepository;
@@ -42,6 +40,8 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.PartnerService;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.auth.AuthUtils;
+import com.axelor.common.csv.CSVFile;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -61,13 +61,22 @@ import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import javax.persistence.Query;
+import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +99,10 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
 
   protected static final String DATE_FORMAT_YYYYMMDD = "yyyyMMdd";
   protected static final String DATE_FORMAT_YYYYMMDDHHMMSS = "yyyyMMddHHmmss";
+  protected static final int EXPORT_FETCH_SIZE = 1000;
+
+  private static final Pattern EXPORT_SEPARATOR_PATTERN =
+      Pattern.compile("(\r\n|\n\r|\r|\n|\\|)");
 
   @Inject
   public MoveLineExportServiceImpl(
@@ -342,7 +355,6 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       throws AxelorException, IOException {
 
     log.info("In Export type 1000 service : ");
-    List<String[]> allMoveLineData = new ArrayList<>();
     Company company = accountingReport.getCompany();
 
     LocalDate interfaceDate = accountingReport.getDate();
@@ -399,104 +411,195 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
 
     String moveLineQueryStr = StringUtils.join(moveLineQueryList, " AND ");
 
-    com.axelor.db.Query<MoveLine> moveLineQuery =
-        moveLineRepo
-            .all()
-            .filter(moveLineQueryStr)
-            .order("move.accountingDate")
-            .order("date")
-            .order("name");
-
-    int offset = 0;
-    List<Long> moveLineIdList;
-    List<Move> moveList = new ArrayList<>();
-
-    while (!(moveLineIdList =
-            moveLineQuery
-                .fetchStream(10000, offset)
-                .map(MoveLine::getId)
-                .collect(Collectors.toList()))
-        .isEmpty()) {
-
-      for (Long id : moveLineIdList) {
-        MoveLine moveLine = moveLineRepo.find(id);
-        offset++;
-        allMoveLineData.add(createItemForExportMoveLine(moveLine, moveList));
-      }
+    accountingReport = accountingReportRepo.find(accountingReport.getId());
+    String fileName = this.setFileName(accountingReport);
 
-      JPA.clear();
+    Path path = getExportFilePath(company, fileName);
+    log.debug("Full path to export : {}", path);
+    String exportNumber = administration ? null : this.getSaleExportNumber(company);
+    AccountingReport exportedAccountingReport = accountingReport;
+    try (CSVPrinter printer =
+            CSVFile.DEFAULT.withDelimiter('|').withQuoteAll().write(path.toFile());
+        Stream<Object[]> moveLineStream = streamMoveLineExportData(moveLineQueryStr)) {
+      printer.printRecord((Object[]) sanitizeExportItems(this.createHeaderForJournalEntry()));
+      this.printMoveLines(
+          printer,
+          moveLineStream.iterator(),
+          moveIdSet -> {
+            if (!administration) {
+              this.updateExportedMoves(
+                  moveIdSet, exportedAccountingReport, interfaceDate, exportNumber);
+            }
+          });
+    }
 
-      if (!administration) {
-        String exportNumber = this.getSaleExportNumber(company);
-        this.updateMoveList(moveList, accountingReport, interfaceDate, exportNumber);
-      }
+    accountingReportRepo.save(accountingReport);
+    try (InputStream is = new FileInputStream(path.toFile())) {
+      return Beans.get(MetaFiles.class).attach(is, fileName, accountingReport).getMetaFile();
+    }
+  }
 
-      moveList.clear();
+  /**
+   * Stream the columns of the move lines to export, without loading the move lines nor their
+   * relations as entities. The columns are in the order expected by {@link
+   * #createItemForExportMoveLine(Object[])}, followed by the id of the move.
+   *
+   * @param moveLineQueryStr the filter on the move lines, using <code>self</code> as alias
+   * @return a stream of rows, that has to be closed once consumed
+   */
+  @SuppressWarnings("unchecked")
+  protected Stream<Object[]> streamMoveLineExportData(String moveLineQueryStr) {
+    return JPA.em()
+        .createQuery(
+            "SELECT journal.code, journal.name, move.reference, self.date, "
+                + "account.code, account.name, accountType.isManageSubsidiaryAccount, "
+                + "partner.partnerSeq, partner.name, self.origin, self.originDate, "
+                + "self.description, self.debit, self.credit, "
+                + "reconcileGroup.statusSelect, reconcileGroup.code, "
+                + "reconcileGroup.letteringDateTime, move.accountingDate, "
+                + "self.currencyAmount, currency.codeISO, move.id "
+                + "FROM MoveLine self "
+                + "JOIN self.move move "
+                + "JOIN move.journal journal "
+                + "JOIN self.account account "
+                + "LEFT JOIN account.accountType accountType "
+                + "LEFT JOIN self.partner partner "
+                + "LEFT JOIN self.reconcileGroup reconcileGroup "
+                + "LEFT JOIN move.currency currency "
+                + "WHERE "
+                + moveLineQueryStr
+                + " ORDER BY move.accountingDate, self.date, self.name")
+        .setHint(QueryHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE)
+        .setHint(QueryHints.HINT_READONLY, true)
+        .getResultStream();
+  }
+
+  /**
+   * Print the rows of the move lines to export. Only the moves actually written to the file are
+   * marked as exported: the ids of the moves are passed to the given consumer each time the lines
+   * of {@link #EXPORT_FETCH_SIZE} moves have been printed, then once for the last ones. The lines
+   * of a move may be spread over several chunks.
+   *
+   * @param printer
+   * @param moveLineIterator the rows of {@link #streamMoveLineExportData(String)}
+   * @param exportedMoveConsumer called with each chunk of move ids
+   * @throws IOException
+   */
+  protected void printMoveLines(
+      CSVPrinter printer,
+      Iterator<Object[]> moveLineIterator,
+      Consumer<Set<Long>> exportedMoveConsumer)
+      throws IOException {
+    Set<Long> moveIdSet = new LinkedHashSet<>();
+    while (moveLineIterator.hasNext()) {
+      Object[] row = moveLineIterator.next();
+      printer.printRecord((Object[]) sanitizeExportItems(createItemForExportMoveLine(row)));
+      moveIdSet.add((Long) row[20]);
+
+      if (moveIdSet.size() >= EXPORT_FETCH_SIZE) {
+        exportedMoveConsumer.accept(moveIdSet);
+        moveIdSet = new LinkedHashSet<>();
+      }
     }
 
-    accountingReport = accountingReportRepo.find(accountingReport.getId());
+    if (!moveIdSet.isEmpty()) {
+      exportedMoveConsumer.accept(moveIdSet);
+    }
+  }
 
-    String fileName = this.setFileName(accountingReport);
-    accountingReportRepo.save(accountingReport);
-    return writeMoveLineToCsvFile(
-        company, fileName, this.createHeaderForJournalEntry(), allMoveLineData, accountingReport);
+  /**
+   * Mark a chunk of moves as exported, with one update statement.
+   *
+   * @param moveIdCollection the ids of the moves written to the export file
+   */
+  protected void updateExportedMoves(
+      Collection<Long> moveIdCollection,
+      AccountingReport accountingReport,
+      LocalDate localDate,
+      String exportNumber) {
+    int updatedMoveCount =
+        JPA.em()
+            .createQuery(
+                "UPDATE Move exportedMove SET exportedMove.exportNumber = :exportNumber, "
+                    + "exportedMove.exportDate = :exportDate, "
+                    + "exportedMove.accountingOk = true, "
+                    + "exportedMove.accountingReport = :accountingReport, "
+                    + "exportedMove.updatedOn = :updatedOn, "
+                    + "exportedMove.updatedBy = :updatedBy, "
+                    + "exportedMove.version = exportedMove.version + 1 "
+                    + "WHERE exportedMove.id IN (:moveIdList)")
+            .setParameter("exportNumber", exportNumber)
+            .setParameter("exportDate", localDate)
+            .setParameter("accountingReport", accountingReport)
+            .setParameter("updatedOn", LocalDateTime.now())
+            .setParameter("updatedBy", AuthUtils.getUser())
+            .setParameter("moveIdList", moveIdCollection)
+            .executeUpdate();
+    log.debug("Moves marked as exported : {}", updatedMoveCount);
   }
 
-  protected String[] createItemForExportMoveLine(MoveLine moveLine, List<Move> moveList) {
+  protected String[] createItemForExportMoveLine(Object[] row) {
     String[] items = new String[18];
-    Move move = moveLine.getMove();
-    if (!moveList.contains(move)) {
-      moveList.add(move);
-    }
-    Journal journal = move.getJournal();
-    items[0] = journal.getCode();
-    items[1] = journal.getName();
-    items[2] = moveLine.getMove().getReference();
-    items[3] = moveLine.getDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
-    items[4] = moveLine.getAccount().getCode();
-    items[5] = moveLine.getAccount().getName();
+    items[0] = (String) row[0];
+    items[1] = (String) row[1];
+    items[2] = (String) row[2];
+    items[3] = ((LocalDate) row[3]).format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+    items[4] = (String) row[4];
+    items[5] = (String) row[5];
     items[6] = "";
     items[7] = "";
-    Partner partner = moveLine.getPartner();
-    if (partner != null && moveLine.getAccount().getAccountType().getIsManageSubsidiaryAccount()) {
-      items[6] = partner.getPartnerSeq();
-      items[7] = partner.getName();
+    if (row[7] != null && Boolean.TRUE.equals(row[6])) {
+      items[6] = (String) row[7];
+      items[7] = (String) row[8];
     }
-    String origin = moveLine.getOrigin();
+    String origin = (String) row[9];
     items[8] = Strings.isNullOrEmpty(origin) ? "NA" : origin;
-    if (moveLine.getOriginDate() != null) {
-      items[9] = moveLine.getOriginDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+    if (row[10] != null) {
+      items[9] = ((LocalDate) row[10]).format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
     }
-    items[10] = moveLine.getDescription();
-    items[11] = moveLine.getDebit().toString().replace('.', ',');
-    items[12] = moveLine.getCredit().toString().replace('.', ',');
-
-    ReconcileGroup reconcileGroup = moveLine.getReconcileGroup();
-    if (reconcileGroup != null
-        && reconcileGroup.getStatusSelect() == ReconcileGroupRepository.STATUS_BALANCED) {
-      items[13] = reconcileGroup.getCode();
+    items[10] = (String) row[11];
+    items[11] = row[12].toString().replace('.', ',');
+    items[12] = row[13].toString().replace('.', ',');
+
+    if (row[14] != null && (Integer) row[14] == ReconcileGroupRepository.STATUS_BALANCED) {
+      items[13] = (String) row[15];
       items[14] =
-          reconcileGroup
-              .getLetteringDateTime()
-              .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+          ((LocalDateTime) row[16]).format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
     } else {
       items[13] = "";
       items[14] = "";
     }
 
-    if (move.getAccountingDate() != null) {
-      items[15] =
-          move.getAccountingDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+    if (row[17] != null) {
+      items[15] = ((LocalDate) row[17]).format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
     }
 
-    items[16] = moveLine.getCurrencyAmount().toString().replace('.', ',');
+    items[16] = row[18].toString().replace('.', ',');
 
-    if (move.getCurrency() != null) {
-      items[17] = move.getCurrency().getCodeISO();
+    if (row[19] != null) {
+      items[17] = (String) row[19];
+    }
+    return items;
+  }
+
+  protected String[] sanitizeExportItems(String[] items) {
+    for (int i = 0; i < items.length; i++) {
+      if (items[i] != null) {
+        items[i] = EXPORT_SEPARATOR_PATTERN.matcher(items[i]).replaceAll(" ");
+      }
     }
     return items;
   }
 
+  protected Path getExportFilePath(Company company, String fileName) throws AxelorException {
+    String filePath = accountConfigService.getAccountConfig(company).getExportPath();
+    String dataExportDir = appAccountService.getDataExportDir();
+
+    filePath = filePath == null ? dataExportDir : dataExportDir + filePath;
+    new File(filePath).mkdirs();
+    return Paths.get(filePath, fileName);
+  }
+
   protected MetaFile writeMoveLineToCsvFile(
       Company company,
       String fileName,
@@ -505,23 +608,14 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       AccountingReport accountingReport)
       throws AxelorException, IOException {
 
-    String filePath = accountConfigService.getAccountConfig(company).getExportPath();
-    String dataExportDir = appAccountService.getDataExportDir();
-
     for (String[] items : allMoveData) {
-      for (int i = 0; i < items.length; i++) {
-        if (items[i] != null) {
-          items[i] = items[i].replaceAll("(\r\n|\n\r|\r|\n|\\|)", " ");
-        }
-      }
+      sanitizeExportItems(items);
     }
 
-    filePath = filePath == null ? dataExportDir : dataExportDir + filePath;
-    new File(filePath).mkdirs();
-
-    log.debug("Full path to export : {}{}", filePath, fileName);
-    CsvHelper.csvWriter(filePath, fileName, '|', columnHeader, allMoveData);
-    Path path = Paths.get(filePath, fileName);
+    Path path = getExportFilePath(company, fileName);
+    log.debug("Full path to export : {}", path);
+    CsvHelper.csvWriter(
+        path.getParent().toString(), fileName, '|', columnHeader, allMoveData);
     try (InputStream is = new FileInputStream(path.toFile())) {
       return Beans.get(MetaFiles.class).attach(is, fileName, accountingReport).getMetaFile();
     }
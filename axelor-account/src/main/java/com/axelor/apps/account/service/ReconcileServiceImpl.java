@@ -114,6 +114,7 @@ public class ReconcileServiceImpl implements ReconcileService {
   protected MoveValidateService moveValidateService;
   protected CurrencyScaleServiceAccount currencyScaleServiceAccount;
   protected InvoiceTermPfpService invoiceTermPfpService;
+  protected AccountingSituationBalanceService accountingSituationBalanceService;
 
   @Inject
   public ReconcileServiceImpl(
@@ -140,7 +141,8 @@ public class ReconcileServiceImpl implements ReconcileService {
       MoveLineCreateService moveLineCreateService,
       MoveValidateService moveValidateService,
       CurrencyScaleServiceAccount currencyScaleServiceAccount,
-      InvoiceTermPfpService invoiceTermPfpService) {
+      InvoiceTermPfpService invoiceTermPfpService,
+      AccountingSituationBalanceService accountingSituationBalanceService) {
 
     this.moveToolService = moveToolService;
     this.accountCustomerService = accountCustomerService;
@@ -166,6 +168,7 @@ public class ReconcileServiceImpl implements ReconcileService {
     this.moveValidateService = moveValidateService;
     this.currencyScaleServiceAccount = currencyScaleServiceAccount;
     this.invoiceTermPfpService = invoiceTermPfpService;
+    this.accountingSituationBalanceService = accountingSituationBalanceService;
   }
 
   /**
@@ -428,8 +431,7 @@ public class ReconcileServiceImpl implements ReconcileService {
       Company company = reconcile.getDebitMoveLine().getMove().getCompany();
 
       if (AccountingService.getUpdateCustomerAccount()) {
-        accountCustomerService.updatePartnerAccountingSituation(
-            partnerList, company, true, true, false);
+        accountingSituationBalanceService.applyReconcileBalance(reconcile);
       } else {
         accountCustomerService.flagPartners(partnerList, company);
       }
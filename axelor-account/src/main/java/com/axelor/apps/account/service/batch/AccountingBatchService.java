@@ -93,6 +93,9 @@ public class AccountingBatchService extends AbstractBatchService {
       case AccountingBatchRepository.ACTION_AUTO_MOVE_LETTERING:
         batch = autoMoveLettering(accountingBatch);
         break;
+      case AccountingBatchRepository.ACTION_ACCOUNTING_SITUATION_BALANCE_CONTROL:
+        batch = controlAccountingSituationBalances(accountingBatch);
+        break;
       default:
         throw new AxelorException(
             TraceBackRepository.CATEGORY_INCONSISTENCY,
@@ -202,6 +205,10 @@ public class AccountingBatchService extends AbstractBatchService {
     return Beans.get(BatchAutoMoveLettering.class).run(accountingBatch);
   }
 
+  public Batch controlAccountingSituationBalances(AccountingBatch accountingBatch) {
+    return Beans.get(BatchAccountingSituationBalanceControl.class).run(accountingBatch);
+  }
+
   @Transactional
   public AccountingBatch createNewAccountingBatch(int action, Company company) {
     if (company != null) {
@@ -28,10 +28,8 @@ import com.axelor.apps.account.service.AccountingCutOffService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
-import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -77,28 +75,25 @@ public class BatchAccountingCutOff extends PreviewBatch {
     Set<Journal> journalSet = accountingBatch.getJournalSet();
     int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
 
-    int offset = 0;
     List<Move> moveList;
-    Query<Move> moveQuery =
-        cutOffService.getMoves(company, journalSet, moveDate, accountingCutOffTypeSelect);
+    BatchChunkIterator<Move> moveIterator =
+        chunkIterator(
+            cutOffService.getMoves(company, journalSet, moveDate, accountingCutOffTypeSelect));
 
-    while (!(moveList = moveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(moveList = moveIterator.nextChunk()).isEmpty()) {
 
-      findBatch();
       accountingBatch = accountingBatchRepository.find(accountingBatch.getId());
-      company = accountingBatch.getCompany();
-      journalSet = accountingBatch.getJournalSet();
 
       for (Move move : moveList) {
-        ++offset;
-
         if (this._processMove(
             moveRepo.find(move.getId()), accountingBatchRepository.find(accountingBatch.getId()))) {
+          // resume right after the move in anomaly
+          moveIterator.startAfter(move.getId());
           break;
         }
       }
 
-      JPA.clear();
+      moveIterator.endChunk();
     }
   }
 
@@ -0,0 +1,132 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import com.axelor.apps.account.db.AccountingSituation;
+import com.axelor.apps.account.db.repo.AccountingSituationRepository;
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountCustomerService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Compare the balance of the accounting situations, which is updated incrementally on posting and
+ * reconciliation, with the balance computed from all the open move lines of the partner. The
+ * situations whose balance differs are corrected and reported as anomalies.
+ */
+public class BatchAccountingSituationBalanceControl extends BatchStrategy {
+
+  protected AccountingSituationRepository accountingSituationRepo;
+
+  @Inject
+  public BatchAccountingSituationBalanceControl(
+      AccountCustomerService accountCustomerService,
+      AccountingSituationRepository accountingSituationRepo) {
+
+    super(accountCustomerService);
+
+    this.accountingSituationRepo = accountingSituationRepo;
+  }
+
+  @Override
+  protected void process() {
+
+    Company company = batch.getAccountingBatch().getCompany();
+
+    BatchChunkIterator<AccountingSituation> accountingSituationIterator =
+        chunkIterator(AccountingSituation.class, "self.company.id = :companyId")
+            .bind("companyId", company.getId());
+
+    List<AccountingSituation> accountingSituationList;
+    while (!(accountingSituationList = accountingSituationIterator.nextChunk()).isEmpty()) {
+      for (AccountingSituation accountingSituation : accountingSituationList) {
+        try {
+          this.controlBalance(accountingSituation);
+        } catch (Exception e) {
+          TraceBackService.trace(
+              new Exception(
+                  String.format(
+                      I18n.get(AccountExceptionMessage.BATCH_ACCOUNT_1),
+                      accountingSituation.getName()),
+                  e),
+              ExceptionOriginRepository.CUSTOMER_ACCOUNT,
+              batch.getId());
+          incrementAnomaly();
+        }
+      }
+      accountingSituationIterator.endChunk();
+    }
+  }
+
+  protected void controlBalance(AccountingSituation accountingSituation) throws AxelorException {
+    BigDecimal balance =
+        accountCustomerService
+            .getBalance(accountingSituation.getPartner(), accountingSituation.getCompany())
+            .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
+    BigDecimal storedBalance =
+        accountingSituation
+            .getBalanceCustAccount()
+            .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
+
+    if (balance.compareTo(storedBalance) == 0) {
+      incrementDone();
+      return;
+    }
+
+    accountCustomerService.updateAccountingSituationCustomerAccount(
+        accountingSituation, true, true, false);
+
+    TraceBackService.trace(
+        new AxelorException(
+            accountingSituation,
+            TraceBackRepository.CATEGORY_INCONSISTENCY,
+            I18n.get(AccountExceptionMessage.BATCH_ACCOUNTING_SITUATION_BALANCE_CONTROL_MISMATCH),
+            accountingSituation.getName(),
+            storedBalance,
+            balance),
+        ExceptionOriginRepository.CUSTOMER_ACCOUNT,
+        batch.getId());
+    incrementAnomaly();
+  }
+
+  @Override
+  protected void stop() {
+    String comment =
+        I18n.get(AccountExceptionMessage.BATCH_ACCOUNTING_SITUATION_BALANCE_CONTROL_REPORT) + "\n";
+    comment +=
+        String.format(
+            "\t" + I18n.get(AccountExceptionMessage.BATCH_ACCOUNT_3) + "\n", batch.getDone());
+    comment +=
+        String.format("\t" + I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly());
+
+    super.stop();
+    addComment(comment);
+  }
+}
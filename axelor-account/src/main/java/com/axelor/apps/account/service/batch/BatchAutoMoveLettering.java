@@ -44,10 +44,13 @@ import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -98,84 +101,123 @@ public class BatchAutoMoveLettering extends BatchStrategy {
     accountingBatch = batch.getAccountingBatch();
     moveLineReconciledSet = new HashSet<>();
 
-    Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> moveLineMap = getMoveLinesMap();
-
     int reconcileMethodSelect = accountingBatch.getReconcileMethodSelect();
+    String filter = getMoveLinesToReconcileFilter(accountingBatch);
+    Map<String, Object> params = getMoveLinesToReconcileParams(accountingBatch);
 
-    for (Pair<List<MoveLine>, List<MoveLine>> moveLineLists : moveLineMap.values()) {
-
-      List<MoveLine> companyPartnerCreditMoveLineList =
-          moveLineLists.getLeft().stream()
-              .filter(moveLine -> moveLine.getAmountRemaining().compareTo(BigDecimal.ZERO) > 0)
-              .collect(Collectors.toList());
-      List<MoveLine> companyPartnerDebitMoveLineList =
-          moveLineLists.getRight().stream()
-              .filter(moveLine -> moveLine.getAmountRemaining().compareTo(BigDecimal.ZERO) > 0)
-              .collect(Collectors.toList());
+    // Move lines are loaded and lettered one account and partner group at a time
+    for (List<Object> groupKey : getMoveLineGroupKeyList(filter, params)) {
+      Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> moveLineMap =
+          getMoveLinesMap(getMoveLines(filter, params, groupKey));
 
-      if (CollectionUtils.isEmpty(companyPartnerCreditMoveLineList)
-          || CollectionUtils.isEmpty(companyPartnerDebitMoveLineList)) {
-        continue;
-      }
-
-      if (reconcileMethodSelect
-          == AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE) {
-        List<MoveLine> moveLines =
-            Stream.of(companyPartnerDebitMoveLineList, companyPartnerCreditMoveLineList)
-                .flatMap(Collection::stream)
-                .sorted(getMoveLineComparator())
-                .collect(Collectors.toList());
-        reconcileWithBalancedMove(moveLines);
-      } else {
-        reconcileWithMethod(
-            companyPartnerDebitMoveLineList,
-            companyPartnerCreditMoveLineList,
-            reconcileMethodSelect);
+      for (Pair<List<MoveLine>, List<MoveLine>> moveLineLists : moveLineMap.values()) {
+        reconcileMoveLines(moveLineLists, reconcileMethodSelect);
       }
+      JPA.clear();
     }
     for (MoveLine moveLine : moveLineReconciledSet) {
       incrementDone();
     }
   }
 
+  protected void reconcileMoveLines(
+      Pair<List<MoveLine>, List<MoveLine>> moveLineLists, int reconcileMethodSelect) {
+
+    List<MoveLine> companyPartnerCreditMoveLineList =
+        moveLineLists.getLeft().stream()
+            .filter(moveLine -> moveLine.getAmountRemaining().compareTo(BigDecimal.ZERO) > 0)
+            .collect(Collectors.toList());
+    List<MoveLine> companyPartnerDebitMoveLineList =
+        moveLineLists.getRight().stream()
+            .filter(moveLine -> moveLine.getAmountRemaining().compareTo(BigDecimal.ZERO) > 0)
+            .collect(Collectors.toList());
+
+    if (CollectionUtils.isEmpty(companyPartnerCreditMoveLineList)
+        || CollectionUtils.isEmpty(companyPartnerDebitMoveLineList)) {
+      return;
+    }
+
+    if (reconcileMethodSelect
+        == AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE) {
+      List<MoveLine> moveLines =
+          Stream.of(companyPartnerDebitMoveLineList, companyPartnerCreditMoveLineList)
+              .flatMap(Collection::stream)
+              .sorted(getMoveLineComparator())
+              .collect(Collectors.toList());
+      reconcileWithBalancedMove(moveLines);
+    } else {
+      reconcileWithMethod(
+          companyPartnerDebitMoveLineList, companyPartnerCreditMoveLineList, reconcileMethodSelect);
+    }
+  }
+
   protected void reconcileWithBalancedMove(List<MoveLine> moveLines) {
 
-    List<MoveLine> debitMoveLines;
-    List<MoveLine> creditMoveLines;
-    List<MoveLine> moveLinesReconciled = new ArrayList<>();
-    BigDecimal progressiveAmount;
-    for (int i = 0; i < moveLines.size(); i++) {
-      List<MoveLine> moveLinesToProcess = new ArrayList<>();
-      progressiveAmount = BigDecimal.ZERO;
-      for (MoveLine moveLine : moveLines.subList(i, moveLines.size())) {
-        if (moveLinesReconciled.contains(moveLine)) {
-          break;
-        }
-        moveLinesToProcess.add(moveLine);
-        if (moveLine.getDebit().signum() > 0) {
-          progressiveAmount = progressiveAmount.subtract(moveLine.getAmountRemaining());
-        } else {
-          progressiveAmount = progressiveAmount.add(moveLine.getAmountRemaining());
-        }
-        if (progressiveAmount.signum() == 0) {
-          debitMoveLines =
-              moveLinesToProcess.stream()
-                  .filter(ml -> ml.getDebit().signum() > 0)
-                  .collect(Collectors.toList());
-          creditMoveLines =
-              moveLinesToProcess.stream()
-                  .filter(ml -> ml.getCredit().signum() > 0)
-                  .collect(Collectors.toList());
-
-          reconcileWithMethod(
-              debitMoveLines,
-              creditMoveLines,
-              AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE);
-
-          moveLinesReconciled.addAll(moveLinesToProcess);
-        }
+    for (List<MoveLine> moveLinesToProcess : getBalancedMoveLineLists(moveLines)) {
+      List<MoveLine> debitMoveLines =
+          moveLinesToProcess.stream()
+              .filter(ml -> ml.getDebit().signum() > 0)
+              .collect(Collectors.toList());
+      List<MoveLine> creditMoveLines =
+          moveLinesToProcess.stream()
+              .filter(ml -> ml.getCredit().signum() > 0)
+              .collect(Collectors.toList());
+
+      reconcileWithMethod(
+          debitMoveLines,
+          creditMoveLines,
+          AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE);
+    }
+  }
+
+  /**
+   * Split the sorted move lines into consecutive balanced runs: starting from the first line, each
+   * run is the shortest one whose debit and credit remaining amounts are equal, and lines that do
+   * not start any balanced run are skipped.
+   *
+   * <p>The lines i to j are balanced when the running balance after j is the running balance
+   * before i, so the end of the shortest run starting at each line is found in a single backward
+   * pass over the running balances.
+   *
+   * @param moveLines the move lines of an account and partner, sorted.
+   * @return the balanced runs of move lines.
+   */
+  protected List<List<MoveLine>> getBalancedMoveLineLists(List<MoveLine> moveLines) {
+    int size = moveLines.size();
+
+    // balances[i] is the running balance before the line i
+    BigDecimal[] balances = new BigDecimal[size + 1];
+    balances[0] = BigDecimal.ZERO;
+    for (int i = 0; i < size; i++) {
+      MoveLine moveLine = moveLines.get(i);
+      balances[i + 1] =
+          moveLine.getDebit().signum() > 0
+              ? balances[i].subtract(moveLine.getAmountRemaining())
+              : balances[i].add(moveLine.getAmountRemaining());
+    }
+
+    // runEnds[i] is the first index after i with the same running balance, or -1 if there is none
+    int[] runEnds = new int[size];
+    Map<BigDecimal, Integer> nextIndexMap = new HashMap<>();
+    for (int i = size; i >= 0; i--) {
+      BigDecimal balance = balances[i].stripTrailingZeros();
+      if (i < size) {
+        runEnds[i] = nextIndexMap.getOrDefault(balance, -1);
       }
+      nextIndexMap.put(balance, i);
     }
+
+    List<List<MoveLine>> balancedMoveLineLists = new ArrayList<>();
+    int i = 0;
+    while (i < size) {
+      if (runEnds[i] < 0) {
+        i++;
+        continue;
+      }
+      balancedMoveLineLists.add(new ArrayList<>(moveLines.subList(i, runEnds[i])));
+      i = runEnds[i];
+    }
+    return balancedMoveLineLists;
   }
 
   protected void reconcileWithMethod(
@@ -470,10 +512,67 @@ public class BatchAutoMoveLettering extends BatchStrategy {
     return moveLineComparator;
   }
 
-  protected Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> getMoveLinesMap() {
+  /**
+   * Get the keys of the groups of move lines to letter together: the account, followed by the
+   * partner if the account is used for partner balance, as in {@link
+   * com.axelor.apps.account.service.moveline.MoveLineService#getPopulatedReconcilableMoveLineMap}.
+   * The company is the one of the batch.
+   */
+  protected List<List<Object>> getMoveLineGroupKeyList(String filter, Map<String, Object> params) {
+    javax.persistence.Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT account.id, partner.id, account.useForPartnerBalance "
+                    + "FROM MoveLine self "
+                    + "JOIN self.account account "
+                    + "LEFT JOIN self.partner partner "
+                    + "WHERE "
+                    + filter
+                    + " AND account.reconcileOk IS TRUE "
+                    + "ORDER BY account.id, partner.id");
+    params.forEach(query::setParameter);
+
+    Set<List<Object>> groupKeySet = new LinkedHashSet<>();
+    @SuppressWarnings("unchecked")
+    List<Object[]> resultList = query.getResultList();
+    for (Object[] result : resultList) {
+      groupKeySet.add(
+          Boolean.TRUE.equals(result[2])
+              ? Arrays.asList(result[0], result[1])
+              : Collections.singletonList(result[0]));
+    }
+    return new ArrayList<>(groupKeySet);
+  }
+
+  protected List<MoveLine> getMoveLines(
+      String filter, Map<String, Object> params, List<Object> groupKey) {
+    StringBuilder groupFilter =
+        new StringBuilder(filter).append(" AND self.account.id = :accountId");
+    Map<String, Object> groupParams = new HashMap<>(params);
+    groupParams.put("accountId", groupKey.get(0));
+
+    if (groupKey.size() > 1) {
+      if (groupKey.get(1) == null) {
+        groupFilter.append(" AND self.partner IS NULL");
+      } else {
+        groupFilter.append(" AND self.partner.id = :partnerId");
+        groupParams.put("partnerId", groupKey.get(1));
+      }
+    }
+
+    return moveLineRepository
+        .all()
+        .filter(groupFilter.toString())
+        .bind(groupParams)
+        .order("id")
+        .fetch();
+  }
+
+  protected Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> getMoveLinesMap(
+      List<MoveLine> moveLineList) {
     Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> listPairMap =
         moveLineService.getPopulatedReconcilableMoveLineMap(
-            getMoveLinesQuery().fetch().stream()
+            moveLineList.stream()
                 .filter(moveLine -> moveLineControlService.canReconcile(moveLine))
                 .collect(Collectors.toList()));
 
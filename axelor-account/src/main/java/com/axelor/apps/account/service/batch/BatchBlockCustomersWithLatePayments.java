@@ -26,9 +26,9 @@ import com.axelor.apps.account.service.config.AccountConfigService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.google.inject.Inject;
@@ -74,12 +74,10 @@ public class BatchBlockCustomersWithLatePayments extends BatchStrategy {
     List<DebtRecovery> debtRecoveries;
     List<Long> customersToBlock = new ArrayList<Long>();
     List<Long> customerToUnblock = new ArrayList<Long>();
-    int offset = 0;
-    Query<DebtRecovery> query =
-        debtRecoveryRepository.all().filter("self.archived = false or self.archived is null");
-    while (!(debtRecoveries = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
+    BatchChunkIterator<DebtRecovery> iterator =
+        chunkIterator(DebtRecovery.class, "self.archived = false or self.archived is null");
+    while (!(debtRecoveries = iterator.nextChunk()).isEmpty()) {
       for (DebtRecovery debtRecovery : debtRecoveries) {
-        ++offset;
         if (debtRecovery.getRespiteDateBeforeAccountBlocking() != null
             && debtRecovery
                     .getRespiteDateBeforeAccountBlocking()
@@ -129,7 +127,7 @@ public class BatchBlockCustomersWithLatePayments extends BatchStrategy {
           }
         }
       }
-      JPA.clear();
+      iterator.endChunk();
     }
     blockCustomers(customersToBlock);
     unblockCustomers(customerToUnblock);
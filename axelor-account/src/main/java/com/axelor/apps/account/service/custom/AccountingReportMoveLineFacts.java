@@ -0,0 +1,158 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.repo.AccountingReportConfigLineRepository;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.collections.CollectionUtils;
+
+/**
+ * Move line amounts of an accounting report aggregated by account, and by account and analytic
+ * account, for one date range. The cells of the report sharing this date range are evaluated
+ * against these totals instead of querying the move lines for each of them.
+ */
+public class AccountingReportMoveLineFacts {
+
+  protected final Map<Long, Amounts> amountsByAccount = new HashMap<>();
+  protected Map<Long, Map<Long, Amounts>> analyticAmountsByAccount;
+
+  public void addAmounts(Long accountId, BigDecimal debit, BigDecimal credit, long count) {
+    amountsByAccount.computeIfAbsent(accountId, key -> new Amounts()).add(debit, credit, count);
+  }
+
+  /**
+   * Add the analytic amounts of an account. The debit is the amount of the analytic move lines of
+   * debit move lines, the credit the amount of the other ones.
+   */
+  public void addAnalyticAmounts(
+      Long accountId, Long analyticAccountId, BigDecimal debit, BigDecimal credit, long count) {
+    if (analyticAmountsByAccount == null) {
+      analyticAmountsByAccount = new HashMap<>();
+    }
+    analyticAmountsByAccount
+        .computeIfAbsent(accountId, key -> new HashMap<>())
+        .computeIfAbsent(analyticAccountId, key -> new Amounts())
+        .add(debit, credit, count);
+  }
+
+  public boolean isAnalyticLoaded() {
+    return analyticAmountsByAccount != null;
+  }
+
+  public void setAnalyticLoaded() {
+    if (analyticAmountsByAccount == null) {
+      analyticAmountsByAccount = new HashMap<>();
+    }
+  }
+
+  public boolean hasMoveLines(Collection<Long> accountIdSet) {
+    return getAmounts(accountIdSet).count > 0;
+  }
+
+  public boolean hasAnalyticMoveLines(
+      Collection<Long> accountIdSet, Collection<Long> analyticAccountIdSet) {
+    return getAnalyticAmounts(accountIdSet, analyticAccountIdSet).count > 0;
+  }
+
+  public BigDecimal getAmount(Collection<Long> accountIdSet, int resultSelect) {
+    return getAmounts(accountIdSet).getResult(resultSelect);
+  }
+
+  public BigDecimal getAnalyticAmount(
+      Collection<Long> accountIdSet, Collection<Long> analyticAccountIdSet, int resultSelect) {
+    return getAnalyticAmounts(accountIdSet, analyticAccountIdSet).getResult(resultSelect);
+  }
+
+  protected Amounts getAmounts(Collection<Long> accountIdSet) {
+    Amounts total = new Amounts();
+    if (CollectionUtils.isEmpty(accountIdSet)) {
+      return total;
+    }
+
+    for (Long accountId : accountIdSet) {
+      Amounts amounts = amountsByAccount.get(accountId);
+      if (amounts != null) {
+        total.add(amounts);
+      }
+    }
+    return total;
+  }
+
+  protected Amounts getAnalyticAmounts(
+      Collection<Long> accountIdSet, Collection<Long> analyticAccountIdSet) {
+    Amounts total = new Amounts();
+    if (CollectionUtils.isEmpty(accountIdSet)
+        || CollectionUtils.isEmpty(analyticAccountIdSet)
+        || analyticAmountsByAccount == null) {
+      return total;
+    }
+
+    for (Long accountId : accountIdSet) {
+      Map<Long, Amounts> amountsByAnalyticAccount = analyticAmountsByAccount.get(accountId);
+      if (amountsByAnalyticAccount == null) {
+        continue;
+      }
+
+      for (Long analyticAccountId : analyticAccountIdSet) {
+        Amounts amounts = amountsByAnalyticAccount.get(analyticAccountId);
+        if (amounts != null) {
+          total.add(amounts);
+        }
+      }
+    }
+    return total;
+  }
+
+  protected static class Amounts {
+
+    protected BigDecimal debit = BigDecimal.ZERO;
+    protected BigDecimal credit = BigDecimal.ZERO;
+    protected long count;
+
+    protected void add(BigDecimal debit, BigDecimal credit, long count) {
+      if (debit != null) {
+        this.debit = this.debit.add(debit);
+      }
+      if (credit != null) {
+        this.credit = this.credit.add(credit);
+      }
+      this.count += count;
+    }
+
+    protected void add(Amounts amounts) {
+      this.add(amounts.debit, amounts.credit, amounts.count);
+    }
+
+    protected BigDecimal getResult(int resultSelect) {
+      switch (resultSelect) {
+        case AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT:
+          return debit.subtract(credit);
+        case AccountingReportConfigLineRepository.RESULT_DEBIT:
+          return debit;
+        case AccountingReportConfigLineRepository.RESULT_CREDIT:
+          return credit;
+        default:
+          return BigDecimal.ZERO;
+      }
+    }
+  }
+}
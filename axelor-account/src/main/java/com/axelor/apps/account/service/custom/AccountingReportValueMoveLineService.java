@@ -28,6 +28,12 @@ import java.time.LocalDate;
 import java.util.Map;
 
 public interface AccountingReportValueMoveLineService {
+  /**
+   * Drop the move line amounts aggregated by date range, they are aggregated again on next
+   * computation.
+   */
+  void clearMoveLineFacts();
+
   void createValueFromMoveLines(
       AccountingReport accountingReport,
       AccountingReportConfigLine groupColumn,
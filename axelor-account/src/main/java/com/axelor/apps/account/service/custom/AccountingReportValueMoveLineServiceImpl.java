@@ -60,6 +60,7 @@ import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.persistence.Parameter;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -70,6 +71,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
   protected Set<AnalyticAccount> groupColumnAnalyticAccountSet;
   protected Set<AnalyticAccount> columnAnalyticAccountSet;
   protected Set<AnalyticAccount> lineAnalyticAccountSet;
+  protected Map<String, AccountingReportMoveLineFacts> moveLineFactsMap = new HashMap<>();
 
   @Inject
   public AccountingReportValueMoveLineServiceImpl(
@@ -84,6 +86,11 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     this.moveToolService = moveToolService;
   }
 
+  @Override
+  public void clearMoveLineFacts() {
+    moveLineFactsMap.clear();
+  }
+
   @Override
   public void createValueFromMoveLines(
       AccountingReport accountingReport,
@@ -511,33 +518,54 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
                 ? null
                 : new HashSet<>(Collections.singletonList(configAnalyticAccount)));
 
-    List<MoveLine> moveLineList =
-        this.getMoveLineQuery(
-                accountingReport,
-                groupColumn,
-                column,
-                line,
-                accountIdSet,
-                resultAnalyticAccountSet,
-                startDate,
-                endDate)
-            .fetch();
+    BigDecimal result;
 
-    if (line.getHideDetailedLinesWithoutMoves() && moveLineList.isEmpty()) {
-      return;
-    }
+    if (this.isComputedFromFacts(accountingReport, groupColumn, column, line)
+        && (this.areAllAnalyticAccountSetsEmpty(accountingReport, groupColumn, column, line)
+            || CollectionUtils.isNotEmpty(resultAnalyticAccountSet))) {
+      result =
+          this.getResultFromFacts(
+              accountingReport,
+              groupColumn,
+              column,
+              line,
+              accountIdSet,
+              resultAnalyticAccountSet,
+              startDate,
+              endDate);
 
-    BigDecimal result =
-        this.getResultFromMoveLine(
-            accountingReport,
-            groupColumn,
-            column,
-            line,
-            moveLineList,
-            resultAnalyticAccountSet,
-            startDate,
-            endDate,
-            this.getResultSelect(column, line, groupColumn));
+      if (result == null) {
+        return;
+      }
+    } else {
+      List<MoveLine> moveLineList =
+          this.getMoveLineQuery(
+                  accountingReport,
+                  groupColumn,
+                  column,
+                  line,
+                  accountIdSet,
+                  resultAnalyticAccountSet,
+                  startDate,
+                  endDate)
+              .fetch();
+
+      if (line.getHideDetailedLinesWithoutMoves() && moveLineList.isEmpty()) {
+        return;
+      }
+
+      result =
+          this.getResultFromMoveLine(
+              accountingReport,
+              groupColumn,
+              column,
+              line,
+              moveLineList,
+              resultAnalyticAccountSet,
+              startDate,
+              endDate,
+              this.getResultSelect(column, line, groupColumn));
+    }
 
     this.createReportValue(
         accountingReport,
@@ -556,6 +584,162 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         analyticCounter);
   }
 
+  /**
+   * Cells filtered on analytic account codes can't be computed from the aggregated amounts, their
+   * move lines have to match every code filter.
+   */
+  protected boolean isComputedFromFacts(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line) {
+    return (groupColumn == null || Strings.isNullOrEmpty(groupColumn.getAnalyticAccountCode()))
+        && Strings.isNullOrEmpty(column.getAnalyticAccountCode())
+        && Strings.isNullOrEmpty(line.getAnalyticAccountCode());
+  }
+
+  /**
+   * Compute the value of a cell from the move line amounts aggregated for its date range.
+   *
+   * @return the value of the cell, or null if the line is hidden because there is no move line.
+   */
+  protected BigDecimal getResultFromFacts(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      Set<Long> accountIdSet,
+      Set<AnalyticAccount> analyticAccountSet,
+      LocalDate startDate,
+      LocalDate endDate) {
+    Pair<LocalDate, LocalDate> dates =
+        this.getDates(accountingReport, groupColumn, column, line, startDate, endDate);
+    AccountingReportMoveLineFacts facts =
+        this.getMoveLineFacts(accountingReport, dates.getLeft(), dates.getRight());
+    int resultSelect = this.getResultSelect(column, line, groupColumn);
+
+    Set<Long> analyticAccountIdSet = null;
+    if (CollectionUtils.isNotEmpty(analyticAccountSet)) {
+      analyticAccountIdSet =
+          analyticAccountSet.stream().map(AnalyticAccount::getId).collect(Collectors.toSet());
+      this.loadAnalyticMoveLineFacts(facts, accountingReport, dates.getLeft(), dates.getRight());
+    }
+
+    if (line.getHideDetailedLinesWithoutMoves()
+        && !(this.areAllAnalyticAccountSetsEmpty(accountingReport, groupColumn, column, line)
+            ? facts.hasMoveLines(accountIdSet)
+            : facts.hasAnalyticMoveLines(accountIdSet, analyticAccountIdSet))) {
+      return null;
+    }
+
+    BigDecimal value =
+        analyticAccountIdSet == null
+            ? facts.getAmount(accountIdSet, resultSelect)
+            : facts.getAnalyticAmount(accountIdSet, analyticAccountIdSet, resultSelect);
+
+    if ((groupColumn != null && groupColumn.getNegateValue())
+        || column.getNegateValue()
+        || line.getNegateValue()) {
+      value = value.negate();
+    }
+
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected AccountingReportMoveLineFacts getMoveLineFacts(
+      AccountingReport accountingReport, LocalDate startDate, LocalDate endDate) {
+    String key = String.format("%s_%s_%s", accountingReport.getId(), startDate, endDate);
+    AccountingReportMoveLineFacts facts = moveLineFactsMap.get(key);
+
+    if (facts == null) {
+      facts = new AccountingReportMoveLineFacts();
+
+      List<Object[]> resultList =
+          this.createMoveLineFactsQuery(
+                  "SELECT self.account.id, SUM(self.debit), SUM(self.credit), COUNT(self.id) "
+                      + "FROM MoveLine self WHERE %s GROUP BY self.account.id",
+                  accountingReport,
+                  startDate,
+                  endDate)
+              .getResultList();
+
+      for (Object[] result : resultList) {
+        facts.addAmounts(
+            (Long) result[0],
+            (BigDecimal) result[1],
+            (BigDecimal) result[2],
+            ((Number) result[3]).longValue());
+      }
+
+      moveLineFactsMap.put(key, facts);
+    }
+
+    return facts;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected void loadAnalyticMoveLineFacts(
+      AccountingReportMoveLineFacts facts,
+      AccountingReport accountingReport,
+      LocalDate startDate,
+      LocalDate endDate) {
+    if (facts.isAnalyticLoaded()) {
+      return;
+    }
+
+    facts.setAnalyticLoaded();
+
+    List<Object[]> resultList =
+        this.createMoveLineFactsQuery(
+                "SELECT self.account.id, aml.analyticAccount.id, "
+                    + "SUM(CASE WHEN self.debit > 0 THEN aml.amount ELSE 0 END), "
+                    + "SUM(CASE WHEN self.debit <= 0 THEN aml.amount ELSE 0 END), "
+                    + "COUNT(aml.id) "
+                    + "FROM AnalyticMoveLine aml JOIN aml.moveLine self "
+                    + "WHERE %s GROUP BY self.account.id, aml.analyticAccount.id",
+                accountingReport,
+                startDate,
+                endDate)
+            .getResultList();
+
+    for (Object[] result : resultList) {
+      facts.addAnalyticAmounts(
+          (Long) result[0],
+          (Long) result[1],
+          (BigDecimal) result[2],
+          (BigDecimal) result[3],
+          ((Number) result[4]).longValue());
+    }
+  }
+
+  protected javax.persistence.Query createMoveLineFactsQuery(
+      String queryStr, AccountingReport accountingReport, LocalDate startDate, LocalDate endDate) {
+    Map<String, Object> parameterMap = new HashMap<>();
+    parameterMap.put("dateFrom", startDate);
+    parameterMap.put("dateTo", endDate);
+    parameterMap.put("journal", accountingReport.getJournal());
+    parameterMap.put("paymentMode", accountingReport.getPaymentMode());
+    parameterMap.put("currency", accountingReport.getCurrency());
+    parameterMap.put("company", accountingReport.getCompany());
+    parameterMap.put(
+        "statusList",
+        moveToolService.getMoveStatusSelect(
+            accountingReport.getMoveStatusSelect(), accountingReport.getCompany()));
+
+    javax.persistence.Query query =
+        JPA.em()
+            .createQuery(
+                String.format(
+                    queryStr, String.join(" AND ", this.getMoveLineQueryList(accountingReport))));
+
+    for (Parameter<?> parameter : query.getParameters()) {
+      query.setParameter(parameter.getName(), parameterMap.get(parameter.getName()));
+    }
+
+    return query;
+  }
+
   protected int getResultSelect(
       AccountingReportConfigLine column,
       AccountingReportConfigLine line,
@@ -661,32 +845,13 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       AccountingReportConfigLine groupColumn,
       AccountingReportConfigLine column,
       AccountingReportConfigLine line) {
-    List<String> queryList =
-        new ArrayList<>(Collections.singletonList("self.move.statusSelect IN :statusList"));
+    List<String> queryList = this.getMoveLineQueryList(accountingReport);
 
     queryList.add(
         String.format(
             "(self.account.id IN %s)",
             CollectionUtils.isEmpty(accountIdSet) ? "(0)" : ":accountIdSet"));
 
-    this.addDateQueries(queryList, accountingReport);
-
-    if (accountingReport.getJournal() != null) {
-      queryList.add("(self.move.journal IS NULL OR self.move.journal = :journal)");
-    }
-
-    if (accountingReport.getPaymentMode() != null) {
-      queryList.add("(self.move.paymentMode IS NULL OR self.move.paymentMode = :paymentMode)");
-    }
-
-    if (accountingReport.getCurrency() != null) {
-      queryList.add("(self.move.currency IS NULL OR self.move.currency = :currency)");
-    }
-
-    if (accountingReport.getCompany() != null) {
-      queryList.add("(self.move.company IS NULL OR self.move.company = :company)");
-    }
-
     if (!this.areAllAnalyticAccountSetsEmpty(accountingReport, groupColumn, column, line)) {
       queryList.add(
           "EXISTS(SELECT 1 FROM AnalyticMoveLine aml WHERE aml.analyticAccount IN :analyticAccountSet AND aml.moveLine = self)");
@@ -710,6 +875,32 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     return String.join(" AND ", queryList);
   }
 
+  /** Filters on the move lines that only depend on the accounting report. */
+  protected List<String> getMoveLineQueryList(AccountingReport accountingReport) {
+    List<String> queryList =
+        new ArrayList<>(Collections.singletonList("self.move.statusSelect IN :statusList"));
+
+    this.addDateQueries(queryList, accountingReport);
+
+    if (accountingReport.getJournal() != null) {
+      queryList.add("(self.move.journal IS NULL OR self.move.journal = :journal)");
+    }
+
+    if (accountingReport.getPaymentMode() != null) {
+      queryList.add("(self.move.paymentMode IS NULL OR self.move.paymentMode = :paymentMode)");
+    }
+
+    if (accountingReport.getCurrency() != null) {
+      queryList.add("(self.move.currency IS NULL OR self.move.currency = :currency)");
+    }
+
+    if (accountingReport.getCompany() != null) {
+      queryList.add("(self.move.company IS NULL OR self.move.company = :company)");
+    }
+
+    return queryList;
+  }
+
   protected void addDateQueries(List<String> queryList, AccountingReport accountingReport) {
     if (accountingReport.getDateFrom() != null) {
       queryList.add("(self.date IS NULL OR self.date >= :dateFrom)");
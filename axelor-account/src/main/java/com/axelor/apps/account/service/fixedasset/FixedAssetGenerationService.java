@@ -71,6 +71,15 @@ public interface FixedAssetGenerationService {
    */
   String generateSequence(FixedAsset fixedAsset) throws AxelorException;
 
+  /**
+   * Set the sequence of the fixedAsset at the commit of the current transaction, so that the
+   * sequence is locked for as little time as possible.
+   *
+   * @param fixedAsset
+   * @throws AxelorException
+   */
+  void generateSequenceOnCommit(FixedAsset fixedAsset) throws AxelorException;
+
   /**
    * Copy FixedAsset including all lines.
    *
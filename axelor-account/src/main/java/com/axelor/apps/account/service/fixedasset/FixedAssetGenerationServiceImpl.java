@@ -206,13 +206,7 @@ public class FixedAssetGenerationServiceImpl implements FixedAssetGenerationServ
   @Override
   public String generateSequence(FixedAsset fixedAsset) throws AxelorException {
 
-    if (!sequenceService.hasSequence(SequenceRepository.FIXED_ASSET, fixedAsset.getCompany())) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(AccountExceptionMessage.ACCOUNT_CONFIG_SEQUENCE_5),
-          I18n.get(BaseExceptionMessage.EXCEPTION),
-          fixedAsset.getCompany().getName());
-    }
+    checkSequence(fixedAsset);
     String seq =
         sequenceService.getSequenceNumber(
             SequenceRepository.FIXED_ASSET,
@@ -223,6 +217,23 @@ public class FixedAssetGenerationServiceImpl implements FixedAssetGenerationServ
     return seq;
   }
 
+  @Override
+  public void generateSequenceOnCommit(FixedAsset fixedAsset) throws AxelorException {
+    checkSequence(fixedAsset);
+    sequenceService.setSequenceNumberOnCommit(
+        SequenceRepository.FIXED_ASSET, fixedAsset.getCompany(), fixedAsset, "fixedAssetSeq");
+  }
+
+  protected void checkSequence(FixedAsset fixedAsset) throws AxelorException {
+    if (!sequenceService.hasSequence(SequenceRepository.FIXED_ASSET, fixedAsset.getCompany())) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(AccountExceptionMessage.ACCOUNT_CONFIG_SEQUENCE_5),
+          I18n.get(BaseExceptionMessage.EXCEPTION),
+          fixedAsset.getCompany().getName());
+    }
+  }
+
   @Override
   public FixedAsset copyFixedAsset(FixedAsset fixedAsset) throws AxelorException {
     FixedAsset newFixedAsset = fixedAssetRepo.copy(fixedAsset, true);
@@ -73,7 +73,12 @@ public class FixedAssetValidateServiceImpl implements FixedAssetValidateService
     Objects.requireNonNull(fixedAsset);
 
     if (StringUtils.isEmpty(fixedAsset.getFixedAssetSeq())) {
-      fixedAsset.setFixedAssetSeq(fixedAssetGenerationService.generateSequence(fixedAsset));
+      // The first line of an imported fixed asset may be realized here, its move needs the number
+      if (fixedAsset.getOriginSelect() == FixedAssetRepository.ORIGINAL_SELECT_IMPORT) {
+        fixedAsset.setFixedAssetSeq(fixedAssetGenerationService.generateSequence(fixedAsset));
+      } else {
+        fixedAssetGenerationService.generateSequenceOnCommit(fixedAsset);
+      }
     }
 
     if (fixedAsset.getFixedAssetLineList() != null
@@ -22,6 +22,7 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.service.AccountCustomerService;
 import com.axelor.apps.account.service.AccountingService;
+import com.axelor.apps.account.service.AccountingSituationBalanceService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
@@ -33,11 +34,15 @@ import java.util.List;
 public class MoveCustAccountService {
 
   protected AccountCustomerService accountCustomerService;
+  protected AccountingSituationBalanceService accountingSituationBalanceService;
 
   @Inject
-  public MoveCustAccountService(AccountCustomerService accountCustomerService) {
+  public MoveCustAccountService(
+      AccountCustomerService accountCustomerService,
+      AccountingSituationBalanceService accountingSituationBalanceService) {
 
     this.accountCustomerService = accountCustomerService;
+    this.accountingSituationBalanceService = accountingSituationBalanceService;
   }
 
   /**
@@ -70,6 +75,26 @@ public class MoveCustAccountService {
     }
   }
 
+  /**
+   * Update the partner balances linked to a move that has just been posted, by adding its lines to
+   * the balances instead of computing them again.
+   *
+   * @param move
+   * @param alreadyInBalance true if the move was in daybook before being posted, its lines are then
+   *     already counted in the balances
+   * @throws AxelorException
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  public void updateCustomerAccountOnAccounting(Move move, boolean alreadyInBalance)
+      throws AxelorException {
+
+    if (!AccountingService.getUpdateCustomerAccount()) {
+      this.flagPartners(this.getPartnerOfMove(move), move.getCompany());
+    } else if (!alreadyInBalance) {
+      accountingSituationBalanceService.applyMoveBalance(move);
+    }
+  }
+
   /**
    * Get the distinct partners of an account move that impact the partner balances
    *
@@ -434,6 +434,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
     this.checkPreconditions(move);
 
     log.debug("Precondition check of move {} OK", move.getReference());
+    boolean alreadyInBalance = move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK;
     boolean dayBookMode =
         accountConfigService.getAccountConfig(move.getCompany()).getAccountingDaybook()
             && move.getJournal().getAllowAccountingDaybook();
@@ -476,7 +477,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
     moveRepository.save(move);
 
     if (updateCustomerAccount) {
-      moveCustAccountService.updateCustomerAccount(move);
+      moveCustAccountService.updateCustomerAccountOnAccounting(move, alreadyInBalance);
     }
   }
 
@@ -71,6 +71,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -155,40 +156,145 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
 
   @Override
   public int checkValidTerms(PaymentSession paymentSession) {
-    LocalDate nextSessionDate;
-    int offset = 0;
-    List<InvoiceTerm> invoiceTermList;
-    Query<InvoiceTerm> invoiceTermQuery =
-        invoiceTermRepo
-            .all()
-            .filter(
-                "self.paymentSession = :paymentSession "
-                    + "AND self.isSelectedOnPaymentSession IS TRUE")
-            .bind("paymentSession", paymentSession)
-            .order("id");
+    LocalDate nextSessionDate = this.fetchNextSessionDate(paymentSession);
+    Long lastPartnerId = this.getValidationCheckpointPartnerId(paymentSession);
+
+    Long financialDiscountTermId =
+        nextSessionDate == null
+            ? null
+            : this.getFirstFinancialDiscountTermId(paymentSession, lastPartnerId, nextSessionDate);
+    Long invalidTermId = this.getFirstInvalidTermId(paymentSession, lastPartnerId);
+
+    if (financialDiscountTermId != null
+        && (invalidTermId == null || financialDiscountTermId < invalidTermId)) {
+      return 1;
+    } else if (invalidTermId != null) {
+      return 2;
+    }
 
-    while (!(invoiceTermList = invoiceTermQuery.fetch(AbstractBatch.FETCH_LIMIT, offset))
-        .isEmpty()) {
-      nextSessionDate = this.fetchNextSessionDate(paymentSession);
+    return 0;
+  }
 
-      for (InvoiceTerm invoiceTerm : invoiceTermList) {
-        offset++;
-
-        if (nextSessionDate != null
-            && invoiceTerm.getFinancialDiscount() != null
-            && this.checkNextSessionDate(invoiceTerm, nextSessionDate)) {
-          return 1;
-        } else if (invoiceTerm.getIsPaid()
-            || invoiceTerm.getPaymentAmount().compareTo(invoiceTerm.getAmountRemaining()) > 0
-            || !invoiceTermService.isNotAwaitingPayment(invoiceTerm)) {
-          return 2;
-        }
+  /**
+   * Get the first selected term whose financial discount will not be applicable anymore at the
+   * next session date. The discount delays of the partners are read first, as the due date limit
+   * depends on them.
+   *
+   * @return the smallest id of these terms, null if there is none.
+   */
+  protected Long getFirstFinancialDiscountTermId(
+      PaymentSession paymentSession, Long lastPartnerId, LocalDate nextSessionDate) {
+    Map<String, Object> paramMap = new HashMap<>();
+    paramMap.put("nextSessionDate", nextSessionDate);
+    Long termId =
+        this.getFirstSelectedTermId(
+            paymentSession,
+            lastPartnerId,
+            "self.financialDiscount IS NOT NULL "
+                + "AND self.invoice.financialDiscountDeadlineDate <= :nextSessionDate",
+            paramMap);
+
+    List<Integer> discountDelayList =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self.moveLine.partner.financialDiscount.discountDelay "
+                    + "FROM InvoiceTerm self "
+                    + "WHERE self.paymentSession = :paymentSession "
+                    + "AND self.isSelectedOnPaymentSession IS TRUE "
+                    + "AND self.financialDiscount IS NOT NULL",
+                Integer.class)
+            .setParameter("paymentSession", paymentSession)
+            .getResultList();
+
+    for (Integer discountDelay : discountDelayList) {
+      paramMap = new HashMap<>();
+      paramMap.put("discountDelay", discountDelay);
+      paramMap.put("dueDate", nextSessionDate.plusDays(discountDelay));
+      Long partnerDiscountTermId =
+          this.getFirstSelectedTermId(
+              paymentSession,
+              lastPartnerId,
+              "self.financialDiscount IS NOT NULL "
+                  + "AND self.moveLine.partner.financialDiscount.discountDelay = :discountDelay "
+                  + "AND self.dueDate <= :dueDate",
+              paramMap);
+      if (partnerDiscountTermId != null && (termId == null || partnerDiscountTermId < termId)) {
+        termId = partnerDiscountTermId;
       }
+    }
 
-      JPA.clear();
+    return termId;
+  }
+
+  /**
+   * Get the first selected term that cannot be paid: already paid, paid over its remaining amount
+   * or awaiting a payment.
+   *
+   * @return the smallest id of these terms, null if there is none.
+   */
+  protected Long getFirstInvalidTermId(PaymentSession paymentSession, Long lastPartnerId) {
+    Map<String, Object> paramMap = new HashMap<>();
+    String awaitingPaymentCondition = this.getAwaitingPaymentCondition(paramMap);
+
+    return this.getFirstSelectedTermId(
+        paymentSession,
+        lastPartnerId,
+        "self.isPaid IS TRUE OR self.paymentAmount > self.amountRemaining OR "
+            + awaitingPaymentCondition,
+        paramMap);
+  }
+
+  /**
+   * Get the condition on the terms awaiting a payment, that is to say in a pending payment of
+   * their invoice, as checked by {@link InvoiceTermService#isNotAwaitingPayment(InvoiceTerm)}.
+   *
+   * @param paramMap filled with the parameters of the condition
+   * @return a JPQL condition on the term alias self
+   */
+  protected String getAwaitingPaymentCondition(Map<String, Object> paramMap) {
+    paramMap.put("pendingStatus", InvoicePaymentRepository.STATUS_PENDING);
+    return "EXISTS (SELECT termPayment.id FROM InvoiceTermPayment termPayment "
+        + "WHERE termPayment.invoiceTerm = self "
+        + "AND termPayment.invoicePayment.invoice = self.invoice "
+        + "AND termPayment.invoicePayment.statusSelect = :pendingStatus)";
+  }
+
+  /**
+   * Get the first term selected on the session matching the given condition, leaving out the
+   * partners already validated by a previous run.
+   *
+   * @return the smallest id of these terms, null if there is none.
+   */
+  protected Long getFirstSelectedTermId(
+      PaymentSession paymentSession,
+      Long lastPartnerId,
+      String condition,
+      Map<String, Object> paramMap) {
+    String filter =
+        "self.paymentSession = :paymentSession AND self.isSelectedOnPaymentSession IS TRUE";
+    if (lastPartnerId != null) {
+      // The terms of the partners validated by a previous run are already paid
+      filter +=
+          " AND NOT EXISTS (SELECT moveLine.id FROM MoveLine moveLine "
+              + "WHERE moveLine = self.moveLine AND moveLine.partner.id <= :lastPartnerId)";
     }
 
-    return 0;
+    TypedQuery<Long> query =
+        JPA.em()
+            .createQuery(
+                "SELECT MIN(self.id) FROM InvoiceTerm self WHERE "
+                    + filter
+                    + " AND ("
+                    + condition
+                    + ")",
+                Long.class)
+            .setParameter("paymentSession", paymentSession);
+    if (lastPartnerId != null) {
+      query.setParameter("lastPartnerId", lastPartnerId);
+    }
+    paramMap.forEach(query::setParameter);
+
+    return query.getSingleResult();
   }
 
   protected boolean checkNextSessionDate(InvoiceTerm invoiceTerm, LocalDate nextSessionDate) {
@@ -230,6 +336,7 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
         paymentSession.getAccountingMethodSelect()
             == PaymentSessionRepository.ACCOUNTING_METHOD_GLOBAL;
 
+    this.preProcessPaymentSession(paymentSession);
     this.processInvoiceTerms(
         paymentSession,
         moveDateMap,
@@ -242,6 +349,8 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
     return this.getMoveCount(moveDateMap, isGlobal);
   }
 
+  protected void preProcessPaymentSession(PaymentSession paymentSession) throws AxelorException {}
+
   protected void postProcessPaymentSession(
       PaymentSession paymentSession,
       Map<LocalDate, Map<Partner, List<Move>>> moveDateMap,
@@ -1035,8 +1144,19 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
   }
 
   @Override
-  @Transactional(rollbackOn = {AxelorException.class})
   public StringBuilder processInvoiceTerms(PaymentSession paymentSession) throws AxelorException {
+    int chunkSize = this.getValidationChunkSize(paymentSession);
+    if (chunkSize > 0) {
+      int moveCount = this.processPaymentSessionByChunk(paymentSession, chunkSize);
+      return generateFlashMessage(paymentSessionRepo.find(paymentSession.getId()), moveCount);
+    }
+
+    return this.processAllInvoiceTerms(paymentSession);
+  }
+
+  @Transactional(rollbackOn = {AxelorException.class})
+  protected StringBuilder processAllInvoiceTerms(PaymentSession paymentSession)
+      throws AxelorException {
     List<Pair<InvoiceTerm, Pair<InvoiceTerm, BigDecimal>>> invoiceTermLinkWithRefund =
         new ArrayList<>();
     reconciledInvoiceTermMoves(paymentSession, invoiceTermLinkWithRefund);
@@ -1045,6 +1165,337 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
         paymentSession, processPaymentSession(paymentSession, invoiceTermLinkWithRefund));
   }
 
+  protected int getValidationChunkSize(PaymentSession paymentSession) throws AxelorException {
+    return accountConfigService
+        .getAccountConfig(paymentSession.getCompany())
+        .getPaymentSessionValidationChunkSize();
+  }
+
+  protected Long getValidationCheckpointPartnerId(PaymentSession paymentSession) {
+    return Optional.ofNullable(paymentSessionRepo.find(paymentSession.getId()))
+        .map(PaymentSession::getValidationCheckpointPartner)
+        .map(Partner::getId)
+        .orElse(null);
+  }
+
+  /**
+   * Validate the payment session by chunks of invoice terms, each chunk being processed and
+   * accounted in its own transaction. The terms of a partner are always in the same chunk, so the
+   * moves of a partner and accounting date, and the compensation of its refunds, are generated in
+   * one transaction. The last partner committed is kept on the payment session, a failed validation
+   * resumes after it. The terms without partner, and the session itself, are processed in a last
+   * transaction.
+   *
+   * @param paymentSession the payment session to validate
+   * @param chunkSize the minimum number of invoice terms of a chunk
+   * @return the number of generated moves
+   */
+  protected int processPaymentSessionByChunk(PaymentSession paymentSession, int chunkSize)
+      throws AxelorException {
+    Long paymentSessionId = paymentSession.getId();
+    this.checkCompensativeInvoiceTerms(paymentSession);
+    this.preProcessPaymentSessionByChunk(paymentSession);
+
+    Long checkpointPartnerId = this.getValidationCheckpointPartnerId(paymentSession);
+    long lastPartnerId = checkpointPartnerId == null ? 0L : checkpointPartnerId;
+    long totalCount = this.countInvoiceTerms(paymentSession, null);
+    long processedCount =
+        checkpointPartnerId == null ? 0L : this.countInvoiceTerms(paymentSession, lastPartnerId);
+
+    List<Pair<Long, Long>> partnerChunk;
+    while (!(partnerChunk = this.getNextPartnerChunk(paymentSession, lastPartnerId, chunkSize))
+        .isEmpty()) {
+      List<Long> partnerIdList =
+          partnerChunk.stream().map(Pair::getLeft).collect(Collectors.toList());
+      processedCount += partnerChunk.stream().mapToLong(Pair::getRight).sum();
+      lastPartnerId = partnerIdList.get(partnerIdList.size() - 1);
+
+      this.processInvoiceTermChunk(
+          paymentSessionRepo.find(paymentSessionId),
+          partnerIdList,
+          this.getValidationProgress(processedCount, totalCount));
+
+      JPA.clear();
+    }
+
+    return this.postProcessPaymentSessionByChunk(paymentSessionRepo.find(paymentSessionId));
+  }
+
+  protected void checkCompensativeInvoiceTerms(PaymentSession paymentSession)
+      throws AxelorException {
+    if (paymentSession.getAccountingMethodSelect()
+        != PaymentSessionRepository.ACCOUNTING_METHOD_BY_INVOICE_TERM) {
+      return;
+    }
+
+    Integer compensativeOriginSelect = null;
+    if (paymentSession.getPartnerTypeSelect() == PaymentSessionRepository.PARTNER_TYPE_CUSTOMER) {
+      compensativeOriginSelect = MoveRepository.FUNCTIONAL_ORIGIN_PURCHASE;
+    } else if (paymentSession.getPartnerTypeSelect()
+        == PaymentSessionRepository.PARTNER_TYPE_SUPPLIER) {
+      compensativeOriginSelect = MoveRepository.FUNCTIONAL_ORIGIN_SALE;
+    }
+
+    if (compensativeOriginSelect != null
+        && invoiceTermRepo
+                .all()
+                .filter(
+                    "self.paymentSession = :paymentSession "
+                        + "AND self.moveLine.move.functionalOriginSelect = :functionalOrigin")
+                .bind("paymentSession", paymentSession)
+                .bind("functionalOrigin", compensativeOriginSelect)
+                .count()
+            > 0) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(AccountExceptionMessage.COMPENSATION_ON_SESSION_BY_INVOICE_TERM));
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void preProcessPaymentSessionByChunk(PaymentSession paymentSession)
+      throws AxelorException {
+    this.preProcessPaymentSession(paymentSessionRepo.find(paymentSession.getId()));
+  }
+
+  /**
+   * @param maxPartnerId when not null, only the terms of the partners up to this one are counted
+   * @return the number of invoice terms of the session
+   */
+  protected long countInvoiceTerms(PaymentSession paymentSession, Long maxPartnerId) {
+    if (maxPartnerId == null) {
+      return invoiceTermRepo
+          .all()
+          .filter("self.paymentSession = :paymentSession")
+          .bind("paymentSession", paymentSession)
+          .count();
+    }
+
+    return invoiceTermRepo
+        .all()
+        .filter(
+            "self.paymentSession = :paymentSession "
+                + "AND self.moveLine.partner.id <= :maxPartnerId")
+        .bind("paymentSession", paymentSession)
+        .bind("maxPartnerId", maxPartnerId)
+        .count();
+  }
+
+  protected int getValidationProgress(long processedCount, long totalCount) {
+    if (totalCount <= 0) {
+      return 100;
+    }
+    return (int) Math.min(processedCount * 100 / totalCount, 100);
+  }
+
+  /**
+   * @return the next partners of the session after the given one, ordered by id, with their count
+   *     of invoice terms, until the chunk size is reached.
+   */
+  protected List<Pair<Long, Long>> getNextPartnerChunk(
+      PaymentSession paymentSession, long lastPartnerId, int chunkSize) {
+    List<Object[]> partnerCountList =
+        JPA.em()
+            .createQuery(
+                "SELECT partner.id, COUNT(self.id) FROM InvoiceTerm self "
+                    + "JOIN self.moveLine moveLine JOIN moveLine.partner partner "
+                    + "WHERE self.paymentSession.id = :paymentSessionId "
+                    + "AND partner.id > :lastPartnerId "
+                    + "GROUP BY partner.id ORDER BY partner.id",
+                Object[].class)
+            .setParameter("paymentSessionId", paymentSession.getId())
+            .setParameter("lastPartnerId", lastPartnerId)
+            .setMaxResults(chunkSize)
+            .getResultList();
+
+    return this.getPartnerChunk(partnerCountList, chunkSize);
+  }
+
+  /**
+   * @param partnerCountList the partner ids with their count of invoice terms, ordered by id
+   * @return the first partners of the list, until their invoice terms reach the chunk size
+   */
+  protected List<Pair<Long, Long>> getPartnerChunk(List<Object[]> partnerCountList, int chunkSize) {
+    List<Pair<Long, Long>> partnerChunk = new ArrayList<>();
+    long count = 0;
+    for (Object[] partnerCount : partnerCountList) {
+      partnerChunk.add(Pair.of((Long) partnerCount[0], (Long) partnerCount[1]));
+      count += (Long) partnerCount[1];
+      if (count >= chunkSize) {
+        break;
+      }
+    }
+    return partnerChunk;
+  }
+
+  /**
+   * @return the invoice terms of the session which are not part of any partner chunk, because
+   *     neither they nor their move line have a partner.
+   */
+  protected List<InvoiceTerm> getInvoiceTermsWithoutPartner(PaymentSession paymentSession) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self FROM InvoiceTerm self LEFT JOIN self.moveLine moveLine "
+                + "WHERE self.paymentSession.id = :paymentSessionId "
+                + "AND moveLine.partner IS NULL "
+                + "ORDER BY self.id",
+            InvoiceTerm.class)
+        .setParameter("paymentSessionId", paymentSession.getId())
+        .getResultList();
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void processInvoiceTermChunk(
+      PaymentSession paymentSession, List<Long> partnerIdList, int progress)
+      throws AxelorException {
+    List<InvoiceTerm> invoiceTermList =
+        invoiceTermRepo
+            .all()
+            .filter(
+                "self.paymentSession = :paymentSession "
+                    + "AND self.moveLine.partner.id IN (:partnerIdList)")
+            .bind("paymentSession", paymentSession)
+            .bind("partnerIdList", partnerIdList)
+            .order("id")
+            .fetch();
+
+    this.processInvoiceTermList(paymentSession, invoiceTermList);
+
+    paymentSession = paymentSessionRepo.find(paymentSession.getId());
+    paymentSession.setValidationCheckpointPartner(
+        partnerRepo.find(partnerIdList.get(partnerIdList.size() - 1)));
+    paymentSession.setValidationProgress(progress);
+    paymentSessionRepo.save(paymentSession);
+  }
+
+  /**
+   * Process the given invoice terms, then account the moves generated for them. The global cash
+   * moves, one per accounting date for the whole session, are generated once every term is
+   * processed.
+   */
+  protected void processInvoiceTermList(
+      PaymentSession paymentSession, List<InvoiceTerm> invoiceTermList) throws AxelorException {
+    boolean out = paymentSession.getPaymentMode().getInOutSelect() == PaymentModeRepository.OUT;
+    boolean isGlobal =
+        paymentSession.getAccountingMethodSelect()
+            == PaymentSessionRepository.ACCOUNTING_METHOD_GLOBAL;
+
+    List<Pair<InvoiceTerm, Pair<InvoiceTerm, BigDecimal>>> invoiceTermLinkWithRefundList =
+        new ArrayList<>();
+    invoiceTermService.reconcileMoveLineInvoiceTermsWithFullRollBack(
+        invoiceTermList, invoiceTermLinkWithRefundList);
+
+    Map<LocalDate, Map<Partner, List<Move>>> moveDateMap = new HashMap<>();
+    Map<Move, BigDecimal> paymentAmountMap = new HashMap<>();
+    counter = this.getLastMoveLineCounter(paymentSession);
+
+    for (InvoiceTerm invoiceTerm : invoiceTermList) {
+      if (paymentSession.getStatusSelect() == PaymentSessionRepository.STATUS_AWAITING_PAYMENT
+          || this.shouldBeProcessed(invoiceTerm)) {
+        if (invoiceTerm.getPaymentAmount().compareTo(BigDecimal.ZERO) > 0) {
+          this.processInvoiceTerm(
+              paymentSession,
+              invoiceTerm,
+              moveDateMap,
+              paymentAmountMap,
+              invoiceTermLinkWithRefundList,
+              out,
+              isGlobal);
+        }
+      } else {
+        this.releaseInvoiceTerm(invoiceTerm);
+      }
+    }
+
+    for (Map<Partner, List<Move>> moveMap : moveDateMap.values()) {
+      this.generateCashMoveLines(paymentSession, moveMap, paymentAmountMap, out, isGlobal);
+    }
+    this.generateTaxMoveLines(moveDateMap);
+    this.updateStatuses(paymentSession, moveDateMap, paymentAmountMap);
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected int postProcessPaymentSessionByChunk(PaymentSession paymentSession)
+      throws AxelorException {
+    boolean out = paymentSession.getPaymentMode().getInOutSelect() == PaymentModeRepository.OUT;
+    boolean isGlobal =
+        paymentSession.getAccountingMethodSelect()
+            == PaymentSessionRepository.ACCOUNTING_METHOD_GLOBAL;
+
+    List<InvoiceTerm> invoiceTermList = this.getInvoiceTermsWithoutPartner(paymentSession);
+    if (!invoiceTermList.isEmpty()) {
+      this.processInvoiceTermList(paymentSession, invoiceTermList);
+    }
+
+    // The moves of the terms are already accounted, only the session remains to be processed
+    this.postProcessPaymentSession(paymentSession, new HashMap<>(), new HashMap<>(), out, isGlobal);
+
+    if (isGlobal) {
+      counter = this.getLastMoveLineCounter(paymentSession);
+      Map<LocalDate, BigDecimal> paymentAmountByDateMap =
+          this.getGlobalPaymentAmounts(paymentSession, out);
+      for (Map.Entry<LocalDate, BigDecimal> paymentAmountByDate :
+          paymentAmountByDateMap.entrySet()) {
+        this.generateCashMove(
+            paymentSession, paymentAmountByDate.getKey(), paymentAmountByDate.getValue(), out);
+      }
+    }
+
+    paymentSession = paymentSessionRepo.find(paymentSession.getId());
+    paymentSession.setValidationCheckpointPartner(null);
+    paymentSession.setValidationProgress(100);
+    paymentSessionRepo.save(paymentSession);
+
+    return (int)
+        moveRepo
+            .all()
+            .filter("self.paymentSession = :paymentSession")
+            .bind("paymentSession", paymentSession)
+            .count();
+  }
+
+  /**
+   * Sum, by accounting date, the cash move lines generated on the global cash account for the
+   * moves of the session. Must be called before generating the global cash moves, whose lines are
+   * on the same account.
+   */
+  protected Map<LocalDate, BigDecimal> getGlobalPaymentAmounts(
+      PaymentSession paymentSession, boolean out) throws AxelorException {
+    List<Object[]> paymentAmountList =
+        JPA.em()
+            .createQuery(
+                "SELECT move.date, SUM(CASE WHEN self.credit > 0 "
+                    + "THEN ABS(self.currencyAmount) ELSE -ABS(self.currencyAmount) END) "
+                    + "FROM MoveLine self JOIN self.move move "
+                    + "WHERE move.paymentSession.id = :paymentSessionId "
+                    + "AND self.account.id = :cashAccountId "
+                    + "GROUP BY move.date ORDER BY move.date",
+                Object[].class)
+            .setParameter("paymentSessionId", paymentSession.getId())
+            .setParameter("cashAccountId", this.getCashAccount(paymentSession, true).getId())
+            .getResultList();
+
+    Map<LocalDate, BigDecimal> paymentAmountByDateMap = new LinkedHashMap<>();
+    for (Object[] paymentAmount : paymentAmountList) {
+      BigDecimal amount = (BigDecimal) paymentAmount[1];
+      // The cash move lines are credited when paying out, debited otherwise
+      paymentAmountByDateMap.put((LocalDate) paymentAmount[0], out ? amount : amount.negate());
+    }
+    return paymentAmountByDateMap;
+  }
+
+  protected int getLastMoveLineCounter(PaymentSession paymentSession) {
+    Integer lastCounter =
+        JPA.em()
+            .createQuery(
+                "SELECT MAX(self.counter) FROM MoveLine self "
+                    + "WHERE self.move.paymentSession.id = :paymentSessionId",
+                Integer.class)
+            .setParameter("paymentSessionId", paymentSession.getId())
+            .getSingleResult();
+    return lastCounter == null ? 0 : lastCounter;
+  }
+
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public void createAndReconcileMoveLineFromPair(
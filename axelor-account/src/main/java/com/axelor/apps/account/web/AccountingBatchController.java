@@ -296,6 +296,12 @@ public class AccountingBatchController {
     runBatch(AccountingBatchRepository.ACTION_ACCOUNTING_CUT_OFF, request, response);
   }
 
+  public void actionAccountingSituationBalanceControl(
+      ActionRequest request, ActionResponse response) {
+    runBatch(
+        AccountingBatchRepository.ACTION_ACCOUNTING_SITUATION_BALANCE_CONTROL, request, response);
+  }
+
   public void actionAutoMoveLettering(ActionRequest request, ActionResponse response) {
     AccountingBatch accountingBatch = request.getContext().asType(AccountingBatch.class);
     BatchAutoMoveLettering service = Beans.get(BatchAutoMoveLettering.class);
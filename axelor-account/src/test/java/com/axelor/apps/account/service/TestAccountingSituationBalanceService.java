@@ -0,0 +1,223 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountingSituation;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.Reconcile;
+import com.axelor.apps.account.db.repo.AccountingSituationRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.db.repo.ReconcileRepository;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestAccountingSituationBalanceService {
+
+  private AccountingSituationBalanceService accountingSituationBalanceService;
+  private AccountCustomerService accountCustomerService;
+
+  private Company company;
+  private Account account;
+  private List<MoveLine> moveLineList;
+  private Map<Partner, AccountingSituation> accountingSituationMap;
+
+  @BeforeEach
+  void prepare() {
+    company = new Company();
+    account = new Account();
+    account.setUseForPartnerBalance(true);
+    account.setReconcileOk(true);
+    moveLineList = new ArrayList<>();
+    accountingSituationMap = new HashMap<>();
+
+    AccountingSituationService accountingSituationService = mock(AccountingSituationService.class);
+    when(accountingSituationService.getAccountingSituation(any(), any()))
+        .thenAnswer(invocation -> accountingSituationMap.get(invocation.getArgument(0)));
+
+    accountCustomerService = mock(AccountCustomerService.class);
+    when(accountCustomerService.getBalance(any(), any()))
+        .thenAnswer(invocation -> this.computeBalance(invocation.getArgument(0)));
+
+    accountingSituationBalanceService =
+        new AccountingSituationBalanceServiceImpl(
+            accountingSituationService,
+            mock(AccountingSituationInitService.class),
+            accountCustomerService,
+            mock(AccountingSituationRepository.class),
+            mock(AccountingSituationRecomputeScheduler.class));
+  }
+
+  @Test
+  void testReconcileSamePartner() throws AxelorException {
+    Partner partner = createPartner();
+    MoveLine debitMoveLine = createMoveLine(partner, new BigDecimal("100.00"), BigDecimal.ZERO);
+    MoveLine creditMoveLine = createMoveLine(partner, BigDecimal.ZERO, new BigDecimal("100.00"));
+
+    Reconcile reconcile = createReconcile(debitMoveLine, creditMoveLine, new BigDecimal("100.00"));
+
+    confirm(reconcile);
+    assertBalance(partner);
+
+    unreconcile(reconcile);
+    assertBalance(partner);
+  }
+
+  @Test
+  void testPartialReconcileDifferentPartners() throws AxelorException {
+    Partner debitPartner = createPartner();
+    Partner creditPartner = createPartner();
+    MoveLine debitMoveLine =
+        createMoveLine(debitPartner, new BigDecimal("100.00"), BigDecimal.ZERO);
+    MoveLine creditMoveLine =
+        createMoveLine(creditPartner, BigDecimal.ZERO, new BigDecimal("150.00"));
+
+    Reconcile reconcile = createReconcile(debitMoveLine, creditMoveLine, new BigDecimal("40.00"));
+
+    confirm(reconcile);
+    assertBalance(debitPartner);
+    assertBalance(creditPartner);
+    Assertions.assertEquals(
+        0,
+        new BigDecimal("60.00")
+            .compareTo(accountingSituationMap.get(debitPartner).getBalanceCustAccount()));
+    Assertions.assertEquals(
+        0,
+        new BigDecimal("-110.00")
+            .compareTo(accountingSituationMap.get(creditPartner).getBalanceCustAccount()));
+
+    unreconcile(reconcile);
+    assertBalance(debitPartner);
+    assertBalance(creditPartner);
+  }
+
+  @Test
+  void testReconcileLineNotInPartnerBalance() throws AxelorException {
+    Partner partner = createPartner();
+    MoveLine debitMoveLine = createMoveLine(partner, new BigDecimal("100.00"), BigDecimal.ZERO);
+    Account otherAccount = new Account();
+    otherAccount.setReconcileOk(true);
+    MoveLine creditMoveLine = createMoveLine(partner, BigDecimal.ZERO, new BigDecimal("100.00"));
+    creditMoveLine.setAccount(otherAccount);
+    resetBalance(partner);
+
+    Reconcile reconcile = createReconcile(debitMoveLine, creditMoveLine, new BigDecimal("100.00"));
+
+    confirm(reconcile);
+    assertBalance(partner);
+
+    unreconcile(reconcile);
+    assertBalance(partner);
+  }
+
+  protected void confirm(Reconcile reconcile) throws AxelorException {
+    reconcile.setStatusSelect(ReconcileRepository.STATUS_CONFIRMED);
+    updateAmountRemaining(reconcile, reconcile.getAmount().negate());
+    accountingSituationBalanceService.applyReconcileBalance(reconcile);
+  }
+
+  protected void unreconcile(Reconcile reconcile) throws AxelorException {
+    reconcile.setStatusSelect(ReconcileRepository.STATUS_CANCELED);
+    updateAmountRemaining(reconcile, reconcile.getAmount());
+    accountingSituationBalanceService.applyReconcileBalance(reconcile);
+  }
+
+  protected void updateAmountRemaining(Reconcile reconcile, BigDecimal variation) {
+    for (MoveLine moveLine :
+        List.of(reconcile.getDebitMoveLine(), reconcile.getCreditMoveLine())) {
+      moveLine.setAmountRemaining(moveLine.getAmountRemaining().add(variation));
+    }
+  }
+
+  protected void assertBalance(Partner partner) {
+    Assertions.assertEquals(
+        0,
+        accountCustomerService
+            .getBalance(partner, company)
+            .compareTo(accountingSituationMap.get(partner).getBalanceCustAccount()));
+  }
+
+  /** Same computation as the query of {@link AccountCustomerService#getBalance}. */
+  protected BigDecimal computeBalance(Partner partner) {
+    BigDecimal balance = BigDecimal.ZERO;
+    for (MoveLine moveLine : moveLineList) {
+      if (moveLine.getPartner() == partner && moveLine.getAccount().getUseForPartnerBalance()) {
+        balance =
+            moveLine.getDebit().signum() > 0
+                ? balance.add(moveLine.getAmountRemaining())
+                : balance.subtract(moveLine.getAmountRemaining());
+      }
+    }
+    return balance;
+  }
+
+  protected Partner createPartner() {
+    Partner partner = new Partner();
+    AccountingSituation accountingSituation = new AccountingSituation();
+    accountingSituation.setPartner(partner);
+    accountingSituation.setCompany(company);
+    accountingSituationMap.put(partner, accountingSituation);
+    return partner;
+  }
+
+  protected void resetBalance(Partner partner) {
+    accountingSituationMap.get(partner).setBalanceCustAccount(computeBalance(partner));
+  }
+
+  protected MoveLine createMoveLine(Partner partner, BigDecimal debit, BigDecimal credit) {
+    Move move = new Move();
+    move.setCompany(company);
+    move.setStatusSelect(MoveRepository.STATUS_ACCOUNTED);
+
+    MoveLine moveLine = new MoveLine();
+    moveLine.setMove(move);
+    moveLine.setPartner(partner);
+    moveLine.setAccount(account);
+    moveLine.setDebit(debit);
+    moveLine.setCredit(credit);
+    moveLine.setAmountRemaining(debit.add(credit));
+    moveLineList.add(moveLine);
+
+    resetBalance(partner);
+    return moveLine;
+  }
+
+  protected Reconcile createReconcile(
+      MoveLine debitMoveLine, MoveLine creditMoveLine, BigDecimal amount) {
+    Reconcile reconcile = new Reconcile();
+    reconcile.setDebitMoveLine(debitMoveLine);
+    reconcile.setCreditMoveLine(creditMoveLine);
+    reconcile.setAmount(amount);
+    return reconcile;
+  }
+}
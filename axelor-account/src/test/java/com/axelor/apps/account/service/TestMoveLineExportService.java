@@ -0,0 +1,156 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.repo.AccountRepository;
+import com.axelor.apps.account.db.repo.AccountingReportRepository;
+import com.axelor.apps.account.db.repo.JournalRepository;
+import com.axelor.apps.account.db.repo.MoveLineRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.app.AppAccountService;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.account.service.moveline.MoveLineConsolidateService;
+import com.axelor.apps.base.service.PartnerService;
+import com.axelor.apps.base.service.administration.SequenceService;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TestMoveLineExportService {
+
+  private static MoveLineExportServiceImpl moveLineExportService;
+
+  @BeforeAll
+  static void prepare() {
+    moveLineExportService =
+        new MoveLineExportServiceImpl(
+            mock(AppAccountService.class),
+            mock(AccountingReportService.class),
+            mock(SequenceService.class),
+            mock(AccountConfigService.class),
+            mock(MoveRepository.class),
+            mock(MoveLineRepository.class),
+            mock(AccountingReportRepository.class),
+            mock(JournalRepository.class),
+            mock(AccountRepository.class),
+            mock(MoveLineConsolidateService.class),
+            mock(PartnerService.class));
+  }
+
+  protected Object[] createRow(long moveId) {
+    Object[] row = new Object[21];
+    row[0] = "VEN";
+    row[1] = "Sales journal";
+    row[2] = "MOVE-" + moveId;
+    row[3] = LocalDate.of(2024, 3, 15);
+    row[4] = "411";
+    row[5] = "Customers";
+    row[6] = false;
+    row[9] = "INV-" + moveId;
+    row[11] = "Invoice";
+    row[12] = BigDecimal.TEN;
+    row[13] = BigDecimal.ZERO;
+    row[18] = BigDecimal.TEN;
+    row[20] = moveId;
+    return row;
+  }
+
+  /** Two lines per move, the moves being in the given order. */
+  protected List<Object[]> createRowList(List<Long> moveIdList) {
+    List<Object[]> rowList = new ArrayList<>();
+    for (Long moveId : moveIdList) {
+      rowList.add(createRow(moveId));
+      rowList.add(createRow(moveId));
+    }
+    return rowList;
+  }
+
+  protected List<Set<Long>> printMoveLines(List<Object[]> rowList, StringWriter writer)
+      throws IOException {
+    List<Set<Long>> chunkList = new ArrayList<>();
+    try (CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+      moveLineExportService.printMoveLines(printer, rowList.iterator(), chunkList::add);
+    }
+    return chunkList;
+  }
+
+  protected List<Long> createMoveIdList(long fromId, long toId) {
+    List<Long> moveIdList = new ArrayList<>();
+    for (long moveId = fromId; moveId <= toId; moveId++) {
+      moveIdList.add(moveId);
+    }
+    return moveIdList;
+  }
+
+  @Test
+  void testMovesAreMarkedByChunks() throws IOException {
+    int moveCount = MoveLineExportServiceImpl.EXPORT_FETCH_SIZE * 2 + 500;
+    StringWriter writer = new StringWriter();
+
+    List<Set<Long>> chunkList =
+        printMoveLines(createRowList(createMoveIdList(1, moveCount)), writer);
+
+    Assertions.assertEquals(
+        List.of(
+            MoveLineExportServiceImpl.EXPORT_FETCH_SIZE,
+            MoveLineExportServiceImpl.EXPORT_FETCH_SIZE,
+            500),
+        chunkList.stream().map(Set::size).collect(Collectors.toList()));
+    Assertions.assertEquals(moveCount * 2, writer.toString().split("\r\n").length);
+
+    Set<Long> markedMoveIdSet = new HashSet<>();
+    chunkList.forEach(markedMoveIdSet::addAll);
+    Assertions.assertEquals(new HashSet<>(createMoveIdList(1, moveCount)), markedMoveIdSet);
+  }
+
+  @Test
+  void testMoveSpreadOverChunksIsMarkedInEach() throws IOException {
+    List<Long> moveIdList = createMoveIdList(1, MoveLineExportServiceImpl.EXPORT_FETCH_SIZE);
+    moveIdList.add(1L);
+
+    List<Set<Long>> chunkList = printMoveLines(createRowList(moveIdList), new StringWriter());
+
+    // The chunk is full at the first line of the last move, its second line goes to the next one
+    Assertions.assertEquals(2, chunkList.size());
+    Assertions.assertTrue(chunkList.get(0).contains(1L));
+    Assertions.assertEquals(
+        Set.of((long) MoveLineExportServiceImpl.EXPORT_FETCH_SIZE, 1L), chunkList.get(1));
+  }
+
+  @Test
+  void testNothingIsMarkedWithoutMoveLines() throws IOException {
+    StringWriter writer = new StringWriter();
+
+    Assertions.assertTrue(printMoveLines(new ArrayList<>(), writer).isEmpty());
+    Assertions.assertTrue(writer.toString().isEmpty());
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import com.axelor.apps.account.db.MoveLine;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TestBatchAutoMoveLettering {
+
+  private static BatchAutoMoveLettering batchAutoMoveLettering;
+
+  @BeforeAll
+  static void prepare() {
+    batchAutoMoveLettering = new BatchAutoMoveLettering(null, null, null, null, null, null, null);
+  }
+
+  @Test
+  void testEmptyList() {
+    Assertions.assertTrue(
+        batchAutoMoveLettering.getBalancedMoveLineLists(new ArrayList<>()).isEmpty());
+  }
+
+  @Test
+  void testConsecutiveRuns() {
+    MoveLine debit1 = createDebit("100");
+    MoveLine credit1 = createCredit("100");
+    MoveLine debit2 = createDebit("50");
+    MoveLine credit2 = createCredit("20");
+    MoveLine credit3 = createCredit("30");
+
+    Assertions.assertEquals(
+        List.of(List.of(debit1, credit1), List.of(debit2, credit2, credit3)),
+        batchAutoMoveLettering.getBalancedMoveLineLists(
+            List.of(debit1, credit1, debit2, credit2, credit3)));
+  }
+
+  @Test
+  void testShortestRunIsTaken() {
+    MoveLine debit1 = createDebit("50");
+    MoveLine credit1 = createCredit("50");
+    MoveLine debit2 = createDebit("50");
+    MoveLine credit2 = createCredit("50");
+
+    Assertions.assertEquals(
+        List.of(List.of(debit1, credit1), List.of(debit2, credit2)),
+        batchAutoMoveLettering.getBalancedMoveLineLists(
+            List.of(debit1, credit1, debit2, credit2)));
+  }
+
+  @Test
+  void testRunsWithAmountsOfDifferentScales() {
+    MoveLine debit1 = createDebit("100.00");
+    MoveLine credit1 = createCredit("100");
+    MoveLine debit2 = createDebit("10.5");
+    MoveLine credit2 = createCredit("4.250");
+    MoveLine credit3 = createCredit("6.25");
+
+    Assertions.assertEquals(
+        List.of(List.of(debit1, credit1), List.of(debit2, credit2, credit3)),
+        batchAutoMoveLettering.getBalancedMoveLineLists(
+            List.of(debit1, credit1, debit2, credit2, credit3)));
+  }
+
+  @Test
+  void testUnbalancedTailIsSkipped() {
+    MoveLine debit1 = createDebit("100");
+    MoveLine credit1 = createCredit("100");
+    MoveLine debit2 = createDebit("40");
+    MoveLine credit2 = createCredit("10");
+
+    Assertions.assertEquals(
+        List.of(List.of(debit1, credit1)),
+        batchAutoMoveLettering.getBalancedMoveLineLists(
+            List.of(debit1, credit1, debit2, credit2)));
+  }
+
+  @Test
+  void testUnbalancedLineBeforeRunIsSkipped() {
+    MoveLine debit1 = createDebit("7");
+    MoveLine debit2 = createDebit("100");
+    MoveLine credit1 = createCredit("100");
+
+    Assertions.assertEquals(
+        List.of(List.of(debit2, credit1)),
+        batchAutoMoveLettering.getBalancedMoveLineLists(List.of(debit1, debit2, credit1)));
+  }
+
+  protected MoveLine createDebit(String amount) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setDebit(new BigDecimal(amount));
+    moveLine.setCredit(BigDecimal.ZERO);
+    moveLine.setAmountRemaining(new BigDecimal(amount));
+    return moveLine;
+  }
+
+  protected MoveLine createCredit(String amount) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setDebit(BigDecimal.ZERO);
+    moveLine.setCredit(new BigDecimal(amount));
+    moveLine.setAmountRemaining(new BigDecimal(amount));
+    return moveLine;
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountingReportConfigLine;
+import com.axelor.apps.account.db.AnalyticAccount;
+import com.axelor.apps.account.db.AnalyticMoveLine;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountingReportConfigLineRepository;
+import com.axelor.db.Model;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TestAccountingReportMoveLineFacts {
+
+  private static final List<Integer> RESULT_SELECT_LIST =
+      Arrays.asList(
+          AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT,
+          AccountingReportConfigLineRepository.RESULT_DEBIT,
+          AccountingReportConfigLineRepository.RESULT_CREDIT);
+
+  private static AccountingReportValueMoveLineServiceImpl accountingReportValueMoveLineService;
+  private static AccountingReportConfigLine column;
+  private static AccountingReportConfigLine line;
+  private static List<Account> accountList;
+  private static List<AnalyticAccount> analyticAccountList;
+  private static List<MoveLine> moveLineList;
+  private static AccountingReportMoveLineFacts facts;
+
+  @BeforeAll
+  static void prepare() {
+    accountingReportValueMoveLineService =
+        new AccountingReportValueMoveLineServiceImpl(null, null, null, null, null, null);
+    column = new AccountingReportConfigLine();
+    line = new AccountingReportConfigLine();
+
+    Account sales = createAccount(1L, "706");
+    Account customers = createAccount(2L, "411");
+    Account purchases = createAccount(3L, "607");
+    Account bank = createAccount(4L, "512");
+    accountList = Arrays.asList(sales, customers, purchases, bank);
+
+    AnalyticAccount north = createAnalyticAccount(1L, "NORTH");
+    AnalyticAccount south = createAnalyticAccount(2L, "SOUTH");
+    AnalyticAccount west = createAnalyticAccount(3L, "WEST");
+    analyticAccountList = Arrays.asList(north, south, west);
+
+    moveLineList = new ArrayList<>();
+    moveLineList.add(createMoveLine(customers, "1200.00", "0"));
+    moveLineList.add(
+        createMoveLine(sales, "0", "1000.00", createAnalyticMoveLine(north, "1000.00")));
+    moveLineList.add(createMoveLine(customers, "600.00", "0"));
+    moveLineList.add(
+        createMoveLine(
+            sales,
+            "0",
+            "500.00",
+            createAnalyticMoveLine(north, "300.00"),
+            createAnalyticMoveLine(south, "200.00")));
+    moveLineList.add(
+        createMoveLine(
+            purchases,
+            "450.00",
+            "0",
+            createAnalyticMoveLine(south, "150.00"),
+            createAnalyticMoveLine(west, "225.00"),
+            createAnalyticMoveLine(north, "75.00")));
+    moveLineList.add(createMoveLine(purchases, "80.00", "0"));
+    moveLineList.add(
+        createMoveLine(sales, "120.00", "0", createAnalyticMoveLine(south, "120.00")));
+    moveLineList.add(createMoveLine(bank, "0", "530.00"));
+
+    facts = createFacts(moveLineList);
+  }
+
+  @Test
+  void testAmountsMatchMoveLines() {
+    for (Set<Long> accountIdSet : getSubsets(getIds(accountList))) {
+      List<MoveLine> accountMoveLineList = getMoveLines(accountIdSet);
+
+      Assertions.assertEquals(
+          !accountMoveLineList.isEmpty(), facts.hasMoveLines(accountIdSet), accountIdSet::toString);
+
+      for (int resultSelect : RESULT_SELECT_LIST) {
+        assertEqualAmounts(
+            getResultFromMoveLine(accountMoveLineList, null, resultSelect),
+            facts.getAmount(accountIdSet, resultSelect));
+      }
+    }
+  }
+
+  @Test
+  void testAnalyticAmountsMatchMoveLines() {
+    for (Set<Long> accountIdSet : getSubsets(getIds(accountList))) {
+      List<MoveLine> accountMoveLineList = getMoveLines(accountIdSet);
+
+      for (Set<AnalyticAccount> analyticAccountSet : getSubsets(analyticAccountList)) {
+        Set<Long> analyticAccountIdSet = getIds(analyticAccountSet);
+
+        Assertions.assertEquals(
+            accountMoveLineList.stream()
+                .anyMatch(moveLine -> hasAnalyticAccount(moveLine, analyticAccountSet)),
+            facts.hasAnalyticMoveLines(accountIdSet, analyticAccountIdSet));
+
+        for (int resultSelect : RESULT_SELECT_LIST) {
+          assertEqualAmounts(
+              getResultFromMoveLine(accountMoveLineList, analyticAccountSet, resultSelect),
+              facts.getAnalyticAmount(accountIdSet, analyticAccountIdSet, resultSelect));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testAnalyticSplit() {
+    Set<Long> salesIdSet = Collections.singleton(1L);
+    Set<Long> purchasesIdSet = Collections.singleton(3L);
+
+    assertEqualAmounts(
+        new BigDecimal("-1300.00"),
+        facts.getAnalyticAmount(
+            salesIdSet,
+            Collections.singleton(1L),
+            AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT));
+    assertEqualAmounts(
+        new BigDecimal("-80.00"),
+        facts.getAnalyticAmount(
+            salesIdSet,
+            Collections.singleton(2L),
+            AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT));
+    assertEqualAmounts(
+        new BigDecimal("375.00"),
+        facts.getAnalyticAmount(
+            purchasesIdSet,
+            new HashSet<>(Arrays.asList(2L, 3L)),
+            AccountingReportConfigLineRepository.RESULT_DEBIT));
+    assertEqualAmounts(
+        BigDecimal.ZERO,
+        facts.getAnalyticAmount(
+            purchasesIdSet,
+            Collections.singleton(1L),
+            AccountingReportConfigLineRepository.RESULT_CREDIT));
+  }
+
+  @Test
+  void testNoAnalyticAmountsLoaded() {
+    AccountingReportMoveLineFacts accountFacts = new AccountingReportMoveLineFacts();
+    accountFacts.addAmounts(1L, new BigDecimal("10.00"), BigDecimal.ZERO, 1);
+
+    Assertions.assertFalse(accountFacts.isAnalyticLoaded());
+    Assertions.assertFalse(
+        accountFacts.hasAnalyticMoveLines(Collections.singleton(1L), Collections.singleton(1L)));
+
+    accountFacts.setAnalyticLoaded();
+
+    Assertions.assertTrue(accountFacts.isAnalyticLoaded());
+    assertEqualAmounts(
+        BigDecimal.ZERO,
+        accountFacts.getAnalyticAmount(
+            Collections.singleton(1L),
+            Collections.singleton(1L),
+            AccountingReportConfigLineRepository.RESULT_DEBIT));
+  }
+
+  /** Aggregate the move lines the way the grouped queries of the report do. */
+  protected static AccountingReportMoveLineFacts createFacts(List<MoveLine> moveLineList) {
+    AccountingReportMoveLineFacts moveLineFacts = new AccountingReportMoveLineFacts();
+    moveLineFacts.setAnalyticLoaded();
+
+    for (MoveLine moveLine : moveLineList) {
+      Long accountId = moveLine.getAccount().getId();
+      moveLineFacts.addAmounts(accountId, moveLine.getDebit(), moveLine.getCredit(), 1);
+
+      for (AnalyticMoveLine analyticMoveLine : moveLine.getAnalyticMoveLineList()) {
+        boolean isDebit = moveLine.getDebit().signum() > 0;
+        moveLineFacts.addAnalyticAmounts(
+            accountId,
+            analyticMoveLine.getAnalyticAccount().getId(),
+            isDebit ? analyticMoveLine.getAmount() : BigDecimal.ZERO,
+            isDebit ? BigDecimal.ZERO : analyticMoveLine.getAmount(),
+            1);
+      }
+    }
+
+    return moveLineFacts;
+  }
+
+  protected BigDecimal getResultFromMoveLine(
+      List<MoveLine> moveLineList, Set<AnalyticAccount> analyticAccountSet, int resultSelect) {
+    return accountingReportValueMoveLineService.getResultFromMoveLine(
+        null, null, column, line, moveLineList, analyticAccountSet, null, null, resultSelect);
+  }
+
+  protected List<MoveLine> getMoveLines(Set<Long> accountIdSet) {
+    return moveLineList.stream()
+        .filter(moveLine -> accountIdSet.contains(moveLine.getAccount().getId()))
+        .collect(Collectors.toList());
+  }
+
+  protected boolean hasAnalyticAccount(
+      MoveLine moveLine, Set<AnalyticAccount> analyticAccountSet) {
+    return moveLine.getAnalyticMoveLineList().stream()
+        .anyMatch(
+            analyticMoveLine -> analyticAccountSet.contains(analyticMoveLine.getAnalyticAccount()));
+  }
+
+  protected void assertEqualAmounts(BigDecimal expected, BigDecimal actual) {
+    Assertions.assertEquals(
+        0, expected.compareTo(actual), () -> "expected " + expected + " but was " + actual);
+  }
+
+  protected static <T> List<Set<T>> getSubsets(Collection<T> collection) {
+    List<T> list = new ArrayList<>(collection);
+    List<Set<T>> subsetList = new ArrayList<>();
+    for (int mask = 1; mask < 1 << list.size(); mask++) {
+      Set<T> subset = new HashSet<>();
+      for (int i = 0; i < list.size(); i++) {
+        if ((mask & (1 << i)) != 0) {
+          subset.add(list.get(i));
+        }
+      }
+      subsetList.add(subset);
+    }
+    return subsetList;
+  }
+
+  protected static Set<Long> getIds(Collection<? extends Model> modelCollection) {
+    return modelCollection.stream().map(Model::getId).collect(Collectors.toSet());
+  }
+
+  protected static Account createAccount(Long id, String code) {
+    Account account = new Account();
+    account.setId(id);
+    account.setCode(code);
+    return account;
+  }
+
+  protected static AnalyticAccount createAnalyticAccount(Long id, String code) {
+    AnalyticAccount analyticAccount = new AnalyticAccount();
+    analyticAccount.setId(id);
+    analyticAccount.setCode(code);
+    return analyticAccount;
+  }
+
+  protected static AnalyticMoveLine createAnalyticMoveLine(
+      AnalyticAccount analyticAccount, String amount) {
+    AnalyticMoveLine analyticMoveLine = new AnalyticMoveLine();
+    analyticMoveLine.setAnalyticAccount(analyticAccount);
+    analyticMoveLine.setAmount(new BigDecimal(amount));
+    return analyticMoveLine;
+  }
+
+  protected static MoveLine createMoveLine(
+      Account account, String debit, String credit, AnalyticMoveLine... analyticMoveLines) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setAccount(account);
+    moveLine.setDebit(new BigDecimal(debit));
+    moveLine.setCredit(new BigDecimal(credit));
+    moveLine.setAnalyticMoveLineList(new ArrayList<>(Arrays.asList(analyticMoveLines)));
+    return moveLine;
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.payment.paymentsession;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.PaymentSession;
+import com.axelor.apps.account.db.repo.InvoicePaymentRepository;
+import com.axelor.apps.account.db.repo.InvoiceTermRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.db.repo.PaymentSessionRepository;
+import com.axelor.apps.account.service.FinancialDiscountService;
+import com.axelor.apps.account.service.ReconcileService;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.account.service.invoice.InvoiceTermFinancialDiscountService;
+import com.axelor.apps.account.service.invoice.InvoiceTermService;
+import com.axelor.apps.account.service.move.MoveCreateService;
+import com.axelor.apps.account.service.move.MoveCutOffService;
+import com.axelor.apps.account.service.move.MoveLineInvoiceTermService;
+import com.axelor.apps.account.service.move.MoveValidateService;
+import com.axelor.apps.account.service.moveline.MoveLineCreateService;
+import com.axelor.apps.account.service.moveline.MoveLineFinancialDiscountService;
+import com.axelor.apps.account.service.moveline.MoveLineTaxService;
+import com.axelor.apps.account.service.payment.PaymentModeService;
+import com.axelor.apps.account.service.payment.invoice.payment.InvoicePaymentCreateService;
+import com.axelor.apps.account.service.payment.invoice.payment.InvoicePaymentValidateService;
+import com.axelor.apps.base.db.repo.PartnerRepository;
+import com.axelor.apps.base.service.PartnerService;
+import com.axelor.apps.base.service.app.AppBaseService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestPaymentSessionValidateService {
+
+  private PaymentSessionValidateServiceImpl paymentSessionValidateService;
+  private InvoiceTermService invoiceTermService;
+
+  @BeforeEach
+  void prepare() {
+    invoiceTermService = mock(InvoiceTermService.class);
+
+    paymentSessionValidateService =
+        new PaymentSessionValidateServiceImpl(
+            mock(AppBaseService.class),
+            mock(MoveCreateService.class),
+            mock(MoveValidateService.class),
+            mock(MoveCutOffService.class),
+            mock(MoveLineCreateService.class),
+            mock(ReconcileService.class),
+            invoiceTermService,
+            mock(MoveLineTaxService.class),
+            mock(InvoicePaymentCreateService.class),
+            mock(InvoicePaymentValidateService.class),
+            mock(PaymentSessionRepository.class),
+            mock(InvoiceTermRepository.class),
+            mock(MoveRepository.class),
+            mock(PartnerRepository.class),
+            mock(InvoicePaymentRepository.class),
+            mock(AccountConfigService.class),
+            mock(PartnerService.class),
+            mock(PaymentModeService.class),
+            mock(MoveLineInvoiceTermService.class),
+            mock(InvoiceTermFinancialDiscountService.class),
+            mock(MoveLineFinancialDiscountService.class),
+            mock(FinancialDiscountService.class));
+  }
+
+  protected List<Object[]> createPartnerCountList(long... counts) {
+    List<Object[]> partnerCountList = new ArrayList<>();
+    for (int i = 0; i < counts.length; i++) {
+      partnerCountList.add(new Object[] {(long) (i + 1), counts[i]});
+    }
+    return partnerCountList;
+  }
+
+  protected List<Long> getPartnerIds(List<Pair<Long, Long>> partnerChunk) {
+    return partnerChunk.stream().map(Pair::getLeft).collect(Collectors.toList());
+  }
+
+  protected PaymentSessionValidateServiceImpl createCheckValidTermsService(
+      LocalDate nextSessionDate, Long financialDiscountTermId, Long invalidTermId) {
+    return new PaymentSessionValidateServiceImpl(
+        mock(AppBaseService.class),
+        mock(MoveCreateService.class),
+        mock(MoveValidateService.class),
+        mock(MoveCutOffService.class),
+        mock(MoveLineCreateService.class),
+        mock(ReconcileService.class),
+        invoiceTermService,
+        mock(MoveLineTaxService.class),
+        mock(InvoicePaymentCreateService.class),
+        mock(InvoicePaymentValidateService.class),
+        mock(PaymentSessionRepository.class),
+        mock(InvoiceTermRepository.class),
+        mock(MoveRepository.class),
+        mock(PartnerRepository.class),
+        mock(InvoicePaymentRepository.class),
+        mock(AccountConfigService.class),
+        mock(PartnerService.class),
+        mock(PaymentModeService.class),
+        mock(MoveLineInvoiceTermService.class),
+        mock(InvoiceTermFinancialDiscountService.class),
+        mock(MoveLineFinancialDiscountService.class),
+        mock(FinancialDiscountService.class)) {
+      @Override
+      protected LocalDate fetchNextSessionDate(PaymentSession paymentSession) {
+        return nextSessionDate;
+      }
+
+      @Override
+      protected Long getValidationCheckpointPartnerId(PaymentSession paymentSession) {
+        return null;
+      }
+
+      @Override
+      protected Long getFirstFinancialDiscountTermId(
+          PaymentSession paymentSession, Long lastPartnerId, LocalDate nextSessionDate) {
+        return financialDiscountTermId;
+      }
+
+      @Override
+      protected Long getFirstInvalidTermId(PaymentSession paymentSession, Long lastPartnerId) {
+        return invalidTermId;
+      }
+    };
+  }
+
+  @Test
+  void testPartnerChunkStopsOnceChunkSizeIsReached() {
+    List<Pair<Long, Long>> partnerChunk =
+        paymentSessionValidateService.getPartnerChunk(createPartnerCountList(2, 3, 4, 1), 5);
+
+    Assertions.assertEquals(List.of(1L, 2L), getPartnerIds(partnerChunk));
+  }
+
+  @Test
+  void testPartnerChunkKeepsAllTheTermsOfAPartner() {
+    List<Pair<Long, Long>> partnerChunk =
+        paymentSessionValidateService.getPartnerChunk(createPartnerCountList(1, 10, 1), 3);
+
+    Assertions.assertEquals(List.of(1L, 2L), getPartnerIds(partnerChunk));
+    Assertions.assertEquals(11L, partnerChunk.stream().mapToLong(Pair::getRight).sum());
+  }
+
+  @Test
+  void testPartnerChunkWithLastPartners() {
+    List<Pair<Long, Long>> partnerChunk =
+        paymentSessionValidateService.getPartnerChunk(createPartnerCountList(1, 1), 5);
+
+    Assertions.assertEquals(List.of(1L, 2L), getPartnerIds(partnerChunk));
+    Assertions.assertTrue(
+        paymentSessionValidateService.getPartnerChunk(new ArrayList<>(), 5).isEmpty());
+  }
+
+  @Test
+  void testValidationProgress() {
+    Assertions.assertEquals(0, paymentSessionValidateService.getValidationProgress(0, 3));
+    Assertions.assertEquals(66, paymentSessionValidateService.getValidationProgress(2, 3));
+    Assertions.assertEquals(100, paymentSessionValidateService.getValidationProgress(3, 3));
+    Assertions.assertEquals(100, paymentSessionValidateService.getValidationProgress(0, 0));
+  }
+
+  @Test
+  void testValidTerms() {
+    PaymentSession paymentSession = new PaymentSession();
+
+    Assertions.assertEquals(
+        0,
+        createCheckValidTermsService(LocalDate.of(2024, 1, 1), null, null)
+            .checkValidTerms(paymentSession));
+  }
+
+  @Test
+  void testFirstInvalidTermGivesTheResult() {
+    PaymentSession paymentSession = new PaymentSession();
+    LocalDate nextSessionDate = LocalDate.of(2024, 1, 1);
+
+    Assertions.assertEquals(
+        1, createCheckValidTermsService(nextSessionDate, 3L, 5L).checkValidTerms(paymentSession));
+    Assertions.assertEquals(
+        2, createCheckValidTermsService(nextSessionDate, 5L, 3L).checkValidTerms(paymentSession));
+    Assertions.assertEquals(
+        1, createCheckValidTermsService(nextSessionDate, 5L, null).checkValidTerms(paymentSession));
+  }
+
+  @Test
+  void testFinancialDiscountIsIgnoredWithoutNextSessionDate() {
+    PaymentSession paymentSession = new PaymentSession();
+
+    Assertions.assertEquals(
+        0, createCheckValidTermsService(null, 3L, null).checkValidTerms(paymentSession));
+    Assertions.assertEquals(
+        2, createCheckValidTermsService(null, 3L, 5L).checkValidTerms(paymentSession));
+  }
+}
@@ -51,6 +51,7 @@ import com.axelor.apps.bankpayment.db.BankOrder;
 import com.axelor.apps.bankpayment.db.BankOrderFileFormat;
 import com.axelor.apps.bankpayment.db.BankOrderLine;
 import com.axelor.apps.bankpayment.db.BankOrderLineOrigin;
+import com.axelor.apps.bankpayment.db.repo.BankOrderLineOriginRepository;
 import com.axelor.apps.bankpayment.db.repo.BankOrderRepository;
 import com.axelor.apps.bankpayment.exception.BankPaymentExceptionMessage;
 import com.axelor.apps.bankpayment.service.bankorder.BankOrderCreateService;
@@ -163,18 +164,14 @@ public class PaymentSessionValidateBankPaymentServiceImpl
   }
 
   @Override
-  @Transactional(rollbackOn = {Exception.class})
-  public int processPaymentSession(
-      PaymentSession paymentSession,
-      List<Pair<InvoiceTerm, Pair<InvoiceTerm, BigDecimal>>> invoiceTermLinkWithRefundList)
-      throws AxelorException {
+  protected void preProcessPaymentSession(PaymentSession paymentSession) throws AxelorException {
     if (paymentSession.getPaymentMode() != null
         && paymentSession.getPaymentMode().getGenerateBankOrder()
         && paymentSession.getBankOrder() == null) {
       this.generateBankOrderFromPaymentSession(paymentSession);
     }
 
-    return super.processPaymentSession(paymentSession, invoiceTermLinkWithRefundList);
+    super.preProcessPaymentSession(paymentSession);
   }
 
   @Override
@@ -293,6 +290,34 @@ public class PaymentSessionValidateBankPaymentServiceImpl
                 != PaymentModeRepository.ACCOUNTING_TRIGGER_IMMEDIATE);
   }
 
+  /**
+   * Terms without invoice are also awaiting a payment when they are in a draft or validated bank
+   * order, as checked by {@link InvoiceTermBankPaymentServiceImpl#isNotAwaitingPayment}.
+   */
+  @Override
+  protected String getAwaitingPaymentCondition(Map<String, Object> paramMap) {
+    String condition = super.getAwaitingPaymentCondition(paramMap);
+
+    paramMap.put("relatedToInvoiceTerm", BankOrderLineOriginRepository.RELATED_TO_INVOICE_TERM);
+    paramMap.put(
+        "awaitingBankOrderStatusList",
+        List.of(BankOrderRepository.STATUS_DRAFT, BankOrderRepository.STATUS_VALIDATED));
+    paramMap.put(
+        "directDebitOrderTypeList",
+        List.of(
+            BankOrderRepository.ORDER_TYPE_SEPA_DIRECT_DEBIT,
+            BankOrderRepository.ORDER_TYPE_INTERNATIONAL_DIRECT_DEBIT));
+
+    return "("
+        + condition
+        + " OR (self.invoice IS NULL AND EXISTS (SELECT origin.id FROM BankOrderLineOrigin origin "
+        + "WHERE origin.relatedToSelect = :relatedToInvoiceTerm "
+        + "AND origin.relatedToSelectId = self.id "
+        + "AND origin.bankOrderLine.bankOrder.statusSelect IN (:awaitingBankOrderStatusList) "
+        + "AND origin.bankOrderLine.bankOrder.orderTypeSelect "
+        + "NOT IN (:directDebitOrderTypeList))))";
+  }
+
   @Override
   @Transactional
   protected InvoicePayment generatePendingPaymentFromInvoiceTerm(
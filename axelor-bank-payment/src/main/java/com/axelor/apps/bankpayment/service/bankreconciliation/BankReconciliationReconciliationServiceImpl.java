@@ -31,6 +31,7 @@ import com.axelor.apps.bankpayment.db.repo.BankStatementRuleRepository;
 import com.axelor.apps.bankpayment.exception.BankPaymentExceptionMessage;
 import com.axelor.apps.bankpayment.service.CurrencyScaleServiceBankPayment;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Currency;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.DateService;
@@ -43,7 +44,12 @@ import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class BankReconciliationReconciliationServiceImpl
@@ -75,6 +81,12 @@ public class BankReconciliationReconciliationServiceImpl
     this.currencyScaleServiceBankPayment = currencyScaleServiceBankPayment;
   }
 
+  /**
+   * Reconcile the bank reconciliation lines with the move lines according to the
+   * auto-reconciliation queries, in their order. Each query is only evaluated on the move lines
+   * whose amount and dates may match, and the lines are reconciled in their order with the matching
+   * move line of lowest id which is not reconciled yet.
+   */
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public BankReconciliation reconciliateAccordingToQueries(BankReconciliation bankReconciliation)
@@ -88,13 +100,20 @@ public class BankReconciliationReconciliationServiceImpl
             .all()
             .filter(bankReconciliationQueryService.getRequestMoveLines())
             .bind(bankReconciliationQueryService.getBindRequestMoveLine(bankReconciliation))
+            .order("id")
             .fetch();
 
     List<BankReconciliationLine> bankReconciliationLines =
         bankReconciliation.getBankReconciliationLineList().stream()
-            .filter(line -> line.getMoveLine() == null)
+            .filter(line -> line.getMoveLine() == null && line.getBankStatementLine() != null)
             .collect(Collectors.toList());
 
+    if (bankStatementQueries.isEmpty()
+        || moveLines.isEmpty()
+        || bankReconciliationLines.isEmpty()) {
+      return bankReconciliation;
+    }
+
     BigInteger dateMargin =
         BigInteger.valueOf(
             bankReconciliation
@@ -105,49 +124,95 @@ public class BankReconciliationReconciliationServiceImpl
     BigDecimal amountMarginLow = this.getAmountMarginLow(bankReconciliation);
     BigDecimal amountMarginHigh = BigDecimal.ONE;
 
-    Context scriptContext;
+    MoveLineAmountIndex moveLineAmountIndex = new MoveLineAmountIndex(moveLines);
+
+    Set<Currency> currencySet = moveLineAmountIndex.getCurrencySet();
+    List<ScriptLine> scriptLineList = new ArrayList<>();
+    for (BankReconciliationLine bankReconciliationLine : bankReconciliationLines) {
+      scriptLineList.add(
+          this.getScriptLine(bankReconciliation, bankReconciliationLine, currencySet));
+    }
+
+    Set<MoveLine> reconciledMoveLineSet = new HashSet<>();
 
     for (BankStatementQuery bankStatementQuery : bankStatementQueries) {
-      for (BankReconciliationLine bankReconciliationLine : bankReconciliationLines) {
-        BankStatementLine bankStatementLine = bankReconciliationLine.getBankStatementLine();
-        if (bankReconciliationLine.getMoveLine() != null || bankStatementLine == null) {
+      String query =
+          computeQuery(bankStatementQuery, dateMargin, amountMarginLow, amountMarginHigh);
+      BankStatementQueryFilter queryFilter = new BankStatementQueryFilter(query);
+
+      for (ScriptLine scriptLine : scriptLineList) {
+        if (scriptLine.bankReconciliationLine.getMoveLine() != null) {
           continue;
         }
-        for (MoveLine moveLine : moveLines) {
-          bankStatementLine.setMoveLine(moveLine);
-
-          scriptContext =
-              this.getScriptContext(
-                  bankReconciliation, bankStatementLine, bankReconciliationLine, moveLine);
-          String query =
-              computeQuery(bankStatementQuery, dateMargin, amountMarginLow, amountMarginHigh);
-          Boolean result = (Boolean) new GroovyScriptHelper(scriptContext).eval(query);
-
-          if (result) {
-            bankReconciliationLine =
-                updateBankReconciliationLine(bankReconciliationLine, moveLine, bankStatementQuery);
-            boolean isUnderCorrection =
-                bankReconciliation.getStatusSelect()
-                    == BankReconciliationRepository.STATUS_UNDER_CORRECTION;
-
-            if (isUnderCorrection) {
-              bankReconciliationLine.setIsPosted(true);
-              bankReconciliationLineService.checkAmount(bankReconciliationLine);
-              bankReconciliationLineService.updateBankReconciledAmounts(bankReconciliationLine);
-            }
-
-            moveLine.setPostedNbr(bankReconciliationLine.getPostedNbr());
-            moveLines.remove(moveLine);
-            break;
-          }
-
-          bankStatementLine.setMoveLine(null);
+
+        MoveLine moveLine =
+            this.findMatchingMoveLine(
+                scriptLine, query, queryFilter, moveLineAmountIndex, reconciledMoveLineSet);
+
+        if (moveLine != null) {
+          reconciledMoveLineSet.add(moveLine);
+          this.reconcileLine(
+              bankReconciliation, scriptLine.bankReconciliationLine, moveLine, bankStatementQuery);
         }
       }
     }
+
     return bankReconciliation;
   }
 
+  protected void reconcileLine(
+      BankReconciliation bankReconciliation,
+      BankReconciliationLine bankReconciliationLine,
+      MoveLine moveLine,
+      BankStatementQuery bankStatementQuery)
+      throws AxelorException {
+    bankReconciliationLine.getBankStatementLine().setMoveLine(moveLine);
+    bankReconciliationLine =
+        updateBankReconciliationLine(bankReconciliationLine, moveLine, bankStatementQuery);
+    boolean isUnderCorrection =
+        bankReconciliation.getStatusSelect()
+            == BankReconciliationRepository.STATUS_UNDER_CORRECTION;
+
+    if (isUnderCorrection) {
+      bankReconciliationLine.setIsPosted(true);
+      bankReconciliationLineService.checkAmount(bankReconciliationLine);
+      bankReconciliationLineService.updateBankReconciledAmounts(bankReconciliationLine);
+    }
+
+    moveLine.setPostedNbr(bankReconciliationLine.getPostedNbr());
+  }
+
+  /** @return The matching move line of lowest id which is not reconciled yet, or null. */
+  protected MoveLine findMatchingMoveLine(
+      ScriptLine scriptLine,
+      String query,
+      BankStatementQueryFilter queryFilter,
+      MoveLineAmountIndex moveLineAmountIndex,
+      Set<MoveLine> reconciledMoveLineSet) {
+    BankStatementLine bankStatementLine =
+        scriptLine.bankReconciliationLine.getBankStatementLine();
+
+    return moveLineAmountIndex
+        .getCandidateList(queryFilter, scriptLine.currencyAmountMap)
+        .stream()
+        .filter(moveLine -> !reconciledMoveLineSet.contains(moveLine))
+        .filter(moveLine -> queryFilter.isInDateWindows(moveLine, bankStatementLine))
+        .filter(moveLine -> this.isMatching(query, scriptLine, moveLine))
+        .findFirst()
+        .orElse(null);
+  }
+
+  protected boolean isMatching(String query, ScriptLine scriptLine, MoveLine moveLine) {
+    Map<String, Object> values = new HashMap<>(scriptLine.values);
+    values.put("moveLine", moveLine);
+    values.put(
+        "currencyAmount",
+        scriptLine.currencyAmountMap.get(MoveLineAmountIndex.getCurrencyId(moveLine)));
+
+    Context scriptContext = new Context(values, BankStatementLineAFB120.class);
+    return Boolean.TRUE.equals(new GroovyScriptHelper(scriptContext).eval(query));
+  }
+
   @Override
   public void checkReconciliation(List<MoveLine> moveLines, BankReconciliation br)
       throws AxelorException {
@@ -265,14 +330,16 @@ public class BankReconciliationReconciliationServiceImpl
     return BigDecimal.ONE.subtract(amountMargin);
   }
 
-  protected Context getScriptContext(
+  /**
+   * Compute once for all the queries and move lines the values of a bank reconciliation line used
+   * by the queries.
+   */
+  protected ScriptLine getScriptLine(
       BankReconciliation bankReconciliation,
-      BankStatementLine bankStatementLine,
       BankReconciliationLine bankReconciliationLine,
-      MoveLine moveLine)
+      Set<Currency> currencySet)
       throws AxelorException {
-    Context scriptContext =
-        new Context(Mapper.toMap(bankStatementLine), BankStatementLineAFB120.class);
+    Map<String, Object> values = Mapper.toMap(bankReconciliationLine.getBankStatementLine());
 
     BigDecimal debit =
         currencyScaleServiceBankPayment.getScaledValue(
@@ -281,19 +348,19 @@ public class BankReconciliationReconciliationServiceImpl
         currencyScaleServiceBankPayment.getScaledValue(
             bankReconciliation, bankReconciliationLine.getCredit());
 
-    BigDecimal currencyAmount = debit.compareTo(BigDecimal.ZERO) == 0 ? credit : debit;
-    currencyAmount =
-        currencyService.getAmountCurrencyConvertedAtDate(
-            bankReconciliation.getCurrency(),
-            moveLine.getMove().getCurrency(),
-            currencyAmount,
-            dateService.date());
+    values.put("debit", debit);
+    values.put("credit", credit);
 
-    scriptContext.put("debit", debit);
-    scriptContext.put("credit", credit);
-    scriptContext.put("currencyAmount", currencyAmount);
+    BigDecimal amount = debit.compareTo(BigDecimal.ZERO) == 0 ? credit : debit;
+    Map<Long, BigDecimal> currencyAmountMap = new HashMap<>();
+    for (Currency currency : currencySet) {
+      currencyAmountMap.put(
+          currency.getId(),
+          currencyService.getAmountCurrencyConvertedAtDate(
+              bankReconciliation.getCurrency(), currency, amount, dateService.date()));
+    }
 
-    return scriptContext;
+    return new ScriptLine(bankReconciliationLine, values, currencyAmountMap);
   }
 
   protected BankReconciliationLine updateBankReconciliationLine(
@@ -318,4 +385,21 @@ public class BankReconciliationReconciliationServiceImpl
     query = query.replace("%date", dateMargin.toString());
     return query;
   }
+
+  /** A bank reconciliation line with the values used to evaluate the queries. */
+  protected static class ScriptLine {
+
+    protected final BankReconciliationLine bankReconciliationLine;
+    protected final Map<String, Object> values;
+    protected final Map<Long, BigDecimal> currencyAmountMap;
+
+    protected ScriptLine(
+        BankReconciliationLine bankReconciliationLine,
+        Map<String, Object> values,
+        Map<Long, BigDecimal> currencyAmountMap) {
+      this.bankReconciliationLine = bankReconciliationLine;
+      this.values = values;
+      this.currencyAmountMap = currencyAmountMap;
+    }
+  }
 }
@@ -0,0 +1,308 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.bankpayment.db.BankStatementLine;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conditions on the amount and the dates of the move line recognized in an auto-reconciliation
+ * query, once its margins have been replaced. They are only used to skip the move lines which
+ * cannot match the query: the query itself is still evaluated on the other move lines.
+ *
+ * <p>A condition is only recognized when the whole query cannot be true without it, i.e. when it is
+ * one of the operands of a top level {@code &&}, in a query without top level {@code ||}, {@code
+ * ?} or {@code ;}. The amount conditions are the ones of the default
+ * queries, comparing {@code moveLine?.currencyAmount.abs()} to {@code currencyAmount}, and the date
+ * conditions the ones checking that {@code moveLine?.date} or {@code moveLine?.dueDate} is equal to
+ * or within a number of days of {@code operationDate} or {@code valueDate}.
+ */
+public class BankStatementQueryFilter {
+
+  protected static final Pattern AMOUNT_EQUAL_PATTERN =
+      Pattern.compile("moveLine\\?\\.currencyAmount\\.abs\\(\\)==currencyAmount");
+  protected static final Pattern AMOUNT_BOUND_PATTERN =
+      Pattern.compile(
+          "moveLine\\?\\.currencyAmount\\.abs\\(\\)(>=|<=)currencyAmount\\*(\\d+(?:\\.\\d+)?)");
+  protected static final Pattern DATE_EQUAL_PATTERN =
+      Pattern.compile("moveLine\\?\\.(date|dueDate)\\?\\.equals\\((operationDate|valueDate)\\)");
+  protected static final Pattern DATE_BOUND_PATTERN =
+      Pattern.compile(
+          "moveLine\\?\\.(date|dueDate)(<=|>=)(operationDate|valueDate)"
+              + "\\?\\.(plusDays|minusDays)\\((\\d+)\\)");
+
+  protected boolean amountEqual;
+  protected List<BigDecimal> amountLowFactorList = new ArrayList<>();
+  protected List<BigDecimal> amountHighFactorList = new ArrayList<>();
+  protected List<List<DateWindow>> dateWindowListList = new ArrayList<>();
+
+  public BankStatementQueryFilter(String query) {
+    query = unwrap(query.trim());
+
+    // && has precedence over ||, no operand of a top level && is required otherwise
+    if (split(query, "||").size() > 1) {
+      return;
+    }
+
+    // Neither with a ternary or elvis operator, nor with several statements
+    if (hasConditionalOperator(query) || split(query, ";").size() > 1) {
+      return;
+    }
+
+    for (String operand : split(query, "&&")) {
+      operand = unwrap(operand.replaceAll("\\s", ""));
+
+      if (AMOUNT_EQUAL_PATTERN.matcher(operand).matches()) {
+        amountEqual = true;
+        continue;
+      }
+
+      Matcher amountBoundMatcher = AMOUNT_BOUND_PATTERN.matcher(operand);
+      if (amountBoundMatcher.matches()) {
+        BigDecimal factor = new BigDecimal(amountBoundMatcher.group(2));
+        if (">=".equals(amountBoundMatcher.group(1))) {
+          amountLowFactorList.add(factor);
+        } else {
+          amountHighFactorList.add(factor);
+        }
+        continue;
+      }
+
+      List<DateWindow> dateWindowList = this.getDateWindowList(operand);
+      if (dateWindowList != null) {
+        dateWindowListList.add(dateWindowList);
+      }
+    }
+  }
+
+  /** @return true if the query only accepts some amounts of move line. */
+  public boolean isAmountFiltered() {
+    return amountEqual || !amountLowFactorList.isEmpty() || !amountHighFactorList.isEmpty();
+  }
+
+  public boolean isAmountEqual() {
+    return amountEqual;
+  }
+
+  /**
+   * @param currencyAmount The amount of the bank reconciliation line, in the currency of the move
+   * @return The lowest absolute amount of move line accepted by the query, or null if there is none
+   */
+  public BigDecimal getAmountLowBound(BigDecimal currencyAmount) {
+    return amountLowFactorList.stream()
+        .map(currencyAmount::multiply)
+        .max(BigDecimal::compareTo)
+        .orElse(null);
+  }
+
+  /**
+   * @param currencyAmount The amount of the bank reconciliation line, in the currency of the move
+   * @return The highest absolute amount of move line accepted by the query, or null if there is
+   *     none
+   */
+  public BigDecimal getAmountHighBound(BigDecimal currencyAmount) {
+    return amountHighFactorList.stream()
+        .map(currencyAmount::multiply)
+        .min(BigDecimal::compareTo)
+        .orElse(null);
+  }
+
+  /** @return false if the dates of the move line cannot match the query. */
+  public boolean isInDateWindows(MoveLine moveLine, BankStatementLine bankStatementLine) {
+    return dateWindowListList.stream()
+        .allMatch(
+            dateWindowList ->
+                dateWindowList.stream()
+                    .anyMatch(dateWindow -> dateWindow.contains(moveLine, bankStatementLine)));
+  }
+
+  /**
+   * Recognize a condition on the dates, which is a {@code ||} of date comparisons.
+   *
+   * @return The date windows of the condition, or null if it is not a condition on the dates.
+   */
+  protected List<DateWindow> getDateWindowList(String operand) {
+    List<DateWindow> dateWindowList = new ArrayList<>();
+
+    for (String dateOperand : split(operand, "||")) {
+      dateOperand = unwrap(dateOperand);
+
+      Matcher dateEqualMatcher = DATE_EQUAL_PATTERN.matcher(dateOperand);
+      if (dateEqualMatcher.matches()) {
+        dateWindowList.add(
+            new DateWindow(dateEqualMatcher.group(1), dateEqualMatcher.group(2), 0L, 0L));
+        continue;
+      }
+
+      DateWindow dateWindow = this.getDateWindow(split(dateOperand, "&&"));
+      if (dateWindow == null) {
+        return null;
+      }
+      dateWindowList.add(dateWindow);
+    }
+
+    return dateWindowList;
+  }
+
+  /** Recognize a date between two bounds around the same date of the bank statement line. */
+  protected DateWindow getDateWindow(List<String> boundList) {
+    if (boundList.size() != 2) {
+      return null;
+    }
+
+    Matcher lowMatcher = DATE_BOUND_PATTERN.matcher(unwrap(boundList.get(0)));
+    Matcher highMatcher = DATE_BOUND_PATTERN.matcher(unwrap(boundList.get(1)));
+    if (!lowMatcher.matches() || !highMatcher.matches()) {
+      return null;
+    }
+    if ("<=".equals(lowMatcher.group(2))) {
+      Matcher matcher = lowMatcher;
+      lowMatcher = highMatcher;
+      highMatcher = matcher;
+    }
+
+    if (!">=".equals(lowMatcher.group(2))
+        || !"minusDays".equals(lowMatcher.group(4))
+        || !"<=".equals(highMatcher.group(2))
+        || !"plusDays".equals(highMatcher.group(4))
+        || !lowMatcher.group(1).equals(highMatcher.group(1))
+        || !lowMatcher.group(3).equals(highMatcher.group(3))) {
+      return null;
+    }
+
+    return new DateWindow(
+        lowMatcher.group(1),
+        lowMatcher.group(3),
+        Long.parseLong(lowMatcher.group(5)),
+        Long.parseLong(highMatcher.group(5)));
+  }
+
+  /**
+   * @return true if the expression has a top level {@code ?} which is not a safe navigation
+   *     operator {@code ?.}
+   */
+  protected static boolean hasConditionalOperator(String expression) {
+    return split(expression, "?").stream().skip(1).anyMatch(operand -> !operand.startsWith("."));
+  }
+
+  /** Split an expression on an operator, ignoring the operators in parentheses or strings. */
+  protected static List<String> split(String expression, String operator) {
+    List<String> operandList = new ArrayList<>();
+    int depth = 0;
+    char quote = 0;
+    int start = 0;
+
+    for (int i = 0; i < expression.length(); i++) {
+      char c = expression.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && expression.startsWith(operator, i)) {
+        operandList.add(expression.substring(start, i));
+        start = i + operator.length();
+        i = start - 1;
+      }
+    }
+    operandList.add(expression.substring(start));
+
+    return operandList;
+  }
+
+  /** Remove the parentheses around a whole expression. */
+  protected static String unwrap(String expression) {
+    while (isWrapped(expression)) {
+      expression = expression.substring(1, expression.length() - 1).trim();
+    }
+    return expression;
+  }
+
+  /** @return true if the expression starts with a parenthesis closed at its very end. */
+  protected static boolean isWrapped(String expression) {
+    if (!expression.startsWith("(") || !expression.endsWith(")")) {
+      return false;
+    }
+
+    int depth = 0;
+    char quote = 0;
+
+    for (int i = 0; i < expression.length() - 1; i++) {
+      char c = expression.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /** A date of the move line within some days of a date of the bank statement line. */
+  protected static class DateWindow {
+
+    protected final String moveLineField;
+    protected final String bankStatementLineField;
+    protected final long daysBefore;
+    protected final long daysAfter;
+
+    protected DateWindow(
+        String moveLineField, String bankStatementLineField, long daysBefore, long daysAfter) {
+      this.moveLineField = moveLineField;
+      this.bankStatementLineField = bankStatementLineField;
+      this.daysBefore = daysBefore;
+      this.daysAfter = daysAfter;
+    }
+
+    protected boolean contains(MoveLine moveLine, BankStatementLine bankStatementLine) {
+      LocalDate date = "date".equals(moveLineField) ? moveLine.getDate() : moveLine.getDueDate();
+      LocalDate referenceDate =
+          "valueDate".equals(bankStatementLineField)
+              ? bankStatementLine.getValueDate()
+              : bankStatementLine.getOperationDate();
+
+      return date != null
+          && referenceDate != null
+          && !date.isBefore(referenceDate.minusDays(daysBefore))
+          && !date.isAfter(referenceDate.plusDays(daysAfter));
+    }
+  }
+}
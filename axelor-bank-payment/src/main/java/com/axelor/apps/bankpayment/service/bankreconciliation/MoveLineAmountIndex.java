@@ -0,0 +1,128 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.base.db.Currency;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The move lines which can be reconciled with a bank reconciliation, indexed by the currency of
+ * their move and the absolute value of their amount in this currency, so that the move lines whose
+ * amount may match a bank reconciliation line are found without going through all of them.
+ */
+public class MoveLineAmountIndex {
+
+  protected List<MoveLine> moveLineList;
+  protected Map<Long, NavigableMap<BigDecimal, List<MoveLine>>> amountMapByCurrency =
+      new HashMap<>();
+
+  /** @param moveLineList The move lines, ordered by id */
+  public MoveLineAmountIndex(List<MoveLine> moveLineList) {
+    this.moveLineList = moveLineList;
+
+    for (MoveLine moveLine : moveLineList) {
+      amountMapByCurrency
+          .computeIfAbsent(getCurrencyId(moveLine), currencyId -> new TreeMap<>())
+          .computeIfAbsent(
+              Optional.ofNullable(moveLine.getCurrencyAmount()).orElse(BigDecimal.ZERO).abs(),
+              amount -> new ArrayList<>())
+          .add(moveLine);
+    }
+  }
+
+  /** @return The currencies of the moves of the move lines. */
+  public Set<Currency> getCurrencySet() {
+    return moveLineList.stream()
+        .map(moveLine -> moveLine.getMove().getCurrency())
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Get the move lines whose amount is accepted by a query, ordered by id.
+   *
+   * @param queryFilter The conditions recognized in the query
+   * @param currencyAmountMap The amount of the bank reconciliation line converted in each currency
+   *     of move, by currency id
+   * @return The move lines which may match the query
+   */
+  public List<MoveLine> getCandidateList(
+      BankStatementQueryFilter queryFilter, Map<Long, BigDecimal> currencyAmountMap) {
+    if (!queryFilter.isAmountFiltered()) {
+      return moveLineList;
+    }
+
+    List<MoveLine> candidateList = new ArrayList<>();
+
+    for (Map.Entry<Long, NavigableMap<BigDecimal, List<MoveLine>>> entry :
+        amountMapByCurrency.entrySet()) {
+      BigDecimal currencyAmount = currencyAmountMap.get(entry.getKey());
+      if (currencyAmount == null) {
+        continue;
+      }
+      this.getAmountRange(entry.getValue(), queryFilter, currencyAmount).values().stream()
+          .flatMap(Collection::stream)
+          .forEach(candidateList::add);
+    }
+
+    candidateList.sort(Comparator.comparing(MoveLine::getId));
+    return candidateList;
+  }
+
+  protected NavigableMap<BigDecimal, List<MoveLine>> getAmountRange(
+      NavigableMap<BigDecimal, List<MoveLine>> amountMap,
+      BankStatementQueryFilter queryFilter,
+      BigDecimal currencyAmount) {
+    BigDecimal lowBound = queryFilter.getAmountLowBound(currencyAmount);
+    BigDecimal highBound = queryFilter.getAmountHighBound(currencyAmount);
+
+    if (queryFilter.isAmountEqual()) {
+      lowBound = lowBound == null ? currencyAmount : lowBound.max(currencyAmount);
+      highBound = highBound == null ? currencyAmount : highBound.min(currencyAmount);
+    }
+
+    if (lowBound != null && highBound != null) {
+      return lowBound.compareTo(highBound) > 0
+          ? new TreeMap<>()
+          : amountMap.subMap(lowBound, true, highBound, true);
+    }
+    if (lowBound != null) {
+      return amountMap.tailMap(lowBound, true);
+    }
+    return amountMap.headMap(highBound, true);
+  }
+
+  public static Long getCurrencyId(MoveLine moveLine) {
+    Currency currency = moveLine.getMove().getCurrency();
+    return currency != null ? currency.getId() : null;
+  }
+}
@@ -41,4 +41,24 @@ public interface BankStatementLineCreationService {
       InterbankCodeLine rejectInterbankCodeLine,
       String origin,
       String reference);
+
+  /**
+   * Fill a new bank statement line, allowing the subclasses of bank statement line to be created
+   * directly.
+   */
+  <T extends BankStatementLine> T fillBankStatementLine(
+      T bankStatementLine,
+      BankStatement bankStatement,
+      int sequence,
+      BankDetails bankDetails,
+      BigDecimal debit,
+      BigDecimal credit,
+      Currency currency,
+      String description,
+      LocalDate operationDate,
+      LocalDate valueDate,
+      InterbankCodeLine operationInterbankCodeLine,
+      InterbankCodeLine rejectInterbankCodeLine,
+      String origin,
+      String reference);
 }
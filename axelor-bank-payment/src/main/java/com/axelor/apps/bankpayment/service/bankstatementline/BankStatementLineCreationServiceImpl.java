@@ -54,7 +54,40 @@ public class BankStatementLineCreationServiceImpl implements BankStatementLineCr
       String origin,
       String reference) {
 
-    BankStatementLine bankStatementLine = new BankStatementLine();
+    return fillBankStatementLine(
+        new BankStatementLine(),
+        bankStatement,
+        sequence,
+        bankDetails,
+        debit,
+        credit,
+        currency,
+        description,
+        operationDate,
+        valueDate,
+        operationInterbankCodeLine,
+        rejectInterbankCodeLine,
+        origin,
+        reference);
+  }
+
+  @Override
+  public <T extends BankStatementLine> T fillBankStatementLine(
+      T bankStatementLine,
+      BankStatement bankStatement,
+      int sequence,
+      BankDetails bankDetails,
+      BigDecimal debit,
+      BigDecimal credit,
+      Currency currency,
+      String description,
+      LocalDate operationDate,
+      LocalDate valueDate,
+      InterbankCodeLine operationInterbankCodeLine,
+      InterbankCodeLine rejectInterbankCodeLine,
+      String origin,
+      String reference) {
+
     bankStatementLine.setBankStatement(bankStatement);
     bankStatementLine.setSequence(sequence);
     bankStatementLine.setBankDetails(bankDetails);
@@ -31,16 +31,22 @@ import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.Currency;
 import com.axelor.apps.base.db.repo.BankDetailsRepository;
 import com.axelor.apps.base.db.repo.CurrencyRepository;
+import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.common.ObjectUtils;
 import com.axelor.common.StringUtils;
-import com.axelor.utils.helpers.file.FileHelper;
-import com.google.common.collect.Lists;
+import com.axelor.db.JPA;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +54,9 @@ public class BankStatementLineCreateAFB120Service extends BankStatementLineCreat
 
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int RECORD_LENGTH = 120;
+  protected static final int BATCH_SIZE = 100;
+
   protected BankStatementLineCreationAFB120Service bankStatementLineCreationAFB120Service;
   protected BankStatementLineAFB120Repository bankStatementLineAFB120Repository;
   protected CurrencyRepository currencyRepository;
@@ -55,6 +64,8 @@ public class BankStatementLineCreateAFB120Service extends BankStatementLineCreat
   protected InterbankCodeLineRepository interbankCodeLineRepository;
   protected BankStatementLineMapperAFB120Service bankStatementLineMapperAFB120Service;
 
+  protected int sequence;
+
   @Inject
   public BankStatementLineCreateAFB120Service(
       BankStatementRepository bankStatementRepository,
@@ -160,27 +171,148 @@ public class BankStatementLineCreateAFB120Service extends BankStatementLineCreat
     }
   }
 
-  protected List<StructuredContentLine> readFile() throws IOException, AxelorException {
+  @Override
+  protected void process() throws IOException, AxelorException {
 
-    List<StructuredContentLine> structuredContent = Lists.newArrayList();
+    findBankStatement();
+    sequence = 0;
 
-    List<String> fileContent = FileHelper.reader(file.getPath());
+    List<StructuredContentLine> structuredContent = new ArrayList<>();
+    readFile(structuredContent, this::createBankStatementLines);
+    createBankStatementLines(structuredContent);
 
-    for (String lineContent : fileContent) {
-      log.info("Read line : {}", lineContent);
-      String lineData = null;
-      int i = 0;
+    findBankStatement();
+  }
 
-      while (i < lineContent.length()) {
+  /**
+   * Create the bank statement lines of a part of the file. The part is created in a single
+   * transaction, the lines being inserted by jdbc batches. If the part fails when it is flushed, it
+   * is created again one line per transaction, so that only the failing lines are skipped. The
+   * errors of the lines are traced once the part is committed, or by the replay.
+   */
+  protected void createBankStatementLines(List<StructuredContentLine> structuredContent) {
+    if (structuredContent.isEmpty()) {
+      return;
+    }
 
-        lineData = lineContent.substring(i, i + 120);
+    int firstSequence = sequence;
+    List<Exception> lineExceptionList = new ArrayList<>();
+    try {
+      createBankStatementLinesInBatch(structuredContent, lineExceptionList);
+      lineExceptionList.forEach(this::traceLineException);
+    } catch (Exception e) {
+      log.debug("Bank statement lines {} to {} created one by one", firstSequence, sequence, e);
+      sequence = firstSequence;
+      JPA.clear();
+      findBankStatement();
 
-        bankStatementLineMapperAFB120Service.writeStructuredContent(lineData, structuredContent);
+      for (StructuredContentLine structuredContentLine : structuredContent) {
+        try {
+          createBankStatementLine(structuredContentLine, sequence++);
+        } catch (Exception lineException) {
+          traceLineException(
+              new Exception(String.format("Line %s : %s", sequence, lineException), lineException));
+          JPA.clear();
+          findBankStatement();
+        }
+      }
+    }
 
-        i = i + 120;
+    JPA.clear();
+    findBankStatement();
+  }
+
+  /**
+   * Create the lines of a part in a single transaction. The errors of the lines are added to the
+   * given list instead of being traced, as the part may be replayed.
+   */
+  @Transactional
+  protected void createBankStatementLinesInBatch(
+      List<StructuredContentLine> structuredContent, List<Exception> lineExceptionList) {
+
+    Session session = JPA.em().unwrap(Session.class);
+    Integer jdbcBatchSize = session.getJdbcBatchSize();
+    session.setJdbcBatchSize(BATCH_SIZE);
+    try {
+      findBankStatement();
+
+      for (StructuredContentLine structuredContentLine : structuredContent) {
+        try {
+          createBankStatementLine(structuredContentLine, sequence++);
+        } catch (Exception e) {
+          lineExceptionList.add(new Exception(String.format("Line %s : %s", sequence, e), e));
+          findBankStatement();
+        }
       }
+
+      JPA.flush();
+    } finally {
+      session.setJdbcBatchSize(jdbcBatchSize);
     }
+  }
+
+  protected void traceLineException(Exception e) {
+    TraceBackService.trace(e, ExceptionOriginRepository.IMPORT);
+  }
 
+  @Override
+  protected List<StructuredContentLine> readFile() throws IOException, AxelorException {
+    List<StructuredContentLine> structuredContent = new ArrayList<>();
+    readFile(structuredContent, null);
     return structuredContent;
   }
+
+  /**
+   * Read the file record by record into the given lines. When a part consumer is given, it is
+   * called with the complete lines each time more than {@link #BATCH_SIZE} lines are read, these
+   * lines being then removed from the list.
+   */
+  protected void readFile(
+      List<StructuredContentLine> structuredContent,
+      Consumer<List<StructuredContentLine>> partConsumer)
+      throws IOException, AxelorException {
+
+    bankStatementLineMapperAFB120Service.clearCache();
+
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath())) {
+      char[] record = new char[RECORD_LENGTH];
+      String lineData;
+
+      while ((lineData = readRecord(reader, record)) != null) {
+        log.debug("Read record : {}", lineData);
+        bankStatementLineMapperAFB120Service.writeStructuredContent(lineData, structuredContent);
+
+        // The last line is kept until the next record as it may be completed by a 05 record
+        if (partConsumer != null && structuredContent.size() > BATCH_SIZE) {
+          List<StructuredContentLine> completeContent =
+              structuredContent.subList(0, structuredContent.size() - 1);
+          partConsumer.accept(completeContent);
+          completeContent.clear();
+        }
+      }
+    }
+  }
+
+  /**
+   * Read the next record of the file, a record being made of 120 characters or ending with the
+   * line.
+   *
+   * @return the record, or null at the end of the file
+   */
+  protected String readRecord(BufferedReader reader, char[] record) throws IOException {
+    int length = 0;
+    int c;
+
+    while (length < record.length && (c = reader.read()) != -1) {
+      if (c == '\n' || c == '\r') {
+        if (length > 0) {
+          break;
+        }
+        continue;
+      }
+      record[length++] = (char) c;
+    }
+
+    return length > 0 ? new String(record, 0, length) : null;
+  }
 }
@@ -20,13 +20,11 @@ package com.axelor.apps.bankpayment.service.bankstatementline.afb120;
 
 import com.axelor.apps.account.db.InterbankCodeLine;
 import com.axelor.apps.bankpayment.db.BankStatement;
-import com.axelor.apps.bankpayment.db.BankStatementLine;
 import com.axelor.apps.bankpayment.db.BankStatementLineAFB120;
 import com.axelor.apps.bankpayment.db.repo.BankStatementLineAFB120Repository;
 import com.axelor.apps.bankpayment.service.bankstatementline.BankStatementLineCreationService;
 import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.Currency;
-import com.axelor.db.mapper.Mapper;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
@@ -62,8 +60,9 @@ public class BankStatementLineCreationAFB120ServiceImpl
       String unavailabilityIndexSelect,
       String commissionExemptionIndexSelect) {
 
-    BankStatementLine bankStatementLine =
-        bankStatementLineCreationService.createBankStatementLine(
+    BankStatementLineAFB120 bankStatementLineAFB120 =
+        bankStatementLineCreationService.fillBankStatementLine(
+            new BankStatementLineAFB120(),
             bankStatement,
             sequence,
             bankDetails,
@@ -78,9 +77,6 @@ public class BankStatementLineCreationAFB120ServiceImpl
             origin,
             reference);
 
-    BankStatementLineAFB120 bankStatementLineAFB120 =
-        Mapper.toBean(BankStatementLineAFB120.class, Mapper.toMap(bankStatementLine));
-
     bankStatementLineAFB120.setLineTypeSelect(lineType);
 
     if (lineType != BankStatementLineAFB120Repository.LINE_TYPE_MOVEMENT) {
@@ -22,6 +22,13 @@ import com.axelor.apps.base.AxelorException;
 import java.util.List;
 
 public interface BankStatementLineMapperAFB120Service {
+
+  /**
+   * Clear the currencies, bank details and interbank code lines found while reading the previous
+   * file, so that they are looked up once per imported file.
+   */
+  void clearCache();
+
   void writeStructuredContent(String lineData, List<StructuredContentLine> structuredContent)
       throws AxelorException;
 }
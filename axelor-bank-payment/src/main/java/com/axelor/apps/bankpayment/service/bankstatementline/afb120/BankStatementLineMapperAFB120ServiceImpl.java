@@ -33,7 +33,10 @@ import com.google.inject.Inject;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class BankStatementLineMapperAFB120ServiceImpl
     implements BankStatementLineMapperAFB120Service {
@@ -43,6 +46,10 @@ public class BankStatementLineMapperAFB120ServiceImpl
   protected InterbankCodeLineRepository interbankCodeLineRepository;
   protected BankDetailsRepository bankDetailsRepository;
 
+  protected Map<String, Currency> currencyMap = new HashMap<>();
+  protected Map<List<String>, BankDetails> bankDetailsMap = new HashMap<>();
+  protected Map<String, InterbankCodeLine> interbankCodeLineMap = new HashMap<>();
+
   protected static final String PREVIOUS_BALANCE_OPERATION_CODE = "01";
   protected static final String MOVEMENT_OPERATION_CODE = "04";
   protected static final String COMPLEMENT_MOVEMENT_OPERATION_CODE = "05";
@@ -61,6 +68,13 @@ public class BankStatementLineMapperAFB120ServiceImpl
     this.bankDetailsRepository = bankDetailsRepository;
   }
 
+  @Override
+  public void clearCache() {
+    currencyMap.clear();
+    bankDetailsMap.clear();
+    interbankCodeLineMap.clear();
+  }
+
   @Override
   public void writeStructuredContent(String lineData, List<StructuredContentLine> structuredContent)
       throws AxelorException {
@@ -627,11 +641,23 @@ public class BankStatementLineMapperAFB120ServiceImpl
 
   protected Currency getCurrency(String isoCode) {
 
-    return currencyRepository.findByCode(isoCode);
+    if (!currencyMap.containsKey(isoCode)) {
+      currencyMap.put(isoCode, currencyRepository.findByCode(isoCode));
+    }
+    return currencyMap.get(isoCode);
   }
 
   protected BankDetails getBankDetails(String accountNumber, String bankCode, String sortCode) {
 
+    List<String> key = Arrays.asList(accountNumber, bankCode, sortCode);
+    if (!bankDetailsMap.containsKey(key)) {
+      bankDetailsMap.put(key, findBankDetails(accountNumber, bankCode, sortCode));
+    }
+    return bankDetailsMap.get(key);
+  }
+
+  protected BankDetails findBankDetails(String accountNumber, String bankCode, String sortCode) {
+
     return bankDetailsRepository
         .all()
         .filter(
@@ -762,6 +788,13 @@ public class BankStatementLineMapperAFB120ServiceImpl
   }
 
   protected InterbankCodeLine getInterbankCodeLine(String code) {
+    if (!interbankCodeLineMap.containsKey(code)) {
+      interbankCodeLineMap.put(code, findInterbankCodeLine(code));
+    }
+    return interbankCodeLineMap.get(code);
+  }
+
+  protected InterbankCodeLine findInterbankCodeLine(String code) {
     return interbankCodeLineRepository
         .all()
         .filter("self.code = :code AND self.interbankCode.typeSelect = :type")
@@ -42,11 +42,9 @@ import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -111,31 +109,29 @@ public class BatchBillOfExchange extends AbstractBatch {
       return;
     }
 
-    List<Long> anomalyList = Lists.newArrayList(0L); // Can't pass an empty collection to the query
-    Query<Invoice> query = buildOrderedQueryFetchInvoices(accountingBatch, anomalyList);
+    BatchChunkIterator<Invoice> iterator = buildInvoiceIterator(accountingBatch);
     // Creation des ecriture comptable lcr + modification des factures
-    createLCRAccountingMovesForInvoices(query, anomalyList, accountingBatch);
+    createLCRAccountingMovesForInvoices(iterator, accountingBatch);
   }
 
   protected void createLCRAccountingMovesForInvoices(
-      Query<Invoice> query, List<Long> anomalyList, AccountingBatch accountingBatch) {
+      BatchChunkIterator<Invoice> iterator, AccountingBatch accountingBatch) {
     List<Invoice> invoicesList = null;
-    while (!(invoicesList = query.bind("anomalyList", anomalyList).fetch(FETCH_LIMIT)).isEmpty()) {
-      findBatch();
+    while (!(invoicesList = iterator.nextChunk()).isEmpty()) {
       accountingBatch = accountingBatchRepository.find(accountingBatch.getId());
       for (Invoice invoice : invoicesList) {
         try {
           createMoveAndUpdateInvoice(accountingBatch, invoice);
           incrementDone();
         } catch (Exception e) {
-          anomalyList.add(invoice.getId());
+          iterator.startAfter(invoice.getId());
           incrementAnomaly();
           TraceBackService.trace(
               e, "billOfExchangeBatch: create lcr accounting move", batch.getId());
           break;
         }
       }
-      JPA.clear();
+      iterator.endChunk();
     }
   }
 
@@ -252,8 +248,7 @@ public class BatchBillOfExchange extends AbstractBatch {
     return move;
   }
 
-  protected Query<Invoice> buildOrderedQueryFetchInvoices(
-      AccountingBatch accountingBatch, List<Long> anomalyList) {
+  protected BatchChunkIterator<Invoice> buildInvoiceIterator(AccountingBatch accountingBatch) {
     StringBuilder filter = new StringBuilder();
     boolean manageMultiBanks = appAccountService.getAppBase().getManageMultiBanks();
     filter.append(
@@ -262,7 +257,6 @@ public class BatchBillOfExchange extends AbstractBatch {
             + "AND self.amountRemaining > 0 "
             + "AND self.company = :company "
             + "AND self.hasPendingPayments = FALSE "
-            + "AND self.id NOT IN (:anomalyList) "
             + "AND self.paymentMode = :paymentMode "
             + "AND self.lcrAccounted = FALSE "
             + "AND (self.billOfExchangeBlockingOk = FALSE OR (self.billOfExchangeBlockingOk = TRUE AND self.billOfExchangeBlockingToDate < :dueDate))");
@@ -272,7 +266,6 @@ public class BatchBillOfExchange extends AbstractBatch {
     bindings.put("statusSelect", InvoiceRepository.STATUS_VENTILATED);
     bindings.put("company", accountingBatch.getCompany());
     bindings.put("paymentMode", accountingBatch.getPaymentMode());
-    bindings.put("anomalyList", anomalyList);
     bindings.put("dueDate", accountingBatch.getDueDate());
 
     if (accountingBatch.getDueDate() != null) {
@@ -292,9 +285,7 @@ public class BatchBillOfExchange extends AbstractBatch {
       bindings.put("bankDetailsSet", bankDetailsSet);
     }
 
-    Query<Invoice> query =
-        invoiceRepository.all().filter(filter.toString()).bind(bindings).order("id");
-    return query;
+    return chunkIterator(Invoice.class, filter.toString()).bind(bindings);
   }
 
   @Override
@@ -39,16 +39,15 @@ import com.axelor.apps.base.db.repo.SequenceRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.common.StringUtils;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.message.db.Message;
 import com.axelor.message.service.MessageService;
 import com.axelor.message.service.TemplateMessageService;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -123,14 +122,11 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
     Map<Partner, List<Invoice>> mapPartnerInvoices = new HashMap<>();
     List<Invoice> invoicesList = null;
 
-    List<Long> anomalyList = Lists.newArrayList(0L); // Can't pass an empty collection to the query
-    Query<Invoice> query = buildOrderedQueryFetchLcrAccountedInvoices(accountingBatch, anomalyList);
+    BatchChunkIterator<Invoice> iterator = buildLcrAccountedInvoiceIterator(accountingBatch);
 
-    int offSet = 0;
-    while (!(invoicesList = query.fetch(FETCH_LIMIT, offSet)).isEmpty()) {
+    while (!(invoicesList = iterator.nextChunk()).isEmpty()) {
       sortInvoicesPerPartner(invoicesList, mapPartnerInvoices);
-      offSet += FETCH_LIMIT;
-      JPA.clear();
+      iterator.endChunk();
     }
 
     try {
@@ -161,7 +157,7 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
       }
       addBatchSet(batch, invoice);
       counter++;
-      if (counter % FETCH_LIMIT == 0) {
+      if (counter % getFetchLimit() == 0) {
         JPA.clear();
       }
     }
@@ -255,8 +251,8 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
         });
   }
 
-  protected Query<Invoice> buildOrderedQueryFetchLcrAccountedInvoices(
-      AccountingBatch accountingBatch, List<Long> anomalyList) {
+  protected BatchChunkIterator<Invoice> buildLcrAccountedInvoiceIterator(
+      AccountingBatch accountingBatch) {
     StringBuilder filter = new StringBuilder();
     boolean manageMultiBanks = appAccountService.getAppBase().getManageMultiBanks();
     filter.append(
@@ -265,7 +261,6 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
             + "AND self.amountRemaining > 0 "
             + "AND self.company = :company "
             + "AND self.hasPendingPayments = FALSE "
-            + "AND self.id NOT IN (:anomalyList) "
             + "AND self.paymentMode = :paymentMode "
             + "AND self.lcrAccounted = TRUE "
             + "AND (self.billOfExchangeBlockingOk = FALSE OR (self.billOfExchangeBlockingOk = TRUE AND self.billOfExchangeBlockingToDate < :dueDate))");
@@ -275,7 +270,6 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
     bindings.put("statusSelect", InvoiceRepository.STATUS_VENTILATED);
     bindings.put("company", accountingBatch.getCompany());
     bindings.put("paymentMode", accountingBatch.getPaymentMode());
-    bindings.put("anomalyList", anomalyList);
     bindings.put("dueDate", accountingBatch.getDueDate());
 
     if (accountingBatch.getDueDate() != null) {
@@ -295,9 +289,7 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
       bindings.put("bankDetailsSet", bankDetailsSet);
     }
 
-    Query<Invoice> query =
-        invoiceRepository.all().filter(filter.toString()).bind(bindings).order("id");
-    return query;
+    return chunkIterator(Invoice.class, filter.toString()).bind(bindings);
   }
 
   @Override
@@ -30,10 +30,10 @@ import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.repo.BankDetailsRepository;
 import com.axelor.apps.base.db.repo.BlockingRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.inject.Beans;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
@@ -124,10 +124,6 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
 
     List<InvoicePayment> doneList = new ArrayList<>();
 
-    List<Long> anomalyList = Lists.newArrayList(0L);
-    filterList.add("self.id NOT IN (:anomalyList)");
-    bindingList.add(Pair.of("anomalyList", (Object) anomalyList));
-
     String filter =
         Joiner.on(" AND ")
             .join(
@@ -140,10 +136,10 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
                       }
                     }));
 
-    Query<Invoice> query = Beans.get(InvoiceRepository.class).all().filter(filter);
+    BatchChunkIterator<Invoice> iterator = chunkIterator(Invoice.class, filter);
 
     for (Pair<String, Object> binding : bindingList) {
-      query.bind(binding.getLeft(), binding.getRight());
+      iterator.bind(binding.getLeft(), binding.getRight());
     }
 
     Set<Long> treatedSet = new HashSet<>();
@@ -153,7 +149,7 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
     BankDetailsRepository bankDetailsRepo = Beans.get(BankDetailsRepository.class);
     BankDetails companyBankDetails = getCompanyBankDetails(batch.getAccountingBatch());
 
-    while (!(invoiceList = query.fetch(FETCH_LIMIT)).isEmpty()) {
+    while (!(invoiceList = iterator.nextChunk()).isEmpty()) {
       if (!JPA.em().contains(companyBankDetails)) {
         companyBankDetails = bankDetailsRepo.find(companyBankDetails.getId());
       }
@@ -171,15 +167,14 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
           incrementDone();
         } catch (Exception e) {
           incrementAnomaly();
-          anomalyList.add(invoice.getId());
-          query.bind("anomalyList", anomalyList);
+          iterator.startAfter(invoice.getId());
           TraceBackService.trace(e, ExceptionOriginRepository.DIRECT_DEBIT, batch.getId());
           LOG.error(e.getMessage());
           break;
         }
       }
 
-      JPA.clear();
+      iterator.endChunk();
     }
 
     return doneList;
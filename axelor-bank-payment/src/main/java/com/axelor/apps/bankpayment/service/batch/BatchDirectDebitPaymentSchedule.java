@@ -40,7 +40,6 @@ import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.utils.helpers.QueryBuilder;
@@ -174,7 +173,9 @@ public class BatchDirectDebitPaymentSchedule extends BatchDirectDebit {
   }
 
   protected void processQuery(QueryBuilder<PaymentScheduleLine> queryBuilder) {
-    Query<PaymentScheduleLine> query = queryBuilder.build();
+    // keyset pagination on the id, see BatchChunkIterator
+    queryBuilder.add("self.id > :lastId");
+    long lastId = 0;
 
     List<PaymentScheduleLine> paymentScheduleLineList;
     PaymentScheduleService paymentScheduleService = Beans.get(PaymentScheduleService.class);
@@ -184,7 +185,14 @@ public class BatchDirectDebitPaymentSchedule extends BatchDirectDebit {
 
     BankDetails companyBankDetails = getCompanyBankDetails(batch.getAccountingBatch());
 
-    while (!(paymentScheduleLineList = query.fetch(FETCH_LIMIT)).isEmpty()) {
+    while (true) {
+      queryBuilder.bind("lastId", lastId);
+      paymentScheduleLineList = queryBuilder.build().order("id").fetch(getFetchLimit());
+      if (paymentScheduleLineList.isEmpty()) {
+        break;
+      }
+      lastId = paymentScheduleLineList.get(paymentScheduleLineList.size() - 1).getId();
+
       findBatch();
       companyBankDetails = bankDetailsRepo.find(companyBankDetails.getId());
       PaymentMode directDebitPaymentMode = batch.getAccountingBatch().getPaymentMode();
@@ -217,6 +225,7 @@ public class BatchDirectDebitPaymentSchedule extends BatchDirectDebit {
         } catch (Exception e) {
           TraceBackService.trace(e, ExceptionOriginRepository.DIRECT_DEBIT, batch.getId());
           incrementAnomaly(paymentScheduleLine);
+          lastId = paymentScheduleLine.getId();
           break;
         }
       }
@@ -0,0 +1,226 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.bankpayment.db.BankStatementLine;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestBankStatementQueryFilter {
+
+  protected static final String EQUAL_AMOUNT = "moveLine?.currencyAmount.abs() == currencyAmount";
+
+  protected static final String EQUAL_DATES =
+      "(moveLine?.date?.equals(operationDate) || moveLine?.date?.equals(valueDate) "
+          + "|| moveLine?.dueDate?.equals(operationDate) || moveLine?.dueDate?.equals(valueDate))";
+
+  protected static final String DATES_WITHIN_RANGES =
+      "((moveLine?.dueDate <= valueDate?.plusDays(%date) "
+          + "&& moveLine?.dueDate >=valueDate?.minusDays(%date)) "
+          + "|| (moveLine?.date <= operationDate?.plusDays(%date) "
+          + "&& moveLine?.date >=operationDate?.minusDays(%date)))";
+
+  protected static final String AMOUNT_WITHIN_RANGE =
+      "moveLine?.currencyAmount.abs()>= currencyAmount * %amt- "
+          + "&& moveLine?.currencyAmount.abs()<= currencyAmount * %amt+";
+
+  @Test
+  void testSplitIgnoresNestedOperators() {
+    Assertions.assertEquals(
+        List.of("a ", " (b && c) ", " 'd && e' ", " \"f && g\""),
+        BankStatementQueryFilter.split("a && (b && c) && 'd && e' && \"f && g\"", "&&"));
+    Assertions.assertEquals(
+        List.of("a == ')' ", " b"), BankStatementQueryFilter.split("a == ')' && b", "&&"));
+    Assertions.assertEquals(List.of("a || b"), BankStatementQueryFilter.split("a || b", "&&"));
+  }
+
+  @Test
+  void testUnwrap() {
+    Assertions.assertEquals("a && b", BankStatementQueryFilter.unwrap("(( a && b ))"));
+    Assertions.assertEquals("(a) && (b)", BankStatementQueryFilter.unwrap("(a) && (b)"));
+    Assertions.assertEquals("(a || b) && c", BankStatementQueryFilter.unwrap("((a || b) && c)"));
+    Assertions.assertEquals("a == ')'", BankStatementQueryFilter.unwrap("(a == ')')"));
+  }
+
+  @Test
+  void testEqualAmount() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter("moveLine?.origin.equals(origin) && " + EQUAL_AMOUNT);
+
+    Assertions.assertTrue(queryFilter.isAmountFiltered());
+    Assertions.assertTrue(queryFilter.isAmountEqual());
+    Assertions.assertNull(queryFilter.getAmountLowBound(new BigDecimal("100")));
+    Assertions.assertNull(queryFilter.getAmountHighBound(new BigDecimal("100")));
+  }
+
+  @Test
+  void testAmountBounds() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(computeQuery(AMOUNT_WITHIN_RANGE + " && " + EQUAL_DATES));
+
+    Assertions.assertTrue(queryFilter.isAmountFiltered());
+    Assertions.assertFalse(queryFilter.isAmountEqual());
+    Assertions.assertEquals(
+        0, new BigDecimal("95").compareTo(queryFilter.getAmountLowBound(new BigDecimal("100"))));
+    Assertions.assertEquals(
+        0, new BigDecimal("100").compareTo(queryFilter.getAmountHighBound(new BigDecimal("100"))));
+  }
+
+  @Test
+  void testTopLevelOrIsNotFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(
+            EQUAL_AMOUNT + " && " + EQUAL_DATES + " || moveLine?.origin.equals(origin)");
+
+    Assertions.assertFalse(queryFilter.isAmountFiltered());
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(null, null), createBankStatementLine(LocalDate.of(2024, 1, 10))));
+  }
+
+  @Test
+  void testTopLevelTernaryIsNotFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(
+            "moveLine?.origin ? " + EQUAL_AMOUNT + " && " + EQUAL_DATES + " : true");
+
+    Assertions.assertFalse(queryFilter.isAmountFiltered());
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(null, null), createBankStatementLine(LocalDate.of(2024, 1, 10))));
+  }
+
+  @Test
+  void testTopLevelElvisIsNotFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(
+            "moveLine?.origin?.equals(origin) ?: true && " + EQUAL_AMOUNT + " && " + EQUAL_DATES);
+
+    Assertions.assertFalse(queryFilter.isAmountFiltered());
+  }
+
+  @Test
+  void testSeveralStatementsAreNotFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(EQUAL_AMOUNT + " && " + EQUAL_DATES + "; true");
+
+    Assertions.assertFalse(queryFilter.isAmountFiltered());
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(null, null), createBankStatementLine(LocalDate.of(2024, 1, 10))));
+  }
+
+  @Test
+  void testQuestionMarksInStringsOrParenthesesAreFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(
+            "(moveLine?.origin ? true : false) && moveLine?.description != '?;' && "
+                + EQUAL_AMOUNT);
+
+    Assertions.assertTrue(queryFilter.isAmountEqual());
+  }
+
+  @Test
+  void testAmountInDisjunctionIsNotFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter("(" + EQUAL_AMOUNT + " || moveLine?.origin.equals(origin))");
+
+    Assertions.assertFalse(queryFilter.isAmountFiltered());
+  }
+
+  @Test
+  void testEqualDates() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(EQUAL_AMOUNT + " && " + EQUAL_DATES);
+    BankStatementLine bankStatementLine = createBankStatementLine(LocalDate.of(2024, 1, 10));
+    bankStatementLine.setValueDate(LocalDate.of(2024, 1, 12));
+
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2024, 1, 10), null), bankStatementLine));
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 12)),
+            bankStatementLine));
+    Assertions.assertFalse(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2024, 1, 11), LocalDate.of(2024, 1, 11)),
+            bankStatementLine));
+    Assertions.assertFalse(
+        queryFilter.isInDateWindows(createMoveLine(null, null), bankStatementLine));
+  }
+
+  @Test
+  void testDatesWithinRanges() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(computeQuery(EQUAL_AMOUNT + " && " + DATES_WITHIN_RANGES));
+    BankStatementLine bankStatementLine = createBankStatementLine(LocalDate.of(2024, 1, 10));
+    bankStatementLine.setValueDate(LocalDate.of(2024, 2, 10));
+
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2024, 1, 7), null), bankStatementLine));
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2024, 1, 13), null), bankStatementLine));
+    Assertions.assertFalse(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2024, 1, 14), null), bankStatementLine));
+    // The due date is only compared to the value date
+    Assertions.assertFalse(
+        queryFilter.isInDateWindows(
+            createMoveLine(null, LocalDate.of(2024, 1, 10)), bankStatementLine));
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(null, LocalDate.of(2024, 2, 7)), bankStatementLine));
+  }
+
+  @Test
+  void testUnknownDateConditionIsNotFiltered() {
+    BankStatementQueryFilter queryFilter =
+        new BankStatementQueryFilter(
+            EQUAL_AMOUNT + " && (moveLine?.date <= operationDate?.plusDays(3))");
+
+    Assertions.assertTrue(
+        queryFilter.isInDateWindows(
+            createMoveLine(LocalDate.of(2023, 1, 1), null),
+            createBankStatementLine(LocalDate.of(2024, 1, 10))));
+  }
+
+  protected String computeQuery(String query) {
+    return query.replace("%amt+", "1").replace("%amt-", "0.95").replace("%date", "3");
+  }
+
+  protected MoveLine createMoveLine(LocalDate date, LocalDate dueDate) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setDate(date);
+    moveLine.setDueDate(dueDate);
+    return moveLine;
+  }
+
+  protected BankStatementLine createBankStatementLine(LocalDate operationDate) {
+    BankStatementLine bankStatementLine = new BankStatementLine();
+    bankStatementLine.setOperationDate(operationDate);
+    return bankStatementLine;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.base.db.Currency;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestMoveLineAmountIndex {
+
+  protected static final String EQUAL_AMOUNT = "moveLine?.currencyAmount.abs() == currencyAmount";
+  protected static final String AMOUNT_WITHIN_RANGE =
+      "moveLine?.currencyAmount.abs()>= currencyAmount * 0.95 "
+          + "&& moveLine?.currencyAmount.abs()<= currencyAmount * 1";
+
+  private Currency euro;
+  private Currency dollar;
+  private MoveLineAmountIndex moveLineAmountIndex;
+
+  @BeforeEach
+  void prepare() {
+    euro = createCurrency(1L);
+    dollar = createCurrency(2L);
+
+    moveLineAmountIndex =
+        new MoveLineAmountIndex(
+            List.of(
+                createMoveLine(1L, euro, "100.00"),
+                createMoveLine(2L, euro, "-100"),
+                createMoveLine(3L, euro, "96.50"),
+                createMoveLine(4L, euro, "94.99"),
+                createMoveLine(5L, dollar, "110.00"),
+                createMoveLine(6L, dollar, "100.00"),
+                createMoveLine(7L, null, "100.00")));
+  }
+
+  @Test
+  void testCurrencySet() {
+    Assertions.assertEquals(
+        List.of(1L, 2L),
+        moveLineAmountIndex.getCurrencySet().stream()
+            .map(Currency::getId)
+            .sorted()
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  void testNoAmountConditionReturnsAllLines() {
+    Assertions.assertEquals(
+        List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L),
+        getCandidateIdList("moveLine?.origin.equals(origin)", Map.of(1L, BigDecimal.TEN)));
+  }
+
+  @Test
+  void testEqualAmountIgnoresSignAndScale() {
+    Assertions.assertEquals(
+        List.of(1L, 2L), getCandidateIdList(EQUAL_AMOUNT, Map.of(1L, new BigDecimal("100"))));
+  }
+
+  @Test
+  void testEqualAmountInEachCurrency() {
+    Assertions.assertEquals(
+        List.of(1L, 2L, 5L),
+        getCandidateIdList(
+            EQUAL_AMOUNT, Map.of(1L, new BigDecimal("100"), 2L, new BigDecimal("110"))));
+  }
+
+  @Test
+  void testAmountBounds() {
+    Assertions.assertEquals(
+        List.of(1L, 2L, 3L),
+        getCandidateIdList(AMOUNT_WITHIN_RANGE, Map.of(1L, new BigDecimal("100.00"))));
+  }
+
+  @Test
+  void testEqualAmountOutOfBounds() {
+    Assertions.assertEquals(
+        List.of(),
+        getCandidateIdList(
+            "moveLine?.currencyAmount.abs()<= currencyAmount * 0.99 && " + EQUAL_AMOUNT,
+            Map.of(1L, new BigDecimal("100"))));
+  }
+
+  protected List<Long> getCandidateIdList(String query, Map<Long, BigDecimal> currencyAmountMap) {
+    return moveLineAmountIndex
+        .getCandidateList(new BankStatementQueryFilter(query), new HashMap<>(currencyAmountMap))
+        .stream()
+        .map(MoveLine::getId)
+        .collect(Collectors.toList());
+  }
+
+  protected Currency createCurrency(Long id) {
+    Currency currency = new Currency();
+    currency.setId(id);
+    return currency;
+  }
+
+  protected MoveLine createMoveLine(Long id, Currency currency, String currencyAmount) {
+    Move move = new Move();
+    move.setCurrency(currency);
+
+    MoveLine moveLine = new MoveLine();
+    moveLine.setId(id);
+    moveLine.setMove(move);
+    moveLine.setCurrencyAmount(new BigDecimal(currencyAmount));
+    return moveLine;
+  }
+}
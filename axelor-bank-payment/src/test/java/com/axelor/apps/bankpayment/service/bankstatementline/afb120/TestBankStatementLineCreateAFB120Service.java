@@ -0,0 +1,157 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankstatementline.afb120;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestBankStatementLineCreateAFB120Service {
+
+  /** Adds a line for each 04 record, completed by the 05 records following it. */
+  protected static class TestMapperService implements BankStatementLineMapperAFB120Service {
+    @Override
+    public void clearCache() {}
+
+    @Override
+    public void writeStructuredContent(
+        String lineData, List<StructuredContentLine> structuredContent) {
+      if (lineData.startsWith("05")) {
+        StructuredContentLine lastLine = structuredContent.get(structuredContent.size() - 1);
+        lastLine.setAdditionalInformation(lineData.substring(2));
+      } else if (lineData.startsWith("04")) {
+        StructuredContentLine structuredContentLine = new StructuredContentLine();
+        structuredContentLine.setDescription(lineData.substring(2));
+        structuredContent.add(structuredContentLine);
+      }
+    }
+  }
+
+  protected static class TestAFB120Service extends BankStatementLineCreateAFB120Service {
+    protected TestAFB120Service(File file) {
+      super(null, null, null, null, null, null, null, new TestMapperService());
+      this.file = file;
+    }
+  }
+
+  protected List<String> readRecords(String content) throws IOException {
+    TestAFB120Service service = new TestAFB120Service(null);
+    List<String> recordList = new ArrayList<>();
+    char[] record = new char[BankStatementLineCreateAFB120Service.RECORD_LENGTH];
+    try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+      String lineData;
+      while ((lineData = service.readRecord(reader, record)) != null) {
+        recordList.add(lineData);
+      }
+    }
+    return recordList;
+  }
+
+  protected String createRecord(String code, int number) {
+    return String.format("%s%-118s", code, number);
+  }
+
+  protected List<String> createMovementRecords(int count) {
+    List<String> recordList = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      recordList.add(createRecord("04", i));
+    }
+    return recordList;
+  }
+
+  /**
+   * Read the given file content in parts.
+   *
+   * @return the parts, followed by the lines left at the end of the file
+   */
+  protected List<List<StructuredContentLine>> readFile(String content) throws Exception {
+    File file = File.createTempFile("afb120", ".txt");
+    try {
+      Files.writeString(file.toPath(), content);
+
+      List<List<StructuredContentLine>> partList = new ArrayList<>();
+      List<StructuredContentLine> structuredContent = new ArrayList<>();
+      new TestAFB120Service(file)
+          .readFile(structuredContent, part -> partList.add(new ArrayList<>(part)));
+      partList.add(structuredContent);
+      return partList;
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  protected List<Integer> getSizes(List<List<StructuredContentLine>> partList) {
+    return partList.stream().map(List::size).collect(Collectors.toList());
+  }
+
+  @Test
+  void testRecordWithoutTrailingNewline() throws IOException {
+    Assertions.assertEquals(List.of("04A", "05B"), readRecords("04A\n05B"));
+  }
+
+  @Test
+  void testRecordsEndingWithCrLf() throws IOException {
+    Assertions.assertEquals(List.of("04A", "05B"), readRecords("04A\r\n05B\r\n\r\n"));
+  }
+
+  @Test
+  void testRecordsWithoutNewline() throws IOException {
+    String firstRecord = createRecord("04", 1);
+    String secondRecord = createRecord("05", 2);
+
+    Assertions.assertEquals(
+        List.of(firstRecord, secondRecord), readRecords(firstRecord + secondRecord));
+  }
+
+  @Test
+  void testFileOfOneLineMoreThanAPart() throws Exception {
+    int lineCount = BankStatementLineCreateAFB120Service.BATCH_SIZE + 1;
+    List<List<StructuredContentLine>> partList =
+        readFile(String.join("\r\n", createMovementRecords(lineCount)));
+
+    Assertions.assertEquals(
+        List.of(BankStatementLineCreateAFB120Service.BATCH_SIZE, 1), getSizes(partList));
+    Assertions.assertEquals(
+        String.valueOf(lineCount), partList.get(1).get(0).getDescription().trim());
+  }
+
+  @Test
+  void testComplementRecordAfterAPartIsRead() throws Exception {
+    int lineCount = BankStatementLineCreateAFB120Service.BATCH_SIZE + 1;
+    List<String> recordList = createMovementRecords(lineCount);
+    recordList.add(createRecord("05", 0));
+
+    List<List<StructuredContentLine>> partList = readFile(String.join("\n", recordList));
+
+    // The last line of the part is kept back, so the 05 record still completes it
+    Assertions.assertEquals(
+        List.of(BankStatementLineCreateAFB120Service.BATCH_SIZE, 1), getSizes(partList));
+    StructuredContentLine lastLine = partList.get(1).get(0);
+    Assertions.assertEquals(String.valueOf(lineCount), lastLine.getDescription().trim());
+    Assertions.assertEquals("0", lastLine.getAdditionalInformation().trim());
+    Assertions.assertNull(partList.get(0).get(0).getAdditionalInformation());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.callable;
+
+import com.axelor.app.AppSettings;
+import com.axelor.auth.AuthUtils;
+import com.axelor.inject.Beans;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import org.apache.shiro.subject.Subject;
+
+/**
+ * Pool of worker threads running tasks on behalf of the thread which created it.
+ *
+ * <p>Each task runs in its own request scope, with the user of the creating thread, so that
+ * request scoped services, {@link AuthUtils#getUser()} and the audit fields of the records work as
+ * in the creating thread. Once the task is done, the unit of work of the worker thread is ended,
+ * which closes its entity manager: a task must not share entities with other tasks, only ids.
+ */
+public class WorkerExecutor implements Executor, AutoCloseable {
+
+  /** Application setting giving the default size of the worker pools. */
+  public static final String THREAD_COUNT_SETTING = "aos.worker.thread-count";
+
+  protected final ExecutorService executor;
+  protected final Subject subject;
+
+  /** @param threadCount the size of the pool, at least one thread is used. */
+  public WorkerExecutor(int threadCount) {
+    this.executor = Executors.newFixedThreadPool(Math.max(1, threadCount));
+    this.subject = AuthUtils.getSubject();
+  }
+
+  /**
+   * @return the size of the worker pools set in the application settings, the number of available
+   *     processors by default.
+   */
+  public static int getDefaultThreadCount() {
+    return Math.max(
+        1,
+        AppSettings.get()
+            .getInt(THREAD_COUNT_SETTING, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Wrap a task so that it runs in its own request scope, with the user of the current thread, and
+   * ends the unit of work of the thread running it once done.
+   *
+   * @param task the task
+   * @return the wrapped task
+   */
+  public static Runnable inWorkerScope(Runnable task) {
+    return inWorkerScope(task, AuthUtils.getSubject());
+  }
+
+  protected static Runnable inWorkerScope(Runnable task, Subject subject) {
+    Runnable scopedTask =
+        () -> {
+          RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+          try (RequestScoper.CloseableScope ignored = scope.open()) {
+            task.run();
+          } finally {
+            Beans.get(UnitOfWork.class).end();
+          }
+        };
+    return subject != null ? subject.associateWith(scopedTask) : scopedTask;
+  }
+
+  /**
+   * Run a task on the pool, in the worker scope. Use an {@link
+   * java.util.concurrent.ExecutorCompletionService} on this executor to get the results of the
+   * tasks as they complete.
+   */
+  @Override
+  public void execute(Runnable task) {
+    executor.execute(inWorkerScope(task, subject));
+  }
+
+  public <T> Future<T> submit(Callable<T> callable) {
+    FutureTask<T> future = new FutureTask<>(callable);
+    this.execute(future);
+    return future;
+  }
+
+  /** Interrupt the running tasks and stop the threads of the pool. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
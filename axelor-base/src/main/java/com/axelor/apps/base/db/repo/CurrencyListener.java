@@ -0,0 +1,52 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.service.CurrencyConversionRateCache;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import javax.persistence.PostUpdate;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+
+public class CurrencyListener {
+
+  /** The conversion rates are indexed by currency ISO code, which may have been changed. */
+  @PostUpdate
+  protected void invalidateRates(Currency currency) {
+    CurrencyConversionRateCache currencyConversionRateCache =
+        Beans.get(CurrencyConversionRateCache.class);
+    currencyConversionRateCache.invalidate();
+
+    JPA.em()
+        .unwrap(Session.class)
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                currencyConversionRateCache.invalidate();
+              }
+            });
+  }
+}
@@ -19,9 +19,25 @@
 package com.axelor.apps.base.db.repo;
 
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.i18n.I18n;
+import javax.persistence.PersistenceException;
 
 public class SequenceBaseRepository extends SequenceRepository {
 
+  @Override
+  public Sequence save(Sequence sequence) {
+    if (sequence.getReservedBlockSize() > 0 && SequenceService.isGapless(sequence)) {
+      throw new PersistenceException(
+          String.format(
+              I18n.get(BaseExceptionMessage.SEQUENCE_RESERVED_BLOCK_GAPLESS),
+              sequence.getFullName()));
+    }
+
+    return super.save(sequence);
+  }
+
   @Override
   public Sequence copy(Sequence sequence, boolean deep) {
 
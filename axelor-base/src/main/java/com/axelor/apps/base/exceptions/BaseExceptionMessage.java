@@ -211,6 +211,9 @@ public final class BaseExceptionMessage {
   public static final String SEQUENCE_LETTERS_TYPE_UNHANDLED = /*$$(*/
       "The sequence letter type '%s' is not handled." /*)*/;
 
+  public static final String SEQUENCE_RESERVED_BLOCK_GAPLESS = /*$$(*/
+      "The numbers of the sequence %s must not have gaps, they can not be reserved by blocks." /*)*/;
+
   /** Address controller */
   public static final String ADDRESS_1 = /*$$(*/ "OK" /*)*/;
 
@@ -32,6 +32,7 @@ import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
 import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
@@ -196,25 +197,21 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
   }
 
   protected void createAllABCAnalysisLine(ABCAnalysis abcAnalysis) throws AxelorException {
-    int offset = 0;
-
     List<Product> productList;
-    Query<Product> productQuery =
-        productRepository
-            .all()
-            .filter(
-                "self.id IN (" + StringHelper.getIdListString(getProductSet(abcAnalysis)) + ")");
+    BatchChunkIterator<Product> productIterator =
+        BatchChunkIterator.of(
+            Product.class,
+            "self.id IN (" + StringHelper.getIdListString(getProductSet(abcAnalysis)) + ")");
 
-    while (!(productList = productQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(productList = productIterator.nextChunk()).isEmpty()) {
       abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
-      offset += productList.size();
 
       for (Product product : productList) {
         product = productRepository.find(product.getId());
         createABCAnalysisLineForEachProduct(abcAnalysis, product);
       }
 
-      JPA.clear();
+      productIterator.endChunk();
     }
   }
 
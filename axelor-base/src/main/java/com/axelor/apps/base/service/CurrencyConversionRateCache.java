@@ -0,0 +1,179 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application wide index of the currency conversion lines of the base application, by pair of
+ * currency ISO codes and sorted by start date, so the line applicable at a date is found by binary
+ * search. It is invalidated by {@link
+ * com.axelor.apps.base.db.repo.CurrencyConversionLineListener} whenever a line is created,
+ * updated or removed.
+ */
+@Singleton
+public class CurrencyConversionRateCache {
+
+  protected AppBaseService appBaseService;
+
+  private volatile Map<String, List<Rate>> rateIndex;
+
+  /** Incremented on each invalidation, so that an index loaded before it is not published. */
+  private long generation;
+
+  @Inject
+  public CurrencyConversionRateCache(AppBaseService appBaseService) {
+    this.appBaseService = appBaseService;
+  }
+
+  /**
+   * Get the rate defined from the start currency to the end currency at the given date.
+   *
+   * @param startCurrency The start currency
+   * @param endCurrency The end currency
+   * @param date The date of the conversion
+   * @return The applicable rate, or null if there is no line covering the date.
+   */
+  public Rate getRate(Currency startCurrency, Currency endCurrency, LocalDate date) {
+    Map<String, List<Rate>> index = rateIndex;
+    if (index == null) {
+      long loadGeneration = getGeneration();
+      index = loadIndex();
+      publishIndex(index, loadGeneration);
+    }
+
+    String startCode = startCurrency.getCodeISO();
+    String endCode = endCurrency.getCodeISO();
+    if (startCode == null || endCode == null) {
+      return null;
+    }
+
+    List<Rate> rates = index.get(getKey(startCode, endCode));
+    if (rates == null) {
+      return null;
+    }
+
+    // Last rate starting on or before the date
+    int low = 0;
+    int high = rates.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (rates.get(middle).getFromDate().isAfter(date)) {
+        high = middle - 1;
+      } else {
+        low = middle + 1;
+      }
+    }
+
+    // Periods should not overlap, but older rates are still checked in case they do.
+    for (int i = high; i >= 0; i--) {
+      Rate rate = rates.get(i);
+      if (rate.getToDate() == null || !rate.getToDate().isBefore(date)) {
+        return rate;
+      }
+    }
+    return null;
+  }
+
+  /** Drop the indexed rates, they will be reloaded on next use. */
+  public synchronized void invalidate() {
+    generation++;
+    rateIndex = null;
+  }
+
+  protected synchronized long getGeneration() {
+    return generation;
+  }
+
+  protected synchronized void publishIndex(Map<String, List<Rate>> index, long loadGeneration) {
+    if (generation == loadGeneration) {
+      rateIndex = index;
+    }
+  }
+
+  protected Map<String, List<Rate>> loadIndex() {
+    Map<String, List<Rate>> index = new HashMap<>();
+    List<CurrencyConversionLine> currencyConversionLineList =
+        appBaseService.getCurrencyConfigurationLineList();
+
+    if (currencyConversionLineList == null) {
+      return index;
+    }
+
+    for (CurrencyConversionLine ccl : currencyConversionLineList) {
+      String startCode = ccl.getStartCurrency().getCodeISO();
+      String endCode = ccl.getEndCurrency().getCodeISO();
+      if (startCode == null || endCode == null) {
+        continue;
+      }
+      index
+          .computeIfAbsent(getKey(startCode, endCode), key -> new ArrayList<>())
+          .add(new Rate(ccl));
+    }
+    index.values().forEach(rates -> rates.sort(Comparator.comparing(Rate::getFromDate)));
+    return index;
+  }
+
+  protected String getKey(String startCurrencyCode, String endCurrencyCode) {
+    return startCurrencyCode + ">" + endCurrencyCode;
+  }
+
+  /** Detached copy of a currency conversion line, safe to be shared between threads. */
+  public static class Rate {
+
+    private final Long currencyConversionLineId;
+    private final BigDecimal exchangeRate;
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+
+    public Rate(CurrencyConversionLine currencyConversionLine) {
+      this.currencyConversionLineId = currencyConversionLine.getId();
+      this.exchangeRate = currencyConversionLine.getExchangeRate();
+      this.fromDate = currencyConversionLine.getFromDate();
+      this.toDate = currencyConversionLine.getToDate();
+    }
+
+    public Long getCurrencyConversionLineId() {
+      return currencyConversionLineId;
+    }
+
+    public BigDecimal getExchangeRate() {
+      return exchangeRate;
+    }
+
+    public LocalDate getFromDate() {
+      return fromDate;
+    }
+
+    public LocalDate getToDate() {
+      return toDate;
+    }
+  }
+}
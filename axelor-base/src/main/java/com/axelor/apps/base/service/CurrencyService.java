@@ -24,6 +24,7 @@ import com.axelor.apps.base.db.CurrencyConversionLine;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import org.apache.commons.lang3.tuple.Pair;
 
 public interface CurrencyService {
 
@@ -37,6 +38,10 @@ public interface CurrencyService {
       Currency startCurrency, Currency endCurrency, BigDecimal amount, LocalDate date)
       throws AxelorException;
 
+  List<BigDecimal> getAmountsCurrencyConvertedAtDates(
+      Currency startCurrency, Currency endCurrency, List<Pair<BigDecimal, LocalDate>> amountDateList)
+      throws AxelorException;
+
   BigDecimal getAmountCurrencyConvertedUsingExchangeRate(
       BigDecimal amount, BigDecimal exchangeRate, Currency endCurrency);
 
@@ -28,6 +28,7 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.axelor.meta.CallMethod;
 import com.axelor.utils.helpers.date.LocalDateHelper;
 import com.google.inject.Inject;
@@ -36,8 +37,12 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,23 +53,28 @@ public class CurrencyServiceImpl implements CurrencyService {
 
   protected AppBaseService appBaseService;
   protected CurrencyConversionLineRepository currencyConversionLineRepo;
+  protected CurrencyConversionRateCache currencyConversionRateCache;
   private LocalDate today;
 
   @Inject
   public CurrencyServiceImpl(
-      AppBaseService appBaseService, CurrencyConversionLineRepository currencyConversionLineRepo) {
+      AppBaseService appBaseService,
+      CurrencyConversionLineRepository currencyConversionLineRepo,
+      CurrencyConversionRateCache currencyConversionRateCache) {
 
     this.appBaseService = appBaseService;
     this.today =
         appBaseService.getTodayDate(
             Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null));
     this.currencyConversionLineRepo = currencyConversionLineRepo;
+    this.currencyConversionRateCache = currencyConversionRateCache;
   }
 
   public CurrencyServiceImpl(AppBaseService appBaseService, LocalDate today) {
 
     this.appBaseService = appBaseService;
     this.today = today;
+    this.currencyConversionRateCache = Beans.get(CurrencyConversionRateCache.class);
   }
 
   @CallMethod
@@ -84,17 +94,16 @@ public class CurrencyServiceImpl implements CurrencyService {
       boolean isInverse = true;
       BigDecimal exchangeRate = null;
 
-      CurrencyConversionLine currencyConversionLine =
-          this.getCurrencyConversionLine(startCurrency, endCurrency, dateToConvert);
-      if (currencyConversionLine != null) {
-        exchangeRate = currencyConversionLine.getExchangeRate();
+      CurrencyConversionRateCache.Rate rate =
+          this.getCurrencyConversionLineRate(startCurrency, endCurrency, dateToConvert);
+      if (rate != null) {
+        exchangeRate = rate.getExchangeRate();
         isInverse = false;
 
       } else {
-        currencyConversionLine =
-            this.getCurrencyConversionLine(endCurrency, startCurrency, dateToConvert);
+        rate = this.getCurrencyConversionLineRate(endCurrency, startCurrency, dateToConvert);
 
-        if (currencyConversionLine == null) {
+        if (rate == null) {
           throw new AxelorException(
               TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
               I18n.get(BaseExceptionMessage.CURRENCY_1),
@@ -102,7 +111,7 @@ public class CurrencyServiceImpl implements CurrencyService {
               endCurrency.getName(),
               dateToConvert);
         }
-        exchangeRate = currencyConversionLine.getExchangeRate();
+        exchangeRate = rate.getExchangeRate();
       }
 
       if (exchangeRate == null || exchangeRate.compareTo(BigDecimal.ZERO) == 0) {
@@ -122,37 +131,13 @@ public class CurrencyServiceImpl implements CurrencyService {
     return BigDecimal.ONE;
   }
 
-  protected CurrencyConversionLine getCurrencyConversionLine(
+  protected CurrencyConversionRateCache.Rate getCurrencyConversionLineRate(
       Currency startCurrency, Currency endCurrency, LocalDate localDate) {
 
-    List<CurrencyConversionLine> currencyConversionLineList =
-        appBaseService.getCurrencyConfigurationLineList();
-
-    if (currencyConversionLineList == null) {
-      return null;
-    }
-
     log.debug(
         "Currency from: {}, Currency to: {}, localDate: {}", startCurrency, endCurrency, localDate);
 
-    for (CurrencyConversionLine ccl : currencyConversionLineList) {
-
-      String cclStartCode = ccl.getStartCurrency().getCodeISO();
-      String cclEndCode = ccl.getEndCurrency().getCodeISO();
-      String startCode = startCurrency.getCodeISO();
-      String endCode = endCurrency.getCodeISO();
-      LocalDate fromDate = ccl.getFromDate();
-      LocalDate toDate = ccl.getToDate();
-
-      if (cclStartCode.equals(startCode) && cclEndCode.equals(endCode)) {
-        if ((fromDate.isBefore(localDate) || fromDate.equals(localDate))
-            && (toDate == null || toDate.isAfter(localDate) || toDate.isEqual(localDate))) {
-          return ccl;
-        }
-      }
-    }
-
-    return null;
+    return currencyConversionRateCache.getRate(startCurrency, endCurrency, localDate);
   }
 
   /**
@@ -180,6 +165,43 @@ public class CurrencyServiceImpl implements CurrencyService {
     return amount;
   }
 
+  /**
+   * Convert several amounts in start currency into the end currency, each one according to its
+   * date to convert. The rate is looked up only once per date.
+   *
+   * @param startCurrency
+   * @param endCurrency
+   * @param amountDateList the amounts to convert, with their date
+   * @return the converted amounts, in the same order
+   * @throws AxelorException
+   */
+  public List<BigDecimal> getAmountsCurrencyConvertedAtDates(
+      Currency startCurrency, Currency endCurrency, List<Pair<BigDecimal, LocalDate>> amountDateList)
+      throws AxelorException {
+
+    List<BigDecimal> convertedAmountList = new ArrayList<>(amountDateList.size());
+
+    if (startCurrency == null || endCurrency == null || startCurrency.equals(endCurrency)) {
+      amountDateList.forEach(amountDate -> convertedAmountList.add(amountDate.getLeft()));
+      return convertedAmountList;
+    }
+
+    Map<LocalDate, BigDecimal> exchangeRateMap = new HashMap<>();
+    for (Pair<BigDecimal, LocalDate> amountDate : amountDateList) {
+      LocalDate dateToConvert = this.getDateToConvert(amountDate.getRight());
+      BigDecimal exchangeRate = exchangeRateMap.get(dateToConvert);
+      if (exchangeRate == null) {
+        exchangeRate = this.getCurrencyConversionRate(startCurrency, endCurrency, dateToConvert);
+        exchangeRateMap.put(dateToConvert, exchangeRate);
+      }
+      convertedAmountList.add(
+          this.getAmountCurrencyConvertedUsingExchangeRate(
+              amountDate.getLeft(), exchangeRate, endCurrency));
+    }
+
+    return convertedAmountList;
+  }
+
   /**
    * Convert the amount in start currency into the end currency according to the exchange rate
    *
@@ -19,9 +19,12 @@
 package com.axelor.apps.base.service;
 
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.WorkerExecutor;
 import com.axelor.apps.base.db.AnonymizerLine;
 import com.axelor.apps.base.db.DataBackup;
+import com.axelor.apps.base.db.DataBackupModelLine;
 import com.axelor.apps.base.db.repo.AnonymizerLineRepository;
+import com.axelor.apps.base.db.repo.DataBackupModelLineRepository;
 import com.axelor.apps.base.db.repo.DataBackupRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.exception.TraceBackService;
@@ -38,6 +41,7 @@ import com.axelor.db.Query;
 import com.axelor.db.internal.DBHelper;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.db.mapper.Property;
+import com.axelor.inject.Beans;
 import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.meta.db.MetaJsonField;
@@ -50,12 +54,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.thoughtworks.xstream.XStream;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.sql.Connection;
@@ -74,6 +77,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javax.naming.NamingException;
@@ -85,12 +91,12 @@ public class DataBackupCreateService {
 
   protected static final char SEPARATOR = ',';
   protected static final char REFERENCE_FIELD_SEPARATOR = '|';
-  protected static final int BUFFER_SIZE = 1000;
 
   protected boolean notNullReferenceFlag;
   protected boolean referenceFlag;
   protected boolean byteArrFieldFlag = false;
   protected List<String> fileNameList;
+  protected Long modelLineId;
   protected static Set<String> exceptColumnNameList =
       ImmutableSet.of(
           "importOrigin",
@@ -128,6 +134,7 @@ public class DataBackupCreateService {
   protected AnonymizerLineRepository anonymizerLineRepository;
   protected Logger LOG = LoggerFactory.getLogger(getClass());
   protected DataBackupAnonymizeService dataBackupAnonymizeService;
+  protected DataBackupModelLineRepository dataBackupModelLineRepository;
 
   @Inject
   public DataBackupCreateService(
@@ -136,13 +143,15 @@ public class DataBackupCreateService {
       MetaFiles metaFiles,
       AnonymizeService anonymizeService,
       AnonymizerLineRepository anonymizerLineRepository,
-      DataBackupAnonymizeService dataBackupAnonymizeService) {
+      DataBackupAnonymizeService dataBackupAnonymizeService,
+      DataBackupModelLineRepository dataBackupModelLineRepository) {
     this.dataBackupRepository = dataBackupRepository;
     this.metaModelRepo = metaModelRepo;
     this.metaFiles = metaFiles;
     this.anonymizeService = anonymizeService;
     this.anonymizerLineRepository = anonymizerLineRepository;
     this.dataBackupAnonymizeService = dataBackupAnonymizeService;
+    this.dataBackupModelLineRepository = dataBackupModelLineRepository;
   }
 
   /* Generate csv Files for each individual MetaModel and single config file */
@@ -152,6 +161,7 @@ public class DataBackupCreateService {
     int fetchLimit = dataBackup.getFetchLimit();
     int errorsCount = 0;
     byte[] salt = null;
+    File zippedFile = null;
 
     fileNameList = new ArrayList<>();
     List<MetaModel> metaModelList = getMetaModels(dataBackup.getAnonymizer() != null);
@@ -175,78 +185,80 @@ public class DataBackupCreateService {
     }
 
     if (errorsCount == 0) {
-      for (MetaModel metaModel : metaModelList) {
+      zippedFile = new File(tempDirectoryPath, getBackupZipFileName());
 
-        try {
-          List<String> subClasses = subClassesMap.get(metaModel.getFullName());
-          long totalRecord = getMetaModelDataCount(metaModel, subClasses);
-          if (!dataBackup.getIsProcessEmptyTable() && totalRecord < 1) {
+      try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(zippedFile))) {
+        Map<String, MetaModelExport> metaModelExportMap =
+            exportMetaModels(
+                dataBackup, metaModelList, subClassesMap, tempDirectoryPath, salt, zipOut);
+
+        for (MetaModel metaModel : metaModelList) {
+          MetaModelExport metaModelExport = metaModelExportMap.get(metaModel.getFullName());
+          if (metaModelExport == null) {
             continue;
           }
+          sb.append(metaModelExport.getLog());
 
-          LOG.debug("Exporting Model : " + metaModel.getFullName());
-          notNullReferenceFlag = false;
-          referenceFlag = false;
-
-          File templateFile = new File(tempDirectoryPath, metaModel.getName() + ".csv");
-          CSVFile csvFormat =
-              CSVFile.DEFAULT.withDelimiter(SEPARATOR).withQuoteAll().withFirstRecordAsHeader();
-          CSVPrinter printer = csvFormat.write(templateFile);
-          CSVInput csvInput =
-              writeCSVData(
-                  metaModel, printer, dataBackup, totalRecord, subClasses, tempDirectoryPath, salt);
-          printer.close();
-
-          if (notNullReferenceFlag) {
-            notNullReferenceCsvs.add(csvInput);
-          } else if (referenceFlag) {
-            refernceCsvs.add(csvInput);
-            CSVInput temcsv = new CSVInput();
-            temcsv.setFileName(csvInput.getFileName());
-            temcsv.setTypeName(csvInput.getTypeName());
-
-            if (dataBackup.getIsRelativeDate()) {
-              temcsv.setBindings(new ArrayList<>());
-              getCsvInputForDateorDateTime(metaModel, temcsv);
+          try {
+            if (metaModelExport.getException() != null) {
+              throw metaModelExport.getException();
             }
-            if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
-              temcsv.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
+            CSVInput csvInput = metaModelExport.getCsvInput();
+            if (csvInput == null) {
+              continue;
             }
-            if (Class.forName(metaModel.getFullName()).getSuperclass() == App.class) {
-              temcsv.setSearch("self.code = :code");
+
+            if (metaModelExport.isNotNullReference()) {
+              notNullReferenceCsvs.add(csvInput);
+            } else if (metaModelExport.isReference()) {
+              refernceCsvs.add(csvInput);
+              CSVInput temcsv = new CSVInput();
+              temcsv.setFileName(csvInput.getFileName());
+              temcsv.setTypeName(csvInput.getTypeName());
+
+              if (dataBackup.getIsRelativeDate()) {
+                temcsv.setBindings(new ArrayList<>());
+                getCsvInputForDateorDateTime(metaModel, temcsv);
+              }
+              if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
+                temcsv.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
+              }
+              if (Class.forName(metaModel.getFullName()).getSuperclass() == App.class) {
+                temcsv.setSearch("self.code = :code");
+              }
+              if (!AutoImportModelMap.containsKey(csvInput.getTypeName())
+                  && !((Class.forName(metaModel.getFullName()).getSuperclass())
+                      .equals(App.class))) {
+                temcsv.setSearch("self.importId = :importId");
+              }
+              simpleCsvs.add(temcsv);
+            } else {
+              simpleCsvs.add(csvInput);
             }
-            if (!AutoImportModelMap.containsKey(csvInput.getTypeName())
-                && !((Class.forName(metaModel.getFullName()).getSuperclass()).equals(App.class))) {
-              temcsv.setSearch("self.importId = :importId");
+          } catch (ClassNotFoundException | IOException e) {
+            TraceBackService.trace(e, DataBackupService.class.getName());
+          } catch (Exception e) {
+            if (!dataBackup.getCheckAllErrorFirst()) {
+              sb.append(
+                  "\nError occured while processing model : " + metaModel.getFullName() + "\n");
+              sb.append(e.getMessage() + "\n");
             }
-            simpleCsvs.add(temcsv);
-          } else {
-            simpleCsvs.add(csvInput);
-          }
-
-          fileNameList.add(metaModel.getName() + ".csv");
-        } catch (ClassNotFoundException | IOException e) {
-          TraceBackService.trace(e, DataBackupService.class.getName());
-        } catch (Exception e) {
-          JPA.em().getTransaction().rollback();
-          if (!dataBackup.getCheckAllErrorFirst()) {
-            sb.append("\nError occured while processing model : " + metaModel.getFullName() + "\n");
-            sb.append(e.getMessage() + "\n");
+            errorsCount++;
           }
-          JPA.em().getTransaction().begin();
-          dataBackup = dataBackupRepository.find(dataBackup.getId());
-          errorsCount++;
         }
-      }
 
-      CSVConfig csvConfig = new CSVConfig();
-      csvConfig.setInputs(simpleCsvs);
-      csvConfig.getInputs().addAll(notNullReferenceCsvs);
-      csvConfig.getInputs().addAll(refernceCsvs);
-      csvConfig.getInputs().addAll(notNullReferenceCsvs);
-      generateConfig(tempDirectoryPath, csvConfig);
+        CSVConfig csvConfig = new CSVConfig();
+        csvConfig.setInputs(simpleCsvs);
+        csvConfig.getInputs().addAll(notNullReferenceCsvs);
+        csvConfig.getInputs().addAll(refernceCsvs);
+        csvConfig.getInputs().addAll(notNullReferenceCsvs);
+        generateConfig(tempDirectoryPath, csvConfig);
 
-      fileNameList.add(DataBackupServiceImpl.CONFIG_FILE_NAME);
+        addZipEntry(zipOut, tempDirectoryPath, DataBackupServiceImpl.CONFIG_FILE_NAME);
+      } catch (IOException e) {
+        TraceBackService.trace(e, "Error From DataBackupCreateService - create()");
+        errorsCount++;
+      }
     }
 
     try {
@@ -266,10 +278,12 @@ public class DataBackupCreateService {
       }
 
       if (errorsCount == 0) {
-        File zippedFile = generateZIP(tempDirectoryPath, fileNameList);
         dataBackup.setBackupMetaFile(metaFiles.upload(zippedFile));
       } else {
         dataBackup.setStatusSelect(DataBackupRepository.DATA_BACKUP_STATUS_ERROR);
+        if (zippedFile != null) {
+          zippedFile.delete();
+        }
       }
     } catch (IOException e) {
       e.printStackTrace();
@@ -278,6 +292,171 @@ public class DataBackupCreateService {
     return dataBackup;
   }
 
+  /**
+   * Export the models on a pool of threads, one model at a time per thread. Each export reads its
+   * model with its own entity manager and writes its own csv file, which is added to the zip as
+   * soon as the export is finished.
+   *
+   * @return the exports mapped by model full name.
+   */
+  protected Map<String, MetaModelExport> exportMetaModels(
+      DataBackup dataBackup,
+      List<MetaModel> metaModelList,
+      Map<String, List<String>> subClassesMap,
+      String dirPath,
+      byte[] salt,
+      ZipOutputStream zipOut)
+      throws IOException {
+
+    Long dataBackupId = dataBackup.getId();
+    Map<String, MetaModelExport> metaModelExportMap = new HashMap<>();
+
+    try (WorkerExecutor executor = new WorkerExecutor(getThreadCount(dataBackup))) {
+      CompletionService<MetaModelExport> completionService =
+          new ExecutorCompletionService<>(executor);
+
+      executor
+          .submit(
+              () -> {
+                deleteModelLines(dataBackupId);
+                return null;
+              })
+          .get();
+
+      for (MetaModel metaModel : metaModelList) {
+        Long metaModelId = metaModel.getId();
+        List<String> subClasses = subClassesMap.get(metaModel.getFullName());
+        completionService.submit(
+            () ->
+                Beans.get(DataBackupCreateService.class)
+                    .exportMetaModel(
+                        dataBackupRepository.find(dataBackupId),
+                        metaModelRepo.find(metaModelId),
+                        subClasses,
+                        dirPath,
+                        salt));
+      }
+
+      for (int i = 0; i < metaModelList.size(); i++) {
+        MetaModelExport metaModelExport = completionService.take().get();
+        metaModelExportMap.put(metaModelExport.getMetaModelFullName(), metaModelExport);
+        for (String fileName : metaModelExport.getFileNameList()) {
+          addZipEntry(zipOut, dirPath, fileName);
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    }
+
+    return metaModelExportMap;
+  }
+
+  protected int getThreadCount(DataBackup dataBackup) {
+    return dataBackup.getThreadCount();
+  }
+
+  /**
+   * Export the data of a model into its csv file. The state of this service being filled along the
+   * export, it has to be called on a new instance for each model.
+   *
+   * @return the export, holding the exception instead of throwing it.
+   */
+  protected MetaModelExport exportMetaModel(
+      DataBackup dataBackup,
+      MetaModel metaModel,
+      List<String> subClasses,
+      String dirPath,
+      byte[] salt) {
+
+    MetaModelExport metaModelExport = new MetaModelExport(metaModel.getFullName());
+    fileNameList = new ArrayList<>();
+
+    try {
+      long totalRecord = getMetaModelDataCount(metaModel, subClasses);
+      if (!dataBackup.getIsProcessEmptyTable() && totalRecord < 1) {
+        return metaModelExport;
+      }
+
+      LOG.debug("Exporting Model : " + metaModel.getFullName());
+      notNullReferenceFlag = false;
+      referenceFlag = false;
+      modelLineId = createModelLine(dataBackup, metaModel, totalRecord);
+
+      File templateFile = new File(dirPath, metaModel.getName() + ".csv");
+      CSVFile csvFormat =
+          CSVFile.DEFAULT.withDelimiter(SEPARATOR).withQuoteAll().withFirstRecordAsHeader();
+      try (CSVPrinter printer = csvFormat.write(templateFile)) {
+        metaModelExport.setCsvInput(
+            writeCSVData(metaModel, printer, dataBackup, totalRecord, subClasses, dirPath, salt));
+      }
+      fileNameList.add(metaModel.getName() + ".csv");
+
+      metaModelExport.setNotNullReference(notNullReferenceFlag);
+      metaModelExport.setReference(referenceFlag);
+      updateModelLine(null, DataBackupModelLineRepository.STATUS_FINISHED);
+    } catch (Exception e) {
+      metaModelExport.setCsvInput(null);
+      metaModelExport.setException(e);
+      if (modelLineId != null) {
+        updateModelLine(null, DataBackupModelLineRepository.STATUS_ERROR);
+      }
+    }
+
+    metaModelExport.setFileNameList(fileNameList);
+    metaModelExport.setLog(sb.toString());
+    return metaModelExport;
+  }
+
+  protected void deleteModelLines(Long dataBackupId) {
+    JPA.runInTransaction(
+        () ->
+            dataBackupModelLineRepository
+                .all()
+                .filter("self.dataBackup.id = :dataBackupId")
+                .bind("dataBackupId", dataBackupId)
+                .remove());
+  }
+
+  protected Long createModelLine(DataBackup dataBackup, MetaModel metaModel, long recordCount) {
+    DataBackupModelLine modelLine = new DataBackupModelLine();
+    modelLine.setDataBackup(dataBackup);
+    modelLine.setMetaModelName(metaModel.getName());
+    modelLine.setStatusSelect(DataBackupModelLineRepository.STATUS_IN_PROGRESS);
+    modelLine.setRecordCount(recordCount);
+    modelLine.setExportedRecordCount(0L);
+    modelLine.setStartDateTime(LocalDateTime.now());
+    JPA.runInTransaction(() -> dataBackupModelLineRepository.save(modelLine));
+    return modelLine.getId();
+  }
+
+  /**
+   * Update the progress of the model being exported, in its own transaction so it is visible
+   * while the export runs.
+   *
+   * @param exportedRecordCount the number of exported records, or null to keep it unchanged.
+   * @param statusSelect the status of the export, or null to keep it unchanged.
+   */
+  protected void updateModelLine(Long exportedRecordCount, Integer statusSelect) {
+    if (modelLineId == null) {
+      return;
+    }
+    JPA.runInTransaction(
+        () -> {
+          DataBackupModelLine modelLine = dataBackupModelLineRepository.find(modelLineId);
+          if (exportedRecordCount != null) {
+            modelLine.setExportedRecordCount(exportedRecordCount);
+          }
+          if (statusSelect != null) {
+            modelLine.setStatusSelect(statusSelect);
+            modelLine.setEndDateTime(LocalDateTime.now());
+          }
+          dataBackupModelLineRepository.save(modelLine);
+        });
+  }
+
   protected void getCsvInputForDateorDateTime(MetaModel metaModel, CSVInput csvInput) {
     try {
       Mapper metaModelMapper = Mapper.of(Class.forName(metaModel.getFullName()));
@@ -339,20 +518,6 @@ public class DataBackupCreateService {
     return subClassMap;
   }
 
-  /* Get All Data of Specific MetaModel */
-  protected List<Model> getMetaModelDataList(
-      MetaModel metaModel, int start, Integer fetchLimit, List<String> subClasses)
-      throws ClassNotFoundException {
-
-    Query<Model> query = getQuery(metaModel, subClasses);
-
-    if (query != null) {
-      return query.fetch(fetchLimit, start);
-    }
-
-    return null;
-  }
-
   protected long getMetaModelDataCount(MetaModel metaModel, List<String> subClasses)
       throws ClassNotFoundException {
     Query<Model> query = getQuery(metaModel, subClasses);
@@ -363,8 +528,23 @@ public class DataBackupCreateService {
     return count;
   }
 
-  protected Query<Model> getQuery(MetaModel metaModel, List<String> subClasses)
+  /**
+   * Get the query of the records of a model, paginated by id: the records are fetched after the id
+   * bound to the <code>lastId</code> parameter, so every page costs the same whatever its rank.
+   */
+  protected Query<Model> getPageQuery(MetaModel metaModel, List<String> subClasses)
       throws ClassNotFoundException {
+    Query<Model> query = getQuery(metaModel, subClasses);
+    if (query == null) {
+      return null;
+    }
+    String whereStr = getSubClassesFilter(subClasses);
+    return query
+        .filter((StringUtils.notEmpty(whereStr) ? whereStr + " AND " : "") + "self.id > :lastId")
+        .order("id");
+  }
+
+  protected String getSubClassesFilter(List<String> subClasses) {
     StringBuilder whereStr = new StringBuilder();
     if (subClasses != null && !subClasses.isEmpty()) {
       for (String subClassName : subClasses) {
@@ -372,6 +552,12 @@ public class DataBackupCreateService {
         whereStr.append("id NOT IN (select id from ").append(subClassName).append(")");
       }
     }
+    return whereStr.toString();
+  }
+
+  protected Query<Model> getQuery(MetaModel metaModel, List<String> subClasses)
+      throws ClassNotFoundException {
+    String whereStr = getSubClassesFilter(subClasses);
     @SuppressWarnings("unchecked")
     Class<Model> klass = (Class<Model>) Class.forName(metaModel.getFullName());
     JpaRepository<Model> model = null;
@@ -383,8 +569,8 @@ public class DataBackupCreateService {
     }
     if (model != null) {
       query = JpaRepository.of(klass).all();
-      if (StringUtils.notEmpty(whereStr.toString())) {
-        query.filter(whereStr.toString());
+      if (StringUtils.notEmpty(whereStr)) {
+        query.filter(whereStr);
       }
 
       try {
@@ -452,56 +638,61 @@ public class DataBackupCreateService {
       csvInput.setBindings(new ArrayList<>());
 
       if (totalRecord > 0) {
-        for (int i = 0; i < totalRecord; i = i + fetchLimit) {
-
-          dataList = getMetaModelDataList(metaModel, i, fetchLimit, subClasses);
-
-          if (dataList != null && !dataList.isEmpty()) {
-            dataBackup = dataBackupRepository.find(dataBackup.getId());
-            for (Object dataObject : dataList) {
-              dataArr = new ArrayList<>();
-
-              for (Property property : pro) {
-                if (isPropertyExportable(property)) {
-                  if (headerFlag) {
-                    String headerStr = getMetaModelHeader(property, csvInput, isRelativeDate);
-                    headerArr.add(headerStr);
-                  }
-                  dataArr.add(
-                      getMetaModelData(
-                          metaModel.getName(),
-                          metaModelMapper,
-                          property,
-                          dataObject,
-                          dirPath,
-                          isRelativeDate,
-                          updateImportId,
-                          dataBackup));
-                }
-              }
-              if (headerFlag) {
-                if (byteArrFieldFlag) {
-                  csvInput.setCallable(
-                      "com.axelor.apps.base.service.DataBackupRestoreService:importObjectWithByteArray");
-                  byteArrFieldFlag = false;
+        Query<Model> query = getPageQuery(metaModel, subClasses);
+        long exportedRecordCount = 0;
+        Long lastId = 0L;
+
+        while (query != null
+            && exportedRecordCount < totalRecord
+            && !(dataList = query.bind("lastId", lastId).fetch(fetchLimit)).isEmpty()) {
+
+          dataBackup = dataBackupRepository.find(dataBackup.getId());
+          for (Object dataObject : dataList) {
+            dataArr = new ArrayList<>();
+
+            for (Property property : pro) {
+              if (isPropertyExportable(property)) {
+                if (headerFlag) {
+                  String headerStr = getMetaModelHeader(property, csvInput, isRelativeDate);
+                  headerArr.add(headerStr);
                 }
-                printer.printRecord(headerArr);
-                headerFlag = false;
+                dataArr.add(
+                    getMetaModelData(
+                        metaModel.getName(),
+                        metaModelMapper,
+                        property,
+                        dataObject,
+                        dirPath,
+                        isRelativeDate,
+                        updateImportId,
+                        dataBackup));
               }
-
-              if ("Partner".equals(metaModel.getName()) && dataBackup.getAnonymizer() != null) {
-                dataArr =
-                    dataBackupAnonymizeService.csvComputeAnonymizedFullname(dataArr, headerArr);
+            }
+            if (headerFlag) {
+              if (byteArrFieldFlag) {
+                csvInput.setCallable(
+                    "com.axelor.apps.base.service.DataBackupRestoreService:importObjectWithByteArray");
+                byteArrFieldFlag = false;
               }
+              printer.printRecord(headerArr);
+              headerFlag = false;
+            }
 
-              if (dataBackup.getAnonymizer() != null) {
-                dataBackupAnonymizeService.csvAnonymizeImportId(dataArr, headerArr, salt);
-              }
+            if ("Partner".equals(metaModel.getName()) && dataBackup.getAnonymizer() != null) {
+              dataArr = dataBackupAnonymizeService.csvComputeAnonymizedFullname(dataArr, headerArr);
+            }
 
-              printer.printRecord(dataArr);
+            if (dataBackup.getAnonymizer() != null) {
+              dataBackupAnonymizeService.csvAnonymizeImportId(dataArr, headerArr, salt);
             }
+
+            printer.printRecord(dataArr);
           }
+
+          exportedRecordCount += dataList.size();
+          lastId = dataList.get(dataList.size() - 1).getId();
           JPA.clear();
+          updateModelLine(exportedRecordCount, null);
         }
       } else {
         for (Property property : pro) {
@@ -794,38 +985,19 @@ public class DataBackupCreateService {
     }
   }
 
-  protected File generateZIP(String dirPath, List<String> fileNameList) {
-
+  protected String getBackupZipFileName() {
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
-    String backupZipFileName = "DataBackup_" + LocalDateTime.now().format(formatter) + ".zip";
-    File zipFile = new File(dirPath, backupZipFileName);
-    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
-
-      for (String fileName : fileNameList) {
-        ZipEntry e = new ZipEntry(fileName);
-        out.putNextEntry(e);
-        File file = new File(dirPath, fileName);
-        try (BufferedInputStream bin = new BufferedInputStream(new FileInputStream(file))) {
-          byte[] data;
-          while (bin.available() > 0) {
-            if (bin.available() < BUFFER_SIZE) {
-              data = new byte[bin.available()];
-            } else {
-              data = new byte[BUFFER_SIZE];
-            }
-            bin.read(data, 0, data.length);
-            out.write(data, 0, data.length);
-          }
-          out.closeEntry();
-
-          file.delete();
-        }
-      }
-    } catch (IOException e) {
-      TraceBackService.trace(e, "Error From DataBackupCreateService - generateZIP()");
-    }
+    return "DataBackup_" + LocalDateTime.now().format(formatter) + ".zip";
+  }
 
-    return zipFile;
+  /* Stream a generated file into the zip, then delete it */
+  protected void addZipEntry(ZipOutputStream out, String dirPath, String fileName)
+      throws IOException {
+    File file = new File(dirPath, fileName);
+    out.putNextEntry(new ZipEntry(fileName));
+    Files.copy(file.toPath(), out);
+    out.closeEntry();
+    file.delete();
   }
 
   /* Generate XML File from CSVConfig */
@@ -889,4 +1061,73 @@ public class DataBackupCreateService {
     }
     return errorsCount;
   }
+
+  /** Result of the export of a model, gathered from the thread that exported it. */
+  protected static class MetaModelExport {
+
+    private final String metaModelFullName;
+    private CSVInput csvInput;
+    private boolean reference;
+    private boolean notNullReference;
+    private List<String> fileNameList = new ArrayList<>();
+    private String log = "";
+    private Exception exception;
+
+    public MetaModelExport(String metaModelFullName) {
+      this.metaModelFullName = metaModelFullName;
+    }
+
+    public String getMetaModelFullName() {
+      return metaModelFullName;
+    }
+
+    public CSVInput getCsvInput() {
+      return csvInput;
+    }
+
+    public void setCsvInput(CSVInput csvInput) {
+      this.csvInput = csvInput;
+    }
+
+    public boolean isReference() {
+      return reference;
+    }
+
+    public void setReference(boolean reference) {
+      this.reference = reference;
+    }
+
+    public boolean isNotNullReference() {
+      return notNullReference;
+    }
+
+    public void setNotNullReference(boolean notNullReference) {
+      this.notNullReference = notNullReference;
+    }
+
+    /** @return the files written by the export, to be added to the zip. */
+    public List<String> getFileNameList() {
+      return fileNameList;
+    }
+
+    public void setFileNameList(List<String> fileNameList) {
+      this.fileNameList = fileNameList;
+    }
+
+    public String getLog() {
+      return log;
+    }
+
+    public void setLog(String log) {
+      this.log = log;
+    }
+
+    public Exception getException() {
+      return exception;
+    }
+
+    public void setException(Exception exception) {
+      this.exception = exception;
+    }
+  }
 }
@@ -0,0 +1,288 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.db.EntityHelper;
+import com.axelor.db.Model;
+import com.axelor.db.mapper.Mapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Application wide cache of the unit conversions, indexed by pair of units, along with their
+ * compiled formulas. It is invalidated by {@link
+ * com.axelor.apps.base.db.repo.UnitConversionListener} whenever a conversion is created, updated
+ * or removed.
+ */
+@Singleton
+public class UnitConversionCache {
+
+  protected static final char TEMPLATE_DELIMITER = '$';
+
+  /** Name of the product in the templates of the formulas. */
+  protected static final String PRODUCT_CONTEXT_NAME = "Product";
+
+  private static final Pattern TEMPLATE_VARIABLE_PATTERN =
+      Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+  protected UnitConversionRepository unitConversionRepo;
+
+  private volatile Map<String, List<Entry>> conversionIndex;
+
+  /** Incremented on each invalidation, so that an index loaded before it is not published. */
+  private long generation;
+
+  @Inject
+  public UnitConversionCache(UnitConversionRepository unitConversionRepo) {
+    this.unitConversionRepo = unitConversionRepo;
+  }
+
+  /**
+   * Get the conversions defined between the two given units, in either direction, ordered by id.
+   *
+   * @param startUnit The start unit
+   * @param endUnit The end unit
+   * @return The conversions between the two units, or an empty list if there is none.
+   */
+  public List<Entry> getConversions(Unit startUnit, Unit endUnit) {
+    Map<String, List<Entry>> index = conversionIndex;
+    if (index == null) {
+      long loadGeneration = getGeneration();
+      index = loadIndex();
+      publishIndex(index, loadGeneration);
+    }
+    return index.getOrDefault(
+        getKey(startUnit.getId(), endUnit.getId()), Collections.emptyList());
+  }
+
+  /** Drop the cached conversions and formulas, they will be reloaded on next use. */
+  public synchronized void invalidate() {
+    generation++;
+    conversionIndex = null;
+  }
+
+  protected synchronized long getGeneration() {
+    return generation;
+  }
+
+  protected synchronized void publishIndex(Map<String, List<Entry>> index, long loadGeneration) {
+    if (generation == loadGeneration) {
+      conversionIndex = index;
+    }
+  }
+
+  protected Map<String, List<Entry>> loadIndex() {
+    Map<String, List<Entry>> index = new HashMap<>();
+    for (UnitConversion unitConversion : unitConversionRepo.all().order("id").fetch()) {
+      Entry entry = new Entry(unitConversion);
+      index
+          .computeIfAbsent(
+              getKey(entry.getStartUnitId(), entry.getEndUnitId()), key -> new ArrayList<>())
+          .add(entry);
+    }
+    return index;
+  }
+
+  protected String getKey(Long firstUnitId, Long secondUnitId) {
+    return firstUnitId.compareTo(secondUnitId) <= 0
+        ? firstUnitId + "-" + secondUnitId
+        : secondUnitId + "-" + firstUnitId;
+  }
+
+  /**
+   * Detached copy of a unit conversion, safe to be shared between threads. Its formula is compiled
+   * on first use, once for all the products.
+   */
+  public static class Entry {
+
+    private final Long startUnitId;
+    private final Long endUnitId;
+    private final Integer typeSelect;
+    private final BigDecimal coef;
+    private final String formula;
+    private volatile CompiledFormula compiledFormula;
+
+    public Entry(UnitConversion unitConversion) {
+      this.startUnitId = unitConversion.getStartUnit().getId();
+      this.endUnitId = unitConversion.getEndUnit().getId();
+      this.typeSelect = unitConversion.getTypeSelect();
+      this.coef = unitConversion.getCoef();
+      this.formula = unitConversion.getFormula();
+    }
+
+    public Long getStartUnitId() {
+      return startUnitId;
+    }
+
+    public Long getEndUnitId() {
+      return endUnitId;
+    }
+
+    public Integer getTypeSelect() {
+      return typeSelect;
+    }
+
+    public BigDecimal getCoef() {
+      return coef;
+    }
+
+    public String getFormula() {
+      return formula;
+    }
+
+    public CompiledFormula getCompiledFormula() throws CompilationFailedException {
+      CompiledFormula currentFormula = compiledFormula;
+      if (currentFormula == null) {
+        currentFormula = new CompiledFormula(formula);
+        compiledFormula = currentFormula;
+      }
+      return currentFormula;
+    }
+  }
+
+  /**
+   * A conversion formula compiled into a script class. Each template variable of the formula (for
+   * instance <code>$Product.netMass$</code>) is replaced by a script variable, bound to the value
+   * of the product field on evaluation, so the same class is evaluated for every product. If the
+   * formula uses template features other than product fields, it is not bindable and has to be
+   * rendered before being evaluated.
+   */
+  public static class CompiledFormula {
+
+    private final Map<String, List<String>> fieldPaths;
+    private final Class<? extends Script> scriptClass;
+
+    protected CompiledFormula(String formula) throws CompilationFailedException {
+      Map<String, String> templateVariables = parseVariables(formula);
+      this.fieldPaths = templateVariables == null ? null : getFieldPaths(templateVariables);
+      this.scriptClass =
+          this.fieldPaths == null
+              ? null
+              : compile(replaceVariables(formula, templateVariables)).getClass();
+    }
+
+    public boolean isBindable() {
+      return scriptClass != null;
+    }
+
+    /**
+     * Evaluate the formula with the field values of the given product.
+     *
+     * @param product the product of the conversion
+     * @return the result, or null if a field value is not a number and the formula has to be
+     *     rendered instead.
+     */
+    public BigDecimal evaluate(Model product) {
+      Binding binding = new Binding();
+      for (Map.Entry<String, List<String>> fieldPath : fieldPaths.entrySet()) {
+        Object value = getFieldValue(product, fieldPath.getValue());
+        if (!(value instanceof Number)) {
+          return null;
+        }
+        binding.setVariable(fieldPath.getKey(), new BigDecimal(value.toString()));
+      }
+      return new BigDecimal(InvokerHelper.createScript(scriptClass, binding).run().toString());
+    }
+
+    /**
+     * @return the path of product fields of each script variable, or null if a template variable
+     *     is not a product field.
+     */
+    protected static Map<String, List<String>> getFieldPaths(
+        Map<String, String> templateVariables) {
+      Map<String, List<String>> fieldPaths = new LinkedHashMap<>();
+      for (Map.Entry<String, String> templateVariable : templateVariables.entrySet()) {
+        List<String> path = Arrays.asList(templateVariable.getKey().split("\\."));
+        if (path.size() < 2 || !PRODUCT_CONTEXT_NAME.equals(path.get(0))) {
+          return null;
+        }
+        fieldPaths.put(templateVariable.getValue(), path.subList(1, path.size()));
+      }
+      return Collections.unmodifiableMap(fieldPaths);
+    }
+
+    protected static Object getFieldValue(Model bean, List<String> path) {
+      Object value = bean;
+      for (String fieldName : path) {
+        if (!(value instanceof Model)) {
+          return null;
+        }
+        Mapper mapper = Mapper.of(EntityHelper.getEntityClass((Model) value));
+        if (mapper.getProperty(fieldName) == null) {
+          return null;
+        }
+        value = mapper.get(value, fieldName);
+      }
+      return value;
+    }
+
+    protected static Map<String, String> parseVariables(String formula) {
+      String[] parts = formula.split(Pattern.quote(String.valueOf(TEMPLATE_DELIMITER)), -1);
+      if (parts.length % 2 == 0) {
+        return null;
+      }
+      Map<String, String> templateVariables = new LinkedHashMap<>();
+      for (int i = 1; i < parts.length; i += 2) {
+        String variable = parts[i].trim();
+        if (!TEMPLATE_VARIABLE_PATTERN.matcher(variable).matches()) {
+          return null;
+        }
+        templateVariables.putIfAbsent(variable, "_var" + templateVariables.size());
+      }
+      return templateVariables;
+    }
+
+    protected static String replaceVariables(
+        String formula, Map<String, String> templateVariables) {
+      String[] parts = formula.split(Pattern.quote(String.valueOf(TEMPLATE_DELIMITER)), -1);
+      StringBuilder expression = new StringBuilder();
+      for (int i = 0; i < parts.length; i++) {
+        expression.append(i % 2 == 0 ? parts[i] : templateVariables.get(parts[i].trim()));
+      }
+      return expression.toString();
+    }
+
+    public static Script compile(String expression) throws CompilationFailedException {
+      CompilerConfiguration conf = new CompilerConfiguration();
+      ImportCustomizer customizer = new ImportCustomizer();
+      customizer.addStaticStars("java.lang.Math");
+      conf.addCompilationCustomizers(customizer);
+      return new GroovyShell(conf).parse(expression);
+    }
+  }
+}
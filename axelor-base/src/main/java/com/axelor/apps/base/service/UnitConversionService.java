@@ -35,17 +35,15 @@ import com.axelor.i18n.I18n;
 import com.axelor.utils.template.TemplateMaker;
 import com.google.inject.Inject;
 import com.google.inject.servlet.RequestScoped;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.codehaus.groovy.control.CompilationFailedException;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +60,8 @@ public class UnitConversionService {
 
   @Inject protected UnitConversionRepository unitConversionRepo;
 
+  @Inject protected UnitConversionCache unitConversionCache;
+
   /**
    * Convert a value from a unit to another
    *
@@ -99,7 +99,11 @@ public class UnitConversionService {
     else {
       try {
         BigDecimal coefficient =
-            this.getCoefficient(unitConversionRepo.all().fetch(), startUnit, endUnit, product);
+            this.getCoefficientFromEntries(
+                unitConversionCache.getConversions(startUnit, endUnit),
+                startUnit,
+                endUnit,
+                product);
 
         return value.multiply(coefficient).setScale(scale, RoundingMode.HALF_UP);
       } catch (IOException | ClassNotFoundException e) {
@@ -130,60 +134,43 @@ public class UnitConversionService {
       Unit endUnit,
       Product product)
       throws AxelorException, CompilationFailedException, ClassNotFoundException, IOException {
+    return this.getCoefficientFromEntries(
+        unitConversionList.stream()
+            .map(UnitConversionCache.Entry::new)
+            .collect(Collectors.toList()),
+        startUnit,
+        endUnit,
+        product);
+  }
+
+  protected BigDecimal getCoefficientFromEntries(
+      List<UnitConversionCache.Entry> unitConversionList,
+      Unit startUnit,
+      Unit endUnit,
+      Product product)
+      throws AxelorException, CompilationFailedException, ClassNotFoundException, IOException {
     /* Looking for the start unit and the end unit in the unitConversionList to get the coefficient */
-    if (product != null) {
-      this.maker =
-          new TemplateMaker(
-              Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null)
-                      != null
-                  ? Optional.ofNullable(AuthUtils.getUser())
-                      .map(User::getActiveCompany)
-                      .map(Company::getTimezone)
-                      .orElse(null)
-                  : "",
-              AppFilter.getLocale(),
-              TEMPLATE_DELIMITER,
-              TEMPLATE_DELIMITER);
-      this.maker.setContext(product, "Product");
-    }
-    String eval = null;
-    for (UnitConversion unitConversion : unitConversionList) {
+    for (UnitConversionCache.Entry unitConversion : unitConversionList) {
 
-      if (unitConversion.getStartUnit().equals(startUnit)
-          && unitConversion.getEndUnit().equals(endUnit)) {
+      if (Objects.equals(unitConversion.getStartUnitId(), startUnit.getId())
+          && Objects.equals(unitConversion.getEndUnitId(), endUnit.getId())) {
         if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF) {
           return unitConversion.getCoef();
         } else if (product != null) {
-          maker.setTemplate(unitConversion.getFormula());
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          return new BigDecimal(shell.evaluate(eval).toString());
+          return this.evaluateFormula(unitConversion, product);
         }
       }
 
       /* The endUnit become the start unit and the startUnit become the end unit */
 
-      if (unitConversion.getStartUnit().equals(endUnit)
-          && unitConversion.getEndUnit().equals(startUnit)) {
+      if (Objects.equals(unitConversion.getStartUnitId(), endUnit.getId())
+          && Objects.equals(unitConversion.getEndUnitId(), startUnit.getId())) {
         if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF
             && unitConversion.getCoef().compareTo(BigDecimal.ZERO) != 0) {
           return BigDecimal.ONE.divide(
               unitConversion.getCoef(), DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_UP);
         } else if (product != null) {
-          maker.setTemplate(unitConversion.getFormula());
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          BigDecimal result = new BigDecimal(shell.evaluate(eval).toString());
+          BigDecimal result = this.evaluateFormula(unitConversion, product);
           if (result.compareTo(BigDecimal.ZERO) != 0) {
             return BigDecimal.ONE.divide(result, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_UP);
           }
@@ -197,4 +184,48 @@ public class UnitConversionService {
         startUnit.getName(),
         endUnit.getName());
   }
+
+  /**
+   * Evaluate a conversion formula for the given product. The formula is compiled once per unit
+   * conversion and its template variables are bound to the product field values. If a value is not
+   * a number, the whole formula is rendered and evaluated instead.
+   *
+   * @param unitConversion The unit conversion
+   * @param product The product used to render the formula
+   * @return The result of the formula
+   * @throws CompilationFailedException
+   */
+  protected BigDecimal evaluateFormula(UnitConversionCache.Entry unitConversion, Product product)
+      throws CompilationFailedException {
+    UnitConversionCache.CompiledFormula compiledFormula = unitConversion.getCompiledFormula();
+
+    if (compiledFormula.isBindable()) {
+      BigDecimal result = compiledFormula.evaluate(product);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    TemplateMaker templateMaker = this.getMaker(product);
+    templateMaker.setTemplate(unitConversion.getFormula());
+    String eval = templateMaker.make();
+    return new BigDecimal(UnitConversionCache.CompiledFormula.compile(eval).run().toString());
+  }
+
+  protected TemplateMaker getMaker(Product product) {
+    this.maker =
+        new TemplateMaker(
+            Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null)
+                    != null
+                ? Optional.ofNullable(AuthUtils.getUser())
+                    .map(User::getActiveCompany)
+                    .map(Company::getTimezone)
+                    .orElse(null)
+                : "",
+            AppFilter.getLocale(),
+            TEMPLATE_DELIMITER,
+            TEMPLATE_DELIMITER);
+    this.maker.setContext(product, "Product");
+    return this.maker;
+  }
 }
@@ -293,6 +293,54 @@ public abstract class AbstractBatch {
     return field.getType().equals(EntityHelper.getEntityClass(model));
   }
 
+  /**
+   * Returns the number of records processed per chunk: the {@code fetchLimit} of the batch model if
+   * it has one and it is set, {@link #FETCH_LIMIT} otherwise.
+   */
+  protected int getFetchLimit() {
+    if (model == null) {
+      return FETCH_LIMIT;
+    }
+
+    try {
+      Method fetchLimitGetter = Mapper.of(model.getClass()).getGetter("fetchLimit");
+      if (fetchLimitGetter != null) {
+        Integer fetchLimit = (Integer) fetchLimitGetter.invoke(model);
+        if (fetchLimit != null && fetchLimit > 0) {
+          return fetchLimit;
+        }
+      }
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      LOG.error(e.getMessage(), e);
+    }
+
+    return FETCH_LIMIT;
+  }
+
+  /**
+   * Create a keyset paginated iterator using the fetch limit of this batch as chunk size. The
+   * persistence context is cleared and the batch reattached after each chunk.
+   *
+   * @param modelClass the model to iterate on
+   * @param filter a JPQL filter on {@code self}
+   * @return the iterator
+   */
+  protected <T extends Model> BatchChunkIterator<T> chunkIterator(
+      Class<T> modelClass, String filter) {
+    return chunkIterator(BatchChunkIterator.of(modelClass, filter));
+  }
+
+  /**
+   * Configure an iterator built by a service with the fetch limit of this batch, clearing the
+   * persistence context and reattaching the batch after each chunk.
+   *
+   * @param iterator the iterator to configure
+   * @return the same iterator
+   */
+  protected <T extends Model> BatchChunkIterator<T> chunkIterator(BatchChunkIterator<T> iterator) {
+    return iterator.chunkSize(getFetchLimit()).afterChunk(this::findBatch);
+  }
+
   protected Batch findBatch() {
     if (!JPA.em().contains(batch)) {
       batch = JPA.find(Batch.class, batch.getId());
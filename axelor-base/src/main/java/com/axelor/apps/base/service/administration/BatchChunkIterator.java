@@ -0,0 +1,208 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.axelor.common.StringUtils;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.db.Query;
+import com.google.common.base.Preconditions;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Iterates over the records matching a filter chunk by chunk.
+ *
+ * <p>Chunks are fetched with keyset pagination on the id ({@code self.id > :lastId ORDER BY id})
+ * instead of an increasing offset, so fetching a chunk costs the same at the end of the table as at
+ * its beginning. This also means records that stop matching the filter once processed are neither
+ * skipped nor fetched twice.
+ *
+ * <p>After each chunk, the persistence context is flushed and/or cleared according to the {@link
+ * ChunkPolicy}, then the {@link #afterChunk(Runnable)} callback is run, typically to reattach the
+ * batch to the new persistence context.
+ *
+ * @param <T> the type of the iterated records
+ */
+public class BatchChunkIterator<T extends Model> {
+
+  public enum ChunkPolicy {
+    /** Keep the persistence context as it is between chunks. */
+    NONE,
+    /** Detach every entity loaded by the chunk with {@link JPA#clear()}. */
+    CLEAR,
+    /** Flush pending changes if a transaction is active, then clear the persistence context. */
+    FLUSH_AND_CLEAR
+  }
+
+  protected static final String LAST_ID_PARAM = "chunkLastId";
+
+  protected final Class<T> modelClass;
+  protected final String filter;
+  protected final Map<String, Object> params = new HashMap<>();
+
+  protected int chunkSize = AbstractBatch.FETCH_LIMIT;
+  protected ChunkPolicy policy = ChunkPolicy.CLEAR;
+  protected Runnable afterChunk;
+
+  protected long lastId;
+
+  protected BatchChunkIterator(Class<T> modelClass, String filter) {
+    this.modelClass = Preconditions.checkNotNull(modelClass);
+    this.filter = filter;
+  }
+
+  /**
+   * Create an iterator on the records of the given model matching the given JPQL filter.
+   *
+   * @param modelClass the model to iterate on
+   * @param filter a JPQL filter on {@code self}, can be null to iterate on every record
+   * @return the iterator, positioned before the first record
+   */
+  public static <T extends Model> BatchChunkIterator<T> of(Class<T> modelClass, String filter) {
+    return new BatchChunkIterator<>(modelClass, filter);
+  }
+
+  public BatchChunkIterator<T> bind(String name, Object value) {
+    params.put(name, value);
+    return this;
+  }
+
+  public BatchChunkIterator<T> bind(Map<String, Object> params) {
+    if (params != null) {
+      this.params.putAll(params);
+    }
+    return this;
+  }
+
+  public BatchChunkIterator<T> chunkSize(int chunkSize) {
+    Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  public BatchChunkIterator<T> policy(ChunkPolicy policy) {
+    this.policy = Preconditions.checkNotNull(policy);
+    return this;
+  }
+
+  public BatchChunkIterator<T> afterChunk(Runnable afterChunk) {
+    this.afterChunk = afterChunk;
+    return this;
+  }
+
+  /**
+   * Fetch the next chunk and move the iterator after its last record. The chunk policy is not
+   * applied, callers using this method directly must call {@link #endChunk()} themselves.
+   *
+   * @return the next chunk, empty when every record has been fetched
+   */
+  public List<T> nextChunk() {
+    String keysetFilter = "self.id > :" + LAST_ID_PARAM;
+    if (StringUtils.notBlank(filter)) {
+      keysetFilter = "(" + filter + ") AND " + keysetFilter;
+    }
+
+    List<T> chunk = this.fetchChunk(keysetFilter);
+
+    if (!chunk.isEmpty()) {
+      lastId = chunk.get(chunk.size() - 1).getId();
+    }
+    return chunk;
+  }
+
+  /**
+   * @param keysetFilter the filter of the iterator restricted to the ids after {@link #lastId}
+   * @return the first records matching the keyset filter by id, at most {@link #chunkSize}
+   */
+  protected List<T> fetchChunk(String keysetFilter) {
+    return Query.of(modelClass)
+        .filter(keysetFilter)
+        .bind(params)
+        .bind(LAST_ID_PARAM, lastId)
+        .order("id")
+        .fetch(chunkSize);
+  }
+
+  /** Apply the chunk policy then run the after chunk callback. */
+  public void endChunk() {
+    if (policy == ChunkPolicy.FLUSH_AND_CLEAR) {
+      this.flush();
+    }
+    if (policy != ChunkPolicy.NONE) {
+      this.clear();
+    }
+    if (afterChunk != null) {
+      afterChunk.run();
+    }
+  }
+
+  /** Flush the pending changes, only possible within a transaction. */
+  protected void flush() {
+    if (JPA.em().getTransaction().isActive()) {
+      JPA.flush();
+    }
+  }
+
+  protected void clear() {
+    JPA.clear();
+  }
+
+  /**
+   * Process every remaining chunk.
+   *
+   * @param chunkConsumer called once per chunk
+   * @return the number of processed records
+   */
+  public long forEachChunk(Consumer<List<T>> chunkConsumer) {
+    long count = 0;
+    List<T> chunk;
+    while (!(chunk = nextChunk()).isEmpty()) {
+      chunkConsumer.accept(chunk);
+      count += chunk.size();
+      endChunk();
+    }
+    return count;
+  }
+
+  /**
+   * Process every remaining record.
+   *
+   * @param consumer called once per record
+   * @return the number of processed records
+   */
+  public long forEach(Consumer<T> consumer) {
+    return forEachChunk(chunk -> chunk.forEach(consumer));
+  }
+
+  /**
+   * Returns the id of the last fetched record, which can be stored to resume the iteration later
+   * with {@link #startAfter(long)}.
+   */
+  public long getLastId() {
+    return lastId;
+  }
+
+  public BatchChunkIterator<T> startAfter(long lastId) {
+    this.lastId = lastId;
+    return this;
+  }
+}
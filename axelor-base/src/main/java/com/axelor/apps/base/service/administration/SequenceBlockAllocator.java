@@ -0,0 +1,229 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.db.SequenceVersion;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out the numbers of the sequences having a reserved block size. Numbers are reserved by
+ * blocks on the sequence versions, in a short transaction of their own, and then given from memory
+ * without locking the sequence. Numbers of a block that are not used before the server stops, or
+ * that are given to a transaction which is rolled back, are lost: this is only suitable for
+ * sequences which may have gaps.
+ *
+ * <p>Reserved blocks are dropped by {@link com.axelor.apps.base.db.repo.SequenceListener} and
+ * {@link com.axelor.apps.base.db.repo.SequenceVersionListener} when the sequence or one of its
+ * versions is modified.
+ */
+@Singleton
+public class SequenceBlockAllocator {
+
+  protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected SequenceVersionGeneratorService sequenceVersionGeneratorService;
+  protected SequenceLockMetrics sequenceLockMetrics;
+
+  private final Map<Long, SequenceBlocks> sequenceBlocksMap = new ConcurrentHashMap<>();
+
+  /** Held during a reservation, so that reservations never use more than one connection. */
+  private final Object reservationLock = new Object();
+
+  @Inject
+  public SequenceBlockAllocator(
+      SequenceVersionGeneratorService sequenceVersionGeneratorService,
+      SequenceLockMetrics sequenceLockMetrics) {
+    this.sequenceVersionGeneratorService = sequenceVersionGeneratorService;
+    this.sequenceLockMetrics = sequenceLockMetrics;
+  }
+
+  /**
+   * Get the next number of the sequence version covering the given date, reserving a new block of
+   * numbers if needed.
+   *
+   * @param sequence A sequence with a reserved block size
+   * @param refDate The reference date of the number
+   * @return The next number, to be formatted as the sequence value.
+   */
+  public long getNextNum(Sequence sequence, LocalDate refDate) {
+    return sequenceBlocksMap
+        .computeIfAbsent(sequence.getId(), id -> new SequenceBlocks())
+        .getNextNum(sequence, refDate);
+  }
+
+  /**
+   * Drop the blocks reserved for a sequence, the numbers not given yet are lost.
+   *
+   * @param sequenceId The id of the sequence
+   */
+  public void invalidate(Long sequenceId) {
+    sequenceBlocksMap.remove(sequenceId);
+  }
+
+  /**
+   * Reserve a block of numbers on the sequence version covering the given date, creating the
+   * version if there is none. This is done in a new entity manager so that the sequence is only
+   * locked for the time of the reservation, whatever the length of the current transaction.
+   *
+   * <p>The new entity manager takes a second connection while the caller holds its own one.
+   * Reservations are done one at a time for the whole server, so that they use at most one more
+   * connection of the pool whatever the number of callers waiting for numbers.
+   */
+  protected Block reserveBlock(Sequence sequence, LocalDate refDate) {
+    synchronized (reservationLock) {
+      return reserveBlockInNewTransaction(sequence, refDate);
+    }
+  }
+
+  protected Block reserveBlockInNewTransaction(Sequence sequence, LocalDate refDate) {
+    EntityManager em = JPA.em().getEntityManagerFactory().createEntityManager();
+    try {
+      em.getTransaction().begin();
+
+      long lockStart = System.nanoTime();
+      Sequence seq =
+          em.createQuery("SELECT self FROM Sequence self WHERE self.id = :id", Sequence.class)
+              .setParameter("id", sequence.getId())
+              .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+              .getSingleResult();
+      sequenceLockMetrics.recordLockWait(seq.getId(), System.nanoTime() - lockStart);
+
+      int increment = seq.getToBeAdded();
+      long blockLength = (long) Math.max(seq.getReservedBlockSize(), 1) * increment;
+
+      List<SequenceVersion> sequenceVersionList =
+          em.createQuery(
+                  "SELECT self FROM SequenceVersion self "
+                      + "WHERE self.sequence = :sequence AND self.startDate <= :date "
+                      + "AND (self.endDate IS NULL OR self.endDate >= :date) "
+                      + "ORDER BY self.startDate DESC",
+                  SequenceVersion.class)
+              .setParameter("sequence", seq)
+              .setParameter("date", refDate)
+              .setMaxResults(1)
+              .getResultList();
+
+      SequenceVersion sequenceVersion;
+      long firstNum;
+      if (sequenceVersionList.isEmpty()) {
+        sequenceVersion = sequenceVersionGeneratorService.createNewSequenceVersion(seq, refDate);
+        firstNum = sequenceVersion.getNextNum();
+        sequenceVersion.setNextNum(firstNum + blockLength);
+        em.persist(sequenceVersion);
+      } else {
+        // Bulk update, so the reservation itself does not drop the blocks through the listener.
+        sequenceVersion = sequenceVersionList.get(0);
+        firstNum = sequenceVersion.getNextNum();
+        em.createQuery(
+                "UPDATE SequenceVersion self SET self.nextNum = :nextNum, "
+                    + "self.version = self.version + 1 WHERE self.id = :id")
+            .setParameter("nextNum", firstNum + blockLength)
+            .setParameter("id", sequenceVersion.getId())
+            .executeUpdate();
+      }
+
+      em.getTransaction().commit();
+
+      log.debug(
+          "Numbers {} to {} reserved for sequence {}",
+          firstNum,
+          firstNum + blockLength - increment,
+          seq.getFullName());
+
+      return new Block(
+          sequenceVersion.getStartDate(),
+          sequenceVersion.getEndDate(),
+          firstNum,
+          firstNum + blockLength,
+          increment);
+    } finally {
+      if (em.getTransaction().isActive()) {
+        em.getTransaction().rollback();
+      }
+      em.close();
+    }
+  }
+
+  /** Blocks reserved for a sequence, one per sequence version. */
+  protected class SequenceBlocks {
+
+    private final List<Block> blocks = new ArrayList<>();
+
+    protected synchronized long getNextNum(Sequence sequence, LocalDate refDate) {
+      for (Block block : blocks) {
+        if (block.covers(refDate)) {
+          if (block.hasNext()) {
+            return block.next();
+          }
+          blocks.remove(block);
+          break;
+        }
+      }
+
+      Block block = reserveBlock(sequence, refDate);
+      blocks.add(block);
+      return block.next();
+    }
+  }
+
+  /** Range of numbers reserved on a sequence version, from first to end excluded. */
+  protected static class Block {
+
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long end;
+    private final int increment;
+    private long nextNum;
+
+    protected Block(LocalDate startDate, LocalDate endDate, long first, long end, int increment) {
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.nextNum = first;
+      this.end = end;
+      this.increment = increment;
+    }
+
+    protected boolean covers(LocalDate date) {
+      return !startDate.isAfter(date) && (endDate == null || !endDate.isBefore(date));
+    }
+
+    protected boolean hasNext() {
+      return nextNum < end;
+    }
+
+    protected long next() {
+      long num = nextNum;
+      nextNum += increment;
+      return num;
+    }
+  }
+}
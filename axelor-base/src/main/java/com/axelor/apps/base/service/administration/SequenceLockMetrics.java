@@ -0,0 +1,109 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Time spent by the application waiting for the lock of each sequence, since the server started.
+ * The lock is taken once per generated number for the sequences without reserved blocks, and once
+ * per block for the others.
+ */
+@Singleton
+public class SequenceLockMetrics {
+
+  protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final Map<Long, Statistics> statisticsMap = new ConcurrentHashMap<>();
+
+  /**
+   * Record a wait for the lock of a sequence.
+   *
+   * @param sequenceId The id of the locked sequence
+   * @param waitNanos The time spent waiting for the lock, in nanoseconds
+   */
+  public void recordLockWait(Long sequenceId, long waitNanos) {
+    statisticsMap.computeIfAbsent(sequenceId, id -> new Statistics()).record(waitNanos);
+    log.debug(
+        "Sequence {} locked after {} ms", sequenceId, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+  }
+
+  /**
+   * @param sequenceId The id of a sequence
+   * @return The lock statistics of the sequence, or null if it has not been locked yet.
+   */
+  public Statistics getStatistics(Long sequenceId) {
+    return statisticsMap.get(sequenceId);
+  }
+
+  /** @return The lock statistics, by sequence id. */
+  public Map<Long, Statistics> getStatistics() {
+    return Collections.unmodifiableMap(statisticsMap);
+  }
+
+  public void reset() {
+    statisticsMap.clear();
+  }
+
+  public static class Statistics {
+
+    private final LongAdder lockCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    protected void record(long waitNanos) {
+      lockCount.increment();
+      totalWaitNanos.add(waitNanos);
+      maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public long getLockCount() {
+      return lockCount.sum();
+    }
+
+    public long getTotalWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+    }
+
+    public long getMaxWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public double getAverageWaitMillis() {
+      long count = lockCount.sum();
+      return count == 0 ? 0 : totalWaitNanos.sum() / 1_000_000d / count;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "locks: %d, total wait: %d ms, average wait: %.3f ms, max wait: %d ms",
+          getLockCount(), getTotalWaitMillis(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+  }
+}
@@ -41,6 +41,7 @@ import com.axelor.rpc.Context;
 import com.axelor.script.GroovyScriptHelper;
 import com.axelor.utils.helpers.StringHelper;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
@@ -52,11 +53,14 @@ import java.time.temporal.IsoFields;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.persistence.FlushModeType;
 import javax.persistence.LockModeType;
+import javax.transaction.Synchronization;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,6 +83,10 @@ public class SequenceService {
   protected static final int SEQ_MAX_LENGTH = 14;
   protected static final int NUMBER_OF_LETTERS = 26;
 
+  /** Codes of the sequences of legal documents, whose numbers must not have gaps. */
+  protected static final Set<String> GAPLESS_SEQUENCE_CODES =
+      ImmutableSet.of("invoice", "move", "expense", "fixedAsset", "bankOrder");
+
   protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   protected final SequenceVersionRepository sequenceVersionRepository;
@@ -89,17 +97,33 @@ public class SequenceService {
 
   protected final SequenceRepository sequenceRepo;
 
+  protected final SequenceBlockAllocator sequenceBlockAllocator;
+
+  protected final SequenceLockMetrics sequenceLockMetrics;
+
   @Inject
   public SequenceService(
       SequenceVersionRepository sequenceVersionRepository,
       AppBaseService appBaseService,
       SequenceRepository sequenceRepo,
-      SequenceVersionGeneratorService sequenceVersionGeneratorService) {
+      SequenceVersionGeneratorService sequenceVersionGeneratorService,
+      SequenceBlockAllocator sequenceBlockAllocator,
+      SequenceLockMetrics sequenceLockMetrics) {
 
     this.sequenceVersionRepository = sequenceVersionRepository;
     this.appBaseService = appBaseService;
     this.sequenceRepo = sequenceRepo;
     this.sequenceVersionGeneratorService = sequenceVersionGeneratorService;
+    this.sequenceBlockAllocator = sequenceBlockAllocator;
+    this.sequenceLockMetrics = sequenceLockMetrics;
+  }
+
+  /**
+   * @return true if the numbers of the sequence must not have gaps, they can then not be reserved
+   *     by blocks.
+   */
+  public static boolean isGapless(Sequence sequence) {
+    return GAPLESS_SEQUENCE_CODES.contains(sequence.getCodeSelect());
   }
 
   public static boolean isYearValid(Sequence sequence) {
@@ -215,10 +239,12 @@ public class SequenceService {
   }
 
   protected String getSequenceValue(SequenceVersion sequenceVersion) throws AxelorException {
+    return getSequenceValue(sequenceVersion.getSequence(), sequenceVersion.getNextNum());
+  }
+
+  protected String getSequenceValue(Sequence sequence, Long nextNum) throws AxelorException {
 
-    Sequence sequence = sequenceVersion.getSequence();
     SequenceTypeSelect sequenceTypeSelect = sequence.getSequenceTypeSelect();
-    Long nextNum = sequenceVersion.getNextNum();
 
     String padStr;
     String nextSequence;
@@ -243,7 +269,7 @@ public class SequenceService {
 
       default:
         throw new AxelorException(
-            sequenceVersion,
+            sequence,
             TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
             I18n.get(BaseExceptionMessage.SEQUENCE_TYPE_UNHANDLED),
             sequenceTypeSelect);
@@ -534,6 +560,11 @@ public class SequenceService {
   public String getSequenceNumber(
       Sequence sequence, LocalDate refDate, Class objectClass, String fieldName, Model model)
       throws AxelorException {
+    if (sequence.getReservedBlockSize() > 0 && !isGapless(sequence)) {
+      return getReservedSequenceNumber(sequence, refDate, objectClass, fieldName, model);
+    }
+
+    long lockStart = System.nanoTime();
     Sequence seq =
         JPA.em()
             .createQuery("SELECT self FROM Sequence self WHERE id = :id", Sequence.class)
@@ -541,6 +572,7 @@ public class SequenceService {
             .setLockMode(LockModeType.PESSIMISTIC_WRITE)
             .setFlushMode(FlushModeType.COMMIT)
             .getSingleResult();
+    sequenceLockMetrics.recordLockWait(seq.getId(), System.nanoTime() - lockStart);
     SequenceVersion sequenceVersion = getVersion(seq, refDate);
     String nextSeq = computeSequenceNumber(sequenceVersion, seq, refDate, model);
 
@@ -557,9 +589,96 @@ public class SequenceService {
     return nextSeq;
   }
 
+  /**
+   * Get the next number of a sequence from the numbers reserved by blocks, without locking the
+   * sequence.
+   */
+  protected String getReservedSequenceNumber(
+      Sequence sequence, LocalDate refDate, Class objectClass, String fieldName, Model model)
+      throws AxelorException {
+    long nextNum = sequenceBlockAllocator.getNextNum(sequence, refDate);
+    String nextSeq = computeSequenceNumber(sequence, nextNum, refDate, model);
+
+    if (appBaseService.getAppBase().getCheckExistingSequenceOnGeneration()
+        && objectClass != null
+        && !Strings.isNullOrEmpty(fieldName)) {
+      this.isSequenceAlreadyExisting(objectClass, fieldName, nextSeq, sequence);
+    }
+    return nextSeq;
+  }
+
+  /**
+   * Set the sequence number of a record just before the commit of the current transaction, so
+   * that the sequence is only locked at the very end of the transaction instead of from the
+   * generation of the number. This is meant for the sequences which must not have gaps, whose
+   * number is not needed before the commit. Without transaction, the number is set right away.
+   *
+   * @param code The code of the sequence
+   * @param company The company of the sequence
+   * @param model The record to number, it will have been saved when the number is set
+   * @param fieldName The field of the record receiving the number
+   */
+  public void setSequenceNumberOnCommit(
+      String code, Company company, Model model, String fieldName) throws AxelorException {
+    Sequence sequence = getSequence(code, company);
+
+    if (sequence != null) {
+      setSequenceNumberOnCommit(sequence, appBaseService.getTodayDate(company), model, fieldName);
+    }
+  }
+
+  /**
+   * @see #setSequenceNumberOnCommit(String, Company, Model, String)
+   * @param sequence The sequence to use
+   * @param refDate The reference date of the number
+   * @param model The record to number, it will have been saved when the number is set
+   * @param fieldName The field of the record receiving the number
+   */
+  public void setSequenceNumberOnCommit(
+      Sequence sequence, LocalDate refDate, Model model, String fieldName) throws AxelorException {
+    Class<? extends Model> objectClass = EntityHelper.getEntityClass(model);
+
+    if (!JPA.em().getTransaction().isActive()) {
+      String nextSeq = getSequenceNumber(sequence, refDate, objectClass, fieldName, model);
+      Mapper.of(objectClass).set(model, fieldName, nextSeq);
+      return;
+    }
+
+    JPA.em()
+        .unwrap(Session.class)
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {
+                try {
+                  // The session has already been flushed, the number is written by a new flush.
+                  String nextSeq =
+                      getSequenceNumber(sequence, refDate, objectClass, fieldName, model);
+                  Mapper mapper = Mapper.of(objectClass);
+                  mapper.set(model, fieldName, nextSeq);
+                  if (!JPA.em().contains(model)) {
+                    mapper.set(JPA.em().find(objectClass, model.getId()), fieldName, nextSeq);
+                  }
+                  JPA.em().flush();
+                } catch (AxelorException e) {
+                  throw new IllegalStateException(e);
+                }
+              }
+
+              @Override
+              public void afterCompletion(int status) {}
+            });
+  }
+
   protected String computeSequenceNumber(
       SequenceVersion sequenceVersion, Sequence sequence, LocalDate refDate, Model model)
       throws AxelorException {
+    return computeSequenceNumber(sequence, sequenceVersion.getNextNum(), refDate, model);
+  }
+
+  protected String computeSequenceNumber(
+      Sequence sequence, Long nextNum, LocalDate refDate, Model model) throws AxelorException {
     String seqPrefixe = StringUtils.defaultString(sequence.getPrefixe(), "");
     String seqSuffixe = StringUtils.defaultString(sequence.getSuffixe(), "");
     if (sequence.getPrefixGroovyOk()) {
@@ -569,7 +688,7 @@ public class SequenceService {
       seqSuffixe = StringUtils.defaultString(getGroovyValue(sequence.getSuffixGroovy(), model), "");
     }
 
-    String sequenceValue = getSequenceValue(sequenceVersion);
+    String sequenceValue = getSequenceValue(sequence, nextNum);
 
     String nextSeq =
         (seqPrefixe + sequenceValue + seqSuffixe)
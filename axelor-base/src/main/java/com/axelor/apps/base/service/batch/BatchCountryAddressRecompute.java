@@ -26,9 +26,7 @@ import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.CountryRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.service.AddressService;
-import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.google.inject.Inject;
@@ -71,8 +69,6 @@ public class BatchCountryAddressRecompute extends BatchStrategy {
           CollectionUtils.isNotEmpty(baseBatch.getCountrySet()) ? baseBatch.getCountrySet() : 0L);
     }
 
-    int offset = 0;
-    List<Address> addressList;
     Query<Country> countryQuery =
         countryRepository.all().filter(filter).bind(queryParameters).order("id");
     List<Long> countryIdList =
@@ -80,27 +76,19 @@ public class BatchCountryAddressRecompute extends BatchStrategy {
             .map(m -> (Long) m.get("id"))
             .collect(Collectors.toList());
 
-    while (!(addressList =
-            addressRepository
-                .all()
-                .filter("self.addressL7Country.id IN :countryIds")
-                .bind("countryIds", countryIdList)
-                .order("id")
-                .fetch(AbstractBatch.FETCH_LIMIT, offset))
-        .isEmpty()) {
-      for (Address address : addressList) {
-        ++offset;
-        try {
-          recomputeAddress(address);
-          incrementDone();
-        } catch (Exception e) {
-          TraceBackService.trace(e, ExceptionOriginRepository.ADDRESS_RECOMPUTE, batch.getId());
-          incrementAnomaly();
-        }
-      }
-      JPA.clear();
-      findBatch();
-    }
+    chunkIterator(Address.class, "self.addressL7Country.id IN :countryIds")
+        .bind("countryIds", countryIdList)
+        .forEach(
+            address -> {
+              try {
+                recomputeAddress(address);
+                incrementDone();
+              } catch (Exception e) {
+                TraceBackService.trace(
+                    e, ExceptionOriginRepository.ADDRESS_RECOMPUTE, batch.getId());
+                incrementAnomaly();
+              }
+            });
   }
 
   @Transactional(rollbackOn = {Exception.class})
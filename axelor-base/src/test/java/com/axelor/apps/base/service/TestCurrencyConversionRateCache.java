@@ -0,0 +1,211 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.db.repo.CurrencyConversionLineRepository;
+import com.axelor.apps.base.service.app.AppBaseService;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestCurrencyConversionRateCache {
+
+  private AppBaseService appBaseService;
+  private List<CurrencyConversionLine> currencyConversionLineList;
+  private CurrencyConversionRateCache currencyConversionRateCache;
+  private CurrencyServiceImpl currencyService;
+  private Currency euro;
+  private Currency dollar;
+  private Currency pound;
+
+  @BeforeEach
+  void prepare() {
+    appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getTodayDate(any())).thenReturn(LocalDate.of(2024, 6, 15));
+    currencyConversionLineList = new ArrayList<>();
+    when(appBaseService.getCurrencyConfigurationLineList())
+        .thenAnswer(invocation -> new ArrayList<>(currencyConversionLineList));
+    currencyConversionRateCache = new CurrencyConversionRateCache(appBaseService);
+    currencyService =
+        new CurrencyServiceImpl(
+            appBaseService,
+            mock(CurrencyConversionLineRepository.class),
+            currencyConversionRateCache);
+
+    euro = createCurrency(1L, "EUR");
+    dollar = createCurrency(2L, "USD");
+    pound = createCurrency(3L, "GBP");
+  }
+
+  @Test
+  void testGetRateByDate() {
+    currencyConversionLineList.add(
+        createLine(3L, euro, dollar, "1.10", LocalDate.of(2024, 3, 1), null));
+    currencyConversionLineList.add(
+        createLine(1L, euro, dollar, "1.05", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+    currencyConversionLineList.add(
+        createLine(2L, euro, dollar, "1.08", LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)));
+
+    Assertions.assertEquals(1L, getRateLineId(euro, dollar, LocalDate.of(2024, 1, 1)));
+    Assertions.assertEquals(1L, getRateLineId(euro, dollar, LocalDate.of(2024, 1, 31)));
+    Assertions.assertEquals(2L, getRateLineId(euro, dollar, LocalDate.of(2024, 2, 1)));
+    Assertions.assertEquals(2L, getRateLineId(euro, dollar, LocalDate.of(2024, 2, 29)));
+    Assertions.assertEquals(3L, getRateLineId(euro, dollar, LocalDate.of(2024, 3, 1)));
+    Assertions.assertEquals(3L, getRateLineId(euro, dollar, LocalDate.of(2030, 1, 1)));
+  }
+
+  @Test
+  void testGetRateMissing() {
+    currencyConversionLineList.add(
+        createLine(1L, euro, dollar, "1.05", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+    currencyConversionLineList.add(
+        createLine(2L, euro, dollar, "1.10", LocalDate.of(2024, 3, 1), null));
+
+    Assertions.assertNull(
+        currencyConversionRateCache.getRate(euro, dollar, LocalDate.of(2023, 12, 31)));
+    Assertions.assertNull(
+        currencyConversionRateCache.getRate(euro, dollar, LocalDate.of(2024, 2, 15)));
+    Assertions.assertNull(
+        currencyConversionRateCache.getRate(dollar, euro, LocalDate.of(2024, 1, 15)));
+    Assertions.assertNull(
+        currencyConversionRateCache.getRate(euro, pound, LocalDate.of(2024, 1, 15)));
+  }
+
+  @Test
+  void testGetRateMatchesIsoCode() {
+    currencyConversionLineList.add(
+        createLine(1L, euro, dollar, "1.10", LocalDate.of(2024, 1, 1), null));
+
+    Currency otherEuro = createCurrency(10L, "EUR");
+    Currency otherDollar = createCurrency(20L, "USD");
+
+    Assertions.assertEquals(1L, getRateLineId(otherEuro, otherDollar, LocalDate.of(2024, 1, 1)));
+  }
+
+  @Test
+  void testGetRateLoadsOnce() {
+    currencyConversionLineList.add(
+        createLine(1L, euro, dollar, "1.10", LocalDate.of(2024, 1, 1), null));
+
+    currencyConversionRateCache.getRate(euro, dollar, LocalDate.of(2024, 1, 1));
+    currencyConversionRateCache.getRate(dollar, euro, LocalDate.of(2024, 1, 1));
+    currencyConversionRateCache.getRate(euro, pound, LocalDate.of(2024, 1, 1));
+
+    verify(appBaseService, times(1)).getCurrencyConfigurationLineList();
+  }
+
+  @Test
+  void testInvalidateReloadsRates() {
+    CurrencyConversionLine currencyConversionLine =
+        createLine(1L, euro, dollar, "1.10", LocalDate.of(2024, 1, 1), null);
+    currencyConversionLineList.add(currencyConversionLine);
+    Assertions.assertEquals(
+        new BigDecimal("1.10"),
+        currencyConversionRateCache
+            .getRate(euro, dollar, LocalDate.of(2024, 1, 1))
+            .getExchangeRate());
+
+    currencyConversionLine.setExchangeRate(new BigDecimal("1.20"));
+    currencyConversionLineList.add(
+        createLine(2L, euro, pound, "0.85", LocalDate.of(2024, 1, 1), null));
+    Assertions.assertNull(
+        currencyConversionRateCache.getRate(euro, pound, LocalDate.of(2024, 1, 1)));
+
+    currencyConversionRateCache.invalidate();
+
+    Assertions.assertEquals(
+        new BigDecimal("1.20"),
+        currencyConversionRateCache
+            .getRate(euro, dollar, LocalDate.of(2024, 1, 1))
+            .getExchangeRate());
+    Assertions.assertEquals(2L, getRateLineId(euro, pound, LocalDate.of(2024, 1, 1)));
+    verify(appBaseService, times(2)).getCurrencyConfigurationLineList();
+  }
+
+  @Test
+  void testConversionRateFallsBackOnInverseRate() throws AxelorException {
+    currencyConversionLineList.add(
+        createLine(1L, euro, dollar, "1.25", LocalDate.of(2024, 1, 1), null));
+
+    Assertions.assertEquals(
+        new BigDecimal("1.25"),
+        currencyService.getCurrencyConversionRate(euro, dollar, LocalDate.of(2024, 1, 1)));
+    Assertions.assertEquals(
+        new BigDecimal("0.8000000000"),
+        currencyService.getCurrencyConversionRate(dollar, euro, LocalDate.of(2024, 1, 1)));
+  }
+
+  @Test
+  void testConversionRateMissing() {
+    currencyConversionLineList.add(
+        createLine(1L, euro, dollar, "1.25", LocalDate.of(2024, 1, 1), null));
+
+    Assertions.assertThrows(
+        AxelorException.class,
+        () -> currencyService.getCurrencyConversionRate(euro, dollar, LocalDate.of(2023, 1, 1)));
+    Assertions.assertThrows(
+        AxelorException.class,
+        () -> currencyService.getCurrencyConversionRate(euro, pound, LocalDate.of(2024, 1, 1)));
+  }
+
+  protected Long getRateLineId(Currency startCurrency, Currency endCurrency, LocalDate date) {
+    return currencyConversionRateCache
+        .getRate(startCurrency, endCurrency, date)
+        .getCurrencyConversionLineId();
+  }
+
+  protected Currency createCurrency(Long id, String codeISO) {
+    Currency currency = new Currency();
+    currency.setId(id);
+    currency.setCode(codeISO);
+    currency.setCodeISO(codeISO);
+    currency.setName(codeISO);
+    return currency;
+  }
+
+  protected CurrencyConversionLine createLine(
+      Long id,
+      Currency startCurrency,
+      Currency endCurrency,
+      String exchangeRate,
+      LocalDate fromDate,
+      LocalDate toDate) {
+    CurrencyConversionLine currencyConversionLine = new CurrencyConversionLine();
+    currencyConversionLine.setId(id);
+    currencyConversionLine.setStartCurrency(startCurrency);
+    currencyConversionLine.setEndCurrency(endCurrency);
+    currencyConversionLine.setExchangeRate(new BigDecimal(exchangeRate));
+    currencyConversionLine.setFromDate(fromDate);
+    currencyConversionLine.setToDate(toDate);
+    return currencyConversionLine;
+  }
+}
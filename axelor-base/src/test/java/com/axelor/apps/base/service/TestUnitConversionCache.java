@@ -0,0 +1,217 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.db.Query;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestUnitConversionCache {
+
+  private UnitConversionRepository unitConversionRepo;
+  private List<UnitConversion> unitConversionList;
+  private UnitConversionCache unitConversionCache;
+  private Unit kilogram;
+  private Unit gram;
+  private Unit piece;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void prepare() {
+    unitConversionRepo = mock(UnitConversionRepository.class);
+    Query<UnitConversion> query = mock(Query.class);
+    when(unitConversionRepo.all()).thenReturn(query);
+    when(query.order("id")).thenReturn(query);
+    unitConversionList = new ArrayList<>();
+    when(query.fetch()).thenAnswer(invocation -> new ArrayList<>(unitConversionList));
+    unitConversionCache = new UnitConversionCache(unitConversionRepo);
+
+    kilogram = createUnit(1L, "kg");
+    gram = createUnit(2L, "g");
+    piece = createUnit(3L, "piece");
+  }
+
+  @Test
+  void testGetConversionsLoadsOnce() {
+    unitConversionList.add(createCoefConversion(1L, kilogram, gram, new BigDecimal("1000")));
+
+    List<UnitConversionCache.Entry> conversions =
+        unitConversionCache.getConversions(kilogram, gram);
+    List<UnitConversionCache.Entry> reversedConversions =
+        unitConversionCache.getConversions(gram, kilogram);
+
+    Assertions.assertEquals(1, conversions.size());
+    Assertions.assertSame(conversions, reversedConversions);
+    Assertions.assertEquals(new BigDecimal("1000"), conversions.get(0).getCoef());
+    Assertions.assertTrue(unitConversionCache.getConversions(kilogram, piece).isEmpty());
+    verify(unitConversionRepo, times(1)).all();
+  }
+
+  @Test
+  void testGetConversionsOrderedById() {
+    unitConversionList.add(createCoefConversion(1L, kilogram, gram, new BigDecimal("1000")));
+    unitConversionList.add(createCoefConversion(2L, gram, kilogram, new BigDecimal("0.001")));
+
+    List<UnitConversionCache.Entry> conversions =
+        unitConversionCache.getConversions(gram, kilogram);
+
+    Assertions.assertEquals(2, conversions.size());
+    Assertions.assertEquals(kilogram.getId(), conversions.get(0).getStartUnitId());
+    Assertions.assertEquals(gram.getId(), conversions.get(1).getStartUnitId());
+  }
+
+  @Test
+  void testInvalidateReloadsConversions() {
+    UnitConversion unitConversion =
+        createCoefConversion(1L, kilogram, gram, new BigDecimal("1000"));
+    unitConversionList.add(unitConversion);
+    Assertions.assertEquals(new BigDecimal("1000"), getFirstCoef(kilogram, gram));
+
+    unitConversion.setCoef(new BigDecimal("100"));
+    unitConversionList.add(createCoefConversion(2L, kilogram, piece, BigDecimal.ONE));
+    Assertions.assertEquals(new BigDecimal("1000"), getFirstCoef(kilogram, gram));
+
+    unitConversionCache.invalidate();
+
+    Assertions.assertEquals(new BigDecimal("100"), getFirstCoef(kilogram, gram));
+    Assertions.assertEquals(1, unitConversionCache.getConversions(kilogram, piece).size());
+    verify(unitConversionRepo, times(2)).all();
+  }
+
+  @Test
+  void testFormulaCompiledOncePerConversion() {
+    unitConversionList.add(createFormulaConversion(1L, piece, kilogram, "$Product.netMass$ * 2"));
+    UnitConversionCache.Entry entry = unitConversionCache.getConversions(piece, kilogram).get(0);
+
+    UnitConversionCache.CompiledFormula compiledFormula = entry.getCompiledFormula();
+
+    Assertions.assertTrue(compiledFormula.isBindable());
+    Assertions.assertSame(compiledFormula, entry.getCompiledFormula());
+    Assertions.assertSame(
+        compiledFormula,
+        unitConversionCache.getConversions(kilogram, piece).get(0).getCompiledFormula());
+    Assertions.assertEquals(
+        0, new BigDecimal("3.5").compareTo(compiledFormula.evaluate(createProduct("1.75"))));
+    Assertions.assertEquals(
+        0, new BigDecimal("0.5").compareTo(compiledFormula.evaluate(createProduct("0.25"))));
+  }
+
+  @Test
+  void testFormulaRecompiledAfterInvalidate() {
+    UnitConversion unitConversion =
+        createFormulaConversion(1L, piece, kilogram, "$Product.netMass$ * 2");
+    unitConversionList.add(unitConversion);
+    UnitConversionCache.CompiledFormula compiledFormula =
+        unitConversionCache.getConversions(piece, kilogram).get(0).getCompiledFormula();
+
+    unitConversion.setFormula("$Product.netMass$ * 3");
+    unitConversionCache.invalidate();
+    UnitConversionCache.CompiledFormula newCompiledFormula =
+        unitConversionCache.getConversions(piece, kilogram).get(0).getCompiledFormula();
+
+    Assertions.assertNotSame(compiledFormula, newCompiledFormula);
+    Assertions.assertEquals(
+        0, new BigDecimal("6").compareTo(newCompiledFormula.evaluate(createProduct("2"))));
+  }
+
+  @Test
+  void testFormulaWithRepeatedVariables() {
+    UnitConversionCache.CompiledFormula compiledFormula =
+        new UnitConversionCache.CompiledFormula(
+            "($Product.netMass$ + $Product.netMass$) * $Product.netMass$");
+
+    Assertions.assertTrue(compiledFormula.isBindable());
+    Assertions.assertEquals(
+        0, new BigDecimal("18").compareTo(compiledFormula.evaluate(createProduct("3"))));
+  }
+
+  @Test
+  void testFormulaWithNonNumericValue() {
+    UnitConversionCache.CompiledFormula compiledFormula =
+        new UnitConversionCache.CompiledFormula("$Product.name$ * 2");
+    Product product = createProduct("1");
+    product.setName("Box");
+
+    Assertions.assertTrue(compiledFormula.isBindable());
+    Assertions.assertNull(compiledFormula.evaluate(product));
+  }
+
+  @Test
+  void testFormulaNotBindable() {
+    Assertions.assertFalse(new UnitConversionCache.CompiledFormula("$__date__$ * 2").isBindable());
+    Assertions.assertFalse(
+        new UnitConversionCache.CompiledFormula("$Product.netMass * 2").isBindable());
+    Assertions.assertFalse(
+        new UnitConversionCache.CompiledFormula("$Product.netMass + 1$ * 2").isBindable());
+  }
+
+  protected BigDecimal getFirstCoef(Unit startUnit, Unit endUnit) {
+    return unitConversionCache.getConversions(startUnit, endUnit).get(0).getCoef();
+  }
+
+  protected Unit createUnit(Long id, String name) {
+    Unit unit = new Unit();
+    unit.setId(id);
+    unit.setName(name);
+    return unit;
+  }
+
+  protected UnitConversion createCoefConversion(
+      Long id, Unit startUnit, Unit endUnit, BigDecimal coef) {
+    UnitConversion unitConversion = createConversion(id, startUnit, endUnit);
+    unitConversion.setTypeSelect(UnitConversionRepository.TYPE_COEFF);
+    unitConversion.setCoef(coef);
+    return unitConversion;
+  }
+
+  protected UnitConversion createFormulaConversion(
+      Long id, Unit startUnit, Unit endUnit, String formula) {
+    UnitConversion unitConversion = createConversion(id, startUnit, endUnit);
+    unitConversion.setTypeSelect(UnitConversionRepository.TYPE_FORMULA);
+    unitConversion.setFormula(formula);
+    return unitConversion;
+  }
+
+  protected UnitConversion createConversion(Long id, Unit startUnit, Unit endUnit) {
+    UnitConversion unitConversion = new UnitConversion();
+    unitConversion.setId(id);
+    unitConversion.setStartUnit(startUnit);
+    unitConversion.setEndUnit(endUnit);
+    return unitConversion;
+  }
+
+  protected Product createProduct(String netMass) {
+    Product product = new Product();
+    product.setNetMass(new BigDecimal(netMass));
+    return product;
+  }
+}
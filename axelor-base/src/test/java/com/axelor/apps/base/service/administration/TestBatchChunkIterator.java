@@ -0,0 +1,233 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.service.administration.BatchChunkIterator.ChunkPolicy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBatchChunkIterator {
+
+  private static final String CUSTOMER_FILTER = "self.isCustomer = :isCustomer";
+
+  private List<Partner> partnerList;
+  private Set<Long> sessionIdSet;
+  private List<String> eventList;
+
+  /**
+   * Fetches the customers of an in-memory table, keeping the ids of the fetched partners as the
+   * session would, instead of running the queries.
+   */
+  protected class TestBatchChunkIteratorImpl extends BatchChunkIterator<Partner> {
+
+    protected final List<String> keysetFilterList = new ArrayList<>();
+
+    public TestBatchChunkIteratorImpl(String filter) {
+      super(Partner.class, filter);
+    }
+
+    @Override
+    protected List<Partner> fetchChunk(String keysetFilter) {
+      keysetFilterList.add(keysetFilter);
+      List<Partner> chunk =
+          partnerList.stream()
+              .filter(partner -> partner.getId() > lastId)
+              .filter(
+                  partner ->
+                      filter == null || params.get("isCustomer").equals(partner.getIsCustomer()))
+              .limit(chunkSize)
+              .collect(Collectors.toList());
+      chunk.forEach(partner -> sessionIdSet.add(partner.getId()));
+      return chunk;
+    }
+
+    @Override
+    protected void flush() {
+      eventList.add("flush");
+    }
+
+    @Override
+    protected void clear() {
+      eventList.add("clear");
+      sessionIdSet.clear();
+    }
+  }
+
+  @BeforeEach
+  void prepare() {
+    partnerList = new ArrayList<>();
+    sessionIdSet = new HashSet<>();
+    eventList = new ArrayList<>();
+  }
+
+  @Test
+  void testChunkBoundaries() {
+    addPartners(10, true);
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(3);
+
+    List<Integer> chunkSizeList = new ArrayList<>();
+    long count = iterator.forEachChunk(chunk -> chunkSizeList.add(chunk.size()));
+
+    Assertions.assertEquals(10, count);
+    Assertions.assertEquals(Arrays.asList(3, 3, 3, 1), chunkSizeList);
+    Assertions.assertEquals(getId(9), iterator.getLastId());
+    Assertions.assertEquals(5, iterator.keysetFilterList.size());
+  }
+
+  @Test
+  void testChunkBoundariesOnChunkSizeMultiple() {
+    addPartners(9, true);
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(3);
+
+    List<Integer> chunkSizeList = new ArrayList<>();
+    long count = iterator.forEachChunk(chunk -> chunkSizeList.add(chunk.size()));
+
+    Assertions.assertEquals(9, count);
+    Assertions.assertEquals(Arrays.asList(3, 3, 3), chunkSizeList);
+    Assertions.assertEquals(Arrays.asList("clear", "clear", "clear"), eventList);
+  }
+
+  @Test
+  void testEmptyResult() {
+    addPartners(4, false);
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(3);
+    iterator.afterChunk(() -> eventList.add("afterChunk"));
+
+    long count = iterator.forEach(partner -> Assertions.fail("No partner expected"));
+
+    Assertions.assertEquals(0, count);
+    Assertions.assertEquals(0, iterator.getLastId());
+    Assertions.assertTrue(iterator.nextChunk().isEmpty());
+    Assertions.assertTrue(eventList.isEmpty());
+  }
+
+  @Test
+  void testBinding() {
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(3);
+    Map<String, Object> params = new HashMap<>();
+    params.put("partnerTypeSelect", 1);
+    iterator.bind(params).bind(null);
+    iterator.nextChunk();
+
+    Assertions.assertEquals(
+        Collections.singletonList("(" + CUSTOMER_FILTER + ") AND self.id > :chunkLastId"),
+        iterator.keysetFilterList);
+    Assertions.assertEquals(true, iterator.params.get("isCustomer"));
+    Assertions.assertEquals(1, iterator.params.get("partnerTypeSelect"));
+    Assertions.assertFalse(iterator.params.containsKey(BatchChunkIterator.LAST_ID_PARAM));
+
+    TestBatchChunkIteratorImpl unfilteredIterator = new TestBatchChunkIteratorImpl(null);
+    unfilteredIterator.nextChunk();
+    Assertions.assertEquals(
+        Collections.singletonList("self.id > :chunkLastId"), unfilteredIterator.keysetFilterList);
+  }
+
+  @Test
+  void testEndChunkWithoutSkippingOrRepeating() {
+    addPartners(10, true);
+    // Prospects between the customers, never fetched
+    partnerList.get(2).setIsCustomer(false);
+    partnerList.get(7).setIsCustomer(false);
+    List<Long> expectedIdList = getCustomerIdList();
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(3);
+    iterator.afterChunk(() -> Assertions.assertTrue(sessionIdSet.isEmpty()));
+
+    List<Long> processedIdList = new ArrayList<>();
+    iterator.forEachChunk(
+        chunk -> {
+          List<Long> chunkIdList =
+              chunk.stream().map(Partner::getId).collect(Collectors.toList());
+          // Only the current chunk is in the session
+          Assertions.assertEquals(new HashSet<>(chunkIdList), sessionIdSet);
+          processedIdList.addAll(chunkIdList);
+          // The processed partners stop matching the filter, as a batch updating them would do
+          chunk.forEach(partner -> partner.setIsCustomer(false));
+        });
+
+    Assertions.assertEquals(expectedIdList, processedIdList);
+    Assertions.assertTrue(getCustomerIdList().isEmpty());
+  }
+
+  @Test
+  void testStartAfter() {
+    addPartners(10, true);
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(4);
+    List<Long> processedIdList = new ArrayList<>();
+    iterator.nextChunk().forEach(partner -> processedIdList.add(partner.getId()));
+    iterator.endChunk();
+
+    createCustomerIterator(4)
+        .startAfter(iterator.getLastId())
+        .forEach(partner -> processedIdList.add(partner.getId()));
+
+    Assertions.assertEquals(getCustomerIdList(), processedIdList);
+  }
+
+  @Test
+  void testChunkPolicy() {
+    addPartners(2, true);
+
+    createCustomerIterator(1).policy(ChunkPolicy.NONE).forEach(partner -> {});
+    Assertions.assertTrue(eventList.isEmpty());
+
+    TestBatchChunkIteratorImpl iterator = createCustomerIterator(1);
+    iterator.policy(ChunkPolicy.FLUSH_AND_CLEAR).afterChunk(() -> eventList.add("afterChunk"));
+    iterator.forEach(partner -> {});
+    Assertions.assertEquals(
+        Arrays.asList("flush", "clear", "afterChunk", "flush", "clear", "afterChunk"), eventList);
+  }
+
+  protected TestBatchChunkIteratorImpl createCustomerIterator(int chunkSize) {
+    TestBatchChunkIteratorImpl iterator = new TestBatchChunkIteratorImpl(CUSTOMER_FILTER);
+    iterator.bind("isCustomer", true).chunkSize(chunkSize);
+    return iterator;
+  }
+
+  /** Add partners with increasing but not contiguous ids. */
+  protected void addPartners(int count, boolean isCustomer) {
+    for (int i = 0; i < count; i++) {
+      Partner partner = new Partner();
+      partner.setId(getId(i));
+      partner.setIsCustomer(isCustomer);
+      partnerList.add(partner);
+    }
+  }
+
+  protected long getId(int index) {
+    return 10L + 3L * index;
+  }
+
+  protected List<Long> getCustomerIdList() {
+    return partnerList.stream()
+        .filter(Partner::getIsCustomer)
+        .map(Partner::getId)
+        .collect(Collectors.toList());
+  }
+}
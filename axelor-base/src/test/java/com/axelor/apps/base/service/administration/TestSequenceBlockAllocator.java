@@ -0,0 +1,130 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.base.db.Sequence;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestSequenceBlockAllocator {
+
+  private Map<LocalDate, Long> nextNumByVersion;
+  private int reservationCount;
+  private SequenceBlockAllocator sequenceBlockAllocator;
+
+  @BeforeEach
+  void prepare() {
+    nextNumByVersion = new HashMap<>();
+    reservationCount = 0;
+
+    // Monthly sequence versions, reserved in memory instead of the database
+    sequenceBlockAllocator =
+        new SequenceBlockAllocator(
+            mock(SequenceVersionGeneratorService.class), mock(SequenceLockMetrics.class)) {
+          @Override
+          protected Block reserveBlockInNewTransaction(Sequence sequence, LocalDate refDate) {
+            reservationCount++;
+            LocalDate startDate = refDate.withDayOfMonth(1);
+            long blockLength = (long) sequence.getReservedBlockSize() * sequence.getToBeAdded();
+            long firstNum = nextNumByVersion.getOrDefault(startDate, 1L);
+            nextNumByVersion.put(startDate, firstNum + blockLength);
+            return new Block(
+                startDate,
+                startDate.plusMonths(1).minusDays(1),
+                firstNum,
+                firstNum + blockLength,
+                sequence.getToBeAdded());
+          }
+        };
+  }
+
+  @Test
+  void testNumbersGivenFromTheBlock() {
+    Sequence sequence = createSequence(1L, 3, 1);
+    LocalDate date = LocalDate.of(2024, 4, 10);
+
+    Assertions.assertEquals(1, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(2, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(3, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(1, reservationCount);
+  }
+
+  @Test
+  void testNewBlockReservedWhenExhausted() {
+    Sequence sequence = createSequence(1L, 2, 5);
+    LocalDate date = LocalDate.of(2024, 4, 10);
+
+    Assertions.assertEquals(1, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(6, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(1, reservationCount);
+    Assertions.assertEquals(11, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(2, reservationCount);
+    Assertions.assertEquals(21, (long) nextNumByVersion.get(LocalDate.of(2024, 4, 1)));
+  }
+
+  @Test
+  void testOneBlockPerSequenceVersion() {
+    Sequence sequence = createSequence(1L, 10, 1);
+    LocalDate aprilDate = LocalDate.of(2024, 4, 10);
+    LocalDate mayDate = LocalDate.of(2024, 5, 10);
+
+    Assertions.assertEquals(1, sequenceBlockAllocator.getNextNum(sequence, aprilDate));
+    Assertions.assertEquals(1, sequenceBlockAllocator.getNextNum(sequence, mayDate));
+    Assertions.assertEquals(2, sequenceBlockAllocator.getNextNum(sequence, aprilDate));
+    Assertions.assertEquals(2, sequenceBlockAllocator.getNextNum(sequence, mayDate));
+    Assertions.assertEquals(2, reservationCount);
+  }
+
+  @Test
+  void testOneBlockPerSequence() {
+    Sequence firstSequence = createSequence(1L, 10, 1);
+    Sequence secondSequence = createSequence(2L, 10, 1);
+    LocalDate date = LocalDate.of(2024, 4, 10);
+
+    Assertions.assertEquals(1, sequenceBlockAllocator.getNextNum(firstSequence, date));
+    Assertions.assertEquals(11, sequenceBlockAllocator.getNextNum(secondSequence, date));
+    Assertions.assertEquals(2, sequenceBlockAllocator.getNextNum(firstSequence, date));
+    Assertions.assertEquals(2, reservationCount);
+  }
+
+  @Test
+  void testInvalidateDropsTheBlock() {
+    Sequence sequence = createSequence(1L, 10, 1);
+    LocalDate date = LocalDate.of(2024, 4, 10);
+
+    Assertions.assertEquals(1, sequenceBlockAllocator.getNextNum(sequence, date));
+    sequenceBlockAllocator.invalidate(sequence.getId());
+    Assertions.assertEquals(11, sequenceBlockAllocator.getNextNum(sequence, date));
+    Assertions.assertEquals(2, reservationCount);
+  }
+
+  protected Sequence createSequence(Long id, int reservedBlockSize, int toBeAdded) {
+    Sequence sequence = new Sequence();
+    sequence.setId(id);
+    sequence.setReservedBlockSize(reservedBlockSize);
+    sequence.setToBeAdded(toBeAdded);
+    return sequence;
+  }
+}
@@ -22,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Sequence;
 import com.axelor.apps.base.db.SequenceLettersTypeSelect;
 import com.axelor.apps.base.db.repo.SequenceRepository;
 import com.axelor.apps.base.db.repo.SequenceVersionRepository;
@@ -50,7 +51,17 @@ class TestSequenceService {
             sequenceVersionRepository,
             appBaseService,
             sequenceRepo,
-            sequenceVersionGeneratorService);
+            sequenceVersionGeneratorService,
+            mock(SequenceBlockAllocator.class),
+            mock(SequenceLockMetrics.class));
+  }
+
+  @ParameterizedTest
+  @CsvSource({"invoice,true", "move,true", "bankOrder,true", "saleOrder,false", "partner,false"})
+  void isGapless(String codeSelect, boolean expected) {
+    Sequence sequence = new Sequence();
+    sequence.setCodeSelect(codeSelect);
+    Assertions.assertEquals(expected, SequenceService.isGapless(sequence));
   }
 
   @Test
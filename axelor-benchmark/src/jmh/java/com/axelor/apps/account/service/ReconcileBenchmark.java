@@ -0,0 +1,233 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.InvoiceTerm;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.InvoicePaymentRepository;
+import com.axelor.apps.account.db.repo.InvoiceTermPaymentRepository;
+import com.axelor.apps.account.db.repo.MoveLineRepository;
+import com.axelor.apps.account.db.repo.ReconcileRepository;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.account.service.invoice.InvoiceTermPfpService;
+import com.axelor.apps.account.service.invoice.InvoiceTermService;
+import com.axelor.apps.account.service.move.MoveAdjustementService;
+import com.axelor.apps.account.service.move.MoveCreateService;
+import com.axelor.apps.account.service.move.MoveLineControlService;
+import com.axelor.apps.account.service.move.MoveToolService;
+import com.axelor.apps.account.service.move.MoveValidateService;
+import com.axelor.apps.account.service.move.PaymentMoveLineDistributionService;
+import com.axelor.apps.account.service.moveline.MoveLineCreateService;
+import com.axelor.apps.account.service.moveline.MoveLineTaxService;
+import com.axelor.apps.account.service.payment.invoice.payment.InvoicePaymentCancelService;
+import com.axelor.apps.account.service.payment.invoice.payment.InvoicePaymentCreateService;
+import com.axelor.apps.account.service.payment.invoice.payment.InvoicePaymentToolService;
+import com.axelor.apps.account.service.payment.invoice.payment.InvoiceTermPaymentService;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.service.app.AppBaseService;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Computations done when reconciling payments with invoices in a foreign currency: the paid amount
+ * in the currency of the invoice, and the unpaid invoice terms sorted in payment order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconcileBenchmark {
+
+  protected static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+  protected static final int INVOICE_TERM_COUNT = 12;
+
+  @Param({"1000", "10000"})
+  public int reconcileCount;
+
+  protected ReconcileServiceImpl reconcileService;
+  protected List<MoveLine> invoiceMoveLines;
+  protected List<MoveLine> paymentMoveLines;
+  protected List<BigDecimal> paidAmounts;
+
+  @Setup
+  public void setup() {
+    reconcileService =
+        new ReconcileServiceImpl(
+            mock(MoveToolService.class),
+            mock(AccountCustomerService.class),
+            mock(AccountConfigService.class),
+            mock(ReconcileRepository.class),
+            mock(MoveAdjustementService.class),
+            mock(ReconcileSequenceService.class),
+            mock(InvoicePaymentCancelService.class),
+            mock(InvoicePaymentCreateService.class),
+            mock(MoveLineTaxService.class),
+            mock(InvoicePaymentRepository.class),
+            mock(InvoiceTermService.class),
+            mock(AppBaseService.class),
+            mock(PaymentMoveLineDistributionService.class),
+            mock(InvoiceTermPaymentService.class),
+            mock(InvoiceTermPaymentRepository.class),
+            mock(InvoicePaymentToolService.class),
+            mock(MoveLineControlService.class),
+            mock(MoveLineRepository.class),
+            mock(SubrogationReleaseWorkflowService.class),
+            mock(MoveCreateService.class),
+            mock(MoveLineCreateService.class),
+            mock(MoveValidateService.class),
+            new CurrencyScaleServiceAccountImpl(mock(FindFixedAssetService.class)),
+            mock(InvoiceTermPfpService.class),
+            mock(AccountingSituationBalanceService.class));
+
+    Currency companyCurrency = createCurrency(1L, "EUR");
+    Currency currency = createCurrency(2L, "USD");
+    Company company = new Company();
+    company.setId(1L);
+    company.setCurrency(companyCurrency);
+
+    // Invoices paid in one or several parts, with a currency rate changing every day
+    Random random = new Random(42);
+    invoiceMoveLines = new ArrayList<>(reconcileCount);
+    paymentMoveLines = new ArrayList<>(reconcileCount);
+    paidAmounts = new ArrayList<>(reconcileCount);
+    for (int i = 0; i < reconcileCount; i++) {
+      Move move = new Move();
+      move.setId((long) i + 1);
+      move.setCompany(company);
+      move.setCurrency(currency);
+      move.setCompanyCurrency(companyCurrency);
+
+      BigDecimal currencyRate = new BigDecimal("0.9").add(BigDecimal.valueOf(i % 1000, 5));
+      BigDecimal currencyAmount = BigDecimal.valueOf(random.nextInt(1_000_000) + 100, 2);
+      BigDecimal amount = currencyAmount.multiply(currencyRate).setScale(2, RoundingMode.HALF_UP);
+      BigDecimal paidAmount =
+          random.nextBoolean()
+              ? amount
+              : amount
+                  .multiply(BigDecimal.valueOf(random.nextInt(99) + 1, 2))
+                  .setScale(2, RoundingMode.HALF_UP);
+
+      MoveLine invoiceMoveLine = createMoveLine(i * 2L + 1, move, currencyRate);
+      invoiceMoveLine.setDebit(amount);
+      invoiceMoveLine.setCurrencyAmount(currencyAmount);
+      invoiceMoveLine.setInvoiceTermList(createInvoiceTerms(random, currencyAmount));
+      invoiceMoveLines.add(invoiceMoveLine);
+
+      MoveLine paymentMoveLine = createMoveLine(i * 2L + 2, move, currencyRate);
+      paymentMoveLine.setCredit(paidAmount);
+      paymentMoveLine.setCurrencyAmount(
+          paidAmount.divide(currencyRate, 2, RoundingMode.HALF_UP).negate());
+      paymentMoveLines.add(paymentMoveLine);
+
+      paidAmounts.add(paidAmount);
+    }
+  }
+
+  protected Currency createCurrency(Long id, String code) {
+    Currency currency = new Currency();
+    currency.setId(id);
+    currency.setCode(code);
+    currency.setName(code);
+    currency.setNumberOfDecimals(2);
+    return currency;
+  }
+
+  protected MoveLine createMoveLine(Long id, Move move, BigDecimal currencyRate) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setId(id);
+    moveLine.setMove(move);
+    moveLine.setDebit(BigDecimal.ZERO);
+    moveLine.setCredit(BigDecimal.ZERO);
+    moveLine.setAmountPaid(BigDecimal.ZERO);
+    moveLine.setCurrencyRate(currencyRate);
+    return moveLine;
+  }
+
+  /**
+   * Monthly terms, some of them already paid. Either all the terms of an invoice have an estimated
+   * payment date or none of them, as the terms are then sorted by due date.
+   */
+  protected List<InvoiceTerm> createInvoiceTerms(Random random, BigDecimal currencyAmount) {
+    LocalDate dueDate = START_DATE.plusDays(random.nextInt(365));
+    boolean hasEstimatedPaymentDate = random.nextBoolean();
+    BigDecimal termAmount =
+        currencyAmount.divide(BigDecimal.valueOf(INVOICE_TERM_COUNT), 2, RoundingMode.HALF_UP);
+
+    List<InvoiceTerm> invoiceTermList = new ArrayList<>(INVOICE_TERM_COUNT);
+    for (int i = 0; i < INVOICE_TERM_COUNT; i++) {
+      InvoiceTerm invoiceTerm = new InvoiceTerm();
+      invoiceTerm.setSequence(i + 1);
+      invoiceTerm.setDueDate(dueDate.plusMonths(i));
+      if (hasEstimatedPaymentDate) {
+        invoiceTerm.setEstimatedPaymentDate(dueDate.plusMonths(i).plusDays(random.nextInt(30)));
+      }
+      invoiceTerm.setAmount(termAmount);
+      invoiceTerm.setIsPaid(random.nextInt(4) == 0);
+      invoiceTermList.add(invoiceTerm);
+    }
+    // terms are not necessarily stored in payment order
+    Collections.shuffle(invoiceTermList, random);
+    return invoiceTermList;
+  }
+
+  @Benchmark
+  public BigDecimal computeCurrencyPaidAmounts() {
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < reconcileCount; i++) {
+      total =
+          total.add(
+              reconcileService.getTotal(
+                  invoiceMoveLines.get(i), paymentMoveLines.get(i), paidAmounts.get(i), false));
+    }
+    return total;
+  }
+
+  @Benchmark
+  public List<List<InvoiceTerm>> getInvoiceTermsToPay() {
+    List<List<InvoiceTerm>> invoiceTermsToPay = new ArrayList<>(reconcileCount);
+    for (MoveLine invoiceMoveLine : invoiceMoveLines) {
+      invoiceTermsToPay.add(
+          reconcileService.getInvoiceTermsFromMoveLine(invoiceMoveLine.getInvoiceTermList()));
+    }
+    return invoiceTermsToPay;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountingBatchRepository;
+import com.axelor.apps.account.db.repo.MoveLineRepository;
+import com.axelor.apps.account.service.ReconcileGroupService;
+import com.axelor.apps.account.service.ReconcileService;
+import com.axelor.apps.account.service.move.MoveLineControlService;
+import com.axelor.apps.account.service.payment.PaymentService;
+import com.axelor.apps.base.db.repo.CompanyRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Search of the balanced runs of move lines done by the auto move lettering batch. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalancedMoveLineBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int moveLineCount;
+
+  protected BatchAutoMoveLettering batchAutoMoveLettering;
+  protected List<MoveLine> moveLines;
+
+  @Setup
+  public void setup() {
+    batchAutoMoveLettering =
+        new BatchAutoMoveLettering(
+            mock(AccountingBatchRepository.class),
+            mock(MoveLineRepository.class),
+            mock(CompanyRepository.class),
+            mock(MoveLineControlService.class),
+            mock(PaymentService.class),
+            mock(ReconcileService.class),
+            mock(ReconcileGroupService.class));
+
+    // Invoices and payments of a few usual amounts, so that balanced runs of various lengths occur
+    Random random = new Random(42);
+    moveLines = new ArrayList<>(moveLineCount);
+    for (int i = 0; i < moveLineCount; i++) {
+      BigDecimal amount = BigDecimal.valueOf((random.nextInt(20) + 1) * 500L, 2);
+      MoveLine moveLine = new MoveLine();
+      moveLine.setId((long) i + 1);
+      if (random.nextBoolean()) {
+        moveLine.setDebit(amount);
+        moveLine.setCredit(BigDecimal.ZERO);
+      } else {
+        moveLine.setDebit(BigDecimal.ZERO);
+        moveLine.setCredit(amount);
+      }
+      moveLine.setAmountRemaining(amount);
+      moveLines.add(moveLine);
+    }
+  }
+
+  @Benchmark
+  public List<List<MoveLine>> getBalancedMoveLineLists() {
+    return batchAutoMoveLettering.getBalancedMoveLineLists(moveLines);
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.invoice;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.account.db.Invoice;
+import com.axelor.apps.account.db.InvoiceLine;
+import com.axelor.apps.account.db.repo.InvoiceLineRepository;
+import com.axelor.apps.account.service.AccountManagementAccountService;
+import com.axelor.apps.account.service.CurrencyScaleServiceAccountImpl;
+import com.axelor.apps.account.service.FindFixedAssetService;
+import com.axelor.apps.account.service.app.AppAccountService;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.account.service.invoice.attributes.InvoiceLineAttrsService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.db.Tax;
+import com.axelor.apps.base.db.TaxLine;
+import com.axelor.apps.base.db.repo.CurrencyConversionLineRepository;
+import com.axelor.apps.base.db.repo.PriceListLineRepository;
+import com.axelor.apps.base.service.CurrencyConversionRateCache;
+import com.axelor.apps.base.service.CurrencyServiceImpl;
+import com.axelor.apps.base.service.InternationalService;
+import com.axelor.apps.base.service.PriceListService;
+import com.axelor.apps.base.service.ProductCompanyService;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.tax.TaxService;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Price computation of the lines of invoices in a foreign currency: discount, totals with and
+ * without taxes, and totals converted in the company currency at the invoice date.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceLinePricingBenchmark {
+
+  protected static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+  protected static final int DAY_COUNT = 365;
+  protected static final int LINE_PER_INVOICE_COUNT = 20;
+
+  @Param({"10000", "100000"})
+  public int invoiceLineCount;
+
+  protected InvoiceLineServiceImpl invoiceLineService;
+  protected List<Invoice> invoices;
+  protected List<InvoiceLine> invoiceLines;
+
+  @Setup
+  public void setup() {
+    Currency companyCurrency = createCurrency(1L, "EUR");
+    Currency invoiceCurrency = createCurrency(2L, "USD");
+
+    List<CurrencyConversionLine> currencyConversionLineList = new ArrayList<>(DAY_COUNT);
+    for (int i = 0; i < DAY_COUNT; i++) {
+      CurrencyConversionLine ccl = new CurrencyConversionLine();
+      ccl.setId((long) i + 1);
+      ccl.setStartCurrency(invoiceCurrency);
+      ccl.setEndCurrency(companyCurrency);
+      ccl.setFromDate(START_DATE.plusDays(i));
+      ccl.setToDate(START_DATE.plusDays(i));
+      ccl.setExchangeRate(new BigDecimal("0.9").add(BigDecimal.valueOf(i % 100, 4)));
+      currencyConversionLineList.add(ccl);
+    }
+
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getTodayDate(any())).thenReturn(START_DATE.plusDays(DAY_COUNT - 1L));
+    when(appBaseService.getCurrencyConfigurationLineList()).thenReturn(currencyConversionLineList);
+    when(appBaseService.getNbDecimalDigitForUnitPrice()).thenReturn(2);
+
+    invoiceLineService =
+        new InvoiceLineServiceImpl(
+            new CurrencyServiceImpl(
+                appBaseService,
+                mock(CurrencyConversionLineRepository.class),
+                new CurrencyConversionRateCache(appBaseService)),
+            new BenchmarkPriceListService(appBaseService),
+            mock(AppAccountService.class),
+            mock(AccountManagementAccountService.class),
+            mock(ProductCompanyService.class),
+            mock(InvoiceLineRepository.class),
+            appBaseService,
+            mock(AccountConfigService.class),
+            mock(InvoiceLineAnalyticService.class),
+            mock(TaxService.class),
+            mock(InternationalService.class),
+            mock(InvoiceLineAttrsService.class),
+            new CurrencyScaleServiceAccountImpl(mock(FindFixedAssetService.class)));
+
+    Company company = new Company();
+    company.setId(1L);
+    company.setCurrency(companyCurrency);
+
+    List<TaxLine> taxLines = new ArrayList<>();
+    taxLines.add(createTaxLine(1L, "VAT20", "20"));
+    taxLines.add(createTaxLine(2L, "VAT10", "10"));
+    taxLines.add(createTaxLine(3L, "VAT5.5", "5.5"));
+
+    // Lines of a few discount kinds, quantities with decimals and unit prices with 2 digits
+    Random random = new Random(42);
+    invoices = new ArrayList<>(invoiceLineCount);
+    invoiceLines = new ArrayList<>(invoiceLineCount);
+    Invoice invoice = null;
+    for (int i = 0; i < invoiceLineCount; i++) {
+      if (i % LINE_PER_INVOICE_COUNT == 0) {
+        invoice = new Invoice();
+        invoice.setId((long) i / LINE_PER_INVOICE_COUNT + 1);
+        invoice.setCompany(company);
+        invoice.setCurrency(invoiceCurrency);
+        invoice.setInAti(false);
+        invoice.setInvoiceDate(START_DATE.plusDays(random.nextInt(DAY_COUNT)));
+      }
+
+      InvoiceLine invoiceLine = new InvoiceLine();
+      invoiceLine.setId((long) i + 1);
+      invoiceLine.setInvoice(invoice);
+      invoiceLine.setQty(BigDecimal.valueOf(random.nextInt(10_000) + 1, 2));
+      invoiceLine.setPrice(BigDecimal.valueOf(random.nextInt(100_000) + 1, 2));
+      invoiceLine.setTaxLine(taxLines.get(random.nextInt(taxLines.size())));
+      switch (random.nextInt(3)) {
+        case 0:
+          invoiceLine.setDiscountTypeSelect(PriceListLineRepository.AMOUNT_TYPE_PERCENT);
+          invoiceLine.setDiscountAmount(BigDecimal.valueOf(random.nextInt(30) + 1));
+          break;
+        case 1:
+          invoiceLine.setDiscountTypeSelect(PriceListLineRepository.AMOUNT_TYPE_FIXED);
+          invoiceLine.setDiscountAmount(
+              invoiceLine.getPrice().divide(BigDecimal.TEN, 2, RoundingMode.HALF_UP));
+          break;
+        default:
+          invoiceLine.setDiscountTypeSelect(PriceListLineRepository.AMOUNT_TYPE_NONE);
+          invoiceLine.setDiscountAmount(BigDecimal.ZERO);
+      }
+      invoices.add(invoice);
+      invoiceLines.add(invoiceLine);
+    }
+  }
+
+  protected Currency createCurrency(Long id, String code) {
+    Currency currency = new Currency();
+    currency.setId(id);
+    currency.setCode(code);
+    currency.setCodeISO(code);
+    currency.setName(code);
+    currency.setNumberOfDecimals(2);
+    return currency;
+  }
+
+  protected TaxLine createTaxLine(Long id, String code, String value) {
+    Tax tax = new Tax();
+    tax.setId(id);
+    tax.setCode(code);
+    TaxLine taxLine = new TaxLine();
+    taxLine.setId(id);
+    taxLine.setTax(tax);
+    taxLine.setValue(new BigDecimal(value));
+    return taxLine;
+  }
+
+  @Benchmark
+  public List<InvoiceLine> computeInvoiceLines() throws AxelorException {
+    for (int i = 0; i < invoiceLineCount; i++) {
+      invoiceLineService.compute(invoices.get(i), invoiceLines.get(i));
+    }
+    return invoiceLines;
+  }
+
+  @Benchmark
+  public BigDecimal getInTaxPrices() {
+    BigDecimal total = BigDecimal.ZERO;
+    for (InvoiceLine invoiceLine : invoiceLines) {
+      total = total.add(invoiceLineService.getInTaxPrice(invoiceLine));
+    }
+    return total;
+  }
+
+  /** Price list service with its injected app service set. */
+  protected static class BenchmarkPriceListService extends PriceListService {
+
+    protected BenchmarkPriceListService(AppBaseService appBaseService) {
+      this.appBaseService = appBaseService;
+    }
+  }
+}
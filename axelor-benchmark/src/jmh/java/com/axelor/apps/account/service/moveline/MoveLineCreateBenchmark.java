@@ -0,0 +1,234 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.moveline;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountingSituationRepository;
+import com.axelor.apps.account.db.repo.MoveLineRepository;
+import com.axelor.apps.account.service.AccountingSituationService;
+import com.axelor.apps.account.service.CurrencyScaleServiceAccountImpl;
+import com.axelor.apps.account.service.FindFixedAssetService;
+import com.axelor.apps.account.service.FiscalPositionAccountServiceImpl;
+import com.axelor.apps.account.service.TaxAccountService;
+import com.axelor.apps.account.service.analytic.AnalyticLineService;
+import com.axelor.apps.account.service.analytic.AnalyticMoveLineGenerateRealService;
+import com.axelor.apps.account.service.invoice.InvoiceTermService;
+import com.axelor.apps.account.service.move.MoveToolService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.repo.CurrencyConversionLineRepository;
+import com.axelor.apps.base.service.CurrencyConversionRateCache;
+import com.axelor.apps.base.service.CurrencyService;
+import com.axelor.apps.base.service.CurrencyServiceImpl;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.config.CompanyConfigService;
+import com.axelor.apps.base.service.tax.FiscalPositionService;
+import com.axelor.apps.base.service.tax.TaxService;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creation of the move lines of sale invoices in a foreign currency: a customer line, two revenue
+ * lines and a tax line per move, the amounts being converted at the date of the move.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveLineCreateBenchmark {
+
+  protected static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+  protected static final int DAY_COUNT = 365;
+  protected static final BigDecimal TAX_RATE = new BigDecimal("0.20");
+
+  @Param({"1000", "10000"})
+  public int moveCount;
+
+  protected MoveLineCreateServiceImpl moveLineCreateService;
+  protected List<Move> moves;
+  protected List<BigDecimal> amounts;
+  protected Partner partner;
+  protected Account customerAccount;
+  protected Account revenueAccount;
+  protected Account taxAccount;
+
+  @Setup
+  public void setup() {
+    Currency companyCurrency = createCurrency(1L, "EUR");
+    Currency moveCurrency = createCurrency(2L, "USD");
+
+    List<CurrencyConversionLine> currencyConversionLineList = new ArrayList<>(DAY_COUNT);
+    for (int i = 0; i < DAY_COUNT; i++) {
+      CurrencyConversionLine ccl = new CurrencyConversionLine();
+      ccl.setId((long) i + 1);
+      ccl.setStartCurrency(moveCurrency);
+      ccl.setEndCurrency(companyCurrency);
+      ccl.setFromDate(START_DATE.plusDays(i));
+      ccl.setToDate(START_DATE.plusDays(i));
+      ccl.setExchangeRate(new BigDecimal("0.9").add(BigDecimal.valueOf(i % 100, 4)));
+      currencyConversionLineList.add(ccl);
+    }
+
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getTodayDate(any())).thenReturn(START_DATE.plusDays(DAY_COUNT - 1L));
+    when(appBaseService.getCurrencyConfigurationLineList()).thenReturn(currencyConversionLineList);
+
+    moveLineCreateService =
+        new MoveLineCreateServiceImpl(
+            new CompanyConfigService(),
+            new CurrencyServiceImpl(
+                appBaseService,
+                mock(CurrencyConversionLineRepository.class),
+                new CurrencyConversionRateCache(appBaseService)),
+            new FiscalPositionAccountServiceImpl(),
+            mock(AnalyticMoveLineGenerateRealService.class),
+            mock(TaxAccountService.class),
+            new MoveLineToolServiceImpl(
+                mock(TaxService.class),
+                mock(CurrencyService.class),
+                mock(MoveLineRepository.class),
+                mock(MoveToolService.class)),
+            mock(MoveLineComputeAnalyticService.class),
+            mock(MoveLineConsolidateService.class),
+            mock(InvoiceTermService.class),
+            mock(MoveLineTaxService.class),
+            mock(AccountingSituationRepository.class),
+            mock(AccountingSituationService.class),
+            mock(FiscalPositionService.class),
+            mock(TaxService.class),
+            appBaseService,
+            mock(AnalyticLineService.class),
+            new CurrencyScaleServiceAccountImpl(mock(FindFixedAssetService.class)));
+
+    Company company = new Company();
+    company.setId(1L);
+    company.setName("Company");
+    company.setCurrency(companyCurrency);
+
+    Journal journal = new Journal();
+    journal.setId(1L);
+    journal.setDescriptionModel("Sale");
+    journal.setDescriptionIdentificationOk(true);
+
+    partner = new Partner();
+    partner.setId(1L);
+    partner.setName("Customer");
+    customerAccount = createAccount(1L, "411");
+    revenueAccount = createAccount(2L, "706");
+    taxAccount = createAccount(3L, "44571");
+
+    Random random = new Random(42);
+    moves = new ArrayList<>(moveCount);
+    amounts = new ArrayList<>(moveCount * 2);
+    for (int i = 0; i < moveCount; i++) {
+      Move move = new Move();
+      move.setId((long) i + 1);
+      move.setCompany(company);
+      move.setJournal(journal);
+      move.setCurrency(moveCurrency);
+      move.setCompanyCurrency(companyCurrency);
+      move.setDate(START_DATE.plusDays(random.nextInt(DAY_COUNT)));
+      move.setOrigin("INV" + (i + 1));
+      moves.add(move);
+      amounts.add(BigDecimal.valueOf(random.nextInt(1_000_000) + 1, 2));
+      amounts.add(BigDecimal.valueOf(random.nextInt(1_000_000) + 1, 2));
+    }
+  }
+
+  protected Currency createCurrency(Long id, String code) {
+    Currency currency = new Currency();
+    currency.setId(id);
+    currency.setCode(code);
+    currency.setCodeISO(code);
+    currency.setName(code);
+    currency.setNumberOfDecimals(2);
+    return currency;
+  }
+
+  protected Account createAccount(Long id, String code) {
+    Account account = new Account();
+    account.setId(id);
+    account.setCode(code);
+    account.setName(code);
+    return account;
+  }
+
+  @Benchmark
+  public List<MoveLine> createInvoiceMoveLines() throws AxelorException {
+    List<MoveLine> moveLines = new ArrayList<>(moveCount * 4);
+    for (int i = 0; i < moveCount; i++) {
+      Move move = moves.get(i);
+      LocalDate date = move.getDate();
+      String origin = move.getOrigin();
+      BigDecimal firstAmount = amounts.get(i * 2);
+      BigDecimal secondAmount = amounts.get(i * 2 + 1);
+      BigDecimal taxAmount = firstAmount.add(secondAmount).multiply(TAX_RATE);
+
+      moveLines.add(
+          moveLineCreateService.createMoveLine(
+              move,
+              partner,
+              customerAccount,
+              firstAmount.add(secondAmount).add(taxAmount),
+              true,
+              date,
+              date,
+              1,
+              origin,
+              null));
+      moveLines.add(
+          moveLineCreateService.createMoveLine(
+              move, partner, revenueAccount, firstAmount, false, date, date, 2, origin, null));
+      moveLines.add(
+          moveLineCreateService.createMoveLine(
+              move, partner, revenueAccount, secondAmount, false, date, date, 3, origin, null));
+      moveLines.add(
+          moveLineCreateService.createMoveLine(
+              move, partner, taxAccount, taxAmount, false, date, date, 4, origin, null));
+    }
+    return moveLines;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.db.repo.CurrencyConversionLineRepository;
+import com.axelor.apps.base.service.app.AppBaseService;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Currency conversion at a date, with one conversion line per day of history. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyConversionBenchmark {
+
+  protected static final LocalDate START_DATE = LocalDate.of(2000, 1, 1);
+
+  @Param({"365", "3650"})
+  public int dayCount;
+
+  @Param({"1000"})
+  public int amountCount;
+
+  protected CurrencyServiceImpl currencyService;
+  protected Currency startCurrency;
+  protected Currency endCurrency;
+  protected List<Pair<BigDecimal, LocalDate>> amountDateList;
+
+  @Setup
+  public void setup() {
+    startCurrency = createCurrency(1L, "EUR");
+    endCurrency = createCurrency(2L, "USD");
+
+    List<CurrencyConversionLine> currencyConversionLineList = new ArrayList<>(dayCount);
+    for (int i = 0; i < dayCount; i++) {
+      CurrencyConversionLine ccl = new CurrencyConversionLine();
+      ccl.setId((long) i + 1);
+      ccl.setStartCurrency(startCurrency);
+      ccl.setEndCurrency(endCurrency);
+      ccl.setFromDate(START_DATE.plusDays(i));
+      ccl.setToDate(START_DATE.plusDays(i));
+      ccl.setExchangeRate(new BigDecimal("1.1").add(BigDecimal.valueOf(i % 100, 4)));
+      currencyConversionLineList.add(ccl);
+    }
+
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getTodayDate(any())).thenReturn(START_DATE.plusDays(dayCount - 1L));
+    when(appBaseService.getCurrencyConfigurationLineList()).thenReturn(currencyConversionLineList);
+
+    currencyService =
+        new CurrencyServiceImpl(
+            appBaseService,
+            mock(CurrencyConversionLineRepository.class),
+            new CurrencyConversionRateCache(appBaseService));
+
+    Random random = new Random(42);
+    amountDateList = new ArrayList<>(amountCount);
+    for (int i = 0; i < amountCount; i++) {
+      amountDateList.add(
+          Pair.of(
+              BigDecimal.valueOf(random.nextInt(1_000_000), 2),
+              START_DATE.plusDays(random.nextInt(dayCount))));
+    }
+  }
+
+  protected Currency createCurrency(Long id, String code) {
+    Currency currency = new Currency();
+    currency.setId(id);
+    currency.setCode(code);
+    currency.setCodeISO(code);
+    currency.setName(code);
+    currency.setNumberOfDecimals(2);
+    return currency;
+  }
+
+  @Benchmark
+  public BigDecimal convertAmounts() throws AxelorException {
+    BigDecimal total = BigDecimal.ZERO;
+    for (Pair<BigDecimal, LocalDate> amountDate : amountDateList) {
+      total =
+          total.add(
+              currencyService.getAmountCurrencyConvertedAtDate(
+                  startCurrency, endCurrency, amountDate.getLeft(), amountDate.getRight()));
+    }
+    return total;
+  }
+
+  @Benchmark
+  public List<BigDecimal> convertAmountsAtDates() throws AxelorException {
+    return currencyService.getAmountsCurrencyConvertedAtDates(
+        startCurrency, endCurrency, amountDateList);
+  }
+}
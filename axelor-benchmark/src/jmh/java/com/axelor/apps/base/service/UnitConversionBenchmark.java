@@ -0,0 +1,111 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.apps.base.service.app.AppBaseService;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.mockito.Answers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Unit conversion by coefficient, looked up among the cached conversions. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitConversionBenchmark {
+
+  @Param({"100", "10000"})
+  public int unitCount;
+
+  protected UnitConversionService unitConversionService;
+  protected List<Unit> units;
+  protected Random random;
+
+  @Setup
+  public void setup() {
+    units = new ArrayList<>(unitCount);
+    for (int i = 0; i < unitCount; i++) {
+      Unit unit = new Unit();
+      unit.setId((long) i + 1);
+      unit.setName("Unit " + i);
+      units.add(unit);
+    }
+
+    // Each unit is converted to the next one
+    List<UnitConversion> unitConversions = new ArrayList<>(unitCount);
+    for (int i = 0; i + 1 < unitCount; i++) {
+      UnitConversion unitConversion = new UnitConversion();
+      unitConversion.setId((long) i + 1);
+      unitConversion.setStartUnit(units.get(i));
+      unitConversion.setEndUnit(units.get(i + 1));
+      unitConversion.setTypeSelect(UnitConversionRepository.TYPE_COEFF);
+      unitConversion.setCoef(BigDecimal.valueOf(i % 10 + 2));
+      unitConversions.add(unitConversion);
+    }
+
+    UnitConversionRepository unitConversionRepo =
+        mock(UnitConversionRepository.class, Answers.RETURNS_DEEP_STUBS);
+    when(unitConversionRepo.all().order("id").fetch()).thenReturn(unitConversions);
+    AppBaseService appBaseService = mock(AppBaseService.class);
+
+    unitConversionService = new UnitConversionService();
+    unitConversionService.appBaseService = appBaseService;
+    unitConversionService.unitConversionRepo = unitConversionRepo;
+    unitConversionService.unitConversionCache = new UnitConversionCache(unitConversionRepo);
+
+    random = new Random(42);
+  }
+
+  @Benchmark
+  public BigDecimal convert() throws AxelorException {
+    int index = random.nextInt(unitCount - 1);
+    return unitConversionService.convert(
+        units.get(index), units.get(index + 1), BigDecimal.TEN, 4, null);
+  }
+
+  @Benchmark
+  public BigDecimal convertInverse() throws AxelorException {
+    int index = random.nextInt(unitCount - 1);
+    return unitConversionService.convert(
+        units.get(index + 1), units.get(index), BigDecimal.TEN, 4, null);
+  }
+}
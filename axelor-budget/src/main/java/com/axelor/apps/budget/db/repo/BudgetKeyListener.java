@@ -0,0 +1,88 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.budget.db.repo;
+
+import com.axelor.apps.budget.service.BudgetKeyCache;
+import com.axelor.db.JPA;
+import com.axelor.db.mapper.Mapper;
+import com.axelor.inject.Beans;
+import java.util.Collection;
+import java.util.Objects;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+
+/** Common part of the listeners invalidating the {@link BudgetKeyCache}. */
+public abstract class BudgetKeyListener {
+
+  protected BudgetKeyCache getBudgetKeyCache() {
+    return Beans.get(BudgetKeyCache.class);
+  }
+
+  /**
+   * @return true if one of the given fields of the entity was changed since it was loaded, or if
+   *     its loaded state is not known. To be called before the update, in a PreUpdate callback.
+   */
+  protected boolean isChanged(Object entity, Collection<String> fieldNames) {
+    Mapper mapper = Mapper.of(entity.getClass());
+    for (String fieldName : fieldNames) {
+      Object[] loadedValue = this.getLoadedValue(entity, fieldName);
+      if (loadedValue == null || !Objects.equals(loadedValue[0], mapper.get(entity, fieldName))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the value of the field when the entity was loaded, wrapped in an array, or null if it
+   *     is not known.
+   */
+  protected Object[] getLoadedValue(Object entity, String fieldName) {
+    EntityEntry entityEntry =
+        JPA.em().unwrap(SessionImplementor.class).getPersistenceContext().getEntry(entity);
+    if (entityEntry == null || entityEntry.getLoadedState() == null) {
+      return null;
+    }
+    return new Object[] {entityEntry.getLoadedValue(fieldName)};
+  }
+
+  protected void invalidate(BudgetKeyCache budgetKeyCache) {
+    budgetKeyCache.invalidate();
+    this.invalidateAfterCompletion(budgetKeyCache);
+  }
+
+  /** The index may be reloaded by another transaction before the end of this one. */
+  protected void invalidateAfterCompletion(BudgetKeyCache budgetKeyCache) {
+    JPA.em()
+        .unwrap(Session.class)
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                budgetKeyCache.invalidate();
+              }
+            });
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.budget.db.repo;
+
+import com.axelor.apps.budget.db.GlobalBudget;
+import com.axelor.apps.budget.service.BudgetKeyCache;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PreUpdate;
+
+public class GlobalBudgetListener extends BudgetKeyListener {
+
+  @PostPersist
+  protected void invalidateBudgetKeys(GlobalBudget globalBudget) {
+    BudgetKeyCache budgetKeyCache = this.getBudgetKeyCache();
+    if (budgetKeyCache.isOutdated(globalBudget)) {
+      this.invalidate(budgetKeyCache);
+    }
+  }
+
+  /** Only the changes of the indexed fields are checked, amount updates are ignored. */
+  @PreUpdate
+  protected void updateBudgetKeys(GlobalBudget globalBudget) {
+    BudgetKeyCache budgetKeyCache = this.getBudgetKeyCache();
+    if (this.isChanged(globalBudget, BudgetKeyCache.GLOBAL_BUDGET_FIELDS)
+        && budgetKeyCache.isOutdated(globalBudget)) {
+      this.invalidate(budgetKeyCache);
+    }
+  }
+
+  @PostRemove
+  protected void removeBudgetKeys(GlobalBudget globalBudget) {
+    BudgetKeyCache budgetKeyCache = this.getBudgetKeyCache();
+    if (budgetKeyCache.isIndexed(globalBudget)) {
+      this.invalidate(budgetKeyCache);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.budget.service;
+
+import com.axelor.apps.budget.db.Budget;
+import com.axelor.apps.budget.db.GlobalBudget;
+import com.axelor.apps.budget.db.repo.GlobalBudgetRepository;
+import com.axelor.db.JPA;
+import com.google.common.base.Strings;
+import com.google.inject.Singleton;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Application wide index of the budget keys of the budgets of valid global budgets. Each key of a
+ * budget (company, account and analytic account) is mapped to the date intervals of the budgets
+ * using it. The index is invalidated by {@link com.axelor.apps.budget.db.repo.BudgetListener} and
+ * {@link com.axelor.apps.budget.db.repo.GlobalBudgetListener} when one of the {@link
+ * #BUDGET_FIELDS} or {@link #GLOBAL_BUDGET_FIELDS} changes in a way affecting it.
+ */
+@Singleton
+public class BudgetKeyCache {
+
+  /** Fields of a budget used by the index. */
+  public static final List<String> BUDGET_FIELDS =
+      List.of("budgetKey", "fromDate", "toDate", "globalBudget");
+
+  /** Fields of a global budget used by the index. */
+  public static final List<String> GLOBAL_BUDGET_FIELDS = List.of("statusSelect");
+
+  private volatile Index index;
+
+  /** Incremented on each invalidation, so that an index loaded before it is not published. */
+  private long generation;
+
+  /**
+   * Get the id of the budget of a valid global budget using the given key at the given date.
+   *
+   * @param key a budget key, as computed for a move line or an order line
+   * @param date the date of imputation
+   * @return the id of the first budget matching, or null if there is none.
+   */
+  public Long findBudgetId(String key, LocalDate date) {
+    if (Strings.isNullOrEmpty(key) || date == null) {
+      return null;
+    }
+
+    for (Entry entry : getIndex().entriesByKey.getOrDefault(key, Collections.emptyList())) {
+      if (entry.contains(date)) {
+        return entry.budgetId;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return true if the given budget is not indexed as it is now, or if the index is not loaded and
+   *     may then be loaded before the change is committed. The index has then to be invalidated.
+   */
+  public boolean isOutdated(Budget budget) {
+    Index currentIndex = index;
+    if (currentIndex == null) {
+      return true;
+    }
+
+    Entry entry = currentIndex.entriesByBudgetId.get(budget.getId());
+    GlobalBudget globalBudget = budget.getGlobalBudget();
+    boolean isIndexed =
+        globalBudget != null
+            && currentIndex.validGlobalBudgetIds.contains(globalBudget.getId())
+            && !Strings.isNullOrEmpty(budget.getBudgetKey());
+
+    if (entry == null) {
+      return isIndexed;
+    }
+    return !isIndexed
+        || !Objects.equals(entry.budgetKey, budget.getBudgetKey())
+        || !Objects.equals(entry.fromDate, budget.getFromDate())
+        || !Objects.equals(entry.toDate, budget.getToDate());
+  }
+
+  /**
+   * @return true if the validity of the given global budget changed since the index was loaded, or
+   *     if the index is not loaded. The index has then to be invalidated.
+   */
+  public boolean isOutdated(GlobalBudget globalBudget) {
+    Index currentIndex = index;
+    if (currentIndex == null) {
+      return true;
+    }
+
+    boolean isValid =
+        globalBudget.getStatusSelect() == GlobalBudgetRepository.GLOBAL_BUDGET_STATUS_SELECT_VALID;
+    return currentIndex.validGlobalBudgetIds.contains(globalBudget.getId()) != isValid;
+  }
+
+  /**
+   * @return true if the given budget is indexed, or if the index is not loaded. The index has then
+   *     to be invalidated on its removal.
+   */
+  public boolean isIndexed(Budget budget) {
+    Index currentIndex = index;
+    return currentIndex == null || currentIndex.entriesByBudgetId.containsKey(budget.getId());
+  }
+
+  /**
+   * @return true if the given global budget is indexed, or if the index is not loaded. The index
+   *     has then to be invalidated on its removal.
+   */
+  public boolean isIndexed(GlobalBudget globalBudget) {
+    Index currentIndex = index;
+    return currentIndex == null
+        || currentIndex.validGlobalBudgetIds.contains(globalBudget.getId());
+  }
+
+  /** Drop the index, it will be reloaded on next use. */
+  public synchronized void invalidate() {
+    generation++;
+    index = null;
+  }
+
+  protected Index getIndex() {
+    Index currentIndex = index;
+    if (currentIndex == null) {
+      long loadGeneration = getGeneration();
+      currentIndex = loadIndex();
+      publishIndex(currentIndex, loadGeneration);
+    }
+    return currentIndex;
+  }
+
+  protected synchronized long getGeneration() {
+    return generation;
+  }
+
+  protected synchronized void publishIndex(Index loadedIndex, long loadGeneration) {
+    if (generation == loadGeneration) {
+      index = loadedIndex;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  protected Index loadIndex() {
+    Index newIndex = new Index();
+
+    newIndex.validGlobalBudgetIds.addAll(
+        JPA.em()
+            .createQuery("SELECT self.id FROM GlobalBudget self WHERE self.statusSelect = :status")
+            .setParameter("status", GlobalBudgetRepository.GLOBAL_BUDGET_STATUS_SELECT_VALID)
+            .getResultList());
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, self.budgetKey, self.fromDate, self.toDate FROM Budget self "
+                    + "WHERE self.globalBudget.statusSelect = :status "
+                    + "AND self.budgetKey IS NOT NULL "
+                    + "ORDER BY self.id")
+            .setParameter("status", GlobalBudgetRepository.GLOBAL_BUDGET_STATUS_SELECT_VALID)
+            .getResultList();
+
+    for (Object[] result : resultList) {
+      Entry entry =
+          new Entry(
+              (Long) result[0], (String) result[1], (LocalDate) result[2], (LocalDate) result[3]);
+      newIndex.entriesByBudgetId.put(entry.budgetId, entry);
+
+      Set<String> keySet = new HashSet<>();
+      for (String key : entry.budgetKey.split(";")) {
+        key = key.trim();
+        if (!key.isEmpty() && keySet.add(key)) {
+          newIndex.entriesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+        }
+      }
+    }
+
+    return newIndex;
+  }
+
+  protected static class Index {
+    protected final Set<Long> validGlobalBudgetIds = new HashSet<>();
+    protected final Map<Long, Entry> entriesByBudgetId = new HashMap<>();
+    protected final Map<String, List<Entry>> entriesByKey = new HashMap<>();
+  }
+
+  /** Detached copy of the key and dates of a budget, safe to be shared between threads. */
+  protected static class Entry {
+    protected final Long budgetId;
+    protected final String budgetKey;
+    protected final LocalDate fromDate;
+    protected final LocalDate toDate;
+
+    protected Entry(Long budgetId, String budgetKey, LocalDate fromDate, LocalDate toDate) {
+      this.budgetId = budgetId;
+      this.budgetKey = budgetKey;
+      this.fromDate = fromDate;
+      this.toDate = toDate;
+    }
+
+    protected boolean contains(LocalDate date) {
+      return fromDate != null
+          && toDate != null
+          && !date.isBefore(fromDate)
+          && !date.isAfter(toDate);
+    }
+  }
+}
@@ -34,6 +34,7 @@ import com.axelor.apps.budget.db.BudgetScenarioVariable;
 import com.axelor.apps.budget.db.GlobalBudget;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -300,6 +301,35 @@ public interface BudgetService {
 
   public List<BudgetLine> updateLines(Budget budget);
 
+  /**
+   * Update the committed and paid amounts of the budget lines of the given budget containing one of
+   * the given dates, the other lines being left unchanged.
+   *
+   * @param budget
+   * @param dateList
+   * @return the updated budget lines
+   */
+  public List<BudgetLine> updateLines(Budget budget, Collection<LocalDate> dateList);
+
+  /**
+   * Update the committed and paid amounts of the budget lines of all the budgets of the given
+   * global budget, then the totals of these budgets.
+   *
+   * @param globalBudget
+   */
+  public void updateGlobalBudgetLines(GlobalBudget globalBudget);
+
+  /**
+   * Set the imputation date of the budget distributions of an order, then update the budget lines
+   * containing their previous and new imputation dates and the totals of their budgets. All the
+   * lines of a budget are updated when a distribution had no imputation date yet.
+   *
+   * @param budgetDistributionList
+   * @param imputationDate
+   */
+  public void updateLinesFromOrder(
+      List<BudgetDistribution> budgetDistributionList, LocalDate imputationDate);
+
   public BigDecimal computeTotalAmountRealized(Budget budget);
 
   void computeAvailableFields(Budget budget);
@@ -48,6 +48,7 @@ import com.axelor.apps.budget.db.repo.GlobalBudgetRepository;
 import com.axelor.apps.budget.exception.BudgetExceptionMessage;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
 import com.axelor.apps.sale.db.repo.SaleOrderRepository;
+import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.utils.helpers.date.LocalDateHelper;
 import com.google.common.base.Strings;
@@ -58,9 +59,14 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 
@@ -79,6 +85,7 @@ public class BudgetServiceImpl implements BudgetService {
   protected AnalyticDistributionLineRepository analyticDistributionLineRepo;
   protected BudgetToolsService budgetToolsService;
   protected CurrencyScaleServiceBudget currencyScaleServiceBudget;
+  protected BudgetKeyCache budgetKeyCache;
 
   @Inject
   public BudgetServiceImpl(
@@ -93,7 +100,8 @@ public class BudgetServiceImpl implements BudgetService {
       AccountRepository accountRepo,
       AnalyticDistributionLineRepository analyticDistributionLineRepo,
       BudgetToolsService budgetToolsService,
-      CurrencyScaleServiceBudget currencyScaleServiceBudget) {
+      CurrencyScaleServiceBudget currencyScaleServiceBudget,
+      BudgetKeyCache budgetKeyCache) {
     this.budgetLineRepository = budgetLineRepository;
     this.budgetRepository = budgetRepository;
     this.budgetLevelRepository = budgetLevelRepository;
@@ -106,6 +114,7 @@ public class BudgetServiceImpl implements BudgetService {
     this.analyticDistributionLineRepo = analyticDistributionLineRepo;
     this.budgetToolsService = budgetToolsService;
     this.currencyScaleServiceBudget = currencyScaleServiceBudget;
+    this.budgetKeyCache = budgetKeyCache;
   }
 
   @Override
@@ -129,87 +138,218 @@ public class BudgetServiceImpl implements BudgetService {
 
     if (budget != null) {
       budgetLineList = budget.getBudgetLineList();
+      this.updateBudgetLines(budgetLineList);
+    }
 
-      if (CollectionUtils.isNotEmpty(budgetLineList)) {
-        for (BudgetLine budgetLine : budgetLineList) {
-          budgetLine.setAmountCommitted(BigDecimal.ZERO);
-          budgetLine.setAmountPaid(BigDecimal.ZERO);
-        }
-      }
+    return budgetLineList;
+  }
 
-      List<BudgetDistribution> budgetDistributionList =
-          budgetDistributionRepo
-              .all()
+  @Override
+  @Transactional(rollbackOn = {RuntimeException.class})
+  public List<BudgetLine> updateLines(Budget budget, Collection<LocalDate> dateList) {
+
+    List<BudgetLine> budgetLineList = new ArrayList<>();
+
+    if (budget != null && CollectionUtils.isNotEmpty(budget.getBudgetLineList())) {
+      budgetLineList =
+          budget.getBudgetLineList().stream()
               .filter(
-                  "self.budget.id = ?1 AND ((self.purchaseOrderLine IS NOT NULL AND self.purchaseOrderLine.purchaseOrder.statusSelect NOT IN (?2)) OR (self.saleOrderLine IS NOT NULL AND self.saleOrderLine.saleOrder.statusSelect NOT IN (?3)))",
-                  budget.getId(),
-                  PurchaseOrderRepository.STATUS_CANCELED,
-                  SaleOrderRepository.STATUS_CANCELED)
-              .fetch();
-      for (BudgetDistribution budgetDistribution : budgetDistributionList) {
-        boolean isPurchase = false;
-        LocalDate orderDate = null;
-        Integer statusSelect = 0;
-        BigDecimal amountInvoiced = BigDecimal.ZERO;
-        if (budgetDistribution.getPurchaseOrderLine() != null
-            && budgetDistribution.getPurchaseOrderLine().getPurchaseOrder() != null) {
-          isPurchase = true;
-          orderDate = budgetDistribution.getPurchaseOrderLine().getPurchaseOrder().getOrderDate();
-          statusSelect =
-              budgetDistribution.getPurchaseOrderLine().getPurchaseOrder().getStatusSelect();
-          amountInvoiced =
-              currencyScaleServiceBudget.getCompanyScaledValue(
-                  budget,
-                  budgetDistribution.getPurchaseOrderLine().getPurchaseOrder().getAmountInvoiced());
-        } else if (budgetDistribution.getSaleOrderLine() != null
-            && budgetDistribution.getSaleOrderLine().getSaleOrder() != null) {
-          orderDate =
-              budgetDistribution.getSaleOrderLine().getSaleOrder().getOrderDate() != null
-                  ? budgetDistribution.getSaleOrderLine().getSaleOrder().getOrderDate()
-                  : budgetDistribution.getSaleOrderLine().getSaleOrder().getCreationDate();
-          statusSelect = budgetDistribution.getSaleOrderLine().getSaleOrder().getStatusSelect();
-          amountInvoiced =
-              currencyScaleServiceBudget.getCompanyScaledValue(
-                  budget, budgetDistribution.getSaleOrderLine().getSaleOrder().getAmountInvoiced());
-        }
-        if (orderDate != null) {
-          for (BudgetLine budgetLine : budgetLineList) {
-            LocalDate fromDate = budgetLine.getFromDate();
-            LocalDate toDate = budgetLine.getToDate();
-            if (fromDate != null
-                && toDate != null
-                && (fromDate.isBefore(orderDate) || fromDate.isEqual(orderDate))
-                && (toDate.isAfter(orderDate) || toDate.isEqual(orderDate))) {
-              if ((isPurchase
-                      && (statusSelect == PurchaseOrderRepository.STATUS_VALIDATED
-                          || statusSelect == PurchaseOrderRepository.STATUS_FINISHED)
-                  || (!isPurchase
-                      && (statusSelect == SaleOrderRepository.STATUS_FINALIZED_QUOTATION
-                          || statusSelect == SaleOrderRepository.STATUS_ORDER_COMPLETED
-                          || statusSelect == SaleOrderRepository.STATUS_ORDER_CONFIRMED)))) {
-                budgetLine.setAmountPaid(
-                    currencyScaleServiceBudget.getCompanyScaledValue(
-                        budget, budgetLine.getAmountPaid().add(amountInvoiced)));
-              }
-              if (amountInvoiced.compareTo(BigDecimal.ZERO) == 0) {
-                budgetLine.setAmountCommitted(
-                    currencyScaleServiceBudget.getCompanyScaledValue(
-                        budget,
-                        budgetLine.getAmountCommitted().add(budgetDistribution.getAmount())));
-              }
-              budgetLine.setToBeCommittedAmount(
-                  currencyScaleServiceBudget.getCompanyScaledValue(
-                      budget,
-                      budgetLine.getAmountExpected().subtract(budgetLine.getAmountCommitted())));
-              budgetLineRepository.save(budgetLine);
-              break;
-            }
-          }
+                  budgetLine ->
+                      dateList.stream()
+                          .anyMatch(date -> this.isInBudgetLineDates(budgetLine, date)))
+              .collect(Collectors.toList());
+      this.updateBudgetLines(budgetLineList);
+    }
+
+    return budgetLineList;
+  }
+
+  @Override
+  @Transactional(rollbackOn = {RuntimeException.class})
+  public void updateGlobalBudgetLines(GlobalBudget globalBudget) {
+    if (globalBudget == null) {
+      return;
+    }
+
+    this.updateBudgetLines(
+        budgetLineRepository.all().filter("self.budget.globalBudget = ?1", globalBudget).fetch());
+
+    List<Budget> budgetList =
+        budgetRepository.all().filter("self.globalBudget = ?1", globalBudget).fetch();
+    for (Budget budget : budgetList) {
+      this.computeTotalAmountCommitted(budget);
+      this.computeTotalAmountPaid(budget);
+      this.computeToBeCommittedAmount(budget);
+    }
+  }
+
+  @Override
+  @Transactional(rollbackOn = {RuntimeException.class})
+  public void updateLinesFromOrder(
+      List<BudgetDistribution> budgetDistributionList, LocalDate imputationDate) {
+    if (CollectionUtils.isEmpty(budgetDistributionList)) {
+      return;
+    }
+
+    // A null set of dates means that all the lines of the budget have to be updated
+    Map<Budget, Set<LocalDate>> dateSetByBudget = new LinkedHashMap<>();
+    for (BudgetDistribution budgetDistribution : budgetDistributionList) {
+      Budget budget = budgetDistribution.getBudget();
+      LocalDate previousImputationDate = budgetDistribution.getImputationDate();
+      budgetDistribution.setImputationDate(imputationDate);
+      if (budget == null) {
+        continue;
+      }
+
+      if (previousImputationDate == null) {
+        dateSetByBudget.put(budget, null);
+      } else if (!dateSetByBudget.containsKey(budget) || dateSetByBudget.get(budget) != null) {
+        Set<LocalDate> dateSet = dateSetByBudget.computeIfAbsent(budget, key -> new HashSet<>());
+        dateSet.add(previousImputationDate);
+        if (imputationDate != null) {
+          dateSet.add(imputationDate);
         }
       }
     }
 
-    return budgetLineList;
+    for (Map.Entry<Budget, Set<LocalDate>> entry : dateSetByBudget.entrySet()) {
+      Budget budget = entry.getKey();
+      if (entry.getValue() == null) {
+        this.updateLines(budget);
+      } else {
+        this.updateLines(budget, entry.getValue());
+      }
+      this.computeTotalAmountCommitted(budget);
+      this.computeTotalAmountPaid(budget);
+      this.computeToBeCommittedAmount(budget);
+    }
+  }
+
+  /**
+   * Recompute the committed and paid amounts of the given budget lines from the budget
+   * distributions of the orders dated within them. The amounts are summed by budget line and order
+   * status with one query for purchase orders and one for sale orders.
+   */
+  protected void updateBudgetLines(List<BudgetLine> budgetLineList) {
+    if (CollectionUtils.isEmpty(budgetLineList)) {
+      return;
+    }
+
+    Map<Long, BudgetLine> budgetLineMap = new HashMap<>();
+    for (BudgetLine budgetLine : budgetLineList) {
+      budgetLine.setAmountCommitted(BigDecimal.ZERO);
+      budgetLine.setAmountPaid(BigDecimal.ZERO);
+      budgetLineMap.put(budgetLine.getId(), budgetLine);
+    }
+
+    Set<BudgetLine> updatedBudgetLineSet = new HashSet<>();
+    this.addOrderAmounts(
+        budgetLineMap,
+        updatedBudgetLineSet,
+        this.getOrderAmountsByBudgetLine(
+            "JOIN self.purchaseOrderLine orderLine "
+                + "JOIN orderLine.purchaseOrder saleOrPurchaseOrder",
+            "saleOrPurchaseOrder.orderDate",
+            "",
+            PurchaseOrderRepository.STATUS_CANCELED,
+            budgetLineMap.keySet()),
+        true);
+    this.addOrderAmounts(
+        budgetLineMap,
+        updatedBudgetLineSet,
+        this.getOrderAmountsByBudgetLine(
+            "JOIN self.saleOrderLine orderLine "
+                + "JOIN orderLine.saleOrder saleOrPurchaseOrder",
+            "COALESCE(saleOrPurchaseOrder.orderDate, saleOrPurchaseOrder.creationDate)",
+            "AND self.purchaseOrderLine IS NULL ",
+            SaleOrderRepository.STATUS_CANCELED,
+            budgetLineMap.keySet()),
+        false);
+
+    for (BudgetLine budgetLine : updatedBudgetLineSet) {
+      budgetLine.setToBeCommittedAmount(
+          currencyScaleServiceBudget.getCompanyScaledValue(
+              budgetLine.getBudget(),
+              budgetLine.getAmountExpected().subtract(budgetLine.getAmountCommitted())));
+      budgetLineRepository.save(budgetLine);
+    }
+  }
+
+  protected void addOrderAmounts(
+      Map<Long, BudgetLine> budgetLineMap,
+      Set<BudgetLine> updatedBudgetLineSet,
+      List<Object[]> resultList,
+      boolean isPurchase) {
+    for (Object[] result : resultList) {
+      BudgetLine budgetLine = budgetLineMap.get((Long) result[0]);
+      int statusSelect = (Integer) result[1];
+      BigDecimal amountInvoiced = (BigDecimal) result[2];
+      BigDecimal amountCommitted = (BigDecimal) result[3];
+      Budget budget = budgetLine.getBudget();
+
+      if (this.isPaidStatus(isPurchase, statusSelect) && amountInvoiced != null) {
+        budgetLine.setAmountPaid(
+            currencyScaleServiceBudget.getCompanyScaledValue(
+                budget, budgetLine.getAmountPaid().add(amountInvoiced)));
+      }
+      if (amountCommitted != null) {
+        budgetLine.setAmountCommitted(
+            currencyScaleServiceBudget.getCompanyScaledValue(
+                budget, budgetLine.getAmountCommitted().add(amountCommitted)));
+      }
+      updatedBudgetLineSet.add(budgetLine);
+    }
+  }
+
+  /**
+   * Sum by budget line and order status the invoiced amounts of the orders and the amounts of the
+   * budget distributions of the orders that are not invoiced yet.
+   *
+   * @return rows of budget line id, order status, invoiced amount and committed amount.
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> getOrderAmountsByBudgetLine(
+      String orderJoin,
+      String orderDate,
+      String orderFilter,
+      int canceledStatus,
+      Collection<Long> budgetLineIdList) {
+    return JPA.em()
+        .createQuery(
+            String.format(
+                "SELECT budgetLine.id, saleOrPurchaseOrder.statusSelect, "
+                    + "SUM(saleOrPurchaseOrder.amountInvoiced), "
+                    + "SUM(CASE WHEN saleOrPurchaseOrder.amountInvoiced = 0 "
+                    + "THEN self.amount ELSE 0 END) "
+                    + "FROM BudgetDistribution self %1$s, BudgetLine budgetLine "
+                    + "WHERE budgetLine.id IN :budgetLineIdList "
+                    + "AND budgetLine.budget = self.budget "
+                    + "AND saleOrPurchaseOrder.statusSelect != :canceledStatus %3$s"
+                    + "AND budgetLine.fromDate <= %2$s AND budgetLine.toDate >= %2$s "
+                    + "GROUP BY budgetLine.id, saleOrPurchaseOrder.statusSelect",
+                orderJoin,
+                orderDate,
+                orderFilter))
+        .setParameter("budgetLineIdList", budgetLineIdList)
+        .setParameter("canceledStatus", canceledStatus)
+        .getResultList();
+  }
+
+  protected boolean isPaidStatus(boolean isPurchase, int statusSelect) {
+    return isPurchase
+        ? statusSelect == PurchaseOrderRepository.STATUS_VALIDATED
+            || statusSelect == PurchaseOrderRepository.STATUS_FINISHED
+        : statusSelect == SaleOrderRepository.STATUS_FINALIZED_QUOTATION
+            || statusSelect == SaleOrderRepository.STATUS_ORDER_COMPLETED
+            || statusSelect == SaleOrderRepository.STATUS_ORDER_CONFIRMED;
+  }
+
+  protected boolean isInBudgetLineDates(BudgetLine budgetLine, LocalDate date) {
+    return date != null
+        && budgetLine.getFromDate() != null
+        && budgetLine.getToDate() != null
+        && !date.isBefore(budgetLine.getFromDate())
+        && !date.isAfter(budgetLine.getToDate());
   }
 
   @Override
@@ -595,24 +735,8 @@ public class BudgetServiceImpl implements BudgetService {
 
   @Override
   public Budget findBudgetWithKey(String key, LocalDate date) {
-    List<Budget> budgetList =
-        budgetRepository
-            .all()
-            .filter(
-                "self.globalBudget.statusSelect = :statusSelect AND self.budgetKey LIKE '%"
-                    + key
-                    + "%'")
-            .bind("statusSelect", GlobalBudgetRepository.GLOBAL_BUDGET_STATUS_SELECT_VALID)
-            .fetch();
-    if (!CollectionUtils.isEmpty(budgetList) && date != null) {
-      for (Budget budget : budgetList) {
-        if ((budget.getFromDate().isBefore(date) || budget.getFromDate().isEqual(date))
-            && (budget.getToDate().isAfter(date) || budget.getToDate().isEqual(date))) {
-          return budget;
-        }
-      }
-    }
-    return null;
+    Long budgetId = budgetKeyCache.findBudgetId(key, date);
+    return budgetId != null ? budgetRepository.find(budgetId) : null;
   }
 
   @Override
@@ -27,6 +27,7 @@ import com.axelor.apps.account.db.repo.InvoiceTermPaymentRepository;
 import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.ReconcileRepository;
 import com.axelor.apps.account.service.AccountCustomerService;
+import com.axelor.apps.account.service.AccountingSituationBalanceService;
 import com.axelor.apps.account.service.CurrencyScaleServiceAccount;
 import com.axelor.apps.account.service.ReconcileSequenceService;
 import com.axelor.apps.account.service.ReconcileServiceImpl;
@@ -88,6 +89,7 @@ public class ReconcileBudgetServiceImpl extends ReconcileServiceImpl {
       MoveValidateService moveValidateService,
       CurrencyScaleServiceAccount currencyScaleServiceAccount,
       InvoiceTermPfpService invoiceTermPfpService,
+      AccountingSituationBalanceService accountingSituationBalanceService,
       BudgetDistributionService budgetDistributionService,
       AppBudgetService appBudgetService) {
     super(
@@ -114,7 +116,8 @@ public class ReconcileBudgetServiceImpl extends ReconcileServiceImpl {
         moveLineCreateService,
         moveValidateService,
         currencyScaleServiceAccount,
-        invoiceTermPfpService);
+        invoiceTermPfpService,
+        accountingSituationBalanceService);
     this.budgetDistributionService = budgetDistributionService;
     this.appBudgetService = appBudgetService;
   }
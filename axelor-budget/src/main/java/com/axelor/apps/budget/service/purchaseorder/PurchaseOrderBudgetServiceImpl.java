@@ -53,6 +53,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 
 @RequestScoped
@@ -253,20 +254,14 @@ public class PurchaseOrderBudgetServiceImpl extends PurchaseOrderWorkflowService
   public void updateBudgetLinesFromPurchaseOrder(PurchaseOrder purchaseOrder) {
 
     if (CollectionUtils.isNotEmpty(purchaseOrder.getPurchaseOrderLineList())) {
-      for (PurchaseOrderLine purchaseOrderLine : purchaseOrder.getPurchaseOrderLineList()) {
-        if (CollectionUtils.isNotEmpty(purchaseOrderLine.getBudgetDistributionList())) {
-          purchaseOrderLine.getBudgetDistributionList().stream()
-              .forEach(
-                  budgetDistribution -> {
-                    budgetDistribution.setImputationDate(purchaseOrder.getOrderDate());
-                    Budget budget = budgetDistribution.getBudget();
-                    budgetService.updateLines(budget);
-                    budgetService.computeTotalAmountCommitted(budget);
-                    budgetService.computeTotalAmountPaid(budget);
-                    budgetService.computeToBeCommittedAmount(budget);
-                  });
-        }
-      }
+      budgetService.updateLinesFromOrder(
+          purchaseOrder.getPurchaseOrderLineList().stream()
+              .filter(
+                  purchaseOrderLine ->
+                      CollectionUtils.isNotEmpty(purchaseOrderLine.getBudgetDistributionList()))
+              .flatMap(purchaseOrderLine -> purchaseOrderLine.getBudgetDistributionList().stream())
+              .collect(Collectors.toList()),
+          purchaseOrder.getOrderDate());
     }
   }
 
@@ -60,6 +60,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 
 public class SaleOrderBudgetServiceImpl extends SaleOrderInvoiceProjectServiceImpl
@@ -245,24 +246,16 @@ public class SaleOrderBudgetServiceImpl extends SaleOrderInvoiceProjectServiceIm
         && (saleOrder.getStatusSelect() == SaleOrderRepository.STATUS_FINALIZED_QUOTATION
             || saleOrder.getStatusSelect() == SaleOrderRepository.STATUS_ORDER_CONFIRMED
             || saleOrder.getStatusSelect() == SaleOrderRepository.STATUS_ORDER_COMPLETED)) {
-      for (SaleOrderLine saleOrderLine : saleOrder.getSaleOrderLineList()) {
-        if (CollectionUtils.isNotEmpty(saleOrderLine.getBudgetDistributionList())) {
-          saleOrderLine.getBudgetDistributionList().stream()
-              .forEach(
-                  budgetDistribution -> {
-                    LocalDate computeDate =
-                        saleOrder.getOrderDate() != null
-                            ? saleOrder.getOrderDate()
-                            : saleOrder.getCreationDate();
-                    budgetDistribution.setImputationDate(computeDate);
-                    Budget budget = budgetDistribution.getBudget();
-                    budgetService.updateLines(budget);
-                    budgetService.computeTotalAmountCommitted(budget);
-                    budgetService.computeTotalAmountPaid(budget);
-                    budgetService.computeToBeCommittedAmount(budget);
-                  });
-        }
-      }
+      LocalDate computeDate =
+          saleOrder.getOrderDate() != null ? saleOrder.getOrderDate() : saleOrder.getCreationDate();
+      budgetService.updateLinesFromOrder(
+          saleOrder.getSaleOrderLineList().stream()
+              .filter(
+                  saleOrderLine ->
+                      CollectionUtils.isNotEmpty(saleOrderLine.getBudgetDistributionList()))
+              .flatMap(saleOrderLine -> saleOrderLine.getBudgetDistributionList().stream())
+              .collect(Collectors.toList()),
+          computeDate);
     }
   }
 
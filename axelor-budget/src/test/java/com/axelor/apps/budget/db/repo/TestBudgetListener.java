@@ -0,0 +1,153 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.budget.db.repo;
+
+import com.axelor.apps.budget.db.Budget;
+import com.axelor.apps.budget.db.GlobalBudget;
+import com.axelor.apps.budget.service.BudgetKeyCache;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBudgetListener {
+
+  private TestBudgetKeyCache budgetKeyCache;
+  private Map<String, Object> loadedValueMap;
+  private BudgetListener budgetListener;
+  private GlobalBudgetListener globalBudgetListener;
+
+  protected static class TestBudgetKeyCache extends BudgetKeyCache {
+    @Override
+    public synchronized long getGeneration() {
+      return super.getGeneration();
+    }
+  }
+
+  @BeforeEach
+  void prepare() {
+    budgetKeyCache = new TestBudgetKeyCache();
+    loadedValueMap = new HashMap<>();
+
+    budgetListener =
+        new BudgetListener() {
+          @Override
+          protected BudgetKeyCache getBudgetKeyCache() {
+            return budgetKeyCache;
+          }
+
+          @Override
+          protected Object[] getLoadedValue(Object entity, String fieldName) {
+            return new Object[] {loadedValueMap.get(fieldName)};
+          }
+
+          @Override
+          protected void invalidateAfterCompletion(BudgetKeyCache budgetKeyCache) {}
+        };
+
+    globalBudgetListener =
+        new GlobalBudgetListener() {
+          @Override
+          protected BudgetKeyCache getBudgetKeyCache() {
+            return budgetKeyCache;
+          }
+
+          @Override
+          protected Object[] getLoadedValue(Object entity, String fieldName) {
+            return new Object[] {loadedValueMap.get(fieldName)};
+          }
+
+          @Override
+          protected void invalidateAfterCompletion(BudgetKeyCache budgetKeyCache) {}
+        };
+  }
+
+  protected Budget createBudget() {
+    GlobalBudget globalBudget = new GlobalBudget();
+    globalBudget.setId(1L);
+    globalBudget.setStatusSelect(GlobalBudgetRepository.GLOBAL_BUDGET_STATUS_SELECT_VALID);
+
+    Budget budget = new Budget();
+    budget.setId(2L);
+    budget.setGlobalBudget(globalBudget);
+    budget.setBudgetKey("1-101-A1");
+    budget.setFromDate(LocalDate.of(2024, 1, 1));
+    budget.setToDate(LocalDate.of(2024, 12, 31));
+    budget.setTotalAmountExpected(BigDecimal.TEN);
+
+    loadedValueMap.put("budgetKey", budget.getBudgetKey());
+    loadedValueMap.put("fromDate", budget.getFromDate());
+    loadedValueMap.put("toDate", budget.getToDate());
+    loadedValueMap.put("globalBudget", globalBudget);
+    return budget;
+  }
+
+  @Test
+  void testAmountUpdateKeepsTheIndex() {
+    Budget budget = createBudget();
+    long generation = budgetKeyCache.getGeneration();
+
+    budget.setTotalAmountExpected(BigDecimal.ONE);
+    budgetListener.updateBudgetKeys(budget);
+
+    Assertions.assertEquals(generation, budgetKeyCache.getGeneration());
+  }
+
+  @Test
+  void testKeyUpdateInvalidatesTheIndex() {
+    Budget budget = createBudget();
+    long generation = budgetKeyCache.getGeneration();
+
+    budget.setBudgetKey("1-101-A2");
+    budgetListener.updateBudgetKeys(budget);
+
+    Assertions.assertEquals(generation + 1, budgetKeyCache.getGeneration());
+  }
+
+  @Test
+  void testDateUpdateInvalidatesTheIndex() {
+    Budget budget = createBudget();
+    long generation = budgetKeyCache.getGeneration();
+
+    budget.setToDate(LocalDate.of(2025, 6, 30));
+    budgetListener.updateBudgetKeys(budget);
+
+    Assertions.assertEquals(generation + 1, budgetKeyCache.getGeneration());
+  }
+
+  @Test
+  void testGlobalBudgetStatusUpdateInvalidatesTheIndex() {
+    GlobalBudget globalBudget = createBudget().getGlobalBudget();
+    long generation = budgetKeyCache.getGeneration();
+
+    loadedValueMap.put("statusSelect", globalBudget.getStatusSelect());
+    globalBudget.setTotalAmountExpected(BigDecimal.ONE);
+    globalBudgetListener.updateBudgetKeys(globalBudget);
+
+    Assertions.assertEquals(generation, budgetKeyCache.getGeneration());
+
+    globalBudget.setStatusSelect(GlobalBudgetRepository.GLOBAL_BUDGET_STATUS_SELECT_ARCHIVED);
+    globalBudgetListener.updateBudgetKeys(globalBudget);
+
+    Assertions.assertEquals(generation + 1, budgetKeyCache.getGeneration());
+  }
+}
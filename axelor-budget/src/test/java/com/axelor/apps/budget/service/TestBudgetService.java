@@ -0,0 +1,453 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.budget.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.budget.db.Budget;
+import com.axelor.apps.budget.db.BudgetDistribution;
+import com.axelor.apps.budget.db.BudgetLine;
+import com.axelor.apps.budget.db.repo.BudgetLineRepository;
+import com.axelor.apps.budget.db.repo.BudgetRepository;
+import com.axelor.apps.purchase.db.PurchaseOrder;
+import com.axelor.apps.purchase.db.PurchaseOrderLine;
+import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
+import com.axelor.apps.sale.db.SaleOrder;
+import com.axelor.apps.sale.db.SaleOrderLine;
+import com.axelor.apps.sale.db.repo.SaleOrderRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBudgetService {
+
+  private BudgetLineRepository budgetLineRepository;
+  private TestBudgetServiceImpl budgetService;
+  private Budget budget;
+  private Budget otherBudget;
+  private BudgetLine januaryLine;
+  private BudgetLine februaryLine;
+  private BudgetLine marchLine;
+  private PurchaseOrder movedPurchaseOrder;
+
+  /**
+   * Evaluates the grouped order amount queries in memory, on the budget distributions of the test.
+   */
+  protected static class TestBudgetServiceImpl extends BudgetServiceImpl {
+
+    protected final List<BudgetDistribution> budgetDistributionList = new ArrayList<>();
+    protected final Map<Long, BudgetLine> budgetLineMap = new HashMap<>();
+
+    public TestBudgetServiceImpl(
+        BudgetLineRepository budgetLineRepository,
+        BudgetRepository budgetRepository,
+        CurrencyScaleServiceBudget currencyScaleServiceBudget) {
+      super(
+          budgetLineRepository,
+          budgetRepository,
+          null,
+          null,
+          null,
+          null,
+          null,
+          null,
+          null,
+          null,
+          null,
+          currencyScaleServiceBudget,
+          null);
+    }
+
+    @Override
+    protected List<Object[]> getOrderAmountsByBudgetLine(
+        String orderJoin,
+        String orderDate,
+        String orderFilter,
+        int canceledStatus,
+        Collection<Long> budgetLineIdList) {
+      boolean isPurchase = orderJoin.contains("purchaseOrderLine");
+      Map<Pair<Long, Integer>, BigDecimal[]> amountMap = new LinkedHashMap<>();
+
+      for (BudgetDistribution budgetDistribution : budgetDistributionList) {
+        if (isPurchase
+            ? budgetDistribution.getPurchaseOrderLine() == null
+            : budgetDistribution.getSaleOrderLine() == null
+                || budgetDistribution.getPurchaseOrderLine() != null) {
+          continue;
+        }
+
+        int statusSelect;
+        LocalDate date;
+        BigDecimal amountInvoiced;
+        if (isPurchase) {
+          PurchaseOrder purchaseOrder =
+              budgetDistribution.getPurchaseOrderLine().getPurchaseOrder();
+          statusSelect = purchaseOrder.getStatusSelect();
+          date = purchaseOrder.getOrderDate();
+          amountInvoiced = purchaseOrder.getAmountInvoiced();
+        } else {
+          SaleOrder saleOrder = budgetDistribution.getSaleOrderLine().getSaleOrder();
+          statusSelect = saleOrder.getStatusSelect();
+          date =
+              saleOrder.getOrderDate() != null
+                  ? saleOrder.getOrderDate()
+                  : saleOrder.getCreationDate();
+          amountInvoiced = saleOrder.getAmountInvoiced();
+        }
+
+        if (statusSelect == canceledStatus || date == null) {
+          continue;
+        }
+
+        for (Long budgetLineId : budgetLineIdList) {
+          BudgetLine budgetLine = budgetLineMap.get(budgetLineId);
+          if (budgetLine.getBudget() != budgetDistribution.getBudget()
+              || budgetLine.getFromDate().isAfter(date)
+              || budgetLine.getToDate().isBefore(date)) {
+            continue;
+          }
+
+          BigDecimal[] amounts =
+              amountMap.computeIfAbsent(
+                  Pair.of(budgetLineId, statusSelect),
+                  key -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+          amounts[0] = amounts[0].add(amountInvoiced);
+          if (amountInvoiced.signum() == 0) {
+            amounts[1] = amounts[1].add(budgetDistribution.getAmount());
+          }
+        }
+      }
+
+      return amountMap.entrySet().stream()
+          .map(
+              entry ->
+                  new Object[] {
+                    entry.getKey().getLeft(),
+                    entry.getKey().getRight(),
+                    entry.getValue()[0],
+                    entry.getValue()[1]
+                  })
+          .collect(Collectors.toList());
+    }
+  }
+
+  @BeforeEach
+  void prepare() {
+    budgetLineRepository = mock(BudgetLineRepository.class);
+    CurrencyScaleServiceBudget currencyScaleServiceBudget = mock(CurrencyScaleServiceBudget.class);
+    when(currencyScaleServiceBudget.getCompanyScaledValue(any(Budget.class), any(BigDecimal.class)))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+    budgetService =
+        new TestBudgetServiceImpl(
+            budgetLineRepository, mock(BudgetRepository.class), currencyScaleServiceBudget);
+
+    budget = new Budget();
+    januaryLine = createBudgetLine(budget, 1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+    februaryLine =
+        createBudgetLine(budget, 2L, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+    marchLine = createBudgetLine(budget, 3L, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31));
+    otherBudget = new Budget();
+    createBudgetLine(otherBudget, 4L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+    movedPurchaseOrder =
+        createPurchaseOrder(PurchaseOrderRepository.STATUS_VALIDATED, "2024-01-10", "0");
+    addPurchaseDistribution(budget, movedPurchaseOrder, "1000");
+    addPurchaseDistribution(budget, movedPurchaseOrder, "500");
+    PurchaseOrder invoicedPurchaseOrder =
+        createPurchaseOrder(PurchaseOrderRepository.STATUS_FINISHED, "2024-01-20", "800");
+    addPurchaseDistribution(budget, invoicedPurchaseOrder, "800");
+    PurchaseOrder canceledPurchaseOrder =
+        createPurchaseOrder(PurchaseOrderRepository.STATUS_CANCELED, "2024-02-01", "0");
+    addPurchaseDistribution(budget, canceledPurchaseOrder, "300");
+    PurchaseOrder draftPurchaseOrder =
+        createPurchaseOrder(PurchaseOrderRepository.STATUS_DRAFT, "2024-02-15", "0");
+    addPurchaseDistribution(budget, draftPurchaseOrder, "700");
+    PurchaseOrder outOfBudgetPurchaseOrder =
+        createPurchaseOrder(PurchaseOrderRepository.STATUS_DRAFT, "2024-04-01", "0");
+    addPurchaseDistribution(budget, outOfBudgetPurchaseOrder, "900");
+    PurchaseOrder otherBudgetPurchaseOrder =
+        createPurchaseOrder(PurchaseOrderRepository.STATUS_VALIDATED, "2024-01-15", "0");
+    addPurchaseDistribution(otherBudget, otherBudgetPurchaseOrder, "1100");
+
+    SaleOrder confirmedSaleOrder =
+        createSaleOrder(SaleOrderRepository.STATUS_ORDER_CONFIRMED, null, "2024-03-05", "200");
+    addSaleDistribution(budget, confirmedSaleOrder, "250");
+    SaleOrder finalizedSaleOrder =
+        createSaleOrder(
+            SaleOrderRepository.STATUS_FINALIZED_QUOTATION, "2024-03-10", "2024-02-20", "0");
+    addSaleDistribution(budget, finalizedSaleOrder, "400");
+    SaleOrder draftSaleOrder =
+        createSaleOrder(
+            SaleOrderRepository.STATUS_DRAFT_QUOTATION, "2024-02-03", "2024-02-03", "50");
+    addSaleDistribution(budget, draftSaleOrder, "150");
+    SaleOrder canceledSaleOrder =
+        createSaleOrder(SaleOrderRepository.STATUS_CANCELED, "2024-03-15", "2024-03-15", "0");
+    addSaleDistribution(budget, canceledSaleOrder, "350");
+  }
+
+  @Test
+  void testUpdateLinesMatchesPerDistributionComputation() {
+    Map<Long, List<BigDecimal>> expectedAmountMap = this.computePerDistribution(budget);
+
+    budgetService.updateLines(budget);
+
+    Assertions.assertEquals(expectedAmountMap, this.getAmounts(budget));
+    assertAmounts(januaryLine, "1500", "800", "8500");
+    assertAmounts(februaryLine, "700", "0", "9300");
+    assertAmounts(marchLine, "400", "200", "9600");
+  }
+
+  @Test
+  void testUpdateLinesFromOrderMatchesPerDistributionComputation() {
+    budgetService.updateLines(budget);
+    List<BudgetDistribution> movedBudgetDistributionList =
+        budgetService.budgetDistributionList.stream()
+            .filter(
+                budgetDistribution ->
+                    budgetDistribution.getPurchaseOrderLine() != null
+                        && budgetDistribution.getPurchaseOrderLine().getPurchaseOrder()
+                            == movedPurchaseOrder)
+            .collect(Collectors.toList());
+    movedBudgetDistributionList.forEach(
+        budgetDistribution -> budgetDistribution.setImputationDate(LocalDate.of(2024, 1, 10)));
+    clearInvocations(budgetLineRepository);
+
+    LocalDate newOrderDate = LocalDate.of(2024, 3, 20);
+    movedPurchaseOrder.setOrderDate(newOrderDate);
+    Map<Long, List<BigDecimal>> expectedAmountMap = this.computePerDistribution(budget);
+
+    budgetService.updateLinesFromOrder(movedBudgetDistributionList, newOrderDate);
+
+    Assertions.assertEquals(expectedAmountMap, this.getAmounts(budget));
+    assertAmounts(januaryLine, "0", "800", "10000");
+    assertAmounts(marchLine, "1900", "200", "8100");
+    verify(budgetLineRepository, never()).save(februaryLine);
+    Assertions.assertEquals(0, new BigDecimal("2600").compareTo(budget.getTotalAmountCommitted()));
+    Assertions.assertEquals(0, new BigDecimal("1000").compareTo(budget.getTotalAmountPaid()));
+    movedBudgetDistributionList.forEach(
+        budgetDistribution ->
+            Assertions.assertEquals(newOrderDate, budgetDistribution.getImputationDate()));
+  }
+
+  @Test
+  void testUpdateLinesFromOrderWithoutImputationDateUpdatesAllLines() {
+    budgetService.updateLines(budget);
+    februaryLine.setAmountCommitted(BigDecimal.ZERO);
+    List<BudgetDistribution> budgetDistributionList =
+        budgetService.budgetDistributionList.stream()
+            .filter(
+                budgetDistribution ->
+                    budgetDistribution.getPurchaseOrderLine() != null
+                        && budgetDistribution.getPurchaseOrderLine().getPurchaseOrder()
+                            == movedPurchaseOrder)
+            .collect(Collectors.toList());
+    Map<Long, List<BigDecimal>> expectedAmountMap = this.computePerDistribution(budget);
+
+    budgetService.updateLinesFromOrder(budgetDistributionList, LocalDate.of(2024, 1, 10));
+
+    Assertions.assertEquals(expectedAmountMap, this.getAmounts(budget));
+    assertAmounts(februaryLine, "700", "0", "9300");
+  }
+
+  /**
+   * Compute the amounts of the budget lines one budget distribution at a time, as the budget lines
+   * were updated before they were computed by grouped queries.
+   *
+   * @return the committed, paid and to be committed amounts by budget line id.
+   */
+  protected Map<Long, List<BigDecimal>> computePerDistribution(Budget budget) {
+    Map<Long, BigDecimal[]> amountMap = new LinkedHashMap<>();
+    for (BudgetLine budgetLine : budget.getBudgetLineList()) {
+      amountMap.put(
+          budgetLine.getId(),
+          new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO, budgetLine.getToBeCommittedAmount()});
+    }
+
+    for (BudgetDistribution budgetDistribution : budgetService.budgetDistributionList) {
+      if (budgetDistribution.getBudget() != budget) {
+        continue;
+      }
+
+      boolean isPurchase = false;
+      LocalDate orderDate = null;
+      int statusSelect = 0;
+      BigDecimal amountInvoiced = BigDecimal.ZERO;
+      if (budgetDistribution.getPurchaseOrderLine() != null) {
+        PurchaseOrder purchaseOrder = budgetDistribution.getPurchaseOrderLine().getPurchaseOrder();
+        if (purchaseOrder.getStatusSelect() == PurchaseOrderRepository.STATUS_CANCELED) {
+          continue;
+        }
+        isPurchase = true;
+        orderDate = purchaseOrder.getOrderDate();
+        statusSelect = purchaseOrder.getStatusSelect();
+        amountInvoiced = purchaseOrder.getAmountInvoiced();
+      } else {
+        SaleOrder saleOrder = budgetDistribution.getSaleOrderLine().getSaleOrder();
+        if (saleOrder.getStatusSelect() == SaleOrderRepository.STATUS_CANCELED) {
+          continue;
+        }
+        orderDate =
+            saleOrder.getOrderDate() != null
+                ? saleOrder.getOrderDate()
+                : saleOrder.getCreationDate();
+        statusSelect = saleOrder.getStatusSelect();
+        amountInvoiced = saleOrder.getAmountInvoiced();
+      }
+
+      for (BudgetLine budgetLine : budget.getBudgetLineList()) {
+        if (orderDate.isBefore(budgetLine.getFromDate())
+            || orderDate.isAfter(budgetLine.getToDate())) {
+          continue;
+        }
+
+        BigDecimal[] amounts = amountMap.get(budgetLine.getId());
+        if (isPurchase
+            ? statusSelect == PurchaseOrderRepository.STATUS_VALIDATED
+                || statusSelect == PurchaseOrderRepository.STATUS_FINISHED
+            : statusSelect == SaleOrderRepository.STATUS_FINALIZED_QUOTATION
+                || statusSelect == SaleOrderRepository.STATUS_ORDER_COMPLETED
+                || statusSelect == SaleOrderRepository.STATUS_ORDER_CONFIRMED) {
+          amounts[1] = amounts[1].add(amountInvoiced);
+        }
+        if (amountInvoiced.signum() == 0) {
+          amounts[0] = amounts[0].add(budgetDistribution.getAmount());
+        }
+        amounts[2] = budgetLine.getAmountExpected().subtract(amounts[0]);
+        break;
+      }
+    }
+
+    return amountMap.entrySet().stream()
+        .collect(
+            Collectors.toMap(
+                Map.Entry::getKey,
+                entry -> normalize(Arrays.asList(entry.getValue())),
+                (amounts1, amounts2) -> amounts1,
+                LinkedHashMap::new));
+  }
+
+  protected Map<Long, List<BigDecimal>> getAmounts(Budget budget) {
+    return budget.getBudgetLineList().stream()
+        .collect(
+            Collectors.toMap(
+                BudgetLine::getId,
+                budgetLine ->
+                    normalize(
+                        Arrays.asList(
+                            budgetLine.getAmountCommitted(),
+                            budgetLine.getAmountPaid(),
+                            budgetLine.getToBeCommittedAmount())),
+                (amounts1, amounts2) -> amounts1,
+                LinkedHashMap::new));
+  }
+
+  protected List<BigDecimal> normalize(List<BigDecimal> amountList) {
+    return amountList.stream()
+        .map(Objects::requireNonNull)
+        .map(amount -> amount.setScale(3))
+        .collect(Collectors.toList());
+  }
+
+  protected void assertAmounts(
+      BudgetLine budgetLine, String amountCommitted, String amountPaid, String toBeCommitted) {
+    Assertions.assertEquals(
+        normalize(
+            Arrays.asList(
+                new BigDecimal(amountCommitted),
+                new BigDecimal(amountPaid),
+                new BigDecimal(toBeCommitted))),
+        normalize(
+            Arrays.asList(
+                budgetLine.getAmountCommitted(),
+                budgetLine.getAmountPaid(),
+                budgetLine.getToBeCommittedAmount())));
+  }
+
+  protected BudgetLine createBudgetLine(
+      Budget budget, Long id, LocalDate fromDate, LocalDate toDate) {
+    BudgetLine budgetLine = new BudgetLine();
+    budgetLine.setId(id);
+    budgetLine.setFromDate(fromDate);
+    budgetLine.setToDate(toDate);
+    budgetLine.setAmountExpected(new BigDecimal("10000"));
+    budgetLine.setToBeCommittedAmount(new BigDecimal("10000"));
+    budget.addBudgetLineListItem(budgetLine);
+    budgetService.budgetLineMap.put(id, budgetLine);
+    return budgetLine;
+  }
+
+  protected PurchaseOrder createPurchaseOrder(
+      int statusSelect, String orderDate, String amountInvoiced) {
+    PurchaseOrder purchaseOrder = new PurchaseOrder();
+    purchaseOrder.setStatusSelect(statusSelect);
+    purchaseOrder.setOrderDate(LocalDate.parse(orderDate));
+    purchaseOrder.setAmountInvoiced(new BigDecimal(amountInvoiced));
+    return purchaseOrder;
+  }
+
+  protected SaleOrder createSaleOrder(
+      int statusSelect, String orderDate, String creationDate, String amountInvoiced) {
+    SaleOrder saleOrder = new SaleOrder();
+    saleOrder.setStatusSelect(statusSelect);
+    saleOrder.setOrderDate(orderDate == null ? null : LocalDate.parse(orderDate));
+    saleOrder.setCreationDate(LocalDate.parse(creationDate));
+    saleOrder.setAmountInvoiced(new BigDecimal(amountInvoiced));
+    return saleOrder;
+  }
+
+  protected void addPurchaseDistribution(
+      Budget budget, PurchaseOrder purchaseOrder, String amount) {
+    PurchaseOrderLine purchaseOrderLine = new PurchaseOrderLine();
+    purchaseOrderLine.setPurchaseOrder(purchaseOrder);
+    BudgetDistribution budgetDistribution = createBudgetDistribution(budget, amount);
+    budgetDistribution.setPurchaseOrderLine(purchaseOrderLine);
+  }
+
+  protected void addSaleDistribution(Budget budget, SaleOrder saleOrder, String amount) {
+    SaleOrderLine saleOrderLine = new SaleOrderLine();
+    saleOrderLine.setSaleOrder(saleOrder);
+    BudgetDistribution budgetDistribution = createBudgetDistribution(budget, amount);
+    budgetDistribution.setSaleOrderLine(saleOrderLine);
+  }
+
+  protected BudgetDistribution createBudgetDistribution(Budget budget, String amount) {
+    BudgetDistribution budgetDistribution = new BudgetDistribution();
+    budgetDistribution.setBudget(budget);
+    budgetDistribution.setAmount(new BigDecimal(amount));
+    budgetService.budgetDistributionList.add(budgetDistribution);
+    return budgetDistribution;
+  }
+}
@@ -29,6 +29,7 @@ import com.axelor.apps.account.db.repo.JournalTypeRepository;
 import com.axelor.apps.account.db.repo.PaymentModeRepository;
 import com.axelor.apps.account.service.JournalService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.WorkerExecutor;
 import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
@@ -74,9 +75,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.stream.Collectors;
 import javax.persistence.TypedQuery;
 import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,6 +90,8 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
 
   private final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int FETCH_LIMIT = 100;
+
   protected AppBaseService appBaseService;
   protected CurrencyService currencyService;
   protected ForecastRecapLineTypeRepository forecastRecapLineTypeRepo;
@@ -177,29 +184,81 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
           .bind("opportunityElement", ForecastRecapLineTypeRepository.ELEMENT_OPPORTUNITY);
     }
 
-    forecastRecapLineTypeQuery.order("id");
+    List<Long> forecastRecapLineTypeIdList =
+        forecastRecapLineTypeQuery
+            .order("id")
+            .fetchStream()
+            .map(ForecastRecapLineType::getId)
+            .collect(Collectors.toList());
 
-    final int FETCH_LIMIT = 1;
-    int offset = 0;
+    boolean manageMultiBanks =
+        appBaseService.getAppBase() != null
+            ? appBaseService.getAppBase().getManageMultiBanks()
+            : false;
 
-    List<ForecastRecapLineType> forecastRecapLineTypeList;
+    populateWithForecastRecapLineTypes(
+        forecastRecap.getId(), forecastRecapLineTypeIdList, manageMultiBanks);
 
-    while (!(forecastRecapLineTypeList = forecastRecapLineTypeQuery.fetch(FETCH_LIMIT, offset))
-        .isEmpty()) {
-      boolean manageMultiBanks =
-          appBaseService.getAppBase() != null
-              ? appBaseService.getAppBase().getManageMultiBanks()
-              : false;
-      for (ForecastRecapLineType forecastRecapLineType : forecastRecapLineTypeList) {
-        offset++;
-        populateWithTimetables(forecastRecap, forecastRecapLineType, manageMultiBanks);
-        populateWithForecastLineType(forecastRecap, forecastRecapLineType, manageMultiBanks);
+    JPA.clear();
+    this.finish(forecastRecapRepo.find(forecastRecap.getId()));
+  }
+
+  /**
+   * Generate the lines of each forecast recap line type on a pool of threads. The line types are
+   * independent from each other: each one is read and written with the entity manager of its
+   * thread, the balance being computed once every line type is done.
+   */
+  protected void populateWithForecastRecapLineTypes(
+      Long forecastRecapId, List<Long> forecastRecapLineTypeIdList, boolean manageMultiBanks)
+      throws AxelorException {
+
+    try (WorkerExecutor executor =
+        new WorkerExecutor(getThreadCount(forecastRecapLineTypeIdList.size()))) {
+      CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+
+      for (Long forecastRecapLineTypeId : forecastRecapLineTypeIdList) {
+        completionService.submit(
+            () -> {
+              populateWithForecastRecapLineType(
+                  forecastRecapRepo.find(forecastRecapId),
+                  forecastRecapLineTypeRepo.find(forecastRecapLineTypeId),
+                  manageMultiBanks);
+              return null;
+            });
       }
-      JPA.clear();
-      forecastRecap = forecastRecapRepo.find(forecastRecap.getId());
+
+      for (int i = 0; i < forecastRecapLineTypeIdList.size(); i++) {
+        completionService.take().get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AxelorException) {
+        throw (AxelorException) e.getCause();
+      }
+      throw new AxelorException(e.getCause(), TraceBackRepository.CATEGORY_INCONSISTENCY);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
     }
+  }
 
-    this.finish(forecastRecapRepo.find(forecastRecap.getId()));
+  protected void populateWithForecastRecapLineType(
+      ForecastRecap forecastRecap,
+      ForecastRecapLineType forecastRecapLineType,
+      boolean manageMultiBanks)
+      throws AxelorException {
+    // lines are inserted by jdbc batches of one page
+    JPA.em().unwrap(Session.class).setJdbcBatchSize(FETCH_LIMIT);
+    populateWithTimetables(forecastRecap, forecastRecapLineType, manageMultiBanks);
+    populateWithForecastLineType(forecastRecap, forecastRecapLineType, manageMultiBanks);
+  }
+
+  /**
+   * @return the number of threads generating the lines, bounded by the size of the worker pools
+   *     set in the application settings.
+   */
+  protected int getThreadCount(int forecastRecapLineTypeCount) {
+    return Math.max(
+        1, Math.min(forecastRecapLineTypeCount, WorkerExecutor.getDefaultThreadCount()));
   }
 
   protected void populateWithForecastLineType(
@@ -207,7 +266,6 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
       ForecastRecapLineType forecastRecapLineType,
       boolean manageMultiBanks)
       throws AxelorException {
-
     List<Integer> statusSelectList =
         StringHelper.getIntegerList(forecastRecapLineType.getStatusSelect());
     if (statusSelectList.isEmpty()) {
@@ -238,7 +296,7 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
 
     Query<? extends Model> modelQuery =
         JPA.all(getModel(forecastRecapLineType))
-            .filter(getFilter(forecastRecapLineType))
+            .filter("(" + getFilter(forecastRecapLineType) + ") AND self.id > :lastId")
             .bind("company", forecastRecap.getCompany())
             .bind("fromDate", forecastRecap.getFromDate())
             .bind("toDate", forecastRecap.getToDate())
@@ -256,21 +314,35 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
             .bind("functionalOrigin", functionalOriginList)
             .order("id");
 
-    final int FETCH_LIMIT = 10;
-    int offset = 0;
+    Long lastId = 0L;
     List<? extends Model> modelList;
 
-    while (!(modelList = modelQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      for (Model model : modelList) {
-        offset++;
-        createForecastRecapLines(forecastRecap, model, forecastRecapLineType);
-      }
+    while (!(modelList = modelQuery.bind("lastId", lastId).fetch(FETCH_LIMIT)).isEmpty()) {
+      createForecastRecapLines(forecastRecap, modelList, forecastRecapLineType);
+      lastId = modelList.get(modelList.size() - 1).getId();
       JPA.clear();
       forecastRecap = forecastRecapRepo.find(forecastRecap.getId());
       forecastRecapLineType = forecastRecapLineTypeRepo.find(forecastRecapLineType.getId());
     }
   }
 
+  /**
+   * Create the lines of a page of models in one transaction. For orders, the amounts already
+   * invoiced are summed for the whole page in one query.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void createForecastRecapLines(
+      ForecastRecap forecastRecap,
+      List<? extends Model> modelList,
+      ForecastRecapLineType forecastRecapLineType)
+      throws AxelorException {
+    Map<Long, BigDecimal> invoicedAmountMap =
+        getOrderInvoicedAmountMap(forecastRecapLineType, modelList);
+    for (Model model : modelList) {
+      createForecastRecapLines(forecastRecap, model, forecastRecapLineType, invoicedAmountMap);
+    }
+  }
+
   /**
    * Handles special cases where we need to create multiple lines for one model. For most
    * forecastRecapLineType, this method will only call {@link
@@ -281,7 +353,17 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
   protected void createForecastRecapLines(
       ForecastRecap forecastRecap, Model model, ForecastRecapLineType forecastRecapLineType)
       throws AxelorException {
-    BigDecimal companyAmount = getCompanyAmount(forecastRecap, forecastRecapLineType, model);
+    createForecastRecapLines(forecastRecap, model, forecastRecapLineType, null);
+  }
+
+  protected void createForecastRecapLines(
+      ForecastRecap forecastRecap,
+      Model model,
+      ForecastRecapLineType forecastRecapLineType,
+      Map<Long, BigDecimal> invoicedAmountMap)
+      throws AxelorException {
+    BigDecimal companyAmount =
+        getCompanyAmount(forecastRecap, forecastRecapLineType, model, invoicedAmountMap);
     if (forecastRecapLineType.getElementSelect()
         == ForecastRecapLineTypeRepository.ELEMENT_SALARY) {
       createForecastRecapLinesFromEmployee(forecastRecap, (Employee) model, forecastRecapLineType);
@@ -362,8 +444,8 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
               employee.getName(),
               null,
               employee.getBankDetails(),
-              forecastRecapLineTypeRepo.find(forecastRecapLineType.getId()),
-              forecastRecapRepo.find(forecastRecap.getId()));
+              forecastRecapLineType,
+              forecastRecap);
         }
         itDate = itDate.plusMonths(1);
       } else {
@@ -487,6 +569,19 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
   protected BigDecimal getCompanyAmount(
       ForecastRecap forecastRecap, ForecastRecapLineType forecastRecapLineType, Model forecastModel)
       throws AxelorException {
+    return getCompanyAmount(forecastRecap, forecastRecapLineType, forecastModel, null);
+  }
+
+  /**
+   * Returns the amount in company currency, the amounts already invoiced on orders being read from
+   * the given map when it is not null.
+   */
+  protected BigDecimal getCompanyAmount(
+      ForecastRecap forecastRecap,
+      ForecastRecapLineType forecastRecapLineType,
+      Model forecastModel,
+      Map<Long, BigDecimal> invoicedAmountMap)
+      throws AxelorException {
 
     switch (forecastRecapLineType.getElementSelect()) {
       case ForecastRecapLineTypeRepository.ELEMENT_INVOICE:
@@ -500,7 +595,8 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
             .getAmountCurrencyConvertedAtDate(
                 saleOrder.getCurrency(),
                 saleOrder.getCompany().getCurrency(),
-                getOrderAmount(forecastRecap, forecastRecapLineType, forecastModel),
+                getOrderAmount(
+                    forecastRecap, forecastRecapLineType, forecastModel, invoicedAmountMap),
                 today)
             .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
       case ForecastRecapLineTypeRepository.ELEMENT_PURCHASE_ORDER:
@@ -509,7 +605,8 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
             .getAmountCurrencyConvertedAtDate(
                 purchaseOrder.getCurrency(),
                 purchaseOrder.getCompany().getCurrency(),
-                getOrderAmount(forecastRecap, forecastRecapLineType, forecastModel),
+                getOrderAmount(
+                    forecastRecap, forecastRecapLineType, forecastModel, invoicedAmountMap),
                 today)
             .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
       case ForecastRecapLineTypeRepository.ELEMENT_EXPENSE:
@@ -536,6 +633,85 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
     }
   }
 
+  protected BigDecimal getOrderAmount(
+      ForecastRecap forecastRecap,
+      ForecastRecapLineType forecastRecapLineType,
+      Model forecastModel,
+      Map<Long, BigDecimal> invoicedAmountMap) {
+    if (invoicedAmountMap == null) {
+      return getOrderAmount(forecastRecap, forecastRecapLineType, forecastModel);
+    }
+    BigDecimal orderTotal =
+        forecastModel instanceof SaleOrder
+            ? ((SaleOrder) forecastModel).getInTaxTotal()
+            : ((PurchaseOrder) forecastModel).getInTaxTotal();
+    return orderTotal.subtract(
+        invoicedAmountMap.getOrDefault(forecastModel.getId(), BigDecimal.ZERO));
+  }
+
+  /**
+   * Sum the invoices and refunds of each order of the list.
+   *
+   * @return the invoiced amount mapped by order id, empty if the line type is not about orders.
+   */
+  protected Map<Long, BigDecimal> getOrderInvoicedAmountMap(
+      ForecastRecapLineType forecastRecapLineType, List<? extends Model> modelList) {
+    Map<Long, BigDecimal> invoicedAmountMap = new HashMap<>();
+    int operationTypeRefund;
+    int operationTypeInvoice;
+    String orderField;
+
+    if (forecastRecapLineType.getElementSelect()
+        == ForecastRecapLineTypeRepository.ELEMENT_SALE_ORDER) {
+      operationTypeRefund = InvoiceRepository.OPERATION_TYPE_CLIENT_REFUND;
+      operationTypeInvoice = InvoiceRepository.OPERATION_TYPE_CLIENT_SALE;
+      orderField = "saleOrder";
+    } else if (forecastRecapLineType.getElementSelect()
+        == ForecastRecapLineTypeRepository.ELEMENT_PURCHASE_ORDER) {
+      operationTypeRefund = InvoiceRepository.OPERATION_TYPE_SUPPLIER_REFUND;
+      operationTypeInvoice = InvoiceRepository.OPERATION_TYPE_SUPPLIER_PURCHASE;
+      orderField = "purchaseOrder";
+    } else {
+      return invoicedAmountMap;
+    }
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT invoice."
+                    + orderField
+                    + ".id, SUM(CASE WHEN operationTypeSelect = :operationTypeInvoice "
+                    + "THEN invoice.inTaxTotal "
+                    + "ELSE (invoice.inTaxTotal * -1) "
+                    + "END) "
+                    + "FROM Invoice invoice "
+                    + "WHERE ((invoice.statusSelect IN (:invoiceStatusSelect) "
+                    + "AND operationTypeSelect = :operationTypeInvoice) "
+                    + "OR (invoice.statusSelect IN (:refundStatusSelect) "
+                    + "AND operationTypeSelect = :operationTypeRefund )) "
+                    + "AND invoice."
+                    + orderField
+                    + ".id IN (:orderIds) "
+                    + "GROUP BY invoice."
+                    + orderField
+                    + ".id",
+                Object[].class)
+            .setParameter(
+                "orderIds", modelList.stream().map(Model::getId).collect(Collectors.toList()))
+            .setParameter("operationTypeInvoice", operationTypeInvoice)
+            .setParameter("invoiceStatusSelect", invoiceStatusMap.get(operationTypeInvoice))
+            .setParameter("operationTypeRefund", operationTypeRefund)
+            .setParameter("refundStatusSelect", invoiceStatusMap.get(operationTypeRefund))
+            .getResultList();
+
+    for (Object[] result : resultList) {
+      if (result[1] != null) {
+        invoicedAmountMap.put((Long) result[0], (BigDecimal) result[1]);
+      }
+    }
+    return invoicedAmountMap;
+  }
+
   protected BigDecimal getOrderAmount(
       ForecastRecap forecastRecap,
       ForecastRecapLineType forecastRecapLineType,
@@ -780,6 +956,7 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
     }
   }
 
+  @Transactional(rollbackOn = {Exception.class})
   protected void populateWithTimetables(
       ForecastRecap forecastRecap,
       ForecastRecapLineType forecastRecapLineType,
@@ -831,7 +1008,6 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
               .fetch();
 
       for (Timetable timetable : timetableList) {
-        timetable = timetableRepo.find(timetable.getId());
         BigDecimal amountCompanyCurr =
             currencyService
                 .getAmountCurrencyConvertedAtDate(
@@ -849,8 +1025,8 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
             timetable.getSaleOrder().getSaleOrderSeq(),
             timetable.getSaleOrder().getPaymentMode(),
             null,
-            forecastRecapLineTypeRepo.find(forecastRecapLineType.getId()),
-            forecastRecapRepo.find(forecastRecap.getId()));
+            forecastRecapLineType,
+            forecastRecap);
       }
 
     } else if (forecastRecapLineType.getElementSelect()
@@ -874,7 +1050,6 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
               .fetch();
 
       for (Timetable timetable : timetableList) {
-        timetable = timetableRepo.find(timetable.getId());
         BigDecimal amountCompanyCurr =
             currencyService
                 .getAmountCurrencyConvertedAtDate(
@@ -892,8 +1067,8 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
             timetable.getPurchaseOrder().getPurchaseOrderSeq(),
             timetable.getPurchaseOrder().getPaymentMode(),
             null,
-            forecastRecapLineTypeRepo.find(forecastRecapLineType.getId()),
-            forecastRecapRepo.find(forecastRecap.getId()));
+            forecastRecapLineType,
+            forecastRecap);
       }
     } else if (forecastRecapLineType.getElementSelect()
         == ForecastRecapLineTypeRepository.ELEMENT_MOVE) {
@@ -926,7 +1101,6 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
               .fetch();
 
       for (InvoiceTerm invoiceTerm : invoiceTermList) {
-        invoiceTerm = invoiceTermRepo.find(invoiceTerm.getId());
         BigDecimal amountCompanyCurr =
             currencyService
                 .getAmountCurrencyConvertedAtDate(
@@ -945,12 +1119,16 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
             invoiceTerm.getMoveLine().getMove().getReference(),
             invoiceTerm.getPaymentMode(),
             invoiceTerm.getMoveLine().getMove().getCompanyBankDetails(),
-            forecastRecapLineTypeRepo.find(forecastRecapLineType.getId()),
-            forecastRecapRepo.find(forecastRecap.getId()));
+            forecastRecapLineType,
+            forecastRecap);
       }
     }
   }
 
+  /**
+   * Create a forecast recap line. The line is inserted on its own, without loading nor saving the
+   * line list of the forecast recap, so that several line types can be generated at the same time.
+   */
   @Transactional
   protected void createForecastRecapLine(
       LocalDate date,
@@ -978,9 +1156,9 @@ public class ForecastRecapServiceImpl implements ForecastRecapService {
         Optional.ofNullable(bankDetails).map(BankDetails::getFullName).orElse(""));
 
     forecastRecapLine.setForecastRecapLineType(forecastRecapLineType);
-    forecastRecap.addForecastRecapLineListItem(forecastRecapLine);
+    forecastRecapLine.setForecastRecap(forecastRecap);
 
-    forecastRecapRepo.save(forecastRecap);
+    JPA.persist(forecastRecapLine);
   }
 
   @Override
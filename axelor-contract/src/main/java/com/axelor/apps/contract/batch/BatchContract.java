@@ -19,14 +19,13 @@
 package com.axelor.apps.contract.batch;
 
 import com.axelor.apps.base.db.repo.BatchRepository;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.batch.BatchStrategy;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractBatchRepository;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.translation.ITranslation;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
@@ -67,11 +66,10 @@ public class BatchContract extends BatchStrategy {
               I18n.get("Action %s has no Batch implementation."),
               batch.getContractBatch().getActionSelect()));
 
-      Query<Contract> query = factory.prepare(batch);
+      BatchChunkIterator<Contract> iterator = chunkIterator(factory.prepare(batch));
       List<Contract> contracts;
 
-      while (!(contracts = query.fetch(FETCH_LIMIT)).isEmpty()) {
-        findBatch();
+      while (!(contracts = iterator.nextChunk()).isEmpty()) {
         for (Contract contract : contracts) {
           try {
             factory.process(contract);
@@ -81,7 +79,7 @@ public class BatchContract extends BatchStrategy {
             incrementAnomaly(contract);
           }
         }
-        JPA.clear();
+        iterator.endChunk();
       }
     } catch (Exception e) {
       TraceBackService.trace(e);
@@ -20,11 +20,11 @@ package com.axelor.apps.contract.batch;
 
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.google.inject.Inject;
 
 abstract class BatchContractFactory {
@@ -40,7 +40,7 @@ abstract class BatchContractFactory {
     this.baseService = baseService;
   }
 
-  abstract Query<Contract> prepare(Batch batch);
+  abstract BatchChunkIterator<Contract> prepare(Batch batch);
 
   abstract void process(Contract contract) throws AxelorException;
 }
@@ -20,12 +20,12 @@ package com.axelor.apps.contract.batch;
 
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.db.repo.ContractVersionRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.google.inject.Inject;
 import java.time.format.DateTimeFormatter;
 
@@ -38,10 +38,9 @@ public class BatchContractFactoryCurrentActivation extends BatchContractFactory
   }
 
   @Override
-  Query<Contract> prepare(Batch batch) {
-    return repository
-        .all()
-        .filter(
+  BatchChunkIterator<Contract> prepare(Batch batch) {
+    return BatchChunkIterator.of(
+            Contract.class,
             "self.currentContractVersion.supposedActivationDate <= :date "
                 + "AND self.currentContractVersion.statusSelect = :status "
                 + "AND :batch NOT MEMBER of self.batchSet")
@@ -21,12 +21,12 @@ package com.axelor.apps.contract.batch;
 import com.axelor.apps.account.db.Invoice;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.AbstractContractRepository;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.google.inject.Inject;
 
 public class BatchContractFactoryInvoicing extends BatchContractFactory {
@@ -40,11 +40,9 @@ public class BatchContractFactoryInvoicing extends BatchContractFactory {
   }
 
   @Override
-  public Query<Contract> prepare(Batch batch) {
+  public BatchChunkIterator<Contract> prepare(Batch batch) {
     this.batch = batch;
-    return repository
-        .all()
-        .filter(this.prepareFilter(true))
+    return BatchChunkIterator.of(Contract.class, this.prepareFilter(true))
         .bind("date", batch.getContractBatch().getInvoicingDate())
         .bind("batch", batch)
         .bind("targetTypeSelect", batch.getContractBatch().getTargetTypeSelect())
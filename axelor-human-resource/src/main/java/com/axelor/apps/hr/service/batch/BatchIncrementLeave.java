@@ -21,6 +21,7 @@ package com.axelor.apps.hr.service.batch;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.hr.db.Employee;
 import com.axelor.apps.hr.db.LeaveReason;
@@ -29,7 +30,6 @@ import com.axelor.apps.hr.db.repo.LeaveReasonRepository;
 import com.axelor.apps.hr.service.leave.IncrementLeaveService;
 import com.axelor.apps.hr.translation.ITranslation;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.utils.helpers.StringHelper;
 import com.google.inject.Inject;
@@ -78,12 +78,10 @@ public class BatchIncrementLeave extends AbstractBatch {
 
   protected void incrementLeaveForEmployees(Long id) throws AxelorException {
     List<Employee> employeeList;
-    int offset = 0;
     LeaveReason leaveReason = leaveReasonRepository.find(id);
-    Query<Employee> query = getEmployeeQuery(leaveReason);
-    while (!(employeeList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
+    BatchChunkIterator<Employee> iterator = getEmployeeIterator(leaveReason);
+    while (!(employeeList = iterator.nextChunk()).isEmpty()) {
       for (Employee employee : employeeList) {
-        ++offset;
         employee = employeeRepository.find(employee.getId());
         incrementLeaveService.updateEmployeeLeaveLines(leaveReason, employee);
       }
@@ -91,19 +89,17 @@ public class BatchIncrementLeave extends AbstractBatch {
     JPA.clear();
   }
 
-  protected Query<Employee> getEmployeeQuery(LeaveReason leaveReason) {
-    Query<Employee> query = employeeRepository.all();
-    if (CollectionUtils.isEmpty(leaveReason.getPlanningSet())) {
-      return query;
+  protected BatchChunkIterator<Employee> getEmployeeIterator(LeaveReason leaveReason) {
+    String filter = null;
+    if (CollectionUtils.isNotEmpty(leaveReason.getPlanningSet())) {
+      filter =
+          "self.weeklyPlanning in ("
+              + StringHelper.getIdListString(leaveReason.getPlanningSet())
+              + ")";
     }
 
-    String filter =
-        "self.weeklyPlanning in ("
-            + StringHelper.getIdListString(leaveReason.getPlanningSet())
-            + ")";
-    query.filter(filter);
-
-    return query;
+    // the leave reason is used by every chunk, so the session is only cleared at the end
+    return chunkIterator(Employee.class, filter).policy(BatchChunkIterator.ChunkPolicy.NONE);
   }
 
   @Override
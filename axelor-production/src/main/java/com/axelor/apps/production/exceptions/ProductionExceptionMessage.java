@@ -210,6 +210,9 @@ public final class ProductionExceptionMessage {
   public static final String UNIT_COST_CALCULATION_NO_PRODUCT_FOUND = /*$$(*/
       "No product has been found with these filters. Please check your filters" /*)*/;
 
+  public static final String UNIT_COST_CALCULATION_IMPORT_INVALID_COST = /*$$(*/
+      "The value %s of the column %s is not a valid cost for the product %s, it has not been imported." /*)*/;
+
   public static final String NO_PRODUCT_SELECTED = /*$$(*/
       "Please select at least one product in the list." /*)*/;
 
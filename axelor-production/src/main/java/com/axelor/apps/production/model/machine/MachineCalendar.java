@@ -0,0 +1,280 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.model.machine;
+
+import com.axelor.apps.base.db.EventsPlanning;
+import com.axelor.apps.base.db.EventsPlanningLine;
+import com.axelor.apps.production.db.Machine;
+import com.axelor.apps.production.db.OperationOrder;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Calendar of machines used during a planning run at finite capacity. For each machine, it holds
+ * the public holidays and the operation orders booked on it, indexed by planned start date, so a
+ * free time slot is searched in memory instead of querying the operation orders on each attempt.
+ *
+ * <p>A machine is loaded on its first use and the calendar has to be kept up to date with {@link
+ * #book(OperationOrder)} each time an operation order is planned during the run.
+ */
+public class MachineCalendar {
+
+  private final Map<Long, Set<LocalDate>> publicHolidayMap = new HashMap<>();
+  private final Map<Long, MachineBookings> machineBookingsMap = new HashMap<>();
+  private final Map<Long, Booking> bookingMap = new HashMap<>();
+
+  public boolean isLoaded(Machine machine) {
+    return machineBookingsMap.containsKey(machine.getId());
+  }
+
+  /**
+   * Load the operation orders booked on the machine. The operation orders without planned dates
+   * are ignored.
+   *
+   * @param machine
+   * @param operationOrders the operation orders currently booked on the machine
+   */
+  public void load(Machine machine, Collection<OperationOrder> operationOrders) {
+    machineBookingsMap.put(machine.getId(), new MachineBookings());
+    for (OperationOrder operationOrder : operationOrders) {
+      if (!bookingMap.containsKey(operationOrder.getId())) {
+        book(operationOrder);
+      }
+    }
+  }
+
+  public boolean isPublicHoliday(Machine machine, LocalDate date) {
+    return publicHolidayMap
+        .computeIfAbsent(machine.getId(), id -> getPublicHolidays(machine))
+        .contains(date);
+  }
+
+  /**
+   * Update the booking of the operation order with its machine and planned dates. Nothing is
+   * booked if the machine of the operation order is not loaded yet, as the operation order will be
+   * read with the other ones of the machine.
+   *
+   * @param operationOrder
+   */
+  public void book(OperationOrder operationOrder) {
+    Booking previousBooking = bookingMap.remove(operationOrder.getId());
+    if (previousBooking != null) {
+      machineBookingsMap.get(previousBooking.getMachineId()).remove(previousBooking);
+    }
+
+    Machine machine = operationOrder.getMachine();
+    if (operationOrder.getId() == null
+        || machine == null
+        || operationOrder.getPlannedStartDateT() == null
+        || operationOrder.getPlannedEndDateT() == null
+        || !isLoaded(machine)) {
+      return;
+    }
+
+    Booking booking =
+        new Booking(
+            operationOrder.getId(),
+            machine.getId(),
+            operationOrder.getPlannedStartDateT(),
+            operationOrder.getPlannedEndDateT());
+    bookingMap.put(booking.getOperationOrderId(), booking);
+    machineBookingsMap.get(machine.getId()).add(booking);
+  }
+
+  /**
+   * Find, among the bookings running at the start or at the end of the given slot, the one that
+   * ends last. A booking is running at a date if it starts before it and ends after it minus the
+   * time needed before the next operation.
+   *
+   * @param machine a loaded machine
+   * @param startDateT
+   * @param endDateT
+   * @param timeBeforeNextOperation in seconds
+   * @param operationOrderId the operation order to plan, excluded from the search
+   * @return the booking ending last, if any
+   */
+  public Optional<Booking> findLastEndingConcurrentBooking(
+      Machine machine,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      long timeBeforeNextOperation,
+      Long operationOrderId) {
+    LocalDateTime startDateWithTime = startDateT.minusSeconds(timeBeforeNextOperation);
+    LocalDateTime endDateWithTime = endDateT.minusSeconds(timeBeforeNextOperation);
+
+    Booking lastEndingBooking = null;
+    for (Booking booking :
+        machineBookingsMap
+            .get(machine.getId())
+            .getBookingsStartingBetween(startDateWithTime, endDateT)) {
+      if (!booking.getOperationOrderId().equals(operationOrderId)
+          && ((!booking.getStartDateT().isAfter(startDateT)
+                  && booking.getEndDateT().isAfter(startDateWithTime))
+              || (!booking.getStartDateT().isAfter(endDateT)
+                  && booking.getEndDateT().isAfter(endDateWithTime)))
+          && (lastEndingBooking == null
+              || booking.getEndDateT().isAfter(lastEndingBooking.getEndDateT()))) {
+        lastEndingBooking = booking;
+      }
+    }
+    return Optional.ofNullable(lastEndingBooking);
+  }
+
+  /**
+   * Find, among the bookings running at the start or at the end of the given slot or contained in
+   * it, the one that starts first.
+   *
+   * @param machine a loaded machine
+   * @param startDateT
+   * @param endDateT
+   * @param timeBeforeNextOperation in seconds
+   * @param operationOrderId the operation order to plan, excluded from the search
+   * @return the booking starting first, if any
+   */
+  public Optional<Booking> findFirstStartingConcurrentBooking(
+      Machine machine,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      long timeBeforeNextOperation,
+      Long operationOrderId) {
+    LocalDateTime startDateWithTime = startDateT.minusSeconds(timeBeforeNextOperation);
+    LocalDateTime endDateWithTime = endDateT.minusSeconds(timeBeforeNextOperation);
+
+    // bookings are sorted by start date, so the first matching one is the first to start
+    for (Booking booking :
+        machineBookingsMap
+            .get(machine.getId())
+            .getBookingsStartingBetween(startDateWithTime, endDateT)) {
+      if (!booking.getOperationOrderId().equals(operationOrderId)
+          && ((!booking.getStartDateT().isAfter(startDateT)
+                  && booking.getEndDateT().isAfter(startDateWithTime))
+              || (booking.getStartDateT().isBefore(endDateT)
+                  && booking.getEndDateT().isAfter(endDateWithTime))
+              || (!booking.getStartDateT().isBefore(startDateT)
+                  && !booking.getEndDateT().isAfter(endDateWithTime)))) {
+        return Optional.of(booking);
+      }
+    }
+    return Optional.empty();
+  }
+
+  protected Set<LocalDate> getPublicHolidays(Machine machine) {
+    Set<LocalDate> publicHolidays = new HashSet<>();
+    EventsPlanning planning = machine.getPublicHolidayEventsPlanning();
+    if (planning != null && planning.getEventsPlanningLineList() != null) {
+      for (EventsPlanningLine eventsPlanningLine : planning.getEventsPlanningLineList()) {
+        publicHolidays.add(eventsPlanningLine.getDate());
+      }
+    }
+    return publicHolidays;
+  }
+
+  /** Operation order booked on a machine, detached from the entity manager. */
+  public static class Booking {
+
+    private final Long operationOrderId;
+    private final Long machineId;
+    private final LocalDateTime startDateT;
+    private final LocalDateTime endDateT;
+
+    public Booking(
+        Long operationOrderId, Long machineId, LocalDateTime startDateT, LocalDateTime endDateT) {
+      this.operationOrderId = Objects.requireNonNull(operationOrderId);
+      this.machineId = Objects.requireNonNull(machineId);
+      this.startDateT = Objects.requireNonNull(startDateT);
+      this.endDateT = Objects.requireNonNull(endDateT);
+    }
+
+    public Long getOperationOrderId() {
+      return operationOrderId;
+    }
+
+    public Long getMachineId() {
+      return machineId;
+    }
+
+    public LocalDateTime getStartDateT() {
+      return startDateT;
+    }
+
+    public LocalDateTime getEndDateT() {
+      return endDateT;
+    }
+  }
+
+  /**
+   * Bookings of one machine sorted by start date. As no booking lasts longer than the longest one,
+   * the bookings running at a date are found among the ones starting at most that long before it.
+   */
+  protected static class MachineBookings {
+
+    private final NavigableMap<LocalDateTime, List<Booking>> bookingsByStartDateT =
+        new TreeMap<>();
+    private Duration longestDuration = Duration.ZERO;
+
+    protected void add(Booking booking) {
+      bookingsByStartDateT
+          .computeIfAbsent(booking.getStartDateT(), date -> new ArrayList<>())
+          .add(booking);
+      Duration duration = Duration.between(booking.getStartDateT(), booking.getEndDateT());
+      if (duration.compareTo(longestDuration) > 0) {
+        longestDuration = duration;
+      }
+    }
+
+    protected void remove(Booking booking) {
+      List<Booking> bookings = bookingsByStartDateT.get(booking.getStartDateT());
+      if (bookings != null) {
+        bookings.remove(booking);
+        if (bookings.isEmpty()) {
+          bookingsByStartDateT.remove(booking.getStartDateT());
+        }
+      }
+    }
+
+    /**
+     * @return the bookings that may be running between the two dates, sorted by start date.
+     */
+    protected List<Booking> getBookingsStartingBetween(
+        LocalDateTime fromDateT, LocalDateTime toDateT) {
+      List<Booking> bookings = new ArrayList<>();
+      if (fromDateT.minus(longestDuration).isAfter(toDateT)) {
+        return bookings;
+      }
+      for (List<Booking> bookingList :
+          bookingsByStartDateT.subMap(fromDateT.minus(longestDuration), true, toDateT, true)
+              .values()) {
+        bookings.addAll(bookingList);
+      }
+      return bookings;
+    }
+  }
+}
@@ -63,18 +63,25 @@ import com.axelor.apps.supplychain.service.MrpLineService;
 import com.axelor.apps.supplychain.service.MrpLineTypeService;
 import com.axelor.apps.supplychain.service.MrpSaleOrderCheckLateSaleService;
 import com.axelor.apps.supplychain.service.MrpServiceImpl;
+import com.axelor.apps.supplychain.service.app.AppSupplychainService;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.message.service.MailMessageService;
 import com.axelor.utils.helpers.StringHelper;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,6 +123,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
       StockHistoryLineRepository stockHistoryLineRepository,
       MrpSaleOrderCheckLateSaleService mrpSaleOrderCheckLateSaleService,
       MrpLineTypeService mrpLineTypeService,
+      AppSupplychainService appSupplychainService,
       ManufOrderRepository manufOrderRepository,
       ProductCompanyService productCompanyService,
       BillOfMaterialService billOfMaterialService,
@@ -142,7 +150,8 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
         appPurchaseService,
         stockHistoryLineRepository,
         mrpSaleOrderCheckLateSaleService,
-        mrpLineTypeService);
+        mrpLineTypeService,
+        appSupplychainService);
     this.manufOrderRepository = manufOrderRepository;
     this.productCompanyService = productCompanyService;
     this.billOfMaterialService = billOfMaterialService;
@@ -155,7 +164,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
 
     super.completeMrp(mrp);
 
-    if (appProductionService.isApp("production")) {
+    if (appProductionService.isApp("production") && !this.productMap.isEmpty()) {
       this.createManufOrderMrpLines();
       this.createMPSLines();
     }
@@ -499,6 +508,93 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
     }
   }
 
+  @Override
+  protected List<String> getChangedProductQueryList() {
+
+    List<String> queryList = super.getChangedProductQueryList();
+
+    if (!appProductionService.isApp("production")) {
+      return queryList;
+    }
+
+    queryList.add(this.getChangedProductQuery("ManufOrder", null));
+    queryList.add(this.getChangedProductQuery("BillOfMaterial", null));
+    queryList.add(this.getChangedProductQuery("BillOfMaterialLine", "billOfMaterialParent"));
+    queryList.add(
+        "SELECT DISTINCT self.billOfMaterialParent.product.id FROM BillOfMaterialLine self "
+            + "WHERE self.createdOn > :dateTime OR self.updatedOn > :dateTime");
+
+    return queryList;
+  }
+
+  /**
+   * Products are linked through their bills of materials and manufacturing orders, as the
+   * proposals and orders of a product generate need lines for its components.
+   */
+  @Override
+  protected Set<Long> getLinkedProductIdSet(Set<Long> productIdSet) {
+
+    Set<Long> linkedProductIdSet = super.getLinkedProductIdSet(productIdSet);
+
+    if (!appProductionService.isApp("production")) {
+      return linkedProductIdSet;
+    }
+
+    List<String> queryList =
+        Arrays.asList(
+            "SELECT line.product.id FROM BillOfMaterialLine line "
+                + "WHERE line.billOfMaterialParent.product.id IN (:productIds)",
+            "SELECT line.billOfMaterialParent.product.id FROM BillOfMaterialLine line "
+                + "WHERE line.product.id IN (:productIds)",
+            "SELECT prodProduct.product.id FROM ManufOrder self "
+                + "JOIN self.toConsumeProdProductList prodProduct "
+                + "WHERE self.product.id IN (:productIds)",
+            "SELECT self.product.id FROM ManufOrder self "
+                + "JOIN self.toConsumeProdProductList prodProduct "
+                + "WHERE prodProduct.product.id IN (:productIds)",
+            "SELECT prodProduct.product.id FROM OperationOrder self "
+                + "JOIN self.toConsumeProdProductList prodProduct "
+                + "WHERE self.manufOrder.product.id IN (:productIds)",
+            "SELECT self.manufOrder.product.id FROM OperationOrder self "
+                + "JOIN self.toConsumeProdProductList prodProduct "
+                + "WHERE prodProduct.product.id IN (:productIds)");
+
+    for (List<Long> productIdList : Lists.partition(new ArrayList<>(productIdSet), 1000)) {
+      for (String query : queryList) {
+        linkedProductIdSet.addAll(
+            JPA.em()
+                .createQuery(query, Long.class)
+                .setParameter("productIds", productIdList)
+                .getResultList());
+      }
+    }
+
+    return linkedProductIdSet;
+  }
+
+  @Override
+  protected Set<Long> getMrpComponentIdSet(Long productId) throws AxelorException {
+
+    if (!appProductionService.isApp("production")) {
+      return super.getMrpComponentIdSet(productId);
+    }
+
+    Company company = mrpRepository.find(mrp.getId()).getStockLocation().getCompany();
+    BillOfMaterial defaultBillOfMaterial =
+        billOfMaterialService.getDefaultBOM(productRepository.find(productId), company);
+
+    if (defaultBillOfMaterial == null
+        || CollectionUtils.isEmpty(defaultBillOfMaterial.getBillOfMaterialLineList())) {
+      return Collections.emptySet();
+    }
+
+    return defaultBillOfMaterial.getBillOfMaterialLineList().stream()
+        .map(BillOfMaterialLine::getProduct)
+        .filter(this::isMrpProduct)
+        .map(Product::getId)
+        .collect(Collectors.toSet());
+  }
+
   /**
    * Update maturiy date because current currenty date do not take into account the duration of the
    * entrire process of manuf order
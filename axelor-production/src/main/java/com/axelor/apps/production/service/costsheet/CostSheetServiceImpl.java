@@ -79,6 +79,7 @@ public class CostSheetServiceImpl implements CostSheetService {
   protected Unit cycleUnit;
   protected boolean manageResidualProductOnBom;
   protected CostSheet costSheet;
+  protected Map<String, List<CostSheetLine>> subAssemblyLineMap;
 
   @Inject
   public CostSheetServiceImpl(
@@ -103,6 +104,7 @@ public class CostSheetServiceImpl implements CostSheetService {
     this.manageResidualProductOnBom = appProduction.getManageResidualProductOnBom();
 
     costSheet = new CostSheet();
+    subAssemblyLineMap = new HashMap<>();
   }
 
   @Override
@@ -338,7 +340,7 @@ public class CostSheetServiceImpl implements CostSheetService {
           }
 
           if (billOfMaterialLine.getBillOfMaterial() != null) {
-            this._computeCostPrice(
+            this._computeSubAssemblyCostPrice(
                 company,
                 billOfMaterialLine.getBillOfMaterial(),
                 bomLevel,
@@ -351,6 +353,81 @@ public class CostSheetServiceImpl implements CostSheetService {
     }
   }
 
+  /**
+   * Compute the lines of a sub-assembly under the line of its consumed product. The lines of a
+   * sub-assembly being the same wherever it is used in the cost sheet, they are computed on its
+   * first use and copied on the next ones.
+   */
+  protected void _computeSubAssemblyCostPrice(
+      Company company,
+      BillOfMaterial billOfMaterial,
+      int bomLevel,
+      CostSheetLine costSheetLine,
+      int origin,
+      UnitCostCalculation unitCostCalculation)
+      throws AxelorException {
+
+    // a line merged with a previous component of the same product keeps its lines
+    if (billOfMaterial.getId() == null
+        || costSheetLine.getProduct() == null
+        || (costSheetLine.getCostSheetLineList() != null
+            && !costSheetLine.getCostSheetLineList().isEmpty())) {
+      this._computeCostPrice(
+          company, billOfMaterial, bomLevel, costSheetLine, origin, unitCostCalculation);
+      return;
+    }
+
+    String key = billOfMaterial.getId() + "-" + costSheetLine.getProduct().getId();
+    List<CostSheetLine> subAssemblyLineList = subAssemblyLineMap.get(key);
+
+    if (subAssemblyLineList != null) {
+      for (CostSheetLine subAssemblyLine : subAssemblyLineList) {
+        costSheetLine.addCostSheetLineListItem(copyCostSheetLine(subAssemblyLine, bomLevel));
+      }
+      return;
+    }
+
+    this._computeCostPrice(
+        company, billOfMaterial, bomLevel, costSheetLine, origin, unitCostCalculation);
+
+    subAssemblyLineList = new ArrayList<>();
+    if (costSheetLine.getCostSheetLineList() != null) {
+      for (CostSheetLine subAssemblyLine : costSheetLine.getCostSheetLineList()) {
+        subAssemblyLineList.add(copyCostSheetLine(subAssemblyLine, -bomLevel));
+      }
+    }
+    subAssemblyLineMap.put(key, subAssemblyLineList);
+  }
+
+  /**
+   * Copy a cost sheet line with its sub lines.
+   *
+   * @param costSheetLine the line to copy
+   * @param bomLevelShift the shift to apply to the levels of the line and its sub lines
+   * @return the copy, not attached to any parent line
+   */
+  protected CostSheetLine copyCostSheetLine(CostSheetLine costSheetLine, int bomLevelShift) {
+    CostSheetLine copy = new CostSheetLine(costSheetLine.getCode(), costSheetLine.getName());
+    copy.setBomLevel(costSheetLine.getBomLevel() + bomLevelShift);
+    copy.setConsumptionQty(costSheetLine.getConsumptionQty());
+    copy.setCostSheetGroup(costSheetLine.getCostSheetGroup());
+    copy.setProduct(costSheetLine.getProduct());
+    copy.setTypeSelect(costSheetLine.getTypeSelect());
+    copy.setTypeSelectIcon(costSheetLine.getTypeSelectIcon());
+    copy.setUnit(costSheetLine.getUnit());
+    copy.setWorkCenter(costSheetLine.getWorkCenter());
+    copy.setCostPrice(costSheetLine.getCostPrice());
+    copy.setUnitCostPrice(costSheetLine.getUnitCostPrice());
+    copy.setRatio(costSheetLine.getRatio());
+
+    if (costSheetLine.getCostSheetLineList() != null) {
+      for (CostSheetLine subCostSheetLine : costSheetLine.getCostSheetLineList()) {
+        copy.addCostSheetLineListItem(copyCostSheetLine(subCostSheetLine, bomLevelShift));
+      }
+    }
+    return copy;
+  }
+
   protected void _computeProcess(
       ProdProcess prodProcess,
       BigDecimal producedQty,
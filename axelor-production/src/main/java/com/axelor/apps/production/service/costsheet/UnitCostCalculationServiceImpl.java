@@ -19,6 +19,7 @@
 package com.axelor.apps.production.service.costsheet;
 
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.WorkerExecutor;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.ProductCategory;
@@ -43,7 +44,7 @@ import com.axelor.apps.production.service.app.AppProductionService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.common.ObjectUtils;
-import com.axelor.data.csv.CSVImporter;
+import com.axelor.common.csv.CSVFile;
 import com.axelor.db.JPA;
 import com.axelor.dms.db.DMSFile;
 import com.axelor.i18n.I18n;
@@ -52,35 +53,43 @@ import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaField;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.utils.helpers.StringHelper;
-import com.axelor.utils.helpers.file.CsvHelper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.validation.ValidationException;
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,6 +97,13 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
 
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int FETCH_LIMIT = 100;
+  protected static final int PRODUCT_BATCH_SIZE = 20;
+
+  protected static final String PRODUCT_CODE_COLUMN = "Product_code";
+  protected static final String COMPUTED_COST_COLUMN = "Computed_cost";
+  protected static final String COST_TO_APPLY_COLUMN = "Cost_to_apply";
+
   protected ProductRepository productRepository;
   protected UnitCostCalculationRepository unitCostCalculationRepository;
   protected UnitCostCalcLineService unitCostCalcLineService;
@@ -100,6 +116,7 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
   protected BillOfMaterialService billOfMaterialService;
 
   protected Map<Long, Integer> productMap;
+  protected Map<Long, Integer> billOfMaterialLevelMap;
 
   @Inject
   public UnitCostCalculationServiceImpl(
@@ -128,33 +145,6 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
   @Override
   public MetaFile exportUnitCostCalc(UnitCostCalculation unitCostCalculation, String fileName)
       throws IOException {
-    List<String[]> list = new ArrayList<>();
-    List<UnitCostCalcLine> unitCostCalcLineList = unitCostCalculation.getUnitCostCalcLineList();
-
-    Collections.sort(
-        unitCostCalcLineList,
-        new Comparator<UnitCostCalcLine>() {
-          @Override
-          public int compare(
-              UnitCostCalcLine unitCostCalcLine1, UnitCostCalcLine unitCostCalcLine2) {
-            return unitCostCalcLine1
-                .getProduct()
-                .getCode()
-                .compareTo(unitCostCalcLine2.getProduct().getCode());
-          }
-        });
-
-    for (UnitCostCalcLine unitCostCalcLine : unitCostCalcLineList) {
-      String[] item = new String[4];
-      item[0] =
-          unitCostCalcLine.getProduct() == null ? "" : unitCostCalcLine.getProduct().getCode();
-      item[1] =
-          unitCostCalcLine.getProduct() == null ? "" : unitCostCalcLine.getProduct().getName();
-      item[2] = unitCostCalcLine.getComputedCost().toString();
-      item[3] = unitCostCalcLine.getCostToApply().toString();
-
-      list.add(item);
-    }
 
     File file = MetaFiles.createTempFile(fileName, ".csv").toFile();
 
@@ -167,7 +157,20 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
       I18n.get("Cost_to_apply")
     };
 
-    CsvHelper.csvWriter(file.getParent(), file.getName(), ';', '"', headers, list);
+    try (CSVPrinter printer = CSVFile.DEFAULT.withDelimiter(';').withQuoteAll().write(file);
+        Stream<Object[]> unitCostCalcLineStream =
+            streamUnitCostCalcLineExportData(unitCostCalculation)) {
+      printer.printRecord((Object[]) headers);
+      Iterator<Object[]> unitCostCalcLineIterator = unitCostCalcLineStream.iterator();
+      while (unitCostCalcLineIterator.hasNext()) {
+        Object[] unitCostCalcLine = unitCostCalcLineIterator.next();
+        printer.printRecord(
+            unitCostCalcLine[0] == null ? "" : unitCostCalcLine[0],
+            unitCostCalcLine[1] == null ? "" : unitCostCalcLine[1],
+            unitCostCalcLine[2],
+            unitCostCalcLine[3]);
+      }
+    }
 
     try (InputStream is = new FileInputStream(file)) {
       DMSFile dmsFile = Beans.get(MetaFiles.class).attach(is, file.getName(), unitCostCalculation);
@@ -175,46 +178,143 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
     }
   }
 
+  /**
+   * Stream the product code, product name, computed cost and cost to apply of the lines of the
+   * calculation, sorted by product code by the database.
+   */
+  @SuppressWarnings("unchecked")
+  protected Stream<Object[]> streamUnitCostCalcLineExportData(
+      UnitCostCalculation unitCostCalculation) {
+    return JPA.em()
+        .createQuery(
+            "SELECT product.code, product.name, self.computedCost, self.costToApply "
+                + "FROM UnitCostCalcLine self "
+                + "LEFT JOIN self.product product "
+                + "WHERE self.unitCostCalculation.id = :unitCostCalculationId "
+                + "ORDER BY product.code, self.id")
+        .setParameter("unitCostCalculationId", unitCostCalculation.getId())
+        .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_LIMIT)
+        .setHint(QueryHints.HINT_READONLY, true)
+        .getResultStream();
+  }
+
   @Override
   public void importUnitCostCalc(MetaFile dataFile, UnitCostCalculation unitCostCalculation)
       throws IOException {
-    File tempDir = Files.createTempDir();
-    File csvFile = new File(tempDir, "unitcostcalc.csv");
-    Files.copy(MetaFiles.getPath(dataFile).toFile(), csvFile);
-    File configXmlFile = this.getConfigXmlFile();
-    CSVImporter csvImporter =
-        new CSVImporter(configXmlFile.getAbsolutePath(), tempDir.getAbsolutePath());
-    Map<String, Object> context = new HashMap<>();
-    context.put("_unitCostCalculation", unitCostCalculation.getId());
-    csvImporter.setContext(context);
-    csvImporter.run();
-  }
-
-  protected File getConfigXmlFile() {
-    File configFile = null;
-    try {
-      configFile = MetaFiles.createTempFile("input-config", ".xml").toFile();
-      InputStream bindFileInputStream =
-          this.getClass().getResourceAsStream("/import-configs/" + "csv-config.xml");
-      if (bindFileInputStream == null) {
+    this.importUnitCostCalc(MetaFiles.getPath(dataFile).toFile(), unitCostCalculation.getId());
+  }
+
+  /**
+   * Import the costs of a csv file exported from a calculation, by batches of {@link #FETCH_LIMIT}
+   * products.
+   *
+   * @param csvFile the csv file to import
+   * @param unitCostCalculationId the id of the calculation
+   * @throws ValidationException if the file has no product code column
+   */
+  protected void importUnitCostCalc(File csvFile, Long unitCostCalculationId) throws IOException {
+
+    Map<String, CSVRecord> recordMap = new LinkedHashMap<>();
+
+    CSVFile csvFormat = CSVFile.DEFAULT.withDelimiter(';').withFirstRecordAsHeader();
+    try (CSVParser csvParser = csvFormat.parse(csvFile, StandardCharsets.UTF_8)) {
+      if (!csvParser.getHeaderMap().containsKey(PRODUCT_CODE_COLUMN)) {
         throw new ValidationException(
-            ProductionExceptionMessage.UNIT_COST_CALCULATION_IMPORT_FAIL_ERROR);
+            I18n.get(ProductionExceptionMessage.UNIT_COST_CALCULATION_IMPORT_FAIL_ERROR));
+      }
+      for (CSVRecord record : csvParser) {
+        String productCode = record.get(PRODUCT_CODE_COLUMN);
+        if (StringUtils.isBlank(productCode)) {
+          continue;
+        }
+        // the last record of a product wins, as with a sequential import
+        recordMap.put(productCode, record);
+        if (recordMap.size() >= FETCH_LIMIT) {
+          importUnitCostCalcLines(unitCostCalculationId, recordMap);
+          recordMap.clear();
+        }
       }
-      FileOutputStream outputStream = new FileOutputStream(configFile);
-      IOUtils.copy(bindFileInputStream, outputStream);
-    } catch (Exception e) {
-      TraceBackService.trace(e);
     }
 
-    return configFile;
+    if (!recordMap.isEmpty()) {
+      importUnitCostCalcLines(unitCostCalculationId, recordMap);
+    }
+  }
+
+  /**
+   * Update the costs of the lines of the calculation matching a batch of imported records, by
+   * product code. Records without a matching line are ignored. The updated lines are detached once
+   * flushed, the rest of the persistence context, which may belong to a calling transaction, is
+   * left as is.
+   *
+   * @param unitCostCalculationId the id of the calculation
+   * @param recordMap the imported records mapped by product code
+   */
+  @Transactional
+  protected void importUnitCostCalcLines(
+      Long unitCostCalculationId, Map<String, CSVRecord> recordMap) {
+
+    // the product code is selected with the line so that the products are not loaded
+    List<Object[]> unitCostCalcLineCodeList =
+        JPA.em()
+            .createQuery(
+                "SELECT self, product.code FROM UnitCostCalcLine self "
+                    + "JOIN self.product product "
+                    + "WHERE self.unitCostCalculation.id = :unitCostCalculationId "
+                    + "AND product.code IN (:productCodes)",
+                Object[].class)
+            .setParameter("unitCostCalculationId", unitCostCalculationId)
+            .setParameter("productCodes", recordMap.keySet())
+            .getResultList();
+
+    List<UnitCostCalcLine> unitCostCalcLineList = new ArrayList<>();
+    for (Object[] unitCostCalcLineCode : unitCostCalcLineCodeList) {
+      UnitCostCalcLine unitCostCalcLine = (UnitCostCalcLine) unitCostCalcLineCode[0];
+      String productCode = (String) unitCostCalcLineCode[1];
+      CSVRecord record = recordMap.get(productCode);
+      BigDecimal costToApply = getImportedCost(record, productCode, COST_TO_APPLY_COLUMN);
+      if (costToApply != null) {
+        unitCostCalcLine.setCostToApply(costToApply);
+      }
+      BigDecimal computedCost = getImportedCost(record, productCode, COMPUTED_COST_COLUMN);
+      if (computedCost != null) {
+        unitCostCalcLine.setComputedCost(computedCost);
+      }
+      unitCostCalcLineList.add(unitCostCalcLine);
+    }
+
+    JPA.flush();
+    unitCostCalcLineList.forEach(JPA.em()::detach);
+  }
+
+  /**
+   * @return the cost of the given column of the record, null if the cell is empty or is not a
+   *     number, in which case the error is traced and the other costs are still imported.
+   */
+  protected BigDecimal getImportedCost(CSVRecord record, String productCode, String column) {
+    if (!record.isSet(column) || StringUtils.isBlank(record.get(column))) {
+      return null;
+    }
+    try {
+      return new BigDecimal(record.get(column).trim());
+    } catch (NumberFormatException e) {
+      TraceBackService.trace(
+          new AxelorException(
+              e,
+              TraceBackRepository.CATEGORY_INCONSISTENCY,
+              I18n.get(ProductionExceptionMessage.UNIT_COST_CALCULATION_IMPORT_INVALID_COST),
+              record.get(column),
+              column,
+              productCode));
+      return null;
+    }
   }
 
   @Override
   public void runUnitCostCalc(UnitCostCalculation unitCostCalculation) throws AxelorException {
 
-    if (!unitCostCalculation.getUnitCostCalcLineList().isEmpty()) {
-      clear(unitCostCalculation);
-    }
+    clear(unitCostCalculation);
+    JPA.clear();
 
     unitCostCalculation = unitCostCalculationRepository.find(unitCostCalculation.getId());
     this.assignProductAndLevel(
@@ -225,12 +325,16 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
     updateStatusToComputed(unitCostCalculationRepository.find(unitCostCalculation.getId()));
   }
 
+  /** Delete the lines of a previous run with a single statement, without loading them. */
   @Transactional
   protected void clear(UnitCostCalculation unitCostCalculation) {
 
-    unitCostCalculation.clearUnitCostCalcLineList();
-
-    unitCostCalculationRepository.save(unitCostCalculation);
+    JPA.em()
+        .createQuery(
+            "DELETE FROM UnitCostCalcLine self "
+                + "WHERE self.unitCostCalculation.id = :unitCostCalculationId")
+        .setParameter("unitCostCalculationId", unitCostCalculation.getId())
+        .executeUpdate();
   }
 
   @Transactional
@@ -247,27 +351,132 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
     unitCostCalculationRepository.save(unitCostCalculation);
   }
 
+  /**
+   * Compute the cost of the products from the deepest level to the first one. The components of a
+   * product being all in deeper levels, the products of a level do not depend on each other and are
+   * computed on a pool of threads, each one with its own entity manager.
+   */
   protected void calculationProcess(UnitCostCalculation unitCostCalculation)
       throws AxelorException {
+    this.calculationLevelProcess(unitCostCalculation.getId());
+    JPA.clear();
+  }
 
-    for (int level = this.getMaxLevel(); level >= 0; level--) {
-
-      for (Product product : this.getProductList(level)) {
-
-        this.calculationProductProcess(
-            unitCostCalculationRepository.find(unitCostCalculation.getId()),
-            productRepository.find(product.getId()));
+  /**
+   * Compute the products level by level on the worker threads, waiting for all the products of a
+   * level before starting the next one. The costs are then the same whatever the number of
+   * threads.
+   */
+  protected void calculationLevelProcess(Long unitCostCalculationId) throws AxelorException {
+
+    Map<Integer, List<Long>> productIdListByLevel = this.getProductIdListByLevel();
+    try (WorkerExecutor executor = this.createWorkerExecutor()) {
+      CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+
+      for (int level = this.getMaxLevel(); level >= 0; level--) {
+
+        List<Long> productIdList =
+            productIdListByLevel.getOrDefault(level, Collections.emptyList());
+        int productLevel = level;
+
+        List<List<Long>> productIdBatchList =
+            Lists.partition(productIdList, getBatchSize(productIdList.size()));
+
+        for (List<Long> productIdBatch : productIdBatchList) {
+          completionService.submit(
+              () -> {
+                this.calculationProductListProcess(
+                    unitCostCalculationId,
+                    productIdBatch,
+                    productLevel,
+                    this.getWorkerCostSheetService());
+                return null;
+              });
+        }
 
-        JPA.clear();
+        // the next level uses the costs computed at this level
+        for (int i = 0; i < productIdBatchList.size(); i++) {
+          completionService.take().get();
+        }
       }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AxelorException) {
+        throw (AxelorException) e.getCause();
+      }
+      throw new AxelorException(e.getCause(), TraceBackRepository.CATEGORY_INCONSISTENCY);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
     }
   }
 
+  protected WorkerExecutor createWorkerExecutor() {
+    return new WorkerExecutor(getThreadCount());
+  }
+
+  /** @return a new cost sheet service, as it keeps the state of the cost sheet being computed. */
+  protected CostSheetService getWorkerCostSheetService() {
+    return Beans.get(CostSheetService.class);
+  }
+
+  protected int getThreadCount() {
+    return WorkerExecutor.getDefaultThreadCount();
+  }
+
+  /**
+   * Get the number of products computed in a single transaction, so that the products of a small
+   * level are still spread over the threads.
+   */
+  protected int getBatchSize(int productCount) {
+    int threadCount = getThreadCount();
+    return Math.max(
+        1, Math.min(PRODUCT_BATCH_SIZE, (productCount + threadCount - 1) / threadCount));
+  }
+
   @Transactional(rollbackOn = {Exception.class})
   protected void calculationProductProcess(UnitCostCalculation unitCostCalculation, Product product)
       throws AxelorException {
+    this.calculationProductProcess(
+        unitCostCalculation,
+        product,
+        this.productMap.get(product.getId()).intValue(),
+        costSheetService);
+  }
+
+  /**
+   * Compute the cost of a batch of products of the same level in a single transaction, their cost
+   * sheets and lines being inserted by jdbc batches.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void calculationProductListProcess(
+      Long unitCostCalculationId,
+      List<Long> productIdList,
+      int level,
+      CostSheetService costSheetService)
+      throws AxelorException {
+
+    JPA.em().unwrap(Session.class).setJdbcBatchSize(FETCH_LIMIT);
+    UnitCostCalculation unitCostCalculation =
+        unitCostCalculationRepository.find(unitCostCalculationId);
+
+    for (Long productId : productIdList) {
+      this.calculationProductProcess(
+          unitCostCalculation, productRepository.find(productId), level, costSheetService);
+    }
+  }
+
+  /**
+   * Compute the cost of a product. The cost sheet service keeping the state of the cost sheet
+   * being computed, each thread has to give its own instance.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void calculationProductProcess(
+      UnitCostCalculation unitCostCalculation,
+      Product product,
+      int level,
+      CostSheetService costSheetService)
+      throws AxelorException {
 
-    int level = this.productMap.get(product.getId()).intValue();
     Company company = this.getSingleCompany(unitCostCalculation);
 
     log.debug("Unit cost price calculation for product : {}, level : {}", product.getCode(), level);
@@ -292,8 +501,9 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
     UnitCostCalcLine unitCostCalcLine =
         unitCostCalcLineService.createUnitCostCalcLine(
             product, billOfMaterial.getCompany(), level, costSheet);
-    unitCostCalculation.addUnitCostCalcLineListItem(unitCostCalcLine);
-    unitCostCalculationRepository.save(unitCostCalculation);
+    // the line is saved on its own as the calculation is shared by the threads
+    unitCostCalcLine.setUnitCostCalculation(unitCostCalculation);
+    unitCostCalcLineRepository.save(unitCostCalcLine);
   }
 
   protected Set<Product> getProductList(UnitCostCalculation unitCostCalculation)
@@ -403,6 +613,24 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
     return maxDepth + 1;
   }
 
+  /**
+   * Get the ids of the products of each level
+   *
+   * @return the product ids mapped by level
+   */
+  protected Map<Integer, List<Long>> getProductIdListByLevel() {
+
+    Map<Integer, List<Long>> productIdListByLevel = new HashMap<>();
+
+    for (Map.Entry<Long, Integer> productLevel : this.productMap.entrySet()) {
+      productIdListByLevel
+          .computeIfAbsent(productLevel.getValue(), level -> new ArrayList<>())
+          .add(productLevel.getKey());
+    }
+
+    return productIdListByLevel;
+  }
+
   /**
    * Get the list of product for a level
    *
@@ -427,6 +655,7 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
       throws AxelorException {
 
     productMap = Maps.newHashMap();
+    billOfMaterialLevelMap = Maps.newHashMap();
 
     for (Product product : productList) {
 
@@ -505,6 +734,14 @@ public class UnitCostCalculationServiceImpl implements UnitCostCalculationServic
           I18n.get(ProductionExceptionMessage.LOOP_IN_BILL_OF_MATERIALS));
     }
 
+    // a bill of materials already walked at this level or deeper gave its levels to its sub
+    // products, shared sub-assemblies are walked again only when they go deeper
+    Integer billOfMaterialLevel = this.billOfMaterialLevelMap.get(billOfMaterial.getId());
+    if (billOfMaterialLevel != null && billOfMaterialLevel >= level) {
+      return;
+    }
+    this.billOfMaterialLevelMap.put(billOfMaterial.getId(), level);
+
     Product product = billOfMaterial.getProduct();
 
     log.debug("Add of the sub product : {} for the level : {} ", product.getFullName(), level);
@@ -21,6 +21,7 @@ package com.axelor.apps.production.service.machine;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.production.db.Machine;
 import com.axelor.apps.production.db.OperationOrder;
+import com.axelor.apps.production.model.machine.MachineCalendar;
 import com.axelor.apps.production.model.machine.MachineTimeSlot;
 import java.time.LocalDateTime;
 
@@ -44,6 +45,26 @@ public interface MachineService {
       OperationOrder operationOrder)
       throws AxelorException;
 
+  /**
+   * Same as {@link #getClosestAvailableTimeSlotFrom(Machine, LocalDateTime, LocalDateTime,
+   * OperationOrder)}, the other operation orders of the machine being read from the given calendar.
+   *
+   * @param machine
+   * @param startDateT
+   * @param endDateT
+   * @param operationOrder
+   * @param machineCalendar the calendar of the current planning run
+   * @return the closest available date
+   * @throws AxelorException
+   */
+  MachineTimeSlot getClosestAvailableTimeSlotFrom(
+      Machine machine,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      OperationOrder operationOrder,
+      MachineCalendar machineCalendar)
+      throws AxelorException;
+
   /**
    * Method that return the closest available dateTime for a operation starting from startDateT and
    * end at endDateT. It take into account the weekly planning, the days event planning.
@@ -80,6 +101,26 @@ public interface MachineService {
       OperationOrder operationOrder)
       throws AxelorException;
 
+  /**
+   * Same as {@link #getFurthestAvailableTimeSlotFrom(Machine, LocalDateTime, LocalDateTime,
+   * OperationOrder)}, the other operation orders of the machine being read from the given calendar.
+   *
+   * @param machine
+   * @param startDateT
+   * @param endDateT
+   * @param operationOrder
+   * @param machineCalendar the calendar of the current planning run
+   * @return the furthest available date
+   * @throws AxelorException
+   */
+  MachineTimeSlot getFurthestAvailableTimeSlotFrom(
+      Machine machine,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      OperationOrder operationOrder,
+      MachineCalendar machineCalendar)
+      throws AxelorException;
+
   /**
    * Method that return the furthest available dateTime for a operation starting from startDateT and
    * end at endDateT. It takes into account the weekly planning, the days event planning
@@ -20,7 +20,6 @@ package com.axelor.apps.production.service.machine;
 
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.DayPlanning;
-import com.axelor.apps.base.db.EventsPlanning;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.dayplanning.DayPlanningService;
 import com.axelor.apps.base.service.weeklyplanning.WeeklyPlanningService;
@@ -30,6 +29,7 @@ import com.axelor.apps.production.db.WorkCenter;
 import com.axelor.apps.production.db.repo.ManufOrderRepository;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
+import com.axelor.apps.production.model.machine.MachineCalendar;
 import com.axelor.apps.production.model.machine.MachineTimeSlot;
 import com.axelor.i18n.I18n;
 import com.axelor.utils.helpers.date.DurationHelper;
@@ -37,7 +37,6 @@ import com.google.inject.Inject;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.List;
 import java.util.Optional;
 
 public class MachineServiceImpl implements MachineService {
@@ -65,13 +64,27 @@ public class MachineServiceImpl implements MachineService {
       OperationOrder operationOrder)
       throws AxelorException {
 
+    return getClosestAvailableTimeSlotFrom(
+        machine, startDateT, endDateT, operationOrder, new MachineCalendar());
+  }
+
+  @Override
+  public MachineTimeSlot getClosestAvailableTimeSlotFrom(
+      Machine machine,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      OperationOrder operationOrder,
+      MachineCalendar machineCalendar)
+      throws AxelorException {
+
     return getClosestAvailableTimeSlotFrom(
         machine,
         startDateT,
         endDateT,
         operationOrder,
         DurationHelper.getSecondsDuration(Duration.between(startDateT, endDateT)),
-        false);
+        false,
+        machineCalendar);
   }
 
   @Override
@@ -88,31 +101,27 @@ public class MachineServiceImpl implements MachineService {
         endDateT,
         operationOrder,
         DurationHelper.getSecondsDuration(Duration.between(startDateT, endDateT)),
-        true);
+        true,
+        new MachineCalendar());
   }
 
-  @SuppressWarnings("unchecked")
   protected MachineTimeSlot getClosestAvailableTimeSlotFrom(
       Machine machine,
       LocalDateTime startDateT,
       LocalDateTime endDateT,
       OperationOrder operationOrder,
       long initialDuration,
-      boolean ignoreConcurrency)
+      boolean ignoreConcurrency,
+      MachineCalendar machineCalendar)
       throws AxelorException {
 
-    EventsPlanning planning = machine.getPublicHolidayEventsPlanning();
-
     // If startDate is not available because of planning
     // Then we try for the next day
     LocalDateTime nextDayDateT = startDateT.plusDays(1).with(LocalTime.MIN);
     LocalDateTime plannedStartDateT = null;
     LocalDateTime plannedEndDateT = null;
 
-    if (planning != null
-        && planning.getEventsPlanningLineList() != null
-        && planning.getEventsPlanningLineList().stream()
-            .anyMatch(epl -> epl.getDate().equals(startDateT.toLocalDate()))) {
+    if (machineCalendar.isPublicHoliday(machine, startDateT.toLocalDate())) {
 
       return getClosestAvailableTimeSlotFrom(
           machine,
@@ -120,7 +129,8 @@ public class MachineServiceImpl implements MachineService {
           nextDayDateT.plusSeconds(initialDuration),
           operationOrder,
           initialDuration,
-          ignoreConcurrency);
+          ignoreConcurrency,
+          machineCalendar);
     }
 
     if (machine.getWeeklyPlanning() != null) {
@@ -187,7 +197,12 @@ public class MachineServiceImpl implements MachineService {
     }
 
     return getClosestAvailableMachineTimeSlot(
-        machine, operationOrder, initialDuration, plannedStartDateT, plannedEndDateT);
+        machine,
+        operationOrder,
+        initialDuration,
+        plannedStartDateT,
+        plannedEndDateT,
+        machineCalendar);
   }
 
   protected MachineTimeSlot getClosestAvailableMachineTimeSlot(
@@ -195,49 +210,36 @@ public class MachineServiceImpl implements MachineService {
       OperationOrder operationOrder,
       long initialDuration,
       LocalDateTime plannedStartDateT,
-      LocalDateTime plannedEndDateT)
+      LocalDateTime plannedEndDateT,
+      MachineCalendar machineCalendar)
       throws AxelorException {
     long timeBeforeNextOperation =
         Optional.ofNullable(operationOrder.getWorkCenter())
             .map(WorkCenter::getTimeBeforeNextOperation)
             .orElse(0l);
     // Must check if dates are occupied by other operation orders
-    // The first one of the list will be the last to finish
-
-    List<OperationOrder> concurrentOperationOrders =
-        operationOrderRepository
-            .all()
-            .filter(
-                "self.machine = :machine"
-                    + " AND ((self.plannedStartDateT <= :startDate AND self.plannedEndDateT > :startDateWithTime)"
-                    + " OR (self.plannedStartDateT <= :endDate AND self.plannedEndDateT > :endDateWithTime))"
-                    + " AND (self.manufOrder.statusSelect != :cancelled AND self.manufOrder.statusSelect != :finished)"
-                    + " AND self.id != :operationOrderId")
-            .bind("startDate", plannedStartDateT)
-            .bind("endDate", plannedEndDateT)
-            .bind("startDateWithTime", plannedStartDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("endDateWithTime", plannedEndDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("machine", machine)
-            .bind("cancelled", ManufOrderRepository.STATUS_CANCELED)
-            .bind("finished", ManufOrderRepository.STATUS_FINISHED)
-            .bind("operationOrderId", operationOrder.getId())
-            .order("-plannedEndDateT")
-            .fetch();
-
-    if (concurrentOperationOrders.isEmpty()) {
+    loadMachineCalendar(machineCalendar, machine);
+    Optional<MachineCalendar.Booking> lastConcurrentBooking =
+        machineCalendar.findLastEndingConcurrentBooking(
+            machine,
+            plannedStartDateT,
+            plannedEndDateT,
+            timeBeforeNextOperation,
+            operationOrder.getId());
+
+    if (lastConcurrentBooking.isEmpty()) {
       return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
     } else {
-      OperationOrder lastOperationOrder = concurrentOperationOrders.get(0);
+      LocalDateTime lastEndDateT = lastConcurrentBooking.get().getEndDateT();
 
       return getClosestAvailableTimeSlotFrom(
           machine,
-          lastOperationOrder.getPlannedEndDateT().plusSeconds(timeBeforeNextOperation),
-          lastOperationOrder
-              .getPlannedEndDateT()
-              .plusSeconds(timeBeforeNextOperation + initialDuration),
+          lastEndDateT.plusSeconds(timeBeforeNextOperation),
+          lastEndDateT.plusSeconds(timeBeforeNextOperation + initialDuration),
           operationOrder,
           initialDuration,
-          false);
+          false,
+          machineCalendar);
     }
   }
 
@@ -249,13 +251,27 @@ public class MachineServiceImpl implements MachineService {
       OperationOrder operationOrder)
       throws AxelorException {
 
+    return getFurthestAvailableTimeSlotFrom(
+        machine, startDateT, endDateT, operationOrder, new MachineCalendar());
+  }
+
+  @Override
+  public MachineTimeSlot getFurthestAvailableTimeSlotFrom(
+      Machine machine,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      OperationOrder operationOrder,
+      MachineCalendar machineCalendar)
+      throws AxelorException {
+
     return getFurthestAvailableTimeSlotFrom(
         machine,
         startDateT,
         endDateT,
         operationOrder,
         DurationHelper.getSecondsDuration(Duration.between(startDateT, endDateT)),
-        false);
+        false,
+        machineCalendar);
   }
 
   @Override
@@ -272,25 +288,21 @@ public class MachineServiceImpl implements MachineService {
         endDateT,
         operationOrder,
         DurationHelper.getSecondsDuration(Duration.between(startDateT, endDateT)),
-        true);
+        true,
+        new MachineCalendar());
   }
 
-  @SuppressWarnings("unchecked")
   protected MachineTimeSlot getFurthestAvailableTimeSlotFrom(
       Machine machine,
       LocalDateTime startDateT,
       LocalDateTime endDateT,
       OperationOrder operationOrder,
       long initialDuration,
-      boolean ignoreConcurrency)
+      boolean ignoreConcurrency,
+      MachineCalendar machineCalendar)
       throws AxelorException {
 
-    EventsPlanning planning = machine.getPublicHolidayEventsPlanning();
-
-    if (planning != null
-        && planning.getEventsPlanningLineList() != null
-        && planning.getEventsPlanningLineList().stream()
-            .anyMatch(epl -> epl.getDate().equals(endDateT.toLocalDate()))) {
+    if (machineCalendar.isPublicHoliday(machine, endDateT.toLocalDate())) {
 
       // If endDate is not available because of planning
       // Then we try for the previous day
@@ -302,7 +314,8 @@ public class MachineServiceImpl implements MachineService {
           previousDayDateT,
           operationOrder,
           initialDuration,
-          ignoreConcurrency);
+          ignoreConcurrency,
+          machineCalendar);
     }
 
     LocalDateTime plannedStartDateT = null;
@@ -370,7 +383,12 @@ public class MachineServiceImpl implements MachineService {
       return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
     }
     return getFurthestAvailableMachineTimeSlot(
-        machine, operationOrder, initialDuration, plannedStartDateT, plannedEndDateT);
+        machine,
+        operationOrder,
+        initialDuration,
+        plannedStartDateT,
+        plannedEndDateT,
+        machineCalendar);
   }
 
   protected MachineTimeSlot getFurthestAvailableMachineTimeSlot(
@@ -378,49 +396,58 @@ public class MachineServiceImpl implements MachineService {
       OperationOrder operationOrder,
       long initialDuration,
       LocalDateTime plannedStartDateT,
-      LocalDateTime plannedEndDateT)
+      LocalDateTime plannedEndDateT,
+      MachineCalendar machineCalendar)
       throws AxelorException {
     long timeBeforeNextOperation =
         Optional.ofNullable(operationOrder.getWorkCenter())
             .map(WorkCenter::getTimeBeforeNextOperation)
             .orElse(0l);
     // Must check if dates are occupied by other operation orders
-    // The first one of the list will be the first to start
-    List<OperationOrder> concurrentOperationOrders =
-        operationOrderRepository
-            .all()
-            .filter(
-                "self.machine = :machine"
-                    + " AND ((self.plannedStartDateT <= :startDate AND self.plannedEndDateT > :startDateWithTime)"
-                    + " OR (self.plannedStartDateT < :endDate AND self.plannedEndDateT > :endDateWithTime)"
-                    + " OR (self.plannedStartDateT >= :startDate AND self.plannedEndDateT <= :endDateWithTime))"
-                    + " AND (self.manufOrder.statusSelect != :cancelled AND self.manufOrder.statusSelect != :finished)"
-                    + " AND self.id != :operationOrderId")
-            .bind("startDate", plannedStartDateT)
-            .bind("endDate", plannedEndDateT)
-            .bind("startDateWithTime", plannedStartDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("endDateWithTime", plannedEndDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("machine", machine)
-            .bind("cancelled", ManufOrderRepository.STATUS_CANCELED)
-            .bind("finished", ManufOrderRepository.STATUS_FINISHED)
-            .bind("operationOrderId", operationOrder.getId())
-            .order("plannedStartDateT")
-            .fetch();
-
-    if (concurrentOperationOrders.isEmpty()) {
+    loadMachineCalendar(machineCalendar, machine);
+    Optional<MachineCalendar.Booking> firstConcurrentBooking =
+        machineCalendar.findFirstStartingConcurrentBooking(
+            machine,
+            plannedStartDateT,
+            plannedEndDateT,
+            timeBeforeNextOperation,
+            operationOrder.getId());
+
+    if (firstConcurrentBooking.isEmpty()) {
       return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
     } else {
-      OperationOrder firstOperationOrder = concurrentOperationOrders.get(0);
+      LocalDateTime firstStartDateT = firstConcurrentBooking.get().getStartDateT();
 
       return getFurthestAvailableTimeSlotFrom(
           machine,
-          firstOperationOrder
-              .getPlannedStartDateT()
-              .minusSeconds(initialDuration + timeBeforeNextOperation),
-          firstOperationOrder.getPlannedStartDateT().minusSeconds(timeBeforeNextOperation),
+          firstStartDateT.minusSeconds(initialDuration + timeBeforeNextOperation),
+          firstStartDateT.minusSeconds(timeBeforeNextOperation),
           operationOrder,
           initialDuration,
-          false);
+          false,
+          machineCalendar);
     }
   }
+
+  /**
+   * Load in the calendar the operation orders booked on the machine, if not loaded yet. The
+   * operation orders of canceled or finished manufacturing orders do not use the machine anymore.
+   */
+  protected void loadMachineCalendar(MachineCalendar machineCalendar, Machine machine) {
+    if (machineCalendar.isLoaded(machine)) {
+      return;
+    }
+    machineCalendar.load(
+        machine,
+        operationOrderRepository
+            .all()
+            .filter(
+                "self.machine = :machine"
+                    + " AND self.plannedStartDateT IS NOT NULL AND self.plannedEndDateT IS NOT NULL"
+                    + " AND (self.manufOrder.statusSelect != :cancelled AND self.manufOrder.statusSelect != :finished)")
+            .bind("machine", machine)
+            .bind("cancelled", ManufOrderRepository.STATUS_CANCELED)
+            .bind("finished", ManufOrderRepository.STATUS_FINISHED)
+            .fetch());
+  }
 }
@@ -31,6 +31,7 @@ import com.axelor.apps.production.db.ProductionConfig;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.db.repo.ProductionConfigRepository;
 import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
+import com.axelor.apps.production.model.machine.MachineCalendar;
 import com.axelor.apps.production.service.config.ProductionConfigService;
 import com.axelor.apps.production.service.machine.MachineService;
 import com.axelor.apps.production.service.manuforder.ManufOrderService;
@@ -147,8 +148,9 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
             ? operationOrderService.getSortedOperationOrderList(operationOrders)
             : operationOrderService.getReversedSortedOperationOrderList(operationOrders);
 
+    MachineCalendar machineCalendar = new MachineCalendar();
     for (OperationOrder operationOrder : sortedOperationOrders) {
-      operationOrderPlanningCommonService.plan(operationOrder);
+      operationOrderPlanningCommonService.plan(operationOrder, machineCalendar);
     }
     manufOrderWorkflowService.setOperationOrderMaxPriority(manufOrder);
   }
@@ -267,8 +269,9 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
         operationOrderPlanningCommonService =
             Beans.get(OperationOrderPlanningAsapInfiniteCapacityService.class);
       }
+      MachineCalendar machineCalendar = new MachineCalendar();
       for (OperationOrder oo : getNextOrderedOperationOrders(operationOrder)) {
-        operationOrderPlanningCommonService.plan(oo);
+        operationOrderPlanningCommonService.plan(oo, machineCalendar);
       }
     }
 
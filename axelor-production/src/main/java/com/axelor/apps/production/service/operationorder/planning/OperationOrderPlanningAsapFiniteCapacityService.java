@@ -23,6 +23,7 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.production.db.Machine;
 import com.axelor.apps.production.db.OperationOrder;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
+import com.axelor.apps.production.model.machine.MachineCalendar;
 import com.axelor.apps.production.model.machine.MachineTimeSlot;
 import com.axelor.apps.production.service.machine.MachineService;
 import com.axelor.apps.production.service.operationorder.OperationOrderService;
@@ -55,6 +56,12 @@ public class OperationOrderPlanningAsapFiniteCapacityService
 
   @Override
   protected void planWithStrategy(OperationOrder operationOrder) throws AxelorException {
+    planWithStrategy(operationOrder, new MachineCalendar());
+  }
+
+  @Override
+  protected void planWithStrategy(OperationOrder operationOrder, MachineCalendar machineCalendar)
+      throws AxelorException {
 
     Machine machine = operationOrder.getMachine();
     LocalDateTime plannedStartDate = operationOrder.getPlannedStartDateT();
@@ -66,7 +73,8 @@ public class OperationOrderPlanningAsapFiniteCapacityService
               machine,
               maxDate,
               maxDate.plusSeconds(operationOrderService.getDuration(operationOrder)),
-              operationOrder);
+              operationOrder,
+              machineCalendar);
 
       operationOrder.setPlannedStartDateT(freeMachineTimeSlot.getStartDateT());
       operationOrder.setPlannedEndDateT(freeMachineTimeSlot.getEndDateT());
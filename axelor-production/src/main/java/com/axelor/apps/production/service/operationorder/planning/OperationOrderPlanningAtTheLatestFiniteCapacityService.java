@@ -27,6 +27,7 @@ import com.axelor.apps.production.db.ProdProcessLine;
 import com.axelor.apps.production.db.WorkCenter;
 import com.axelor.apps.production.db.WorkCenterGroup;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
+import com.axelor.apps.production.model.machine.MachineCalendar;
 import com.axelor.apps.production.model.machine.MachineTimeSlot;
 import com.axelor.apps.production.service.machine.MachineService;
 import com.axelor.apps.production.service.operationorder.OperationOrderService;
@@ -64,6 +65,12 @@ public class OperationOrderPlanningAtTheLatestFiniteCapacityService
 
   @Override
   protected void planWithStrategy(OperationOrder operationOrder) throws AxelorException {
+    planWithStrategy(operationOrder, new MachineCalendar());
+  }
+
+  @Override
+  protected void planWithStrategy(OperationOrder operationOrder, MachineCalendar machineCalendar)
+      throws AxelorException {
 
     ManufOrder manufOrder = operationOrder.getManufOrder();
     LocalDateTime todayDateT =
@@ -79,7 +86,7 @@ public class OperationOrderPlanningAtTheLatestFiniteCapacityService
       operationOrder.setPlannedEndDateT(plannedEndDate);
       operationOrder.setPlannedStartDateT(plannedStartDate);
       operationOrder.setPlannedDuration(plannedDuration);
-      planWithStrategyAndMachine(operationOrder, machine);
+      planWithStrategyAndMachine(operationOrder, machine, machineCalendar);
 
       if (operationOrder.getPlannedStartDateT().isAfter(todayDateT)) {
         break;
@@ -93,7 +100,8 @@ public class OperationOrderPlanningAtTheLatestFiniteCapacityService
     operationOrder.setRealDuration(null);
   }
 
-  protected void planWithStrategyAndMachine(OperationOrder operationOrder, Machine machine)
+  protected void planWithStrategyAndMachine(
+      OperationOrder operationOrder, Machine machine, MachineCalendar machineCalendar)
       throws AxelorException {
 
     LocalDateTime plannedEndDate = operationOrder.getPlannedEndDateT();
@@ -105,7 +113,8 @@ public class OperationOrderPlanningAtTheLatestFiniteCapacityService
               machine,
               minDate.minusSeconds(operationOrderService.getDuration(operationOrder)),
               minDate,
-              operationOrder);
+              operationOrder,
+              machineCalendar);
       operationOrder.setPlannedStartDateT(freeMachineTimeSlot.getStartDateT());
       operationOrder.setPlannedEndDateT(freeMachineTimeSlot.getEndDateT());
 
@@ -25,6 +25,7 @@ import com.axelor.apps.production.db.ManufOrder;
 import com.axelor.apps.production.db.OperationOrder;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
+import com.axelor.apps.production.model.machine.MachineCalendar;
 import com.axelor.apps.production.service.operationorder.OperationOrderService;
 import com.axelor.apps.production.service.operationorder.OperationOrderStockMoveService;
 import com.axelor.i18n.I18n;
@@ -53,9 +54,32 @@ public abstract class OperationOrderPlanningCommonService {
 
   protected abstract void planWithStrategy(OperationOrder operationOrder) throws AxelorException;
 
+  /**
+   * Plan the operation order using the machine calendar of the planning run. Only the strategies
+   * at finite capacity need it, the other ones ignore it.
+   */
+  protected void planWithStrategy(OperationOrder operationOrder, MachineCalendar machineCalendar)
+      throws AxelorException {
+    planWithStrategy(operationOrder);
+  }
+
   public OperationOrder plan(OperationOrder operationOrder) throws AxelorException {
+    return plan(operationOrder, new MachineCalendar());
+  }
 
-    planWithStrategy(operationOrder);
+  /**
+   * Plan the operation order, then book it in the machine calendar so the next operation orders of
+   * the same planning run take it into account.
+   *
+   * @param operationOrder
+   * @param machineCalendar the calendar shared by the operation orders of the planning run
+   * @return the planned operation order
+   * @throws AxelorException
+   */
+  public OperationOrder plan(OperationOrder operationOrder, MachineCalendar machineCalendar)
+      throws AxelorException {
+
+    planWithStrategy(operationOrder, machineCalendar);
 
     ManufOrder manufOrder = operationOrder.getManufOrder();
     if (manufOrder != null && Boolean.TRUE.equals(manufOrder.getIsConsProOnOperation())) {
@@ -63,7 +87,9 @@ public abstract class OperationOrderPlanningCommonService {
     }
 
     operationOrder.setStatusSelect(OperationOrderRepository.STATUS_PLANNED);
-    return operationOrderRepository.save(operationOrder);
+    operationOrder = operationOrderRepository.save(operationOrder);
+    machineCalendar.book(operationOrder);
+    return operationOrder;
   }
 
   /**
@@ -0,0 +1,267 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.model.machine;
+
+import com.axelor.apps.production.db.Machine;
+import com.axelor.apps.production.db.OperationOrder;
+import com.axelor.apps.production.model.machine.MachineCalendar.Booking;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestMachineCalendar {
+
+  private static final LocalDateTime ORIGIN = LocalDateTime.of(2024, 1, 1, 8, 0);
+  private static final Long PLANNED_ID = 1000L;
+
+  private MachineCalendar machineCalendar;
+  private Machine machine;
+  private List<OperationOrder> operationOrders;
+
+  @BeforeEach
+  void prepare() {
+    machineCalendar = new MachineCalendar();
+    machine = new Machine();
+    machine.setId(1L);
+    operationOrders = new ArrayList<>();
+  }
+
+  @Test
+  void testLastEndingWithoutConcurrentBooking() {
+    load(createOperationOrder(1L, 0, 60), createOperationOrder(2L, 180, 240));
+
+    Assertions.assertFalse(
+        machineCalendar
+            .findLastEndingConcurrentBooking(machine, at(60), at(180), 0, PLANNED_ID)
+            .isPresent());
+  }
+
+  @Test
+  void testLastEndingConcurrentBooking() {
+    load(
+        createOperationOrder(1L, 0, 90),
+        createOperationOrder(2L, 100, 200),
+        createOperationOrder(3L, 300, 400));
+
+    assertBooking(
+        2L,
+        machineCalendar.findLastEndingConcurrentBooking(machine, at(60), at(150), 0, PLANNED_ID));
+  }
+
+  @Test
+  void testLastEndingConcurrentBookingWithTimeBeforeNextOperation() {
+    load(createOperationOrder(1L, 0, 60));
+
+    // the slot starts right after the booking, but 10 minutes are needed between operations
+    assertBooking(
+        1L,
+        machineCalendar.findLastEndingConcurrentBooking(
+            machine, at(65), at(120), minutes(10), PLANNED_ID));
+    Assertions.assertFalse(
+        machineCalendar
+            .findLastEndingConcurrentBooking(machine, at(70), at(120), minutes(10), PLANNED_ID)
+            .isPresent());
+  }
+
+  @Test
+  void testFirstStartingConcurrentBooking() {
+    load(
+        createOperationOrder(1L, 0, 30),
+        createOperationOrder(2L, 120, 150),
+        createOperationOrder(3L, 200, 260));
+
+    // the second booking is contained in the slot
+    assertBooking(
+        2L,
+        machineCalendar.findFirstStartingConcurrentBooking(
+            machine, at(60), at(240), 0, PLANNED_ID));
+  }
+
+  @Test
+  void testFirstStartingConcurrentBookingWithTimeBeforeNextOperation() {
+    load(createOperationOrder(1L, 0, 60));
+
+    // the slot starts right after the booking, but 10 minutes are needed between operations
+    assertBooking(
+        1L,
+        machineCalendar.findFirstStartingConcurrentBooking(
+            machine, at(65), at(200), minutes(10), PLANNED_ID));
+    Assertions.assertFalse(
+        machineCalendar
+            .findFirstStartingConcurrentBooking(machine, at(70), at(200), minutes(10), PLANNED_ID)
+            .isPresent());
+  }
+
+  @Test
+  void testPlannedOperationOrderIsExcluded() {
+    OperationOrder operationOrder = createOperationOrder(PLANNED_ID, 0, 60);
+    load(operationOrder);
+
+    Assertions.assertFalse(
+        machineCalendar
+            .findLastEndingConcurrentBooking(machine, at(0), at(60), 0, PLANNED_ID)
+            .isPresent());
+    Assertions.assertFalse(
+        machineCalendar
+            .findFirstStartingConcurrentBooking(machine, at(0), at(60), 0, PLANNED_ID)
+            .isPresent());
+  }
+
+  @Test
+  void testRebookMovesTheBooking() {
+    OperationOrder operationOrder = createOperationOrder(1L, 0, 60);
+    load(operationOrder);
+
+    operationOrder.setPlannedStartDateT(at(300));
+    operationOrder.setPlannedEndDateT(at(360));
+    machineCalendar.book(operationOrder);
+
+    Assertions.assertFalse(
+        machineCalendar
+            .findLastEndingConcurrentBooking(machine, at(0), at(60), 0, PLANNED_ID)
+            .isPresent());
+    assertBooking(
+        1L,
+        machineCalendar.findLastEndingConcurrentBooking(machine, at(330), at(400), 0, PLANNED_ID));
+  }
+
+  @Test
+  void testRebookOnAnotherMachineRemovesTheBooking() {
+    OperationOrder operationOrder = createOperationOrder(1L, 0, 60);
+    load(operationOrder);
+
+    Machine otherMachine = new Machine();
+    otherMachine.setId(2L);
+    operationOrder.setMachine(otherMachine);
+    machineCalendar.book(operationOrder);
+
+    Assertions.assertFalse(
+        machineCalendar
+            .findLastEndingConcurrentBooking(machine, at(0), at(60), 0, PLANNED_ID)
+            .isPresent());
+  }
+
+  @Test
+  void testBookingOfNewOperationOrderIsFound() {
+    load();
+
+    machineCalendar.book(createOperationOrder(1L, 0, 60));
+
+    assertBooking(
+        1L,
+        machineCalendar.findLastEndingConcurrentBooking(machine, at(30), at(90), 0, PLANNED_ID));
+  }
+
+  /** Compare both searches with the filters of the former queries on random bookings. */
+  @Test
+  void testSearchesMatchQueryFilters() {
+    Random random = new Random(42);
+    for (long id = 1; id <= 200; id++) {
+      int start = random.nextInt(10_000);
+      operationOrders.add(createOperationOrder(id, start, start + 1 + random.nextInt(300)));
+    }
+    load(operationOrders.toArray(new OperationOrder[0]));
+
+    for (int i = 0; i < 1000; i++) {
+      int start = random.nextInt(10_500) - 250;
+      LocalDateTime startDateT = at(start);
+      LocalDateTime endDateT = at(start + 1 + random.nextInt(400));
+      long timeBeforeNextOperation = minutes(random.nextInt(3) * 15);
+
+      Assertions.assertEquals(
+          findLastEndingByQuery(startDateT, endDateT, timeBeforeNextOperation)
+              .map(OperationOrder::getPlannedEndDateT),
+          machineCalendar
+              .findLastEndingConcurrentBooking(
+                  machine, startDateT, endDateT, timeBeforeNextOperation, PLANNED_ID)
+              .map(Booking::getEndDateT));
+      Assertions.assertEquals(
+          findFirstStartingByQuery(startDateT, endDateT, timeBeforeNextOperation)
+              .map(OperationOrder::getPlannedStartDateT),
+          machineCalendar
+              .findFirstStartingConcurrentBooking(
+                  machine, startDateT, endDateT, timeBeforeNextOperation, PLANNED_ID)
+              .map(Booking::getStartDateT));
+    }
+  }
+
+  /** Same filter and order as the query used before the machine calendar. */
+  protected Optional<OperationOrder> findLastEndingByQuery(
+      LocalDateTime startDate, LocalDateTime endDate, long timeBeforeNextOperation) {
+    LocalDateTime startDateWithTime = startDate.minusSeconds(timeBeforeNextOperation);
+    LocalDateTime endDateWithTime = endDate.minusSeconds(timeBeforeNextOperation);
+    return operationOrders.stream()
+        .filter(
+            oo ->
+                (!oo.getPlannedStartDateT().isAfter(startDate)
+                        && oo.getPlannedEndDateT().isAfter(startDateWithTime))
+                    || (!oo.getPlannedStartDateT().isAfter(endDate)
+                        && oo.getPlannedEndDateT().isAfter(endDateWithTime)))
+        .max(Comparator.comparing(OperationOrder::getPlannedEndDateT));
+  }
+
+  /** Same filter and order as the query used before the machine calendar. */
+  protected Optional<OperationOrder> findFirstStartingByQuery(
+      LocalDateTime startDate, LocalDateTime endDate, long timeBeforeNextOperation) {
+    LocalDateTime startDateWithTime = startDate.minusSeconds(timeBeforeNextOperation);
+    LocalDateTime endDateWithTime = endDate.minusSeconds(timeBeforeNextOperation);
+    return operationOrders.stream()
+        .filter(
+            oo ->
+                (!oo.getPlannedStartDateT().isAfter(startDate)
+                        && oo.getPlannedEndDateT().isAfter(startDateWithTime))
+                    || (oo.getPlannedStartDateT().isBefore(endDate)
+                        && oo.getPlannedEndDateT().isAfter(endDateWithTime))
+                    || (!oo.getPlannedStartDateT().isBefore(startDate)
+                        && !oo.getPlannedEndDateT().isAfter(endDateWithTime)))
+        .min(Comparator.comparing(OperationOrder::getPlannedStartDateT));
+  }
+
+  protected void load(OperationOrder... loadedOperationOrders) {
+    machineCalendar.load(machine, List.of(loadedOperationOrders));
+  }
+
+  protected OperationOrder createOperationOrder(Long id, int startMinutes, int endMinutes) {
+    OperationOrder operationOrder = new OperationOrder();
+    operationOrder.setId(id);
+    operationOrder.setMachine(machine);
+    operationOrder.setPlannedStartDateT(at(startMinutes));
+    operationOrder.setPlannedEndDateT(at(endMinutes));
+    return operationOrder;
+  }
+
+  protected void assertBooking(Long operationOrderId, Optional<Booking> booking) {
+    Assertions.assertTrue(booking.isPresent());
+    Assertions.assertEquals(operationOrderId, booking.get().getOperationOrderId());
+  }
+
+  protected LocalDateTime at(int minutes) {
+    return ORIGIN.plusMinutes(minutes);
+  }
+
+  protected long minutes(int minutes) {
+    return minutes * 60L;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.costsheet;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.production.db.BillOfMaterial;
+import com.axelor.apps.production.db.BillOfMaterialLine;
+import com.axelor.apps.production.db.CostSheetLine;
+import com.axelor.apps.production.db.UnitCostCalculation;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestCostSheetService {
+
+  private TestCostSheetLineServiceImpl costSheetLineService;
+  private Company company;
+  private Unit unit;
+  private Product finishedProduct;
+  private Product subAssemblyProduct;
+  private Product otherSubAssemblyProduct;
+  private BillOfMaterial billOfMaterial;
+
+  /** Creates the consumed product lines without a database, counting them. */
+  protected static class TestCostSheetLineServiceImpl extends CostSheetLineServiceImpl {
+
+    protected int consumedLineCount;
+
+    public TestCostSheetLineServiceImpl() {
+      super(null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    @Override
+    public CostSheetLine createConsumedProductCostSheetLine(
+        Company company,
+        Product product,
+        Unit unit,
+        int bomLevel,
+        CostSheetLine parentCostSheetLine,
+        BigDecimal consumptionQty,
+        int origin,
+        UnitCostCalculation unitCostCalculation) {
+      consumedLineCount++;
+      BigDecimal costPrice = consumptionQty.multiply(BigDecimal.valueOf(product.getId()));
+
+      if (parentCostSheetLine.getCostSheetLineList() != null) {
+        for (CostSheetLine costSheetLine : parentCostSheetLine.getCostSheetLineList()) {
+          if (product.equals(costSheetLine.getProduct())) {
+            costSheetLine.setConsumptionQty(costSheetLine.getConsumptionQty().add(consumptionQty));
+            costSheetLine.setCostPrice(costSheetLine.getCostPrice().add(costPrice));
+            return costSheetLine;
+          }
+        }
+      }
+
+      CostSheetLine costSheetLine = new CostSheetLine(product.getCode(), product.getName());
+      costSheetLine.setBomLevel(bomLevel);
+      costSheetLine.setProduct(product);
+      costSheetLine.setUnit(unit);
+      costSheetLine.setConsumptionQty(consumptionQty);
+      costSheetLine.setCostPrice(costPrice);
+      parentCostSheetLine.addCostSheetLineListItem(costSheetLine);
+      return costSheetLine;
+    }
+  }
+
+  protected static class TestCostSheetServiceImpl extends CostSheetServiceImpl {
+
+    public TestCostSheetServiceImpl(CostSheetLineService costSheetLineService) {
+      super(null, null, costSheetLineService, null, null);
+      this.subAssemblyLineMap = new HashMap<>();
+    }
+  }
+
+  /** Computes every use of a sub-assembly, as before its lines were copied. */
+  protected static class NotMemoizedCostSheetServiceImpl extends TestCostSheetServiceImpl {
+
+    public NotMemoizedCostSheetServiceImpl(CostSheetLineService costSheetLineService) {
+      super(costSheetLineService);
+    }
+
+    @Override
+    protected void _computeSubAssemblyCostPrice(
+        Company company,
+        BillOfMaterial billOfMaterial,
+        int bomLevel,
+        CostSheetLine costSheetLine,
+        int origin,
+        UnitCostCalculation unitCostCalculation)
+        throws AxelorException {
+      this._computeCostPrice(
+          company, billOfMaterial, bomLevel, costSheetLine, origin, unitCostCalculation);
+    }
+  }
+
+  @BeforeEach
+  void prepare() {
+    costSheetLineService = new TestCostSheetLineServiceImpl();
+    company = new Company();
+    unit = new Unit();
+
+    finishedProduct = createProduct(1L);
+    subAssemblyProduct = createProduct(2L);
+    otherSubAssemblyProduct = createProduct(3L);
+    Product firstComponent = createProduct(4L);
+    Product secondComponent = createProduct(5L);
+
+    BillOfMaterial subAssemblyBillOfMaterial = createBillOfMaterial(20L, subAssemblyProduct);
+    addLine(subAssemblyBillOfMaterial, firstComponent, "4", null);
+    addLine(subAssemblyBillOfMaterial, secondComponent, "5", null);
+
+    BillOfMaterial otherSubAssemblyBillOfMaterial =
+        createBillOfMaterial(30L, otherSubAssemblyProduct);
+    addLine(otherSubAssemblyBillOfMaterial, subAssemblyProduct, "3", subAssemblyBillOfMaterial);
+    addLine(otherSubAssemblyBillOfMaterial, firstComponent, "1", null);
+
+    billOfMaterial = createBillOfMaterial(10L, finishedProduct);
+    addLine(billOfMaterial, subAssemblyProduct, "2", subAssemblyBillOfMaterial);
+    addLine(billOfMaterial, otherSubAssemblyProduct, "1", otherSubAssemblyBillOfMaterial);
+    addLine(billOfMaterial, secondComponent, "6", null);
+  }
+
+  @Test
+  void testSubAssemblyComputedOnce() throws AxelorException {
+    CostSheetLine costSheetLine = compute(new TestCostSheetServiceImpl(costSheetLineService));
+
+    // 3 lines of the bill of material, 2 of each sub-assembly, the second use is copied
+    Assertions.assertEquals(7, costSheetLineService.consumedLineCount);
+
+    CostSheetLine copiedSubAssemblyLine =
+        costSheetLine.getCostSheetLineList().get(1).getCostSheetLineList().get(0);
+    Assertions.assertEquals(subAssemblyProduct, copiedSubAssemblyLine.getProduct());
+    Assertions.assertEquals(2, copiedSubAssemblyLine.getCostSheetLineList().size());
+    for (CostSheetLine componentLine : copiedSubAssemblyLine.getCostSheetLineList()) {
+      Assertions.assertEquals(3, componentLine.getBomLevel());
+      Assertions.assertSame(copiedSubAssemblyLine, componentLine.getParentCostSheetLine());
+    }
+  }
+
+  @Test
+  void testSubAssemblyCopiesMatchComputedLines() throws AxelorException {
+    CostSheetLine memoizedCostSheetLine =
+        compute(new TestCostSheetServiceImpl(costSheetLineService));
+    int memoizedLineCount = costSheetLineService.consumedLineCount;
+    costSheetLineService.consumedLineCount = 0;
+
+    CostSheetLine computedCostSheetLine =
+        compute(new NotMemoizedCostSheetServiceImpl(costSheetLineService));
+
+    Assertions.assertEquals(9, costSheetLineService.consumedLineCount);
+    Assertions.assertTrue(memoizedLineCount < costSheetLineService.consumedLineCount);
+    Assertions.assertEquals(toString(computedCostSheetLine), toString(memoizedCostSheetLine));
+  }
+
+  @Test
+  void testMergedLineKeepsItsSubAssemblyLines() throws AxelorException {
+    BillOfMaterial subAssemblyBillOfMaterial =
+        billOfMaterial.getBillOfMaterialLineList().get(0).getBillOfMaterial();
+    addLine(billOfMaterial, subAssemblyProduct, "1", subAssemblyBillOfMaterial);
+
+    CostSheetLine memoizedCostSheetLine =
+        compute(new TestCostSheetServiceImpl(costSheetLineService));
+    CostSheetLine computedCostSheetLine =
+        compute(new NotMemoizedCostSheetServiceImpl(costSheetLineService));
+
+    Assertions.assertEquals(toString(computedCostSheetLine), toString(memoizedCostSheetLine));
+  }
+
+  protected CostSheetLine compute(CostSheetServiceImpl costSheetService) throws AxelorException {
+    CostSheetLine producedCostSheetLine = new CostSheetLine("P1", "Product 1");
+    producedCostSheetLine.setProduct(finishedProduct);
+    costSheetService._computeCostPrice(
+        company,
+        billOfMaterial,
+        0,
+        producedCostSheetLine,
+        CostSheetService.ORIGIN_BILL_OF_MATERIAL,
+        null);
+    return producedCostSheetLine;
+  }
+
+  protected String toString(CostSheetLine costSheetLine) {
+    StringBuilder result = new StringBuilder();
+    appendLines(result, costSheetLine);
+    return result.toString();
+  }
+
+  protected void appendLines(StringBuilder result, CostSheetLine costSheetLine) {
+    result
+        .append(costSheetLine.getBomLevel())
+        .append(' ')
+        .append(costSheetLine.getCode())
+        .append(' ')
+        .append(costSheetLine.getConsumptionQty().stripTrailingZeros().toPlainString())
+        .append(' ')
+        .append(costSheetLine.getCostPrice().stripTrailingZeros().toPlainString())
+        .append('\n');
+    if (costSheetLine.getCostSheetLineList() != null) {
+      for (CostSheetLine subCostSheetLine : costSheetLine.getCostSheetLineList()) {
+        appendLines(result, subCostSheetLine);
+      }
+    }
+  }
+
+  protected Product createProduct(Long id) {
+    Product product = new Product();
+    product.setId(id);
+    product.setCode("P" + id);
+    product.setName("Product " + id);
+    product.setUnit(unit);
+    return product;
+  }
+
+  protected BillOfMaterial createBillOfMaterial(Long id, Product product) {
+    BillOfMaterial billOfMaterial = new BillOfMaterial();
+    billOfMaterial.setId(id);
+    billOfMaterial.setProduct(product);
+    billOfMaterial.setQty(BigDecimal.ONE);
+    billOfMaterial.setBillOfMaterialLineList(new ArrayList<>());
+    return billOfMaterial;
+  }
+
+  protected void addLine(
+      BillOfMaterial billOfMaterial,
+      Product product,
+      String qty,
+      BillOfMaterial subBillOfMaterial) {
+    BillOfMaterialLine billOfMaterialLine = new BillOfMaterialLine();
+    billOfMaterialLine.setProduct(product);
+    billOfMaterialLine.setQty(new BigDecimal(qty));
+    billOfMaterialLine.setUnit(unit);
+    billOfMaterialLine.setBillOfMaterial(subBillOfMaterial);
+    billOfMaterial.addBillOfMaterialLineListItem(billOfMaterialLine);
+  }
+}
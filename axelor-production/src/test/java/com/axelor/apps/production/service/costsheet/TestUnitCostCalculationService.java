@@ -0,0 +1,289 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.costsheet;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.WorkerExecutor;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.validation.ValidationException;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestUnitCostCalculationService {
+
+  private static final String HEADER =
+      "\"Product_code\";\"Product_name\";\"Computed_cost\";\"Cost_to_apply\"";
+  private static final Long UNIT_COST_CALCULATION_ID = 1L;
+
+  @TempDir Path tempDir;
+
+  private TestUnitCostCalculationServiceImpl unitCostCalculationService;
+
+  /** Records the imported batches instead of updating the calculation lines. */
+  protected static class TestUnitCostCalculationServiceImpl extends UnitCostCalculationServiceImpl {
+
+    protected final List<Map<String, CSVRecord>> batchList = new ArrayList<>();
+
+    public TestUnitCostCalculationServiceImpl() {
+      super(null, null, null, null, null, null, null, null, null, null);
+    }
+
+    @Override
+    protected void importUnitCostCalcLines(
+        Long unitCostCalculationId, Map<String, CSVRecord> recordMap) {
+      Assertions.assertEquals(UNIT_COST_CALCULATION_ID, unitCostCalculationId);
+      batchList.add(new LinkedHashMap<>(recordMap));
+    }
+  }
+
+  /**
+   * Computes the cost of a product from the costs of its components, failing if a component is not
+   * computed yet, instead of building the cost sheets.
+   */
+  protected static class LevelUnitCostCalculationServiceImpl
+      extends UnitCostCalculationServiceImpl {
+
+    protected final Map<Long, Map<Long, BigDecimal>> componentMap;
+    protected final Map<Long, BigDecimal> costMap = new ConcurrentHashMap<>();
+    protected final int threadCount;
+
+    public LevelUnitCostCalculationServiceImpl(
+        Map<Long, Integer> productMap,
+        Map<Long, Map<Long, BigDecimal>> componentMap,
+        int threadCount) {
+      super(null, null, null, null, null, null, null, null, null, null);
+      this.productMap = productMap;
+      this.componentMap = componentMap;
+      this.threadCount = threadCount;
+    }
+
+    @Override
+    protected int getThreadCount() {
+      return threadCount;
+    }
+
+    @Override
+    protected WorkerExecutor createWorkerExecutor() {
+      return new WorkerExecutor(threadCount) {
+        @Override
+        public void execute(Runnable task) {
+          executor.execute(task);
+        }
+      };
+    }
+
+    @Override
+    protected CostSheetService getWorkerCostSheetService() {
+      return null;
+    }
+
+    @Override
+    protected void calculationProductListProcess(
+        Long unitCostCalculationId,
+        List<Long> productIdList,
+        int level,
+        CostSheetService costSheetService)
+        throws AxelorException {
+      for (Long productId : productIdList) {
+        Assertions.assertEquals(level, productMap.get(productId).intValue());
+        BigDecimal cost = BigDecimal.valueOf(productId);
+        for (Map.Entry<Long, BigDecimal> component : componentMap.get(productId).entrySet()) {
+          BigDecimal componentCost = costMap.get(component.getKey());
+          if (componentCost == null) {
+            throw new AxelorException(
+                TraceBackRepository.CATEGORY_INCONSISTENCY,
+                "Component %s of product %s is not computed",
+                component.getKey(),
+                productId);
+          }
+          cost = cost.add(component.getValue().multiply(componentCost));
+        }
+        costMap.put(productId, cost);
+      }
+    }
+  }
+
+  @BeforeEach
+  void prepare() {
+    unitCostCalculationService = new TestUnitCostCalculationServiceImpl();
+  }
+
+  @Test
+  void testImportByBatches() throws IOException {
+    int productCount = 2 * UnitCostCalculationServiceImpl.FETCH_LIMIT + 50;
+    List<String> lineList = new ArrayList<>();
+    lineList.add(HEADER);
+    for (int i = 0; i < productCount; i++) {
+      lineList.add(String.format("\"P%04d\";\"Product %d\";\"%d.50\";\"%d.75\"", i, i, i, i));
+    }
+
+    importLines(lineList);
+
+    List<Map<String, CSVRecord>> batchList = unitCostCalculationService.batchList;
+    Assertions.assertEquals(
+        Arrays.asList(
+            UnitCostCalculationServiceImpl.FETCH_LIMIT,
+            UnitCostCalculationServiceImpl.FETCH_LIMIT,
+            50),
+        batchList.stream().map(Map::size).collect(Collectors.toList()));
+
+    List<String> importedCodeList =
+        batchList.stream().flatMap(batch -> batch.keySet().stream()).collect(Collectors.toList());
+    Assertions.assertEquals(productCount, importedCodeList.size());
+    Assertions.assertEquals("P0000", importedCodeList.get(0));
+    Assertions.assertEquals(
+        "P0100", importedCodeList.get(UnitCostCalculationServiceImpl.FETCH_LIMIT));
+    Assertions.assertEquals("P0249", importedCodeList.get(productCount - 1));
+  }
+
+  @Test
+  void testImportLastRecordOfProductWins() throws IOException {
+    importLines(
+        Arrays.asList(
+            HEADER,
+            "\"P1\";\"Product 1\";\"10\";\"11\"",
+            "\"\";\"No code\";\"20\";\"21\"",
+            "\"P2\";\"Product 2\";\"30\";\"31\"",
+            "\"P1\";\"Product 1\";\"40\";\"41\""));
+
+    Assertions.assertEquals(1, unitCostCalculationService.batchList.size());
+    Map<String, CSVRecord> recordMap = unitCostCalculationService.batchList.get(0);
+    Assertions.assertEquals(Arrays.asList("P1", "P2"), new ArrayList<>(recordMap.keySet()));
+    Assertions.assertEquals(
+        new BigDecimal("41"), getImportedCost(recordMap.get("P1"), "P1", "Cost_to_apply"));
+    Assertions.assertEquals(
+        new BigDecimal("40"), getImportedCost(recordMap.get("P1"), "P1", "Computed_cost"));
+  }
+
+  @Test
+  void testImportedCost() throws IOException {
+    importLines(
+        Arrays.asList(
+            HEADER,
+            "\"P1\";\"Product 1\";\" 12.345 \";\"\"",
+            "\"P2\";\"Product 2\";\"0\";\"  \""));
+
+    Map<String, CSVRecord> recordMap = unitCostCalculationService.batchList.get(0);
+    Assertions.assertEquals(
+        new BigDecimal("12.345"), getImportedCost(recordMap.get("P1"), "P1", "Computed_cost"));
+    Assertions.assertNull(getImportedCost(recordMap.get("P1"), "P1", "Cost_to_apply"));
+    Assertions.assertEquals(
+        BigDecimal.ZERO, getImportedCost(recordMap.get("P2"), "P2", "Computed_cost"));
+    Assertions.assertNull(getImportedCost(recordMap.get("P2"), "P2", "Cost_to_apply"));
+  }
+
+  @Test
+  void testImportWithoutCostColumn() throws IOException {
+    importLines(Arrays.asList("\"Product_code\";\"Computed_cost\"", "\"P1\";\"5\""));
+
+    Map<String, CSVRecord> recordMap = unitCostCalculationService.batchList.get(0);
+    Assertions.assertNull(getImportedCost(recordMap.get("P1"), "P1", "Cost_to_apply"));
+    Assertions.assertEquals(
+        new BigDecimal("5"), getImportedCost(recordMap.get("P1"), "P1", "Computed_cost"));
+  }
+
+  @Test
+  void testImportWithoutProductCodeColumn() {
+    Assertions.assertThrows(
+        ValidationException.class,
+        () -> importLines(Arrays.asList("\"Code\";\"Computed_cost\"", "\"P1\";\"5\"")));
+    Assertions.assertTrue(unitCostCalculationService.batchList.isEmpty());
+  }
+
+  @Test
+  void testCalculationIndependentOfThreadCount() throws AxelorException {
+    Map<Long, Integer> productMap = new HashMap<>();
+    Map<Long, Map<Long, BigDecimal>> componentMap = new HashMap<>();
+    prepareComponents(productMap, componentMap, 300, 6);
+
+    Map<Long, BigDecimal> expectedCostMap = null;
+    for (int threadCount : new int[] {1, 2, 3, 8}) {
+      LevelUnitCostCalculationServiceImpl service =
+          new LevelUnitCostCalculationServiceImpl(productMap, componentMap, threadCount);
+      service.calculationLevelProcess(UNIT_COST_CALCULATION_ID);
+
+      Assertions.assertEquals(productMap.keySet(), service.costMap.keySet());
+      if (expectedCostMap == null) {
+        expectedCostMap = new HashMap<>(service.costMap);
+      } else {
+        Assertions.assertEquals(expectedCostMap, service.costMap, "threads: " + threadCount);
+      }
+    }
+  }
+
+  /**
+   * Build a random bill of materials where the components of a product are always of a deeper
+   * level, as the levels computed from the bills of materials are.
+   */
+  protected void prepareComponents(
+      Map<Long, Integer> productMap,
+      Map<Long, Map<Long, BigDecimal>> componentMap,
+      int productCount,
+      int levelCount) {
+    Random random = new Random(42);
+    Map<Integer, List<Long>> productIdListByLevel = new HashMap<>();
+    for (long productId = 1; productId <= productCount; productId++) {
+      int level = (int) (productId % levelCount);
+      productMap.put(productId, level);
+      productIdListByLevel.computeIfAbsent(level, key -> new ArrayList<>()).add(productId);
+    }
+    for (Map.Entry<Long, Integer> product : productMap.entrySet()) {
+      Map<Long, BigDecimal> components = new HashMap<>();
+      int level = product.getValue();
+      if (level < levelCount - 1) {
+        for (int i = random.nextInt(4) + 1; i > 0; i--) {
+          List<Long> subProductIdList =
+              productIdListByLevel.get(level + 1 + random.nextInt(levelCount - level - 1));
+          components.put(
+              subProductIdList.get(random.nextInt(subProductIdList.size())),
+              BigDecimal.valueOf(random.nextInt(5) + 1));
+        }
+      }
+      componentMap.put(product.getKey(), components);
+    }
+  }
+
+  protected BigDecimal getImportedCost(CSVRecord record, String productCode, String column) {
+    return unitCostCalculationService.getImportedCost(record, productCode, column);
+  }
+
+  protected void importLines(List<String> lineList) throws IOException {
+    File csvFile = tempDir.resolve("unitcostcalc.csv").toFile();
+    Files.write(csvFile.toPath(), lineList, StandardCharsets.UTF_8);
+    unitCostCalculationService.importUnitCostCalc(csvFile, UNIT_COST_CALCULATION_ID);
+  }
+}
@@ -25,7 +25,7 @@ import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.service.StockLocationLineService;
 import com.axelor.apps.stock.service.StockLocationService;
-import com.axelor.apps.stock.service.StockMoveService;
+import com.axelor.apps.stock.service.StockPerDateService;
 import com.axelor.common.ObjectUtils;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
@@ -39,7 +39,7 @@ public class ProductStockRepositoryPopulate {
   protected StockLocationRepository stockLocationRepo;
   protected StockLocationLineService stockLocationLineService;
   protected StockLocationService stockLocationService;
-  protected StockMoveService stockMoveService;
+  protected StockPerDateService stockPerDateService;
 
   @Inject
   public ProductStockRepositoryPopulate(
@@ -47,12 +47,12 @@ public class ProductStockRepositoryPopulate {
       StockLocationRepository stockLocationRepo,
       StockLocationLineService stockLocationLineService,
       StockLocationService stockLocationService,
-      StockMoveService stockMoveService) {
+      StockPerDateService stockPerDateService) {
     this.productRepo = productRepo;
     this.stockLocationRepo = stockLocationRepo;
     this.stockLocationLineService = stockLocationLineService;
     this.stockLocationService = stockLocationService;
-    this.stockMoveService = stockMoveService;
+    this.stockPerDateService = stockPerDateService;
   }
 
   @SuppressWarnings({"unchecked", "rawtypes"})
@@ -103,7 +103,7 @@ public class ProductStockRepositoryPopulate {
       LocalDate fromDate = LocalDate.parse(context.get("stockFromDate").toString());
       LocalDate toDate = LocalDate.parse(context.get("stockToDate").toString());
       List<Map<String, Object>> stock =
-          stockMoveService.getStockPerDate(locationId, productId, fromDate, toDate);
+          stockPerDateService.getStockPerDate(locationId, productId, fromDate, toDate);
 
       if (ObjectUtils.isEmpty(stock)) {
         return;
@@ -84,6 +84,8 @@ import com.axelor.apps.stock.service.StockMoveToolService;
 import com.axelor.apps.stock.service.StockMoveToolServiceImpl;
 import com.axelor.apps.stock.service.StockMoveUpdateService;
 import com.axelor.apps.stock.service.StockMoveUpdateServiceImpl;
+import com.axelor.apps.stock.service.StockPerDateService;
+import com.axelor.apps.stock.service.StockPerDateServiceImpl;
 import com.axelor.apps.stock.service.StockRulesService;
 import com.axelor.apps.stock.service.StockRulesServiceImpl;
 import com.axelor.apps.stock.service.TrackingNumberConfigurationService;
@@ -140,5 +142,6 @@ public class StockModule extends AxelorModule {
     bind(StockMoveMergingService.class).to(StockMoveMergingServiceImpl.class);
     bind(InventoryLineService.class).to(InventoryLineServiceImpl.class);
     bind(StockLocationPrintService.class).to(StockLocationPrintServiceImpl.class);
+    bind(StockPerDateService.class).to(StockPerDateServiceImpl.class);
   }
 }
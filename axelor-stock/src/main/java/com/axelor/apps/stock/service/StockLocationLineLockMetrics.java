@@ -0,0 +1,122 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Time spent by the application waiting for the lock of the stock location lines of each stock
+ * location and product, since the server started. The lines of a stock move are locked with a
+ * single statement, so the wait of the statement is recorded for each of its stock locations and
+ * products.
+ */
+@Singleton
+public class StockLocationLineLockMetrics {
+
+  protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final Map<String, Statistics> statisticsMap = new ConcurrentHashMap<>();
+
+  /**
+   * Record a wait for the lock of the stock location lines of a product in a stock location.
+   *
+   * @param stockLocationId The id of the stock location
+   * @param productId The id of the product
+   * @param waitNanos The time spent waiting for the lock, in nanoseconds
+   */
+  public void recordLockWait(Long stockLocationId, Long productId, long waitNanos) {
+    statisticsMap
+        .computeIfAbsent(getKey(stockLocationId, productId), key -> new Statistics())
+        .record(waitNanos);
+    log.debug(
+        "Stock location lines of stock location {} and product {} locked after {} ms",
+        stockLocationId,
+        productId,
+        TimeUnit.NANOSECONDS.toMillis(waitNanos));
+  }
+
+  /**
+   * @param stockLocationId The id of a stock location
+   * @param productId The id of a product
+   * @return The lock statistics of the product in the stock location, or null if its lines have
+   *     not been locked yet.
+   */
+  public Statistics getStatistics(Long stockLocationId, Long productId) {
+    return statisticsMap.get(getKey(stockLocationId, productId));
+  }
+
+  /** @return The lock statistics, by stock location id and product id joined by a dash. */
+  public Map<String, Statistics> getStatistics() {
+    return Collections.unmodifiableMap(statisticsMap);
+  }
+
+  public void reset() {
+    statisticsMap.clear();
+  }
+
+  protected String getKey(Long stockLocationId, Long productId) {
+    return stockLocationId + "-" + productId;
+  }
+
+  public static class Statistics {
+
+    private final LongAdder lockCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    protected void record(long waitNanos) {
+      lockCount.increment();
+      totalWaitNanos.add(waitNanos);
+      maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public long getLockCount() {
+      return lockCount.sum();
+    }
+
+    public long getTotalWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+    }
+
+    public long getMaxWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public double getAverageWaitMillis() {
+      long count = lockCount.sum();
+      return count == 0 ? 0 : totalWaitNanos.sum() / 1_000_000d / count;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "locks: %d, total wait: %d ms, average wait: %.3f ms, max wait: %d ms",
+          getLockCount(), getTotalWaitMillis(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+  }
+}
@@ -29,6 +29,7 @@ import com.axelor.apps.stock.db.repo.StockLocationLineHistoryRepository;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface StockLocationLineService {
@@ -58,6 +59,18 @@ public interface StockLocationLineService {
       boolean generateOrder)
       throws AxelorException;
 
+  /**
+   * Lock the stock location lines of the products of the given stock move lines in their from and
+   * to stock locations, detail lines included, with a single statement. The lines are locked in
+   * the order of their stock location and product, so that transactions updating the stock of the
+   * same products cannot deadlock, and are then updated without concurrent modification until the
+   * end of the transaction. The lines already loaded are refreshed once locked, so this has to be
+   * called before reading the lines to update.
+   *
+   * @param stockMoveLineList the stock move lines about to update the stock
+   */
+  void lockStockLocationLines(Collection<StockMoveLine> stockMoveLineList);
+
   public void maxStockRules(
       Product product,
       BigDecimal qty,
@@ -212,6 +225,16 @@ public interface StockLocationLineService {
    */
   BigDecimal computeFutureQty(StockLocationLine stockLocationLine) throws AxelorException;
 
+  /**
+   * Recompute the future quantity of every line and details line of a stock location in one
+   * pass: planned quantities are summed by product, tracking number and unit in a single query
+   * per direction, then converted into the unit of each line. The missing lines of the storable
+   * products with planned stock moves in the stock location are created first.
+   *
+   * @param stockLocation a stock location.
+   */
+  void updateFutureQty(StockLocation stockLocation) throws AxelorException;
+
   /**
    * Create a query to find stock location line of a product of a specific/all company and a
    * specific/all stock location
@@ -22,8 +22,10 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.db.StockLocationLine;
@@ -40,7 +42,7 @@ import com.axelor.apps.stock.db.repo.StockRulesRepository;
 import com.axelor.apps.stock.exception.StockExceptionMessage;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
-import com.axelor.db.Query;
+import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.utils.helpers.StringHelper;
@@ -52,8 +54,16 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +72,16 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  /** Ordered by stock location, product and id, the order in which the rows are locked. */
+  protected static final String LOCK_STOCK_LOCATION_LINES_QUERY =
+      "SELECT self.id, COALESCE(self.stock_location, self.details_stock_location), self.product "
+          + "FROM stock_stock_location_line self "
+          + "WHERE self.product IN (:productIds) "
+          + "AND (self.stock_location IN (:stockLocationIds) "
+          + "OR self.details_stock_location IN (:stockLocationIds)) "
+          + "ORDER BY 2, 3, 1 "
+          + "FOR UPDATE";
+
   protected StockLocationLineRepository stockLocationLineRepo;
 
   protected StockRulesService stockRulesService;
@@ -74,6 +94,8 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
 
   protected StockLocationLineHistoryService stockLocationLineHistoryService;
 
+  protected StockLocationLineLockMetrics stockLocationLineLockMetrics;
+
   @Inject
   public StockLocationLineServiceImpl(
       StockLocationLineRepository stockLocationLineRepo,
@@ -81,13 +103,15 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
       StockMoveLineRepository stockMoveLineRepository,
       AppBaseService appBaseService,
       UnitConversionService unitConversionService,
-      StockLocationLineHistoryService stockLocationLineHistoryService) {
+      StockLocationLineHistoryService stockLocationLineHistoryService,
+      StockLocationLineLockMetrics stockLocationLineLockMetrics) {
     this.stockLocationLineRepo = stockLocationLineRepo;
     this.stockRulesService = stockRulesService;
     this.stockMoveLineRepository = stockMoveLineRepository;
     this.appBaseService = appBaseService;
     this.unitConversionService = unitConversionService;
     this.stockLocationLineHistoryService = stockLocationLineHistoryService;
+    this.stockLocationLineLockMetrics = stockLocationLineLockMetrics;
   }
 
   @Override
@@ -194,6 +218,88 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
     stockLocationLineRepo.save(stockLocationLine);
   }
 
+  /**
+   * Lock the stock location lines of the given stock move lines with a single statement, in the
+   * order of their stock location, product and id. Every transaction locks the lines it shares with
+   * another one in the same order, so they wait for each other instead of deadlocking. The locked
+   * lines already loaded in the session are refreshed, the other ones are read once locked.
+   *
+   * @param stockMoveLineList the stock move lines about to update the stock
+   */
+  @Override
+  public void lockStockLocationLines(Collection<StockMoveLine> stockMoveLineList) {
+
+    Set<Long> stockLocationIdSet = new TreeSet<>();
+    Set<Long> productIdSet = new TreeSet<>();
+
+    for (StockMoveLine stockMoveLine : stockMoveLineList) {
+      Product product = stockMoveLine.getProduct();
+      if (product == null || product.getId() == null || !product.getStockManaged()) {
+        continue;
+      }
+      productIdSet.add(product.getId());
+      Optional.ofNullable(stockMoveLine.getFromStockLocation())
+          .map(StockLocation::getId)
+          .ifPresent(stockLocationIdSet::add);
+      Optional.ofNullable(stockMoveLine.getToStockLocation())
+          .map(StockLocation::getId)
+          .ifPresent(stockLocationIdSet::add);
+    }
+
+    if (productIdSet.isEmpty() || stockLocationIdSet.isEmpty()) {
+      return;
+    }
+
+    long lockStart = System.nanoTime();
+    List<Object[]> lockedLineList =
+        this.selectStockLocationLinesForUpdate(productIdSet, stockLocationIdSet);
+    long waitNanos = System.nanoTime() - lockStart;
+
+    Set<String> lockedKeySet = new HashSet<>();
+    for (Object[] lockedLine : lockedLineList) {
+      // A line loaded before the lock may be stale, the other ones will be read once locked
+      StockLocationLine stockLocationLine =
+          this.getLoadedStockLocationLine(((Number) lockedLine[0]).longValue());
+      if (stockLocationLine != null) {
+        this.refreshStockLocationLine(stockLocationLine);
+      }
+
+      Long stockLocationId = ((Number) lockedLine[1]).longValue();
+      Long productId = ((Number) lockedLine[2]).longValue();
+      if (lockedKeySet.add(stockLocationId + "-" + productId)) {
+        stockLocationLineLockMetrics.recordLockWait(stockLocationId, productId, waitNanos);
+      }
+    }
+  }
+
+  /**
+   * Lock the stock location lines, detail lines included, of the given products in the given stock
+   * locations, following {@link #LOCK_STOCK_LOCATION_LINES_QUERY}.
+   *
+   * @return the id, the stock location id and the product id of the locked lines, in the order
+   *     they have been locked
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> selectStockLocationLinesForUpdate(
+      Set<Long> productIdSet, Set<Long> stockLocationIdSet) {
+    return JPA.em()
+        .createNativeQuery(LOCK_STOCK_LOCATION_LINES_QUERY)
+        .setParameter("productIds", productIdSet)
+        .setParameter("stockLocationIds", stockLocationIdSet)
+        .getResultList();
+  }
+
+  /** @return the stock location line if it is already loaded in the session, null otherwise. */
+  protected StockLocationLine getLoadedStockLocationLine(Long stockLocationLineId) {
+    StockLocationLine stockLocationLine =
+        JPA.em().getReference(StockLocationLine.class, stockLocationLineId);
+    return Hibernate.isInitialized(stockLocationLine) ? stockLocationLine : null;
+  }
+
+  protected void refreshStockLocationLine(StockLocationLine stockLocationLine) {
+    JPA.em().refresh(stockLocationLine);
+  }
+
   @Override
   public void maxStockRules(
       Product product,
@@ -645,107 +751,275 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
     return stockLocationLine;
   }
 
-  protected static final String STOCK_MOVE_LINE_FILTER =
+  protected static final String PLANNED_STOCK_MOVE_LINE_FILTER =
       "(self.stockMove.archived IS NULL OR self.archived IS FALSE) "
-          + "AND self.stockMove.statusSelect = :planned "
-          + "AND self.product.id = :productId ";
+          + "AND self.stockMove.statusSelect = :planned ";
+
+  protected static final String STOCK_MOVE_LINE_FILTER =
+      PLANNED_STOCK_MOVE_LINE_FILTER + "AND self.product.id = :productId ";
 
   @Override
   public BigDecimal computeFutureQty(StockLocationLine stockLocationLine) throws AxelorException {
     // future quantity is current quantity minus planned outgoing stock move lines plus planned
     // incoming stock move lines.
+    return computeFutureQty(
+        stockLocationLine,
+        getPlannedQtyPerUnit(stockLocationLine, true),
+        getPlannedQtyPerUnit(stockLocationLine, false));
+  }
 
-    Product product = stockLocationLine.getProduct();
-
-    BigDecimal futureQty = stockLocationLine.getCurrentQty();
+  /**
+   * Compute the future quantity of a stock location line from the planned quantities of its
+   * product, already summed by unit. Each sum is converted once into the unit of the line.
+   *
+   * @param stockLocationLine a stock location line with a product and a stock location.
+   * @param incomingQtyPerUnit planned incoming quantities, mapped by unit id.
+   * @param outgoingQtyPerUnit planned outgoing quantities, mapped by unit id.
+   * @return the future quantity of the stock location line.
+   */
+  protected BigDecimal computeFutureQty(
+      StockLocationLine stockLocationLine,
+      Map<Long, BigDecimal> incomingQtyPerUnit,
+      Map<Long, BigDecimal> outgoingQtyPerUnit)
+      throws AxelorException {
 
-    List<StockMoveLine> incomingStockMoveLineList =
-        findIncomingPlannedStockMoveLines(stockLocationLine);
-    List<StockMoveLine> outgoingStockMoveLineList =
-        findOutgoingPlannedStockMoveLines(stockLocationLine);
+    Product product = stockLocationLine.getProduct();
 
     if (stockLocationLine.getUnit() == null) {
       throw new AxelorException(
           TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
           I18n.get(StockExceptionMessage.LOCATION_LINE_MISSING_UNIT),
-          stockLocationLine.getStockLocation().getName(),
+          Optional.ofNullable(stockLocationLine.getStockLocation())
+              .orElse(stockLocationLine.getDetailsStockLocation())
+              .getName(),
           product.getFullName());
     }
 
-    for (StockMoveLine incomingStockMoveLine : incomingStockMoveLineList) {
-      BigDecimal qtyToAdd =
-          unitConversionService.convert(
-              incomingStockMoveLine.getUnit(),
-              stockLocationLine.getUnit(),
-              incomingStockMoveLine.getRealQty(),
-              incomingStockMoveLine.getRealQty().scale(),
-              product);
-      futureQty = futureQty.add(qtyToAdd);
+    BigDecimal futureQty = stockLocationLine.getCurrentQty();
+
+    for (Map.Entry<Long, BigDecimal> incomingQty : incomingQtyPerUnit.entrySet()) {
+      futureQty =
+          futureQty.add(
+              convertPlannedQty(stockLocationLine, incomingQty.getKey(), incomingQty.getValue()));
     }
 
-    for (StockMoveLine outgoingStockMoveLine : outgoingStockMoveLineList) {
-      BigDecimal qtyToSubtract =
-          unitConversionService.convert(
-              outgoingStockMoveLine.getUnit(),
-              stockLocationLine.getUnit(),
-              outgoingStockMoveLine.getRealQty(),
-              outgoingStockMoveLine.getRealQty().scale(),
-              product);
-      futureQty = futureQty.subtract(qtyToSubtract);
+    for (Map.Entry<Long, BigDecimal> outgoingQty : outgoingQtyPerUnit.entrySet()) {
+      futureQty =
+          futureQty.subtract(
+              convertPlannedQty(stockLocationLine, outgoingQty.getKey(), outgoingQty.getValue()));
     }
 
     return futureQty;
   }
 
-  protected List<StockMoveLine> findIncomingPlannedStockMoveLines(
-      StockLocationLine stockLocationLine) {
+  protected BigDecimal convertPlannedQty(
+      StockLocationLine stockLocationLine, Long unitId, BigDecimal qty) throws AxelorException {
+    Unit unit = unitId != null ? JPA.em().find(Unit.class, unitId) : null;
+    return unitConversionService.convert(
+        unit, stockLocationLine.getUnit(), qty, qty.scale(), stockLocationLine.getProduct());
+  }
+
+  /**
+   * Sum, by unit, the real quantities of the planned stock move lines coming in or going out of
+   * the stock location of the given line, for its product and, for a details line, its tracking
+   * number.
+   *
+   * @param stockLocationLine a stock location line with a product and a stock location.
+   * @param incoming true for incoming stock move lines, false for outgoing ones.
+   * @return the summed quantities mapped by unit id.
+   */
+  protected Map<Long, BigDecimal> getPlannedQtyPerUnit(
+      StockLocationLine stockLocationLine, boolean incoming) {
     boolean isDetailsStockLocationLine = stockLocationLine.getDetailsStockLocation() != null;
-    String incomingStockMoveLineFilter =
-        STOCK_MOVE_LINE_FILTER + "AND self.toStockLocation.id = :stockLocationId";
+    StringBuilder queryStr =
+        new StringBuilder(
+            "SELECT unit.id, SUM(self.realQty) FROM StockMoveLine self LEFT JOIN self.unit unit "
+                + "WHERE "
+                + STOCK_MOVE_LINE_FILTER
+                + "AND self."
+                + getStockLocationField(incoming)
+                + ".id = :stockLocationId");
     if (isDetailsStockLocationLine) {
-      incomingStockMoveLineFilter =
-          incomingStockMoveLineFilter + " AND self.trackingNumber.id = :trackingNumberId";
-    }
-    Query<StockMoveLine> stockMoveLineQuery =
-        stockMoveLineRepository
-            .all()
-            .filter(incomingStockMoveLineFilter)
-            .bind("planned", StockMoveRepository.STATUS_PLANNED)
-            .bind("productId", stockLocationLine.getProduct().getId());
+      queryStr.append(" AND self.trackingNumber.id = :trackingNumberId");
+    }
+    queryStr.append(" GROUP BY unit.id");
+
+    javax.persistence.Query query =
+        JPA.em()
+            .createQuery(queryStr.toString())
+            .setParameter("planned", StockMoveRepository.STATUS_PLANNED)
+            .setParameter("productId", stockLocationLine.getProduct().getId());
     if (isDetailsStockLocationLine) {
-      stockMoveLineQuery
-          .bind("stockLocationId", stockLocationLine.getDetailsStockLocation().getId())
-          .bind("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
+      query
+          .setParameter("stockLocationId", stockLocationLine.getDetailsStockLocation().getId())
+          .setParameter("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
     } else {
-      stockMoveLineQuery.bind("stockLocationId", stockLocationLine.getStockLocation().getId());
+      query.setParameter("stockLocationId", stockLocationLine.getStockLocation().getId());
+    }
+
+    Map<Long, BigDecimal> qtyPerUnit = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    List<Object[]> resultList = query.getResultList();
+    for (Object[] result : resultList) {
+      qtyPerUnit.put((Long) result[0], (BigDecimal) result[1]);
     }
-    return stockMoveLineQuery.fetch();
+    return qtyPerUnit;
   }
 
-  protected List<StockMoveLine> findOutgoingPlannedStockMoveLines(
-      StockLocationLine stockLocationLine) {
-    boolean isDetailsStockLocationLine = stockLocationLine.getDetailsStockLocation() != null;
-    String outgoingStockMoveLineFilter =
-        STOCK_MOVE_LINE_FILTER + "AND self.fromStockLocation.id = :stockLocationId";
-    if (isDetailsStockLocationLine) {
-      outgoingStockMoveLineFilter =
-          outgoingStockMoveLineFilter + " AND self.trackingNumber.id = :trackingNumberId";
+  protected String getStockLocationField(boolean incoming) {
+    return incoming ? "toStockLocation" : "fromStockLocation";
+  }
+
+  @Override
+  public void updateFutureQty(StockLocation stockLocation) throws AxelorException {
+    Long stockLocationId = stockLocation.getId();
+    createMissingStockLocationLines(stockLocation);
+
+    Map<String, Map<Long, BigDecimal>> incomingQtyMap = getPlannedQtyMap(stockLocationId, true);
+    Map<String, Map<Long, BigDecimal>> outgoingQtyMap = getPlannedQtyMap(stockLocationId, false);
+
+    BatchChunkIterator<StockLocationLine> stockLocationLineIterator =
+        BatchChunkIterator.of(
+                StockLocationLine.class,
+                "self.stockLocation.id = :stockLocationId "
+                    + "OR self.detailsStockLocation.id = :stockLocationId")
+            .bind("stockLocationId", stockLocationId);
+
+    List<StockLocationLine> stockLocationLineList;
+    while (!(stockLocationLineList = stockLocationLineIterator.nextChunk()).isEmpty()) {
+      updateFutureQty(stockLocationLineList, incomingQtyMap, outgoingQtyMap);
+      stockLocationLineIterator.endChunk();
     }
-    Query<StockMoveLine> stockMoveLineQuery =
-        stockMoveLineRepository
-            .all()
-            .filter(outgoingStockMoveLineFilter)
-            .bind("planned", StockMoveRepository.STATUS_PLANNED)
-            .bind("productId", stockLocationLine.getProduct().getId());
+  }
 
-    if (isDetailsStockLocationLine) {
-      stockMoveLineQuery
-          .bind("stockLocationId", stockLocationLine.getDetailsStockLocation().getId())
-          .bind("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
-    } else {
-      stockMoveLineQuery.bind("stockLocationId", stockLocationLine.getStockLocation().getId());
+  /**
+   * Create the lines, and details lines, of the storable products planned to come in or go out of
+   * the stock location which do not have one yet, as planning their stock moves would have done.
+   *
+   * @param stockLocation a stock location.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void createMissingStockLocationLines(StockLocation stockLocation) {
+    if (stockLocation.getTypeSelect() == StockLocationRepository.TYPE_VIRTUAL) {
+      return;
     }
-    return stockMoveLineQuery.fetch();
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self.product.id, trackingNumber.id FROM StockMoveLine self "
+                    + "LEFT JOIN self.trackingNumber trackingNumber "
+                    + "WHERE "
+                    + PLANNED_STOCK_MOVE_LINE_FILTER
+                    + "AND (self.fromStockLocation.id = :stockLocationId "
+                    + "OR self.toStockLocation.id = :stockLocationId) "
+                    + "AND self.product.productTypeSelect = :storable "
+                    + "AND (NOT EXISTS (SELECT line.id FROM StockLocationLine line "
+                    + "WHERE line.stockLocation.id = :stockLocationId "
+                    + "AND line.product = self.product) "
+                    + "OR (trackingNumber.id IS NOT NULL "
+                    + "AND NOT EXISTS (SELECT line.id FROM StockLocationLine line "
+                    + "WHERE line.detailsStockLocation.id = :stockLocationId "
+                    + "AND line.product = self.product "
+                    + "AND line.trackingNumber = trackingNumber)))",
+                Object[].class)
+            .setParameter("planned", StockMoveRepository.STATUS_PLANNED)
+            .setParameter("stockLocationId", stockLocation.getId())
+            .setParameter("storable", ProductRepository.PRODUCT_TYPE_STORABLE)
+            .getResultList();
+
+    for (Object[] result : resultList) {
+      Product product = JPA.em().find(Product.class, result[0]);
+      StockLocationLine stockLocationLine = getOrCreateStockLocationLine(stockLocation, product);
+      if (stockLocationLine == null) {
+        continue;
+      }
+      stockLocationLineRepo.save(stockLocationLine);
+
+      if (result[1] != null) {
+        stockLocationLineRepo.save(
+            getOrCreateDetailLocationLine(
+                stockLocation, product, JPA.em().find(TrackingNumber.class, result[1])));
+      }
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void updateFutureQty(
+      List<StockLocationLine> stockLocationLineList,
+      Map<String, Map<Long, BigDecimal>> incomingQtyMap,
+      Map<String, Map<Long, BigDecimal>> outgoingQtyMap)
+      throws AxelorException {
+    for (StockLocationLine stockLocationLine : stockLocationLineList) {
+      String key = getPlannedQtyKey(stockLocationLine);
+      stockLocationLine.setFutureQty(
+          computeFutureQty(
+              stockLocationLine,
+              incomingQtyMap.getOrDefault(key, Collections.emptyMap()),
+              outgoingQtyMap.getOrDefault(key, Collections.emptyMap())));
+    }
+  }
+
+  /**
+   * Sum, by product, tracking number and unit, the real quantities of all the planned stock move
+   * lines coming in or going out of a stock location, in a single query. The sums are mapped by
+   * the key of the stock location line they apply to: the totals of the tracking numbers of a
+   * product are also added together for the line of the product itself.
+   *
+   * @param stockLocationId the id of a stock location.
+   * @param incoming true for incoming stock move lines, false for outgoing ones.
+   * @return the summed quantities by unit id, mapped by stock location line key.
+   * @see #getPlannedQtyKey(StockLocationLine)
+   */
+  protected Map<String, Map<Long, BigDecimal>> getPlannedQtyMap(
+      Long stockLocationId, boolean incoming) {
+    javax.persistence.Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, trackingNumber.id, unit.id, SUM(self.realQty) "
+                    + "FROM StockMoveLine self "
+                    + "LEFT JOIN self.trackingNumber trackingNumber "
+                    + "LEFT JOIN self.unit unit "
+                    + "WHERE "
+                    + PLANNED_STOCK_MOVE_LINE_FILTER
+                    + "AND self."
+                    + getStockLocationField(incoming)
+                    + ".id = :stockLocationId "
+                    + "GROUP BY self.product.id, trackingNumber.id, unit.id")
+            .setParameter("planned", StockMoveRepository.STATUS_PLANNED)
+            .setParameter("stockLocationId", stockLocationId);
+
+    Map<String, Map<Long, BigDecimal>> plannedQtyMap = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    List<Object[]> resultList = query.getResultList();
+    for (Object[] result : resultList) {
+      Long productId = (Long) result[0];
+      Long trackingNumberId = (Long) result[1];
+      Long unitId = (Long) result[2];
+      BigDecimal qty = (BigDecimal) result[3];
+
+      plannedQtyMap
+          .computeIfAbsent(getPlannedQtyKey(productId, null), key -> new HashMap<>())
+          .merge(unitId, qty, BigDecimal::add);
+      if (trackingNumberId != null) {
+        plannedQtyMap
+            .computeIfAbsent(getPlannedQtyKey(productId, trackingNumberId), key -> new HashMap<>())
+            .merge(unitId, qty, BigDecimal::add);
+      }
+    }
+    return plannedQtyMap;
+  }
+
+  protected String getPlannedQtyKey(StockLocationLine stockLocationLine) {
+    return getPlannedQtyKey(
+        stockLocationLine.getProduct().getId(),
+        stockLocationLine.getDetailsStockLocation() != null
+            ? stockLocationLine.getTrackingNumber().getId()
+            : null);
+  }
+
+  protected String getPlannedQtyKey(Long productId, Long trackingNumberId) {
+    return trackingNumberId == null ? productId.toString() : productId + "-" + trackingNumberId;
   }
 
   @Override
@@ -67,7 +67,6 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -92,6 +91,8 @@ public class StockMoveServiceImpl implements StockMoveService {
   protected StockConfigService stockConfigService;
   protected AppStockService appStockService;
   protected ProductCompanyService productCompanyService;
+  protected StockLocationLineService stockLocationLineService;
+  protected StockPerDateService stockPerDateService;
 
   @Inject
   public StockMoveServiceImpl(
@@ -105,7 +106,9 @@ public class StockMoveServiceImpl implements StockMoveService {
       PartnerStockSettingsService partnerStockSettingsService,
       StockConfigService stockConfigService,
       AppStockService appStockService,
-      ProductCompanyService productCompanyService) {
+      ProductCompanyService productCompanyService,
+      StockLocationLineService stockLocationLineService,
+      StockPerDateService stockPerDateService) {
     this.stockMoveLineService = stockMoveLineService;
     this.stockMoveToolService = stockMoveToolService;
     this.stockMoveLineRepo = stockMoveLineRepository;
@@ -117,6 +120,8 @@ public class StockMoveServiceImpl implements StockMoveService {
     this.stockConfigService = stockConfigService;
     this.appStockService = appStockService;
     this.productCompanyService = productCompanyService;
+    this.stockLocationLineService = stockLocationLineService;
+    this.stockPerDateService = stockPerDateService;
   }
 
   /**
@@ -434,6 +439,7 @@ public class StockMoveServiceImpl implements StockMoveService {
   public void updateLocations(StockMove stockMove, int initialStatus) throws AxelorException {
 
     copyPlannedStockMovLines(stockMove);
+    lockStockLocationLines(stockMove);
     stockMoveLineService.updateLocations(
         initialStatus,
         StockMoveRepository.STATUS_PLANNED,
@@ -443,6 +449,20 @@ public class StockMoveServiceImpl implements StockMoveService {
         true);
   }
 
+  /**
+   * Lock the stock location lines updated by the stock move and by its planned lines at once, so
+   * that they are all locked in the same order whatever the number of updates.
+   *
+   * @param stockMove the stock move about to update the stock
+   */
+  protected void lockStockLocationLines(StockMove stockMove) {
+    List<StockMoveLine> stockMoveLineList = new ArrayList<>();
+    Optional.ofNullable(stockMove.getStockMoveLineList()).ifPresent(stockMoveLineList::addAll);
+    Optional.ofNullable(stockMove.getPlannedStockMoveLineList())
+        .ifPresent(stockMoveLineList::addAll);
+    stockLocationLineService.lockStockLocationLines(stockMoveLineList);
+  }
+
   protected void copyPlannedStockMovLines(StockMove stockMove) {
     List<StockMoveLine> stockMoveLineList =
         MoreObjects.firstNonNull(stockMove.getStockMoveLineList(), Collections.emptyList());
@@ -496,6 +516,7 @@ public class StockMoveServiceImpl implements StockMoveService {
     String newStockSeq = null;
     stockMoveLineService.checkTrackingNumber(stockMove);
     stockMoveLineService.checkConformitySelection(stockMove);
+    lockStockLocationLines(stockMove);
     stockMove.getStockMoveLineList().forEach(stockMoveLineService::fillRealizeWapPrice);
 
     stockMoveLineService.checkExpirationDates(stockMove);
@@ -955,6 +976,7 @@ public class StockMoveServiceImpl implements StockMoveService {
     LOG.debug("Stock move cancel : {} ", stockMove.getStockMoveSeq());
     int initialStatus = stockMove.getStatusSelect();
     setCancelStatus(stockMove);
+    lockStockLocationLines(stockMove);
     if (initialStatus == StockMoveRepository.STATUS_PLANNED) {
       stockMoveLineService.updateLocations(
           initialStatus,
@@ -1146,54 +1168,7 @@ public class StockMoveServiceImpl implements StockMoveService {
   @Override
   public List<Map<String, Object>> getStockPerDate(
       Long locationId, Long productId, LocalDate fromDate, LocalDate toDate) {
-
-    List<Map<String, Object>> stock = new ArrayList<>();
-
-    while (!fromDate.isAfter(toDate)) {
-      Double qty = getStock(locationId, productId, fromDate);
-      Map<String, Object> dateStock = new HashMap<>();
-      dateStock.put("$date", fromDate);
-      dateStock.put("$qty", new BigDecimal(qty));
-      stock.add(dateStock);
-      fromDate = fromDate.plusDays(1);
-    }
-
-    return stock;
-  }
-
-  protected Double getStock(Long locationId, Long productId, LocalDate date) {
-
-    List<StockMoveLine> inLines =
-        stockMoveLineRepo
-            .all()
-            .filter(
-                "self.product.id = ?1 AND self.toStockLocation.id = ?2 AND self.stockMove.statusSelect != ?3 AND (self.stockMove.estimatedDate <= ?4 OR self.stockMove.realDate <= ?4)",
-                productId,
-                locationId,
-                StockMoveRepository.STATUS_CANCELED,
-                date)
-            .fetch();
-
-    List<StockMoveLine> outLines =
-        stockMoveLineRepo
-            .all()
-            .filter(
-                "self.product.id = ?1 AND self.fromStockLocation.id = ?2 AND self.stockMove.statusSelect != ?3 AND (self.stockMove.estimatedDate <= ?4 OR self.stockMove.realDate <= ?4)",
-                productId,
-                locationId,
-                StockMoveRepository.STATUS_CANCELED,
-                date)
-            .fetch();
-
-    Double inQty =
-        inLines.stream().mapToDouble(inl -> Double.parseDouble(inl.getQty().toString())).sum();
-
-    Double outQty =
-        outLines.stream().mapToDouble(out -> Double.parseDouble(out.getQty().toString())).sum();
-
-    Double qty = inQty - outQty;
-
-    return qty;
+    return stockPerDateService.getStockPerDate(locationId, productId, fromDate, toDate);
   }
 
   @Override
@@ -1367,6 +1342,7 @@ public class StockMoveServiceImpl implements StockMoveService {
     List<StockMoveLine> stockMoveLineList =
         Optional.ofNullable(stockMove.getStockMoveLineList()).orElse(new ArrayList<>());
 
+    lockStockLocationLines(stockMove);
     stockMoveLineService.updateLocations(
         StockMoveRepository.STATUS_PLANNED,
         StockMoveRepository.STATUS_CANCELED,
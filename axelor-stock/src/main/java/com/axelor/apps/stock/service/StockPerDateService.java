@@ -0,0 +1,59 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface StockPerDateService {
+
+  /**
+   * Get the stock of a product in a stock location for each day of a period, a stock move line
+   * being taken into account from the earliest of the estimated and real dates of its stock move.
+   *
+   * @param locationId the id of the stock location
+   * @param productId the id of the product
+   * @param fromDate the first day of the period
+   * @param toDate the last day of the period
+   * @return for each day, a map with the date as <code>$date</code> and the quantity as <code>$qty
+   *     </code>
+   */
+  List<Map<String, Object>> getStockPerDate(
+      Long locationId, Long productId, LocalDate fromDate, LocalDate toDate);
+
+  /**
+   * Get the stock of several products in several stock locations for each day of a period, with a
+   * single query for all of them.
+   *
+   * @param productIds the ids of the products
+   * @param locationIds the ids of the stock locations
+   * @param fromDate the first day of the period
+   * @param toDate the last day of the period
+   * @return the quantities mapped by product id, stock location id and date, the dates being
+   *     ordered
+   */
+  Map<Long, Map<Long, Map<LocalDate, BigDecimal>>> getStockPerDate(
+      Collection<Long> productIds,
+      Collection<Long> locationIds,
+      LocalDate fromDate,
+      LocalDate toDate);
+}
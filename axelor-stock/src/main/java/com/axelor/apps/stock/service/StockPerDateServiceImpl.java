@@ -0,0 +1,211 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.common.ObjectUtils;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class StockPerDateServiceImpl implements StockPerDateService {
+
+  protected AppBaseService appBaseService;
+
+  @Inject
+  public StockPerDateServiceImpl(AppBaseService appBaseService) {
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public List<Map<String, Object>> getStockPerDate(
+      Long locationId, Long productId, LocalDate fromDate, LocalDate toDate) {
+
+    Map<LocalDate, BigDecimal> qtyPerDate =
+        getStockPerDate(
+                Collections.singletonList(productId),
+                Collections.singletonList(locationId),
+                fromDate,
+                toDate)
+            .getOrDefault(productId, Collections.emptyMap())
+            .getOrDefault(locationId, Collections.emptyMap());
+
+    List<Map<String, Object>> stock = new ArrayList<>();
+
+    for (Map.Entry<LocalDate, BigDecimal> dateQty : qtyPerDate.entrySet()) {
+      Map<String, Object> dateStock = new HashMap<>();
+      dateStock.put("$date", dateQty.getKey());
+      dateStock.put("$qty", dateQty.getValue());
+      stock.add(dateStock);
+    }
+
+    return stock;
+  }
+
+  @Override
+  public Map<Long, Map<Long, Map<LocalDate, BigDecimal>>> getStockPerDate(
+      Collection<Long> productIds,
+      Collection<Long> locationIds,
+      LocalDate fromDate,
+      LocalDate toDate) {
+
+    Map<Long, Map<Long, Map<LocalDate, BigDecimal>>> stockPerDate = new HashMap<>();
+
+    if (ObjectUtils.isEmpty(productIds)
+        || ObjectUtils.isEmpty(locationIds)
+        || fromDate.isAfter(toDate)) {
+      return stockPerDate;
+    }
+
+    Map<Long, Map<Long, TreeMap<LocalDate, BigDecimal>>> movementMap =
+        getMovementMap(productIds, locationIds, fromDate, toDate);
+
+    int scale = appBaseService.getNbDecimalDigitForQty();
+
+    for (Long productId : productIds) {
+      Map<Long, Map<LocalDate, BigDecimal>> productStockPerDate = new HashMap<>();
+
+      for (Long locationId : locationIds) {
+        TreeMap<LocalDate, BigDecimal> movements =
+            movementMap
+                .getOrDefault(productId, Collections.emptyMap())
+                .getOrDefault(locationId, new TreeMap<>());
+        productStockPerDate.put(
+            locationId, computeRunningBalance(movements, fromDate, toDate, scale));
+      }
+
+      stockPerDate.put(productId, productStockPerDate);
+    }
+
+    return stockPerDate;
+  }
+
+  /**
+   * Get the quantity moved in or out of the stock locations for each day up to the end of the
+   * period, grouped by the database.
+   *
+   * @return the moved quantities mapped by product id, stock location id and date
+   */
+  protected Map<Long, Map<Long, TreeMap<LocalDate, BigDecimal>>> getMovementMap(
+      Collection<Long> productIds,
+      Collection<Long> locationIds,
+      LocalDate fromDate,
+      LocalDate toDate) {
+
+    @SuppressWarnings("unchecked")
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, self.fromStockLocation.id, self.toStockLocation.id, "
+                    + "stockMove.estimatedDate, stockMove.realDate, SUM(self.qty) "
+                    + "FROM StockMoveLine self "
+                    + "JOIN self.stockMove stockMove "
+                    + "WHERE self.product.id IN (:productIds) "
+                    + "AND (self.fromStockLocation.id IN (:locationIds) "
+                    + "OR self.toStockLocation.id IN (:locationIds)) "
+                    + "AND stockMove.statusSelect != :statusSelect "
+                    + "AND (stockMove.estimatedDate <= :toDate OR stockMove.realDate <= :toDate) "
+                    + "GROUP BY self.product.id, self.fromStockLocation.id, "
+                    + "self.toStockLocation.id, stockMove.estimatedDate, stockMove.realDate")
+            .setParameter("productIds", productIds)
+            .setParameter("locationIds", locationIds)
+            .setParameter("statusSelect", StockMoveRepository.STATUS_CANCELED)
+            .setParameter("toDate", toDate)
+            .getResultList();
+
+    Map<Long, Map<Long, TreeMap<LocalDate, BigDecimal>>> movementMap = new HashMap<>();
+
+    for (Object[] result : resultList) {
+      Long productId = (Long) result[0];
+      Long fromLocationId = (Long) result[1];
+      Long toLocationId = (Long) result[2];
+      LocalDate date = getMovementDate((LocalDate) result[3], (LocalDate) result[4]);
+      BigDecimal qty = result[5] == null ? BigDecimal.ZERO : (BigDecimal) result[5];
+
+      if (toLocationId != null && locationIds.contains(toLocationId)) {
+        addMovement(movementMap, productId, toLocationId, date, qty);
+      }
+      if (fromLocationId != null && locationIds.contains(fromLocationId)) {
+        addMovement(movementMap, productId, fromLocationId, date, qty.negate());
+      }
+    }
+
+    return movementMap;
+  }
+
+  /**
+   * A stock move line is taken into account as soon as either the estimated date or the real date
+   * of its stock move is reached.
+   */
+  protected LocalDate getMovementDate(LocalDate estimatedDate, LocalDate realDate) {
+    if (estimatedDate == null) {
+      return realDate;
+    }
+    if (realDate == null || estimatedDate.isBefore(realDate)) {
+      return estimatedDate;
+    }
+    return realDate;
+  }
+
+  protected void addMovement(
+      Map<Long, Map<Long, TreeMap<LocalDate, BigDecimal>>> movementMap,
+      Long productId,
+      Long locationId,
+      LocalDate date,
+      BigDecimal qty) {
+    movementMap
+        .computeIfAbsent(productId, key -> new HashMap<>())
+        .computeIfAbsent(locationId, key -> new TreeMap<>())
+        .merge(date, qty, BigDecimal::add);
+  }
+
+  /**
+   * Compute the quantity in stock at the end of each day of the period. The movements before the
+   * period give the opening quantity.
+   *
+   * @param movements the moved quantities by date
+   * @return the quantities by date, in date order
+   */
+  protected Map<LocalDate, BigDecimal> computeRunningBalance(
+      TreeMap<LocalDate, BigDecimal> movements, LocalDate fromDate, LocalDate toDate, int scale) {
+
+    Map<LocalDate, BigDecimal> balance = new LinkedHashMap<>();
+    BigDecimal qty =
+        movements.headMap(fromDate, false).values().stream()
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+    for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+      qty = qty.add(movements.getOrDefault(date, BigDecimal.ZERO));
+      balance.put(date, qty.setScale(scale, RoundingMode.HALF_UP));
+    }
+
+    return balance;
+  }
+}
@@ -23,11 +23,13 @@ import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.apps.stock.service.StockLocationLineService;
 import com.axelor.apps.stock.service.StockMoveLineService;
 import com.axelor.apps.stock.service.StockMoveService;
 import com.axelor.apps.stock.service.batch.model.StockMoveGroup;
@@ -36,13 +38,16 @@ import com.axelor.apps.stock.service.batch.model.TrackProduct;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class BatchRecomputeStockLocationLines extends AbstractBatch {
 
@@ -51,6 +56,7 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
   protected StockMoveLineService stockMoveLineService;
   protected StockMoveLineRepository stockMoveLineRepository;
   protected StockLocationRepository stockLocationRepository;
+  protected StockLocationLineService stockLocationLineService;
 
   @Inject
   public BatchRecomputeStockLocationLines(
@@ -58,13 +64,15 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
       StockMoveService stockMoveService,
       StockMoveLineService stockMoveLineService,
       StockMoveLineRepository stockMoveLineRepository,
-      StockLocationRepository stockLocationRepository) {
+      StockLocationRepository stockLocationRepository,
+      StockLocationLineService stockLocationLineService) {
 
     this.stockMoveLineRepository = stockMoveLineRepository;
     this.stockMoveRepository = stockMoveRepository;
     this.stockMoveService = stockMoveService;
     this.stockMoveLineService = stockMoveLineService;
     this.stockLocationRepository = stockLocationRepository;
+    this.stockLocationLineService = stockLocationLineService;
   }
 
   @Override
@@ -97,15 +105,23 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
         .filter(
             stockMoveGroup ->
                 stockMoveGroup.getStatusSelect() == StockMoveRepository.STATUS_PLANNED)
+        .flatMap(
+            stockMoveGroup ->
+                Stream.of(
+                    stockMoveGroup.getFromStockLocation(), stockMoveGroup.getToStockLocation()))
+        .filter(Objects::nonNull)
+        .distinct()
         .forEachOrdered(
-            stockMoveGroup -> {
+            stockLocationId -> {
               try {
-                updatePlannedQty(stockMoveGroup);
+                updatePlannedQty(stockLocationRepository.find(stockLocationId));
                 incrementDone();
               } catch (Exception e) {
                 incrementAnomaly();
                 TraceBackService.trace(
                     e, ExceptionOriginRepository.RECOMPUTE_STOCK_MOVE_LINES, batch.getId());
+              } finally {
+                JPA.clear();
               }
             });
   }
@@ -123,26 +139,8 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
     JPA.runInTransaction(clearWapHistoryLinesQuery::executeUpdate);
   }
 
-  protected void updatePlannedQty(StockMoveGroup stockMoveGroup) throws AxelorException {
-
-    List<StockMoveLine> stockMoveLineList;
-    Query<StockMoveLine> query = buildQueryFetchStockMoveLineFromGroup(stockMoveGroup).order("id");
-    int offSet = 0;
-    while (!(stockMoveLineList = query.fetch(FETCH_LIMIT, offSet)).isEmpty()) {
-
-      for (StockMoveLine stockMoveLine : stockMoveLineList) {
-        stockMoveLineService.updateLocations(
-            StockMoveRepository.STATUS_DRAFT,
-            StockMoveRepository.STATUS_PLANNED,
-            stockMoveLine.getStockMove().getPlannedStockMoveLineList(),
-            stockMoveLine.getStockMove().getEstimatedDate(),
-            false,
-            true);
-      }
-
-      offSet += FETCH_LIMIT;
-      JPA.clear();
-    }
+  protected void updatePlannedQty(StockLocation stockLocation) throws AxelorException {
+    stockLocationLineService.updateFutureQty(stockLocation);
   }
 
   protected String getOrigin(StockMove stockMove) {
@@ -185,18 +183,27 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
     }
 
     for (Entry<TrackProduct, StockMoveLineOrigin> entry : stockMoveLinesMap.entrySet()) {
-      stockMoveLineService.updateLocations(
-          StockMoveRepository.STATUS_PLANNED,
-          StockMoveRepository.STATUS_REALIZED,
-          Collections.singletonList(entry.getValue().getStockMoveLine()),
-          null,
-          false,
-          group.getRealDate(),
-          entry.getValue().getOrigin(),
-          true);
+      updateLocations(entry.getValue(), group.getRealDate());
     }
   }
 
+  @Transactional(rollbackOn = {Exception.class})
+  protected void updateLocations(StockMoveLineOrigin stockMoveLineOrigin, LocalDate realDate)
+      throws AxelorException {
+    List<StockMoveLine> stockMoveLineList =
+        Collections.singletonList(stockMoveLineOrigin.getStockMoveLine());
+    stockLocationLineService.lockStockLocationLines(stockMoveLineList);
+    stockMoveLineService.updateLocations(
+        StockMoveRepository.STATUS_PLANNED,
+        StockMoveRepository.STATUS_REALIZED,
+        stockMoveLineList,
+        null,
+        false,
+        realDate,
+        stockMoveLineOrigin.getOrigin(),
+        true);
+  }
+
   protected StockMoveLineOrigin merge(StockMoveLineOrigin sml1, StockMoveLineOrigin sml2) {
 
     return sml1.merge(sml2);
@@ -233,30 +240,6 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
         .bind("status", stockMoveGroup.getStatusSelect());
   }
 
-  protected Query<StockMoveLine> buildQueryFetchStockMoveLineFromGroup(
-      StockMoveGroup stockMoveGroup) {
-
-    StringBuilder query =
-        new StringBuilder(
-            "self.fromStockLocation.id = :fromStockLocation"
-                + " AND self.toStockLocation.id = :toStockLocation"
-                + " AND self.stockMove.statusSelect = :status");
-
-    if (stockMoveGroup.getRealDate() == null) {
-      query.append(" AND self.stockMove.realDate is NULL");
-    } else {
-      query.append(" AND self.stockMove.realDate = :realDate");
-    }
-
-    return stockMoveLineRepository
-        .all()
-        .filter(query.toString())
-        .bind("realDate", stockMoveGroup.getRealDate())
-        .bind("fromStockLocation", stockMoveGroup.getFromStockLocation())
-        .bind("toStockLocation", stockMoveGroup.getToStockLocation())
-        .bind("status", stockMoveGroup.getStatusSelect());
-  }
-
   protected List<StockMoveGroup> fetchStockMoveGroup() {
     List<StockMoveGroup> stockMoveGroups = new ArrayList<>();
     javax.persistence.Query query =
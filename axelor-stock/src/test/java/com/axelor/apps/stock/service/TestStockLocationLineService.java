@@ -0,0 +1,211 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.StockMoveLine;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestStockLocationLineService {
+
+  private StockLocationLineLockMetrics stockLocationLineLockMetrics;
+  private TestStockLocationLineServiceImpl stockLocationLineService;
+
+  /**
+   * Returns the locked rows of an in-memory table, ordered as the lock query orders them, and
+   * records the lines it refreshes instead of running the statements.
+   */
+  protected static class TestStockLocationLineServiceImpl extends StockLocationLineServiceImpl {
+
+    /** The rows of the table: id, stock location id and product id. */
+    protected final List<Object[]> rowList = new ArrayList<>();
+
+    protected final Map<Long, StockLocationLine> loadedLineMap = new HashMap<>();
+    protected final List<Long> lockedIdList = new ArrayList<>();
+    protected final List<List<Long>> queryParameterList = new ArrayList<>();
+    protected final List<StockLocationLine> refreshedLineList = new ArrayList<>();
+
+    public TestStockLocationLineServiceImpl(
+        StockLocationLineLockMetrics stockLocationLineLockMetrics) {
+      super(null, null, null, null, null, null, stockLocationLineLockMetrics);
+    }
+
+    @Override
+    protected List<Object[]> selectStockLocationLinesForUpdate(
+        Set<Long> productIdSet, Set<Long> stockLocationIdSet) {
+      queryParameterList.add(new ArrayList<>(stockLocationIdSet));
+      queryParameterList.add(new ArrayList<>(productIdSet));
+
+      List<Object[]> lockedLineList = new ArrayList<>();
+      for (Object[] row : rowList) {
+        if (stockLocationIdSet.contains(row[1]) && productIdSet.contains(row[2])) {
+          lockedLineList.add(row);
+        }
+      }
+      // ORDER BY 2, 3, 1 of the lock query
+      lockedLineList.sort(
+          (row1, row2) -> {
+            for (int column : new int[] {1, 2, 0}) {
+              int comparison = ((Long) row1[column]).compareTo((Long) row2[column]);
+              if (comparison != 0) {
+                return comparison;
+              }
+            }
+            return 0;
+          });
+      return lockedLineList;
+    }
+
+    @Override
+    protected StockLocationLine getLoadedStockLocationLine(Long stockLocationLineId) {
+      lockedIdList.add(stockLocationLineId);
+      return loadedLineMap.get(stockLocationLineId);
+    }
+
+    @Override
+    protected void refreshStockLocationLine(StockLocationLine stockLocationLine) {
+      refreshedLineList.add(stockLocationLine);
+    }
+  }
+
+  @BeforeEach
+  void prepare() {
+    stockLocationLineLockMetrics = new StockLocationLineLockMetrics();
+    stockLocationLineService = new TestStockLocationLineServiceImpl(stockLocationLineLockMetrics);
+  }
+
+  @Test
+  void testLockQueryOrder() {
+    Assertions.assertTrue(
+        StockLocationLineServiceImpl.LOCK_STOCK_LOCATION_LINES_QUERY.startsWith(
+            "SELECT self.id, COALESCE(self.stock_location, self.details_stock_location), "
+                + "self.product "));
+    Assertions.assertTrue(
+        StockLocationLineServiceImpl.LOCK_STOCK_LOCATION_LINES_QUERY.endsWith(
+            "ORDER BY 2, 3, 1 FOR UPDATE"));
+  }
+
+  @Test
+  void testLockOrderIndependentOfLineOrder() {
+    addRows(
+        new long[] {1, 20, 200},
+        new long[] {2, 10, 100},
+        new long[] {3, 20, 100},
+        new long[] {4, 10, 200},
+        new long[] {5, 10, 100},
+        new long[] {6, 30, 100});
+    List<StockMoveLine> stockMoveLineList =
+        Arrays.asList(
+            createStockMoveLine(200L, 20L, 10L, true),
+            createStockMoveLine(100L, 10L, 20L, true),
+            createStockMoveLine(300L, 10L, 20L, false));
+
+    List<Long> lockedIdList = lockStockLocationLines(stockMoveLineList);
+    List<List<Long>> queryParameterList =
+        new ArrayList<>(stockLocationLineService.queryParameterList);
+    Collections.reverse(stockMoveLineList);
+
+    Assertions.assertEquals(Arrays.asList(2L, 5L, 4L, 3L, 1L), lockedIdList);
+    Assertions.assertEquals(lockedIdList, lockStockLocationLines(stockMoveLineList));
+    Assertions.assertEquals(
+        Arrays.asList(Arrays.asList(10L, 20L), Arrays.asList(100L, 200L)), queryParameterList);
+    Assertions.assertEquals(
+        queryParameterList, stockLocationLineService.queryParameterList.subList(2, 4));
+  }
+
+  @Test
+  void testRefreshLoadedLines() {
+    addRows(new long[] {1, 10, 100}, new long[] {2, 10, 100}, new long[] {3, 20, 100});
+    StockLocationLine loadedLine = new StockLocationLine();
+    stockLocationLineService.loadedLineMap.put(2L, loadedLine);
+
+    lockStockLocationLines(Collections.singletonList(createStockMoveLine(100L, 10L, 20L, true)));
+
+    Assertions.assertEquals(
+        Collections.singletonList(loadedLine), stockLocationLineService.refreshedLineList);
+  }
+
+  @Test
+  void testLockWaitRecordedOncePerLocationAndProduct() {
+    // Two lines of the same product and stock location, as a line and its detail line
+    addRows(new long[] {1, 10, 100}, new long[] {2, 10, 100}, new long[] {3, 20, 100});
+
+    lockStockLocationLines(Collections.singletonList(createStockMoveLine(100L, 10L, 20L, true)));
+    lockStockLocationLines(Collections.singletonList(createStockMoveLine(100L, 20L, 30L, true)));
+
+    Assertions.assertEquals(2, stockLocationLineLockMetrics.getStatistics().size());
+    Assertions.assertEquals(
+        1, stockLocationLineLockMetrics.getStatistics(10L, 100L).getLockCount());
+    Assertions.assertEquals(
+        2, stockLocationLineLockMetrics.getStatistics(20L, 100L).getLockCount());
+    Assertions.assertNull(stockLocationLineLockMetrics.getStatistics(30L, 100L));
+  }
+
+  @Test
+  void testNothingToLock() {
+    addRows(new long[] {1, 10, 100});
+
+    lockStockLocationLines(Collections.singletonList(createStockMoveLine(100L, 10L, 20L, false)));
+
+    Assertions.assertTrue(stockLocationLineService.queryParameterList.isEmpty());
+    Assertions.assertTrue(stockLocationLineLockMetrics.getStatistics().isEmpty());
+  }
+
+  /** @return the ids of the locked lines, in the order they have been locked. */
+  protected List<Long> lockStockLocationLines(List<StockMoveLine> stockMoveLineList) {
+    stockLocationLineService.lockedIdList.clear();
+    stockLocationLineService.lockStockLocationLines(stockMoveLineList);
+    return new ArrayList<>(stockLocationLineService.lockedIdList);
+  }
+
+  protected void addRows(long[]... rows) {
+    for (long[] row : rows) {
+      stockLocationLineService.rowList.add(new Object[] {row[0], row[1], row[2]});
+    }
+  }
+
+  protected StockMoveLine createStockMoveLine(
+      Long productId, Long fromStockLocationId, Long toStockLocationId, boolean stockManaged) {
+    Product product = new Product();
+    product.setId(productId);
+    product.setStockManaged(stockManaged);
+    StockMoveLine stockMoveLine = new StockMoveLine();
+    stockMoveLine.setProduct(product);
+    stockMoveLine.setFromStockLocation(createStockLocation(fromStockLocationId));
+    stockMoveLine.setToStockLocation(createStockLocation(toStockLocationId));
+    return stockMoveLine;
+  }
+
+  protected StockLocation createStockLocation(Long id) {
+    StockLocation stockLocation = new StockLocation();
+    stockLocation.setId(id);
+    return stockLocation;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TestStockPerDateService {
+
+  private static final LocalDate FROM_DATE = LocalDate.of(2024, 3, 1);
+  private static final LocalDate TO_DATE = LocalDate.of(2024, 3, 5);
+
+  private static StockPerDateServiceImpl stockPerDateService;
+
+  @BeforeAll
+  static void prepare() {
+    stockPerDateService = new StockPerDateServiceImpl(null);
+  }
+
+  @Test
+  void testMovementDateIsEstimatedDateWhenEarlier() {
+    Assertions.assertEquals(
+        LocalDate.of(2024, 3, 2),
+        stockPerDateService.getMovementDate(LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 4)));
+  }
+
+  @Test
+  void testMovementDateIsRealDateWhenEarlier() {
+    Assertions.assertEquals(
+        LocalDate.of(2024, 3, 2),
+        stockPerDateService.getMovementDate(LocalDate.of(2024, 3, 4), LocalDate.of(2024, 3, 2)));
+  }
+
+  @Test
+  void testMovementDateWithOneDateOnly() {
+    LocalDate date = LocalDate.of(2024, 3, 2);
+    Assertions.assertEquals(date, stockPerDateService.getMovementDate(date, null));
+    Assertions.assertEquals(date, stockPerDateService.getMovementDate(null, date));
+  }
+
+  @Test
+  void testRunningBalanceWithoutMovement() {
+    Map<LocalDate, BigDecimal> balance =
+        stockPerDateService.computeRunningBalance(new TreeMap<>(), FROM_DATE, TO_DATE, 2);
+
+    Assertions.assertEquals(5, balance.size());
+    balance.values().forEach(qty -> Assertions.assertEquals(new BigDecimal("0.00"), qty));
+  }
+
+  @Test
+  void testRunningBalanceStartsWithOpeningQty() {
+    TreeMap<LocalDate, BigDecimal> movements = new TreeMap<>();
+    movements.put(FROM_DATE.minusMonths(2), new BigDecimal("10"));
+    movements.put(FROM_DATE.minusDays(1), new BigDecimal("-3"));
+    movements.put(FROM_DATE, new BigDecimal("2"));
+
+    Map<LocalDate, BigDecimal> balance =
+        stockPerDateService.computeRunningBalance(movements, FROM_DATE, TO_DATE, 2);
+
+    Assertions.assertEquals(new BigDecimal("9.00"), balance.get(FROM_DATE));
+    Assertions.assertEquals(new BigDecimal("9.00"), balance.get(TO_DATE));
+  }
+
+  @Test
+  void testRunningBalanceAccumulatesMovementsInDateOrder() {
+    TreeMap<LocalDate, BigDecimal> movements = new TreeMap<>();
+    movements.put(FROM_DATE.minusDays(10), new BigDecimal("5"));
+    movements.put(FROM_DATE.plusDays(1), new BigDecimal("4.5"));
+    movements.put(FROM_DATE.plusDays(3), new BigDecimal("-6"));
+    movements.put(TO_DATE.plusDays(1), new BigDecimal("100"));
+
+    Map<LocalDate, BigDecimal> balance =
+        stockPerDateService.computeRunningBalance(movements, FROM_DATE, TO_DATE, 2);
+
+    Assertions.assertEquals(
+        List.of(
+            FROM_DATE,
+            FROM_DATE.plusDays(1),
+            FROM_DATE.plusDays(2),
+            FROM_DATE.plusDays(3),
+            TO_DATE),
+        new ArrayList<>(balance.keySet()));
+    Assertions.assertEquals(
+        List.of(
+            new BigDecimal("5.00"),
+            new BigDecimal("9.50"),
+            new BigDecimal("9.50"),
+            new BigDecimal("3.50"),
+            new BigDecimal("3.50")),
+        new ArrayList<>(balance.values()));
+  }
+}
@@ -60,6 +60,7 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.BankDetailsService;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.purchase.db.PurchaseOrder;
 import com.axelor.apps.purchase.db.PurchaseOrderLine;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
@@ -157,7 +158,7 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
   }
 
   @Override
-  public Query<StockMove> getStockMoves(
+  public BatchChunkIterator<StockMove> getStockMoves(
       Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
 
     int stockMoveTypeSelect = 0;
@@ -179,20 +180,18 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
       queryStr += "AND self.company.id = :companyId";
     }
 
-    Query<StockMove> stockMoveQuery =
-        stockMoverepository
-            .all()
-            .filter(queryStr)
+    BatchChunkIterator<StockMove> stockMoveIterator =
+        BatchChunkIterator.of(StockMove.class, queryStr)
             .bind("stockMoveInvoiced", StockMoveRepository.STATUS_INVOICED)
             .bind("stockMoveStatusRealized", StockMoveRepository.STATUS_REALIZED)
             .bind("stockMoveType", stockMoveTypeSelect)
             .bind("moveDate", moveDate);
 
     if (company != null) {
-      stockMoveQuery.bind("companyId", company.getId());
+      stockMoveIterator.bind("companyId", company.getId());
     }
 
-    return stockMoveQuery.order("id");
+    return stockMoveIterator;
   }
 
   @Override
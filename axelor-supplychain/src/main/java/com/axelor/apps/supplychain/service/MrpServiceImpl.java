@@ -21,6 +21,7 @@ package com.axelor.apps.supplychain.service;
 import static java.time.temporal.ChronoUnit.DAYS;
 
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.WorkerExecutor;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Product;
@@ -64,13 +65,16 @@ import com.axelor.apps.supplychain.db.repo.MrpLineRepository;
 import com.axelor.apps.supplychain.db.repo.MrpLineTypeRepository;
 import com.axelor.apps.supplychain.db.repo.MrpRepository;
 import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
+import com.axelor.apps.supplychain.service.app.AppSupplychainService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.db.Query;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.axelor.message.service.MailMessageService;
+import com.axelor.studio.db.AppSupplychain;
 import com.axelor.utils.helpers.StringHelper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -84,17 +88,25 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -104,6 +116,12 @@ public class MrpServiceImpl implements MrpService {
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private static final Integer ITERATIONS = 100;
 
+  /**
+   * Taken off the start of a calculation, so that the next incremental calculation also catches
+   * the records of the transactions that were still running when it started.
+   */
+  protected static final Duration CALCULATION_DATE_TIME_MARGIN = Duration.ofMinutes(5);
+
   protected MrpRepository mrpRepository;
   protected StockLocationRepository stockLocationRepository;
   protected ProductRepository productRepository;
@@ -122,6 +140,7 @@ public class MrpServiceImpl implements MrpService {
   protected StockHistoryLineRepository stockHistoryLineRepository;
   protected MrpLineTypeService mrpLineTypeService;
   protected MrpSaleOrderCheckLateSaleService mrpSaleOrderCheckLateSaleService;
+  protected AppSupplychainService appSupplychainService;
 
   protected AppBaseService appBaseService;
   protected AppSaleService appSaleService;
@@ -132,6 +151,17 @@ public class MrpServiceImpl implements MrpService {
   protected Mrp mrp;
   protected LocalDate today;
 
+  /** Ids of the products recomputed by an incremental calculation, null for a full calculation. */
+  protected Set<Long> incrementalProductIdSet;
+
+  protected LocalDateTime calculationDateTime;
+
+  /** Related to select names of the lines edited by user, by product id. */
+  protected Map<Long, Set<String>> editedMrpLineMap;
+
+  /** Lines created by the proposals of the product being computed, null otherwise. */
+  protected List<MrpLine> createdMrpLineList;
+
   @Inject
   public MrpServiceImpl(
       MrpRepository mrpRepository,
@@ -154,7 +184,8 @@ public class MrpServiceImpl implements MrpService {
       AppPurchaseService appPurchaseService,
       StockHistoryLineRepository stockHistoryLineRepository,
       MrpSaleOrderCheckLateSaleService mrpSaleOrderCheckLateSaleService,
-      MrpLineTypeService mrpLineTypeService) {
+      MrpLineTypeService mrpLineTypeService,
+      AppSupplychainService appSupplychainService) {
 
     this.mrpRepository = mrpRepository;
     this.stockLocationRepository = stockLocationRepository;
@@ -177,6 +208,7 @@ public class MrpServiceImpl implements MrpService {
     this.stockHistoryLineRepository = stockHistoryLineRepository;
     this.mrpLineTypeService = mrpLineTypeService;
     this.mrpSaleOrderCheckLateSaleService = mrpSaleOrderCheckLateSaleService;
+    this.appSupplychainService = appSupplychainService;
   }
 
   @Override
@@ -187,7 +219,15 @@ public class MrpServiceImpl implements MrpService {
   @Override
   public void runCalculation(Mrp mrp) throws AxelorException {
 
-    this.reset(mrpRepository.find(mrp.getId()));
+    this.calculationDateTime = this.getCalculationDateTime();
+    this.incrementalProductIdSet =
+        this.getIncrementalProductIdSet(mrpRepository.find(mrp.getId()));
+
+    if (this.incrementalProductIdSet == null) {
+      this.reset(mrpRepository.find(mrp.getId()));
+    } else {
+      this.reset(mrpRepository.find(mrp.getId()), this.incrementalProductIdSet);
+    }
 
     this.startMrp(mrpRepository.find(mrp.getId()));
     this.completeMrp(mrpRepository.find(mrp.getId()));
@@ -195,6 +235,23 @@ public class MrpServiceImpl implements MrpService {
     this.finish(mrpRepository.find(mrp.getId()));
   }
 
+  /**
+   * Get the date from which the next incremental calculation looks for changes. It is read from
+   * the database clock, shared by all the application servers, minus a safety margin.
+   *
+   * @return
+   */
+  protected LocalDateTime getCalculationDateTime() {
+
+    Object result = JPA.em().createNativeQuery("SELECT LOCALTIMESTAMP").getSingleResult();
+    LocalDateTime databaseDateTime =
+        result instanceof Timestamp
+            ? ((Timestamp) result).toLocalDateTime()
+            : (LocalDateTime) result;
+
+    return databaseDateTime.minus(CALCULATION_DATE_TIME_MARGIN);
+  }
+
   @Override
   public boolean isOnGoing(Mrp mrp) {
 
@@ -232,12 +289,152 @@ public class MrpServiceImpl implements MrpService {
             today)
         .update("maturityDate", today);
 
+    mrp.setStatusSelect(MrpRepository.STATUS_DRAFT);
+    mrp.setErrorLog(null);
+    mrp.setLastCalculationDateTime(null);
+
+    mrpRepository.save(mrp);
+  }
+
+  /**
+   * Reset only the lines of the given products, before an incremental calculation.
+   *
+   * @param mrp
+   * @param productIdSet
+   */
+  @Transactional
+  protected void reset(Mrp mrp, Set<Long> productIdSet) {
+    today = appBaseService.getTodayDate(mrp.getStockLocation().getCompany());
+
+    for (List<Long> productIdList : Lists.partition(new ArrayList<>(productIdSet), 1000)) {
+      mrpLineRepository
+          .all()
+          .filter(
+              "self.mrp.id = ?1 AND self.isEditedByUser = false AND self.product.id IN (?2)",
+              mrp.getId(),
+              productIdList)
+          .remove();
+    }
+    mrpLineRepository
+        .all()
+        .filter(
+            "self.mrp.id = ?1 AND self.isEditedByUser = true AND self.maturityDate < ?2",
+            mrp.getId(),
+            today)
+        .update("maturityDate", today);
+
     mrp.setStatusSelect(MrpRepository.STATUS_DRAFT);
     mrp.setErrorLog(null);
 
     mrpRepository.save(mrp);
   }
 
+  /**
+   * Get the products to recompute if the calculation can be incremental, that is to say if it is
+   * enabled on the MRP and the last calculation was done the same day. These are the products
+   * changed since the last calculation along with all the products linked to them.
+   *
+   * @param mrp
+   * @return the ids of the products to recompute, or null if a full calculation is needed.
+   * @throws AxelorException
+   */
+  protected Set<Long> getIncrementalProductIdSet(Mrp mrp) throws AxelorException {
+
+    LocalDateTime lastCalculationDateTime = mrp.getLastCalculationDateTime();
+
+    if (!mrp.getIncrementalCalculation()
+        || lastCalculationDateTime == null
+        || mrp.getStartDateTime() == null
+        || !mrp.getStartDateTime()
+            .toLocalDate()
+            .equals(appBaseService.getTodayDate(mrp.getStockLocation().getCompany()))) {
+      return null;
+    }
+
+    Set<Long> productIdSet = this.getChangedProductIdSet(lastCalculationDateTime);
+    Set<Long> newProductIdSet = new HashSet<>(productIdSet);
+
+    while (!newProductIdSet.isEmpty()) {
+      newProductIdSet = this.getLinkedProductIdSet(newProductIdSet);
+      newProductIdSet.removeAll(productIdSet);
+      productIdSet.addAll(newProductIdSet);
+    }
+
+    log.debug("Incremental MRP calculation on {} products", productIdSet.size());
+
+    return productIdSet;
+  }
+
+  /**
+   * Get the products with a record used by the MRP created or updated since the given date.
+   *
+   * @param dateTime
+   * @return
+   */
+  protected Set<Long> getChangedProductIdSet(LocalDateTime dateTime) {
+
+    Set<Long> productIdSet = new HashSet<>();
+
+    for (String query : this.getChangedProductQueryList()) {
+      productIdSet.addAll(
+          JPA.em()
+              .createQuery(query, Long.class)
+              .setParameter("dateTime", dateTime)
+              .getResultList());
+    }
+
+    return productIdSet;
+  }
+
+  protected List<String> getChangedProductQueryList() {
+
+    List<String> queryList = new ArrayList<>();
+
+    queryList.add(
+        "SELECT self.id FROM Product self "
+            + "WHERE self.createdOn > :dateTime OR self.updatedOn > :dateTime");
+    queryList.add(this.getChangedProductQuery("StockLocationLine", null));
+    queryList.add(this.getChangedProductQuery("StockRules", null));
+    queryList.add(this.getChangedProductQuery("StockHistoryLine", null));
+    queryList.add(this.getChangedProductQuery("MrpForecast", null));
+    queryList.add(this.getChangedProductQuery("StockMoveLine", "stockMove"));
+    queryList.add(this.getChangedProductQuery("SaleOrderLine", "saleOrder"));
+    queryList.add(this.getChangedProductQuery("PurchaseOrderLine", "purchaseOrder"));
+
+    return queryList;
+  }
+
+  /**
+   * @param entityName an entity with a product field
+   * @param parentField optional, a parent whose changes are also taken into account
+   * @return a query selecting the products of the records changed since :dateTime
+   */
+  protected String getChangedProductQuery(String entityName, String parentField) {
+
+    String query =
+        String.format(
+            "SELECT DISTINCT self.product.id FROM %s self "
+                + "WHERE self.createdOn > :dateTime OR self.updatedOn > :dateTime",
+            entityName);
+
+    if (parentField != null) {
+      query += String.format(" OR self.%s.updatedOn > :dateTime", parentField);
+    }
+
+    return query;
+  }
+
+  /**
+   * Get the products whose lines depend on the lines of the given products, or the other way
+   * round. They have to be recomputed together in an incremental calculation.
+   *
+   * @param productIdSet
+   * @return
+   */
+  protected Set<Long> getLinkedProductIdSet(Set<Long> productIdSet) {
+    return new HashSet<>();
+  }
+
   protected void completeMrp(Mrp mrp) throws AxelorException {
 
     log.debug("Complete MRP");
@@ -257,6 +454,13 @@ public class MrpServiceImpl implements MrpService {
           TraceBackRepository.CATEGORY_NO_VALUE,
           I18n.get(SupplychainExceptionMessage.MRP_MISSING_STOCK_LOCATION_VALID));
     }
+
+    if (this.incrementalProductIdSet != null) {
+      this.productMap.keySet().retainAll(this.incrementalProductIdSet);
+      if (this.productMap.isEmpty()) {
+        return;
+      }
+    }
     // Get the stock for each product on each stock location
     this.createAvailableStockMrpLines();
 
@@ -288,18 +492,331 @@ public class MrpServiceImpl implements MrpService {
 
     mrp.setStatusSelect(MrpRepository.STATUS_CALCULATION_ENDED);
     mrp.setEndDateTime(appBaseService.getTodayDateTime().toLocalDateTime());
+    mrp.setLastCalculationDateTime(this.calculationDateTime);
     mrpRepository.save(mrp);
   }
 
   protected void checkInsufficientCumulativeQty() throws AxelorException {
 
+    if (this.isLegacyCalculation()) {
+      this.editedMrpLineMap = null;
+      for (int level = 0; level <= this.getMaxLevel(); level++) {
+
+        for (Product product : this.getProductList(level)) {
+
+          this.checkInsufficientCumulativeQty(product);
+        }
+      }
+      return;
+    }
+
+    this.editedMrpLineMap = this.getEditedMrpLineMap();
+
+    int threadCount = this.getCalculationThreadCount();
+    if (threadCount > 1) {
+      this.checkInsufficientCumulativeQtyInParallel(threadCount);
+      return;
+    }
+
     for (int level = 0; level <= this.getMaxLevel(); level++) {
 
-      for (Product product : this.getProductList(level)) {
+      for (Long productId : this.getProductIdList(level)) {
+
+        this.checkInsufficientCumulativeQty(productId);
+      }
+    }
+  }
+
+  protected int getCalculationThreadCount() {
+    AppSupplychain appSupplychain = appSupplychainService.getAppSupplychain();
+    return appSupplychain != null ? appSupplychain.getMrpThreadCount() : 0;
+  }
+
+  /**
+   * Compute the levels one after the other, the products of a level being spread over a pool of
+   * threads. Products sharing a component are computed by the same thread, in the same order as
+   * the sequential calculation, so the generated lines do not depend on the number of threads.
+   *
+   * <p>Each thread works with its own service instance, initialized from ids and read-only copies
+   * of the calculation state: the entities and collections of this instance are never used outside
+   * of the calling thread.
+   *
+   * @param threadCount
+   * @throws AxelorException
+   */
+  protected void checkInsufficientCumulativeQtyInParallel(int threadCount)
+      throws AxelorException {
+
+    Long mrpId = mrp.getId();
+    LocalDate calculationDate = today;
+    List<Long> stockLocationIdList =
+        stockLocationList.stream().map(StockLocation::getId).collect(Collectors.toList());
+    Map<Long, Integer> productLevelMap = Collections.unmodifiableMap(new HashMap<>(productMap));
+    Map<Long, Set<String>> editedLineMap =
+        Collections.unmodifiableMap(new HashMap<>(editedMrpLineMap));
+
+    try (WorkerExecutor executor = new WorkerExecutor(threadCount)) {
+      for (int level = 0; level <= this.getMaxLevel(); level++) {
+
+        Queue<List<Long>> productGroupQueue =
+            new ConcurrentLinkedQueue<>(
+                this.getIndependentProductGroupList(this.getProductIdList(level)));
+        List<Future<Void>> futureList = new ArrayList<>();
+
+        for (int i = 0; i < Math.min(threadCount, productGroupQueue.size()); i++) {
+          futureList.add(
+              executor.submit(
+                  () -> {
+                    MrpServiceImpl workerService = Beans.get(MrpServiceImpl.class);
+                    workerService.initWorker(
+                        mrpId,
+                        calculationDate,
+                        stockLocationIdList,
+                        productLevelMap,
+                        editedLineMap);
+                    return workerService.checkInsufficientCumulativeQtyInWorker(productGroupQueue);
+                  }));
+        }
+
+        // Wait for the whole level before computing the next one
+        for (Future<Void> future : futureList) {
+          future.get();
+        }
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AxelorException) {
+        throw (AxelorException) e.getCause();
+      }
+      throw new AxelorException(e.getCause(), TraceBackRepository.CATEGORY_INCONSISTENCY);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
+    }
+  }
+
+  /**
+   * Initialize the state of a service instance computing products in a worker thread. The MRP and
+   * its stock locations are reloaded in the session of the worker.
+   *
+   * @param mrpId
+   * @param today
+   * @param stockLocationIdList
+   * @param productMap read-only, the levels of the products
+   * @param editedMrpLineMap read-only, the lines edited by user
+   */
+  protected void initWorker(
+      Long mrpId,
+      LocalDate today,
+      List<Long> stockLocationIdList,
+      Map<Long, Integer> productMap,
+      Map<Long, Set<String>> editedMrpLineMap) {
+    this.mrp = mrpRepository.find(mrpId);
+    this.today = today;
+    this.stockLocationList =
+        stockLocationIdList.stream()
+            .map(stockLocationRepository::find)
+            .collect(Collectors.toList());
+    this.productMap = productMap;
+    this.editedMrpLineMap = editedMrpLineMap;
+  }
+
+  protected Void checkInsufficientCumulativeQtyInWorker(Queue<List<Long>> productGroupQueue)
+      throws AxelorException {
+    List<Long> productIdList;
+    while ((productIdList = productGroupQueue.poll()) != null) {
+      for (Long productId : productIdList) {
+        this.checkInsufficientCumulativeQty(productId);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Split the products of a level into groups that can be computed concurrently: two products
+   * sharing a component, or a product and one of its components, are put in the same group.
+   * Groups and products inside them keep the order of the given list.
+   *
+   * @param productIdList
+   * @return
+   * @throws AxelorException
+   */
+  protected List<List<Long>> getIndependentProductGroupList(List<Long> productIdList)
+      throws AxelorException {
 
-        this.checkInsufficientCumulativeQty(product);
+    Map<Long, Long> parentMap = new HashMap<>();
+    for (Long productId : productIdList) {
+      for (Long componentId : this.getMrpComponentIdSet(productId)) {
+        Long productRoot = this.findGroupRoot(parentMap, productId);
+        Long componentRoot = this.findGroupRoot(parentMap, componentId);
+        if (!productRoot.equals(componentRoot)) {
+          parentMap.put(componentRoot, productRoot);
+        }
       }
     }
+
+    Map<Long, List<Long>> groupMap = new LinkedHashMap<>();
+    for (Long productId : productIdList) {
+      groupMap
+          .computeIfAbsent(this.findGroupRoot(parentMap, productId), key -> new ArrayList<>())
+          .add(productId);
+    }
+
+    return new ArrayList<>(groupMap.values());
+  }
+
+  protected Long findGroupRoot(Map<Long, Long> parentMap, Long productId) {
+    Long root = productId;
+    while (parentMap.containsKey(root)) {
+      root = parentMap.get(root);
+    }
+    return root;
+  }
+
+  /**
+   * Get the ids of the other products whose lines may be created or updated while computing the
+   * given product.
+   *
+   * @param productId
+   * @return
+   * @throws AxelorException
+   */
+  protected Set<Long> getMrpComponentIdSet(Long productId) throws AxelorException {
+    return Collections.emptySet();
+  }
+
+  /**
+   * With the legacy calculation, cumulative quantities are computed and checked line by line, each
+   * line being reloaded from the database. It gives the same result as the default calculation and
+   * is only kept to compare them.
+   */
+  protected boolean isLegacyCalculation() {
+    AppSupplychain appSupplychain = appSupplychainService.getAppSupplychain();
+    return appSupplychain != null && appSupplychain.getUseLegacyMrpCalculation();
+  }
+
+  /**
+   * Get the ids of the products of a level
+   *
+   * @param level
+   * @return
+   */
+  protected List<Long> getProductIdList(int level) {
+
+    return this.productMap.entrySet().stream()
+        .filter(entry -> entry.getValue() == level)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  protected Map<Long, Set<String>> getEditedMrpLineMap() {
+
+    Map<Long, Set<String>> mrpLineMap = new HashMap<>();
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, self.relatedToSelectName "
+                    + "FROM MrpLine self "
+                    + "WHERE self.mrp.id = :mrpId AND self.isEditedByUser = true "
+                    + "AND self.relatedToSelectName IS NOT NULL",
+                Object[].class)
+            .setParameter("mrpId", mrp.getId())
+            .getResultList();
+
+    for (Object[] result : resultList) {
+      mrpLineMap.computeIfAbsent((Long) result[0], key -> new HashSet<>()).add((String) result[1]);
+    }
+
+    return mrpLineMap;
+  }
+
+  /**
+   * Compute the cumulative quantities of the product and create a proposal for the first line
+   * with an insufficient quantity, until there is none. Lines are loaded once, the passes being
+   * done on the loaded lines along with the lines created by the previous passes, and everything
+   * is saved in the same transaction.
+   *
+   * @param productId
+   * @throws AxelorException
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void checkInsufficientCumulativeQty(Long productId) throws AxelorException {
+
+    final int MAX_ITERATION = 1000;
+
+    JPA.clear();
+
+    Product product = productRepository.find(productId);
+    List<MrpLine> mrpLineList = this.getMrpLineList(productId);
+    this.createdMrpLineList = new ArrayList<>();
+
+    try {
+      for (int counter = 0; ; counter++) {
+
+        if (counter > MAX_ITERATION) {
+          throw new AxelorException(
+              TraceBackRepository.CATEGORY_INCONSISTENCY,
+              I18n.get(SupplychainExceptionMessage.MRP_TOO_MANY_ITERATIONS));
+        }
+
+        this.computeCumulativeQty(mrpLineList);
+
+        boolean doASecondPass = false;
+
+        for (MrpLine mrpLine : mrpLineList) {
+
+          doASecondPass = this.checkInsufficientCumulativeQty(mrpLine, product, counter == 0);
+          if (doASecondPass) {
+            break;
+          }
+        }
+
+        if (!doASecondPass) {
+          return;
+        }
+
+        this.addCreatedMrpLines(mrpLineList, productId);
+      }
+    } finally {
+      this.createdMrpLineList = null;
+    }
+  }
+
+  /**
+   * Add the lines of the product created by the last pass to the loaded lines, keeping the order
+   * of {@link #getMrpLineList(Long)}. Updated lines are already part of the loaded lines, being
+   * the same instances in the session.
+   *
+   * @param mrpLineList
+   * @param productId
+   */
+  protected void addCreatedMrpLines(List<MrpLine> mrpLineList, Long productId) {
+
+    for (MrpLine createdMrpLine : this.createdMrpLineList) {
+      if (productId.equals(createdMrpLine.getProduct().getId())) {
+        mrpLineList.add(createdMrpLine);
+      }
+    }
+    this.createdMrpLineList.clear();
+
+    mrpLineList.sort(
+        Comparator.comparing(
+                MrpLine::getMaturityDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingInt(mrpLine -> mrpLine.getMrpLineType().getTypeSelect())
+            .thenComparingInt(mrpLine -> mrpLine.getMrpLineType().getSequence())
+            .thenComparing(MrpLine::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+  }
+
+  protected List<MrpLine> getMrpLineList(Long productId) {
+
+    return mrpLineRepository
+        .all()
+        .filter("self.mrp.id = ?1 AND self.product.id = ?2", mrp.getId(), productId)
+        .order("maturityDate")
+        .order("mrpLineType.typeSelect")
+        .order("mrpLineType.sequence")
+        .order("id")
+        .fetch();
   }
 
   /**
@@ -450,18 +967,7 @@ public class MrpServiceImpl implements MrpService {
         return false;
       }
 
-      long duplicateCount =
-          mrpLineRepository
-              .all()
-              .filter(
-                  "self.mrp.id = ?1  AND self.isEditedByUser = ?2 AND self.product = ?3 AND self.relatedToSelectName = ?4",
-                  mrp.getId(),
-                  true,
-                  product,
-                  mrpLine.getRelatedToSelectName())
-              .count();
-
-      if (duplicateCount != 0) {
+      if (this.hasEditedMrpLine(product, mrpLine.getRelatedToSelectName())) {
         return false;
       }
 
@@ -481,6 +987,27 @@ public class MrpServiceImpl implements MrpService {
     return false;
   }
 
+  protected boolean hasEditedMrpLine(Product product, String relatedToSelectName) {
+
+    if (this.editedMrpLineMap != null) {
+      return relatedToSelectName != null
+          && this.editedMrpLineMap
+              .getOrDefault(product.getId(), Collections.emptySet())
+              .contains(relatedToSelectName);
+    }
+
+    return mrpLineRepository
+            .all()
+            .filter(
+                "self.mrp.id = ?1  AND self.isEditedByUser = ?2 AND self.product = ?3 AND self.relatedToSelectName = ?4",
+                mrp.getId(),
+                true,
+                product,
+                relatedToSelectName)
+            .count()
+        != 0;
+  }
+
   public MrpLine getPreviousProposalMrpLine(
       Product product,
       MrpLineType mrpLineType,
@@ -572,6 +1099,7 @@ public class MrpServiceImpl implements MrpService {
               null);
 
       mrpLine = mrpLineRepository.save(createdmrpLine);
+      this.addCreatedMrpLine(mrpLine);
 
       if (createdmrpLine != null) {
         createdmrpLine.setWarnDelayFromSupplier(
@@ -600,6 +1128,7 @@ public class MrpServiceImpl implements MrpService {
               createdmrpLine.getWarnDelayFromSupplier());
           this.copyMrpLineOrigins(createdEstimatedDeliveryMrpLine, mrpLineOriginList);
           createdmrpLine.setEstimatedDeliveryMrpLine(createdEstimatedDeliveryMrpLine);
+          this.addCreatedMrpLine(createdEstimatedDeliveryMrpLine);
           createdmrpLine.setDeliveryDelayDate(
               initialMaturityDate.minusDays(product.getSupplierDeliveryTime()));
         }
@@ -611,6 +1140,12 @@ public class MrpServiceImpl implements MrpService {
     this.copyMrpLineOrigins(mrpLine, mrpLineOriginList);
   }
 
+  protected void addCreatedMrpLine(MrpLine mrpLine) {
+    if (this.createdMrpLineList != null) {
+      this.createdMrpLineList.add(mrpLine);
+    }
+  }
+
   protected boolean getWarnDelayFromSupplier(MrpLine mrpLine, LocalDate initialMaturityDate) {
     return mrpLine.getMrpLineType().getElementSelect()
             == MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL
@@ -718,15 +1253,16 @@ public class MrpServiceImpl implements MrpService {
   @Transactional
   protected void computeCumulativeQty(Product product) {
 
-    List<MrpLine> mrpLineList =
-        mrpLineRepository
-            .all()
-            .filter("self.mrp.id = ?1 AND self.product.id = ?2", mrp.getId(), product.getId())
-            .order("maturityDate")
-            .order("mrpLineType.typeSelect")
-            .order("mrpLineType.sequence")
-            .order("id")
-            .fetch();
+    this.computeCumulativeQty(this.getMrpLineList(product.getId()));
+  }
+
+  /**
+   * Compute the cumulative quantities of the given lines, that must be sorted by maturity date.
+   *
+   * @param mrpLineList
+   */
+  @Transactional
+  protected void computeCumulativeQty(List<MrpLine> mrpLineList) {
 
     BigDecimal previousCumulativeQty = BigDecimal.ZERO;
     for (MrpLine mrpLine : mrpLineList) {
@@ -30,6 +30,7 @@ import com.axelor.apps.stock.db.TrackingNumber;
 import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.service.StockLocationLineHistoryService;
+import com.axelor.apps.stock.service.StockLocationLineLockMetrics;
 import com.axelor.apps.stock.service.StockLocationLineServiceImpl;
 import com.axelor.apps.stock.service.StockRulesService;
 import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
@@ -53,14 +54,16 @@ public class StockLocationLineServiceSupplychainImpl extends StockLocationLineSe
       AppBaseService appBaseService,
       UnitConversionService unitConversionService,
       AppSupplychainService appSupplychainService,
-      StockLocationLineHistoryService stockLocationLineHistoryService) {
+      StockLocationLineHistoryService stockLocationLineHistoryService,
+      StockLocationLineLockMetrics stockLocationLineLockMetrics) {
     super(
         stockLocationLineRepo,
         stockRulesService,
         stockMoveLineRepository,
         appBaseService,
         unitConversionService,
-        stockLocationLineHistoryService);
+        stockLocationLineHistoryService,
+        stockLocationLineLockMetrics);
     this.appSupplychainService = appSupplychainService;
   }
 
@@ -72,10 +72,10 @@ public class BatchCheckStockComplianceWithStockRules extends AbstractBatch {
     int offset = 0;
     Map<StockRules, List<StockLocationLine>> stockLocationLinesByStockRules;
     while ((stockLocationLinesByStockRules =
-            getNonCompliantStockLocationLinesByStockRules(AbstractBatch.FETCH_LIMIT, offset))
+            getNonCompliantStockLocationLinesByStockRules(getFetchLimit(), offset))
         != null) {
       if (ObjectUtils.isEmpty(stockLocationLinesByStockRules)) {
-        offset += AbstractBatch.FETCH_LIMIT;
+        offset += getFetchLimit();
         JPA.clear();
         continue;
       }
@@ -92,7 +92,7 @@ public class BatchCheckStockComplianceWithStockRules extends AbstractBatch {
             TraceBackService.trace(e, null, batch.getId());
           }
         }
-        offset += AbstractBatch.FETCH_LIMIT;
+        offset += getFetchLimit();
         JPA.clear();
       }
     }
@@ -32,7 +32,6 @@ import com.axelor.apps.supplychain.service.StockMoveInvoiceService;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import java.util.List;
 import javax.persistence.TypedQuery;
@@ -49,8 +48,6 @@ public class BatchOutgoingStockMoveInvoicing extends BatchStrategy {
   @Override
   protected void process() {
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
-    List<Long> anomalyList = Lists.newArrayList(0L);
-
     TypedQuery<StockMove> query =
         JPA.em()
             .createQuery(
@@ -59,7 +56,7 @@ public class BatchOutgoingStockMoveInvoicing extends BatchStrategy {
                     + "AND self.typeSelect = :typeSelect "
                     + "AND self.invoicingStatusSelect !=  :invoicingStatusSelect "
                     + "AND (SELECT count(invoice.id) FROM Invoice invoice WHERE invoice.statusSelect != :invoiceStatusCanceled AND invoice MEMBER OF self.invoiceSet) = 0"
-                    + "AND self.id NOT IN (:anomalyList) "
+                    + "AND self.id > :lastId "
                     + "AND self.partner.id NOT IN ("
                     + Beans.get(BlockingService.class)
                         .listOfBlockedPartner(
@@ -72,20 +69,21 @@ public class BatchOutgoingStockMoveInvoicing extends BatchStrategy {
             .setParameter("typeSelect", StockMoveRepository.TYPE_OUTGOING)
             .setParameter("invoiceStatusCanceled", InvoiceRepository.STATUS_CANCELED)
             .setParameter("invoicingStatusSelect", StockMoveRepository.STATUS_DELAYED_INVOICE)
-            .setParameter("anomalyList", anomalyList)
             .setParameter("batch", batch)
-            .setMaxResults(FETCH_LIMIT);
+            .setMaxResults(getFetchLimit());
 
+    // keyset pagination on the id, see BatchChunkIterator
+    long lastId = 0;
     List<StockMove> stockMoveList;
-    while (!(stockMoveList = query.getResultList()).isEmpty()) {
+    while (!(stockMoveList = query.setParameter("lastId", lastId).getResultList()).isEmpty()) {
+      lastId = stockMoveList.get(stockMoveList.size() - 1).getId();
       for (StockMove stockMove : stockMoveList) {
         try {
           stockMoveInvoiceService.createInvoiceFromStockMove(stockMove, null);
           updateStockMove(stockMove);
         } catch (Exception e) {
           incrementAnomaly();
-          anomalyList.add(stockMove.getId());
-          query.setParameter("anomalyList", anomalyList);
+          lastId = stockMove.getId();
           TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
           break;
         }
@@ -26,13 +26,12 @@ import com.axelor.apps.base.db.repo.ProductCategoryRepository;
 import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.ProductCategoryService;
+import com.axelor.apps.base.service.administration.BatchChunkIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.stock.db.StockHistoryLine;
 import com.axelor.apps.stock.service.StockHistoryService;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
@@ -62,30 +61,24 @@ public class BatchUpdateStockHistory extends BatchStrategy {
       List<Product> productList;
       List<ProductCategory> productCategoryList = getProductCategoryList(supplychainBatch);
       List<StockHistoryLine> stockHistoryLineList = new ArrayList<>();
-      Query<Product> productQuery;
+      BatchChunkIterator<Product> productIterator;
 
       if (supplychainBatch.getProductCategorySet() != null
           && !supplychainBatch.getProductCategorySet().isEmpty()) {
-        productQuery =
-            Beans.get(ProductRepository.class)
-                .all()
-                .filter(
-                    "self.productCategory in (?1) AND self.productTypeSelect = ?2",
-                    productCategoryList,
-                    ProductRepository.PRODUCT_TYPE_STORABLE);
+        productIterator =
+            chunkIterator(
+                    Product.class,
+                    "self.productCategory in (:productCategoryList) AND self.productTypeSelect = :productTypeSelect")
+                .bind("productCategoryList", productCategoryList);
       } else {
-        productQuery =
-            Beans.get(ProductRepository.class)
-                .all()
-                .filter("self.productTypeSelect = ?1", ProductRepository.PRODUCT_TYPE_STORABLE);
+        productIterator =
+            chunkIterator(Product.class, "self.productTypeSelect = :productTypeSelect");
       }
+      productIterator.bind("productTypeSelect", ProductRepository.PRODUCT_TYPE_STORABLE);
 
-      int offset = 0;
-
-      while (!(productList = productQuery.order("id").fetch(FETCH_LIMIT, offset)).isEmpty()) {
+      while (!(productList = productIterator.nextChunk()).isEmpty()) {
 
         for (Product product : productList) {
-          ++offset;
           try {
             stockHistoryLineList.addAll(
                 stockHistoryService.computeAndSaveStockHistoryLineList(
@@ -101,7 +94,7 @@ public class BatchUpdateStockHistory extends BatchStrategy {
                 e, ExceptionOriginRepository.UPDATE_STOCK_HISTORY, batch.getId());
           }
         }
-        JPA.clear();
+        productIterator.endChunk();
       }
     } catch (AxelorException e) {
       TraceBackService.trace(